@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * On-disk store for the failure traces (trace, expected and actual value) of the test elements of
+ * a {@link TestRunSession} that has been read from a file.
+ * <p>
+ * While a session is read, the failure traces are appended to the store, and the test elements
+ * only keep the offset of their record. The store ends with an index from the position of the test
+ * elements in the session file to their record offsets, so that the failure traces don't have to
+ * be written again when the session is read the next time.
+ * </p>
+ * <p>
+ * File format: records of three strings (length in bytes or -1 for <code>null</code>, followed by
+ * the UTF-8 bytes), then the index (element count and one record offset or -1 per element), then
+ * the offset of the index and a magic number.
+ * </p>
+ *
+ * @since 3.8
+ */
+public final class FailureTraceStore {
+
+	private static final int MAGIC= 0x4A55545A;
+
+	private static final int FOOTER_SIZE= 12;
+
+	private static final Charset UTF_8= Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private final File fFile;
+
+	/**
+	 * Record offsets by element position, or <code>null</code> if the store is not complete.
+	 */
+	private long[] fIndex;
+
+	private DataOutputStream fWriter;
+	private long fWriterOffset;
+	private long[] fNewIndex;
+	private int fNewIndexSize;
+
+	private RandomAccessFile fReader;
+
+	/**
+	 * Creates a store that is backed by the given file. The file is not accessed until the store is
+	 * used.
+	 *
+	 * @param file the file of the store
+	 */
+	public FailureTraceStore(File file) {
+		fFile= file;
+	}
+
+	/**
+	 * @return <code>true</code> iff the store holds the failure traces of all elements of the
+	 *         session file, i.e. it has been committed after the session had been read
+	 */
+	public synchronized boolean isComplete() {
+		if (fIndex == null && fWriter == null)
+			fIndex= readIndex();
+		return fIndex != null;
+	}
+
+	/**
+	 * Discards the content of the store and starts to write new records.
+	 *
+	 * @throws IOException if the store cannot be written
+	 */
+	public synchronized void begin() throws IOException {
+		close();
+		fIndex= null;
+		fWriter= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile)));
+		fWriterOffset= 0;
+		fNewIndex= new long[256];
+		fNewIndexSize= 0;
+	}
+
+	/**
+	 * @return <code>true</code> iff {@link #begin()} has been called and the store has not been
+	 *         committed or closed since
+	 */
+	public synchronized boolean isWriting() {
+		return fWriter != null;
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @param position the position of the test element in the session file
+	 * @param trace the trace, can be <code>null</code>
+	 * @param expected the expected value, can be <code>null</code>
+	 * @param actual the actual value, can be <code>null</code>
+	 * @return the offset of the record
+	 * @throws IOException if the record cannot be written
+	 */
+	public synchronized long append(int position, String trace, String expected, String actual) throws IOException {
+		if (fWriter == null)
+			throw new IOException("Failure trace store is not being written: " + fFile); //$NON-NLS-1$
+		long offset= fWriterOffset;
+		writeString(trace);
+		writeString(expected);
+		writeString(actual);
+		if (position >= fNewIndex.length) {
+			int length= Math.max(position + 1, fNewIndex.length * 2);
+			fNewIndex= Arrays.copyOf(fNewIndex, length);
+		}
+		for (int i= fNewIndexSize; i < position; i++)
+			fNewIndex[i]= -1;
+		fNewIndex[position]= offset;
+		fNewIndexSize= Math.max(fNewIndexSize, position + 1);
+		return offset;
+	}
+
+	/**
+	 * Writes the index and closes the writer.
+	 *
+	 * @param elementCount the number of test elements in the session file
+	 * @throws IOException if the index cannot be written
+	 */
+	public synchronized void commit(int elementCount) throws IOException {
+		if (fWriter == null)
+			return;
+		long[] index= new long[Math.max(elementCount, fNewIndexSize)];
+		System.arraycopy(fNewIndex, 0, index, 0, fNewIndexSize);
+		Arrays.fill(index, fNewIndexSize, index.length, -1);
+		try {
+			long indexOffset= fWriterOffset;
+			fWriter.writeInt(index.length);
+			for (int i= 0; i < index.length; i++)
+				fWriter.writeLong(index[i]);
+			fWriter.writeLong(indexOffset);
+			fWriter.writeInt(MAGIC);
+		} finally {
+			fWriter.close();
+			fWriter= null;
+			fNewIndex= null;
+		}
+		fIndex= index;
+	}
+
+	/**
+	 * Returns the record offset of the test element at the given position.
+	 *
+	 * @param position the position of the test element in the session file
+	 * @return the offset of the record, or -1 if the test element has no failure trace
+	 */
+	public synchronized long getOffset(int position) {
+		if (!isComplete() || position >= fIndex.length)
+			return -1;
+		return fIndex[position];
+	}
+
+	/**
+	 * Reads a record.
+	 *
+	 * @param offset the offset of the record
+	 * @return the trace, expected and actual value; elements can be <code>null</code>
+	 * @throws IOException if the record cannot be read
+	 */
+	public synchronized String[] read(long offset) throws IOException {
+		if (fWriter != null)
+			fWriter.flush();
+		if (fReader == null)
+			fReader= new RandomAccessFile(fFile, "r"); //$NON-NLS-1$
+		fReader.seek(offset);
+		return new String[] { readString(), readString(), readString() };
+	}
+
+	/**
+	 * Closes the open files of the store. The store can still be used afterwards.
+	 */
+	public synchronized void close() {
+		if (fReader != null) {
+			try {
+				fReader.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			fReader= null;
+		}
+		if (fWriter != null) {
+			try {
+				fWriter.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			fWriter= null;
+			fNewIndex= null;
+		}
+	}
+
+	/**
+	 * Closes and deletes the store.
+	 */
+	public synchronized void delete() {
+		close();
+		fIndex= null;
+		if (fFile.exists())
+			fFile.delete();
+	}
+
+	private long[] readIndex() {
+		if (!fFile.isFile())
+			return null;
+		try (RandomAccessFile file= new RandomAccessFile(fFile, "r")) { //$NON-NLS-1$
+			long length= file.length();
+			if (length < FOOTER_SIZE)
+				return null;
+			file.seek(length - FOOTER_SIZE);
+			long indexOffset= file.readLong();
+			if (file.readInt() != MAGIC || indexOffset < 0 || indexOffset > length - FOOTER_SIZE - 4)
+				return null;
+			file.seek(indexOffset);
+			int count= file.readInt();
+			if (count < 0 || indexOffset + 4 + 8L * count != length - FOOTER_SIZE)
+				return null;
+			long[] index= new long[count];
+			for (int i= 0; i < count; i++)
+				index[i]= file.readLong();
+			return index;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void writeString(String string) throws IOException {
+		if (string == null) {
+			fWriter.writeInt(-1);
+			fWriterOffset+= 4;
+		} else {
+			byte[] bytes= string.getBytes(UTF_8);
+			fWriter.writeInt(bytes.length);
+			fWriter.write(bytes);
+			fWriterOffset+= 4 + bytes.length;
+		}
+	}
+
+	private String readString() throws IOException {
+		int length= fReader.readInt();
+		if (length < 0)
+			return null;
+		byte[] bytes= new byte[length];
+		fReader.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,21 +12,24 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.junit.model;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.PushbackReader;
+import java.io.PushbackInputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 import org.eclipse.core.runtime.ISafeRunnable;
 import org.eclipse.core.runtime.SafeRunner;
 
 import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageReader;
 import org.eclipse.jdt.internal.junit.runner.MessageIds;
 import org.eclipse.jdt.internal.junit.runner.RemoteTestRunner;
 
@@ -69,6 +72,11 @@ public class RemoteTestRunnerClient {
 	            return fRerunState;
 	        }
 	        String arg= message.substring(MessageIds.MSG_HEADER_LENGTH);
+	        if (message.startsWith(MessageIds.PROTOCOL_OFFER)) {
+	            if (fBinaryProtocolEnabled && MessageIds.BINARY_PROTOCOL.equals(arg))
+	                acceptProtocol(arg);
+	            return this;
+	        }
 	        if (message.startsWith(MessageIds.TEST_RUN_START)) {
 	            // version < 2 format: count
 	            // version >= 2 format: count+" "+version
@@ -224,8 +232,20 @@ public class RemoteTestRunnerClient {
 	private Socket fSocket;
 	private int fPort= -1;
 	private PrintWriter fWriter;
-	private PushbackReader fPushbackReader;
+	private PushbackInputStream fInputStream;
 	private String fLastLineDelimiter;
+	/**
+	 * Buffer for the bytes of the line that is currently read
+	 */
+	private byte[] fLineBuffer= new byte[128];
+	/**
+	 * Whether the binary protocol is accepted if the RemoteTestRunner offers it
+	 */
+	private boolean fBinaryProtocolEnabled= !"false".equals(System.getProperty("org.eclipse.jdt.junit.binaryProtocol")); //$NON-NLS-1$ //$NON-NLS-2$
+	/**
+	 * Whether the RemoteTestRunner has switched to the binary protocol
+	 */
+	private volatile boolean fBinaryProtocol;
 	/**
 	 * The protocol version
 	 */
@@ -263,19 +283,21 @@ public class RemoteTestRunnerClient {
 					System.out.println("Creating server socket "+fServerPort); //$NON-NLS-1$
 				fServerSocket= new ServerSocket(fServerPort);
 				fSocket= fServerSocket.accept();
-				try {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream(), "UTF-8"))); //$NON-NLS-1$
-				} catch (UnsupportedEncodingException e) {
-				    fPushbackReader= new PushbackReader(new BufferedReader(new InputStreamReader(fSocket.getInputStream())));
-				}
+				fInputStream= new PushbackInputStream(new BufferedInputStream(fSocket.getInputStream(), 64 * 1024));
 				try {
 				    fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream(), "UTF-8"), true); //$NON-NLS-1$
 	            } catch (UnsupportedEncodingException e1) {
 	                fWriter= new PrintWriter(new OutputStreamWriter(fSocket.getOutputStream()), true);
 	            }
 				String message;
-				while(fPushbackReader != null && (message= readMessage(fPushbackReader)) != null)
+				PushbackInputStream in;
+				while((in= fInputStream) != null && (message= readMessage(in)) != null) {
+					if (message.startsWith(MessageIds.BINARY_START)) {
+						readFrames(in);
+						break;
+					}
 					receiveMessage(message);
+				}
 			} catch (SocketException e) {
 				notifyTestRunTerminated();
 			} catch (IOException e) {
@@ -300,6 +322,24 @@ public class RemoteTestRunnerClient {
 		connection.start();
 	}
 
+	/**
+	 * Sets whether the binary protocol is accepted if the RemoteTestRunner offers it.
+	 * The default can be changed with the system property
+	 * <code>org.eclipse.jdt.junit.binaryProtocol</code>.
+	 *
+	 * @param enabled <code>true</code> to accept the binary protocol
+	 */
+	public void setBinaryProtocolEnabled(boolean enabled) {
+		fBinaryProtocolEnabled= enabled;
+	}
+
+	/**
+	 * @return <code>true</code> iff the RemoteTestRunner has switched to the binary protocol
+	 */
+	public boolean isBinaryProtocol() {
+		return fBinaryProtocol;
+	}
+
 	/**
 	 * Requests to stop the remote test run.
 	 */
@@ -325,9 +365,9 @@ public class RemoteTestRunnerClient {
 			fWriter= null;
 		}
 		try {
-			if (fPushbackReader != null) {
-				fPushbackReader.close();
-				fPushbackReader= null;
+			if (fInputStream != null) {
+				fInputStream.close();
+				fInputStream= null;
 			}
 		} catch(IOException e) {
 		}
@@ -351,30 +391,67 @@ public class RemoteTestRunnerClient {
 		return fSocket != null;
 	}
 
-	private String readMessage(PushbackReader in) throws IOException {
-		StringBuffer buf= new StringBuffer(128);
+	private String readMessage(PushbackInputStream in) throws IOException {
+		// read bytes instead of characters, so that no bytes of binary frames are buffered by a decoder
+		int length= 0;
 		int ch;
 		while ((ch= in.read()) != -1) {
 			if (ch == '\n') {
 				fLastLineDelimiter= "\n"; //$NON-NLS-1$
-				return buf.toString();
+				return toMessage(length);
 			} else if (ch == '\r') {
 				ch= in.read();
 				if (ch == '\n') {
 					fLastLineDelimiter= "\r\n"; //$NON-NLS-1$
 				} else {
-					in.unread(ch);
+					if (ch != -1)
+						in.unread(ch);
 					fLastLineDelimiter= "\r"; //$NON-NLS-1$
 				}
-				return buf.toString();
+				return toMessage(length);
 			} else {
-				buf.append((char) ch);
+				if (length == fLineBuffer.length)
+					fLineBuffer= Arrays.copyOf(fLineBuffer, length * 2);
+				fLineBuffer[length++]= (byte) ch;
 			}
 		}
 		fLastLineDelimiter= null;
-		if (buf.length() == 0)
+		if (length == 0)
 			return null;
-		return buf.toString();
+		return toMessage(length);
+	}
+
+	private String toMessage(int length) {
+		return new String(fLineBuffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads the frames of the binary protocol until the end of the stream or until the
+	 * connection is shut down.
+	 *
+	 * @param in the stream positioned after the {@link MessageIds#BINARY_START} message
+	 * @throws IOException if reading fails
+	 */
+	private void readFrames(InputStream in) throws IOException {
+		if (fDebug)
+			System.out.println("Switching to binary protocol " + fPort); //$NON-NLS-1$
+		fBinaryProtocol= true;
+		BinaryMessageReader reader= new BinaryMessageReader(in);
+		String[] messages;
+		while ((messages= reader.readFrame()) != null) {
+			for (int i= 0; i < messages.length; i++) {
+				// messages end like the lines of the text protocol
+				fLastLineDelimiter= "\n"; //$NON-NLS-1$
+				receiveMessage(messages[i]);
+				if (fInputStream == null)
+					return;
+			}
+		}
+	}
+
+	private synchronized void acceptProtocol(String protocol) {
+		if (fWriter != null)
+			fWriter.println(MessageIds.PROTOCOL_ACCEPT + protocol);
 	}
 
 	private void receiveMessage(String message) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,12 +14,16 @@
 
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.IOException;
+
 import org.eclipse.jdt.junit.model.ITestElement;
 import org.eclipse.jdt.junit.model.ITestElementContainer;
 import org.eclipse.jdt.junit.model.ITestRunSession;
 
 import org.eclipse.core.runtime.Assert;
 
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
+
 
 public abstract class TestElement implements ITestElement {
 	public final static class Status {
@@ -174,6 +178,13 @@ public abstract class TestElement implements ITestElement {
 	private String fExpected;
 	private String fActual;
 
+	/**
+	 * Offset of the failure trace in the {@link FailureTraceStore} of the session, or -1 if the
+	 * failure trace is kept in {@link #fTrace}, {@link #fExpected}, and {@link #fActual}.
+	 */
+	private long fFailureTraceOffset= -1;
+	private boolean fStoredComparisonFailure;
+
 	private boolean fAssumptionFailed;
 
 	/**
@@ -233,7 +244,11 @@ public abstract class TestElement implements ITestElement {
 	public FailureTrace getFailureTrace() {
 		Result testResult= getTestResult(false);
 		if (testResult == Result.ERROR || testResult == Result.FAILURE
-				|| (testResult == Result.IGNORED && fTrace != null)) {
+				|| (testResult == Result.IGNORED && hasTrace())) {
+			if (fFailureTraceOffset >= 0) {
+				String[] failureTrace= readFailureTrace();
+				return new FailureTrace(failureTrace[0], failureTrace[1], failureTrace[2]);
+			}
 			return new FailureTrace(fTrace, fExpected, fActual);
 		}
 		return null;
@@ -275,6 +290,13 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	public void setStatus(Status status, String trace, String expected, String actual) {
+		if (fFailureTraceOffset >= 0) {
+			String[] failureTrace= readFailureTrace();
+			fTrace= failureTrace[0];
+			fExpected= failureTrace[1];
+			fActual= failureTrace[2];
+			fFailureTraceOffset= -1;
+		}
 		if (trace != null && fTrace != null) {
 			//don't overwrite first trace if same test run logs multiple errors
 			fTrace= fTrace + trace;
@@ -291,21 +313,77 @@ public abstract class TestElement implements ITestElement {
 	}
 
 	public String getTrace() {
+		if (fFailureTraceOffset >= 0)
+			return readFailureTrace()[0];
 		return fTrace;
 	}
 
 	public String getExpected() {
+		if (fFailureTraceOffset >= 0)
+			return readFailureTrace()[1];
 		return fExpected;
 	}
 
 	public String getActual() {
+		if (fFailureTraceOffset >= 0)
+			return readFailureTrace()[2];
 		return fActual;
 	}
 
 	public boolean isComparisonFailure() {
+		if (fFailureTraceOffset >= 0)
+			return fStoredComparisonFailure;
 		return fExpected != null && fActual != null;
 	}
 
+	private boolean hasTrace() {
+		return fFailureTraceOffset >= 0 || fTrace != null;
+	}
+
+	/**
+	 * Moves the failure trace of this element to the given store.
+	 *
+	 * @param store the failure trace store of the session
+	 * @param position the position of this element in the session file
+	 * @throws IOException if the failure trace cannot be written
+	 */
+	void storeFailureTrace(FailureTraceStore store, int position) throws IOException {
+		if (fTrace == null && fExpected == null && fActual == null)
+			return;
+		setStoredFailureTrace(store.append(position, fTrace, fExpected, fActual));
+	}
+
+	/**
+	 * Drops the failure trace of this element, which has already been written to the failure trace
+	 * store of the session.
+	 *
+	 * @param offset the offset of the failure trace in the store, or -1 if none has been stored
+	 */
+	void setStoredFailureTrace(long offset) {
+		if (offset < 0)
+			return;
+		fStoredComparisonFailure= fExpected != null && fActual != null;
+		fFailureTraceOffset= offset;
+		fTrace= null;
+		fExpected= null;
+		fActual= null;
+	}
+
+	private String[] readFailureTrace() {
+		ITestRunSession session= getTestRunSession();
+		if (session instanceof TestRunSession) {
+			FailureTraceStore store= ((TestRunSession) session).getFailureTraceStore();
+			if (store != null) {
+				try {
+					return store.read(fFailureTraceOffset);
+				} catch (IOException e) {
+					JUnitCorePlugin.log(e);
+				}
+			}
+		}
+		return new String[3];
+	}
+
 	/**
 	 * @return return the class name
 	 * @see org.eclipse.jdt.internal.junit.runner.ITestIdentifier#getName()
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,7 @@
 
 package org.eclipse.jdt.internal.junit.model;
 
+import java.io.IOException;
 import java.util.Stack;
 
 import org.xml.sax.Attributes;
@@ -33,6 +34,7 @@ import org.eclipse.jdt.core.IJavaModel;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.JavaCore;
 
+import org.eclipse.jdt.internal.junit.JUnitCorePlugin;
 import org.eclipse.jdt.internal.junit.model.TestElement.Status;
 
 public class TestRunHandler extends DefaultHandler {
@@ -61,6 +63,12 @@ public class TestRunHandler extends DefaultHandler {
 	private IProgressMonitor fMonitor;
 	private int fLastReportedLine;
 
+	/**
+	 * Store for the failure traces of the session, or <code>null</code> if failure traces are kept
+	 * in memory.
+	 */
+	private FailureTraceStore fFailureTraceStore;
+
 	public TestRunHandler() {
 
 	}
@@ -113,6 +121,7 @@ public class TestRunHandler extends DefaultHandler {
 				fTestRunSession.reset();
 			}
 			fTestSuite= fTestRunSession.getTestRoot();
+			initFailureTraceStore();
 
 		} else if (qName.equals(IXMLTags.NODE_TESTSUITES)) {
 			// support Ant's 'junitreport' task; create suite from NODE_TESTSUITE
@@ -124,6 +133,7 @@ public class TestRunHandler extends DefaultHandler {
 				// support standalone suites and Ant's 'junitreport' task:
 				fTestRunSession= new TestRunSession(name, null);
 				fTestSuite= fTestRunSession.getTestRoot();
+				initFailureTraceStore();
 			}
 
 			String pack= attributes.getValue(IXMLTags.ATTR_PACKAGE);
@@ -179,6 +189,33 @@ public class TestRunHandler extends DefaultHandler {
 		}
 	}
 
+	/**
+	 * Reuses the failure trace store of the session if it is complete, or starts to write it
+	 * otherwise.
+	 */
+	private void initFailureTraceStore() {
+		fFailureTraceStore= fTestRunSession.getFailureTraceStore();
+		if (fFailureTraceStore != null && !fFailureTraceStore.isComplete()) {
+			try {
+				fFailureTraceStore.begin();
+			} catch (IOException e) {
+				JUnitCorePlugin.log(e);
+				fFailureTraceStore= null;
+			}
+		}
+	}
+
+	@Override
+	public void endDocument() throws SAXException {
+		if (fFailureTraceStore != null && fFailureTraceStore.isWriting()) {
+			try {
+				fFailureTraceStore.commit(fId);
+			} catch (IOException e) {
+				JUnitCorePlugin.log(e);
+			}
+		}
+	}
+
 	private void readTime(TestElement testElement, Attributes attributes) {
 		String timeString= attributes.getValue(IXMLTags.ATTR_TIME);
 		if (timeString != null) {
@@ -268,6 +305,21 @@ public class TestRunHandler extends DefaultHandler {
 	private void handleTestElementEnd(TestElement testElement) {
 		boolean completed= fNotRun.pop() != Boolean.TRUE;
 		fTestRunSession.registerTestEnded(testElement, completed);
+		if (fFailureTraceStore != null) {
+			// the failure trace is complete, so it can be moved out of memory
+			int position= Integer.parseInt(testElement.getId());
+			if (fFailureTraceStore.isWriting()) {
+				try {
+					testElement.storeFailureTrace(fFailureTraceStore, position);
+				} catch (IOException e) {
+					JUnitCorePlugin.log(e);
+					fFailureTraceStore.close();
+					fFailureTraceStore= null;
+				}
+			} else {
+				testElement.setStoredFailureTrace(fFailureTraceStore.getOffset(position));
+			}
+		}
 	}
 
 	private void handleFailure(TestElement testElement) {
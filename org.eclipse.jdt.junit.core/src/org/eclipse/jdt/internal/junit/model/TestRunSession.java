@@ -95,6 +95,30 @@ public class TestRunSession implements ITestRunSession {
 	 */
 	private TestSuiteElement fUnrootedSuite;
 
+	/**
+	 * Store for the failure traces of test elements that have been read from a file, or
+	 * <code>null</code> if not created yet.
+	 */
+	private FailureTraceStore fFailureTraceStore;
+
+	/**
+	 * <code>true</code> iff test elements or failure traces have been changed by the test runner
+	 * since the failure trace store has been written.
+	 */
+	private volatile boolean fFailureTracesChanged;
+
+	/**
+	 * The time of the last history file name, guarded by the class.
+	 */
+	private static long fgLastHistoryTime;
+
+	/**
+	 * The name of the swap file and the failure trace store of this session in the history
+	 * directory, without extension. It is fixed at construction, since the start time changes when
+	 * the test run starts.
+	 */
+	private final String fHistoryFileName= createHistoryFileName();
+
  	/**
  	 * Number of tests started during this test run.
  	 */
@@ -354,6 +378,14 @@ public class TestRunSession implements ITestRunSession {
 			File swapFile= getSwapFile();
 
 			JUnitModel.exportTestRunSession(this, swapFile);
+			if (fFailureTraceStore != null) {
+				// the store no longer matches the swap file if the test runner changed the session
+				if (fFailureTracesChanged)
+					fFailureTraceStore.delete();
+				else
+					fFailureTraceStore.close();
+			}
+			fFailureTracesChanged= false;
 			fTestResult= fTestRoot.getTestResult(true);
 			fTestRoot= null;
 			fTestRunnerClient= null;
@@ -377,13 +409,44 @@ public class TestRunSession implements ITestRunSession {
 		File swapFile= getSwapFile();
 		if (swapFile.exists())
 			swapFile.delete();
+		synchronized (this) {
+			if (fFailureTraceStore != null)
+				fFailureTraceStore.delete();
+		}
 	}
 
 	private File getSwapFile() throws IllegalStateException {
+		return getHistoryFile(".xml"); //$NON-NLS-1$
+	}
+
+	private File getHistoryFile(String extension) throws IllegalStateException {
 		File historyDir= JUnitCorePlugin.getHistoryDirectory();
-		String isoTime= new SimpleDateFormat("yyyyMMdd-HHmmss.SSS").format(new Date(getStartTime())); //$NON-NLS-1$
-		String swapFileName= isoTime + ".xml"; //$NON-NLS-1$
-		return new File(historyDir, swapFileName);
+		String fileName= fHistoryFileName + extension;
+		return new File(historyDir, fileName);
+	}
+
+	private static synchronized String createHistoryFileName() {
+		// unique even for sessions that are created in the same millisecond
+		fgLastHistoryTime= Math.max(System.currentTimeMillis(), fgLastHistoryTime + 1);
+		return new SimpleDateFormat("yyyyMMdd-HHmmss.SSS").format(new Date(fgLastHistoryTime)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the store for the failure traces of test elements that are read from a file.
+	 *
+	 * @return the failure trace store, or <code>null</code> if the history directory is not
+	 *         available
+	 * @since 3.8
+	 */
+	public synchronized FailureTraceStore getFailureTraceStore() {
+		if (fFailureTraceStore == null) {
+			try {
+				fFailureTraceStore= new FailureTraceStore(getHistoryFile(".traces")); //$NON-NLS-1$
+			} catch (IllegalStateException e) {
+				return null;
+			}
+		}
+		return fFailureTraceStore;
 	}
 
 
@@ -600,6 +663,7 @@ public class TestRunSession implements ITestRunSession {
 		private TestElement createUnrootedTestElement(String testId, String testName) {
 			TestSuiteElement unrootedSuite= getUnrootedSuite();
 			TestElement testElement= createTestElement(unrootedSuite, testId, testName, false, 1);
+			fFailureTracesChanged= true;
 
 			for (ITestSessionListener listener : fSessionListeners) {
 				listener.testAdded(testElement);
@@ -688,6 +752,7 @@ public class TestRunSession implements ITestRunSession {
 			}
 
 			registerTestFailureStatus(testElement, status, trace, expected, actual);
+			fFailureTracesChanged= true;
 
 			for (ITestSessionListener listener : fSessionListeners) {
 				listener.testFailed(testElement, status, trace, expected, actual);
@@ -707,6 +772,7 @@ public class TestRunSession implements ITestRunSession {
 
 			Status status= Status.convert(statusCode);
 			registerTestFailureStatus(testElement, status, trace, expectedResult, actualResult);
+			fFailureTracesChanged= true;
 
 			for (ITestSessionListener listener : fSessionListeners) {
 				//TODO: post old & new status?
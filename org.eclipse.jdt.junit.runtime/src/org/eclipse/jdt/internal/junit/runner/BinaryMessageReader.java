@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the frames written by a {@link BinaryMessageWriter}.
+ */
+public class BinaryMessageReader {
+
+	private final DataInputStream fInput;
+
+	private byte[] fBuffer= new byte[BinaryMessageWriter.MAX_FRAME_SIZE + 1024];
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param input the stream to read from, positioned after the line delimiter of the
+	 *            {@link MessageIds#BINARY_START} message
+	 */
+	public BinaryMessageReader(InputStream input) {
+		fInput= new DataInputStream(input);
+	}
+
+	/**
+	 * Reads the next frame.
+	 *
+	 * @return the messages of the frame, or <code>null</code> if the end of the stream has
+	 *         been reached
+	 * @throws IOException if reading fails or the frame is corrupt
+	 */
+	public String[] readFrame() throws IOException {
+		int length;
+		try {
+			length= fInput.readInt();
+		} catch (EOFException e) {
+			return null;
+		}
+		if (length < 0)
+			throw new IOException("Invalid frame length: " + length); //$NON-NLS-1$
+		if (length > fBuffer.length)
+			fBuffer= new byte[length];
+		fInput.readFully(fBuffer, 0, length);
+
+		int count= 0;
+		String[] messages= new String[64];
+		int offset= 0;
+		String[] headers= MessageIds.BINARY_MESSAGE_HEADERS;
+		while (offset < length) {
+			if (offset + 5 > length)
+				throw new IOException("Truncated message"); //$NON-NLS-1$
+			int opCode= fBuffer[offset] & 0xFF;
+			int size= ((fBuffer[offset + 1] & 0xFF) << 24) | ((fBuffer[offset + 2] & 0xFF) << 16)
+					| ((fBuffer[offset + 3] & 0xFF) << 8) | (fBuffer[offset + 4] & 0xFF);
+			offset+= 5;
+			if (opCode > headers.length || size < 0 || offset + size > length)
+				throw new IOException("Invalid message"); //$NON-NLS-1$
+			String message= new String(fBuffer, offset, size, "UTF-8"); //$NON-NLS-1$
+			offset+= size;
+			if (opCode > 0)
+				message= headers[opCode - 1] + message;
+			if (count == messages.length) {
+				String[] grown= new String[count * 2];
+				System.arraycopy(messages, 0, grown, 0, count);
+				messages= grown;
+			}
+			messages[count++]= message;
+		}
+		String[] result= new String[count];
+		System.arraycopy(messages, 0, result, 0, count);
+		return result;
+	}
+}
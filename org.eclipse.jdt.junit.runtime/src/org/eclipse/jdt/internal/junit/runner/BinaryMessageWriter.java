@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.junit.runner;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes messages in frames of the binary protocol, see {@link MessageIds#BINARY_START}.
+ * <p>
+ * Messages are collected in the current frame. A frame is sent when it is full, or at the
+ * latest after the flush delay when {@link #flush()} has been called. This avoids a socket
+ * write for every test that is started.
+ * </p>
+ * <p>
+ * Like a <code>PrintWriter</code>, the writer doesn't throw I/O exceptions. After an I/O
+ * error, all messages are discarded.
+ * </p>
+ */
+public class BinaryMessageWriter {
+
+	/**
+	 * Size of a frame after which it is sent without waiting for a flush.
+	 */
+	public static final int MAX_FRAME_SIZE= 64 * 1024;
+
+	/**
+	 * Default maximal delay in milliseconds between a flush request and the sending of the
+	 * frame.
+	 */
+	public static final int DEFAULT_FLUSH_DELAY= 50;
+
+	private final Object fLock= new Object();
+
+	private final DataOutputStream fOutput;
+	private final ByteArrayOutputStream fFrame= new ByteArrayOutputStream(MAX_FRAME_SIZE + 1024);
+	private final DataOutputStream fFrameData= new DataOutputStream(fFrame);
+	private final int fFlushDelay;
+
+	private boolean fFlushRequested;
+	private boolean fClosed;
+	private boolean fError;
+
+	/**
+	 * Thread that sends the current frame after a flush request.
+	 */
+	private class FlushThread extends Thread {
+		public FlushThread() {
+			super("BinaryMessageWriter"); //$NON-NLS-1$
+			setDaemon(true);
+		}
+
+		public void run() {
+			synchronized (fLock) {
+				while (!fClosed) {
+					try {
+						if (fFlushRequested) {
+							fLock.wait(fFlushDelay);
+							writeFrame();
+						} else {
+							fLock.wait();
+						}
+					} catch (InterruptedException e) {
+						// continue until closed
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a writer with the default flush delay.
+	 *
+	 * @param output the stream to write to
+	 */
+	public BinaryMessageWriter(OutputStream output) {
+		this(output, DEFAULT_FLUSH_DELAY);
+	}
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param output the stream to write to
+	 * @param flushDelay the maximal delay in milliseconds between a flush request and the
+	 *            sending of the frame, or 0 to send the frame immediately
+	 */
+	public BinaryMessageWriter(OutputStream output, int flushDelay) {
+		fOutput= new DataOutputStream(new BufferedOutputStream(output, 8 * 1024));
+		fFlushDelay= flushDelay;
+		if (flushDelay > 0)
+			new FlushThread().start();
+	}
+
+	/**
+	 * Adds a message to the current frame.
+	 *
+	 * @param message the message
+	 */
+	public void write(String message) {
+		synchronized (fLock) {
+			if (fClosed || fError)
+				return;
+			try {
+				encode(message, fFrameData);
+				if (fFrame.size() >= MAX_FRAME_SIZE)
+					writeFrame();
+			} catch (IOException e) {
+				fError= true;
+			}
+		}
+	}
+
+	/**
+	 * Requests that the current frame is sent, at the latest after the flush delay.
+	 */
+	public void flush() {
+		synchronized (fLock) {
+			if (fFlushDelay <= 0) {
+				writeFrame();
+			} else if (!fFlushRequested && fFrame.size() > 0) {
+				fFlushRequested= true;
+				fLock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Sends the current frame immediately.
+	 */
+	public void flushNow() {
+		synchronized (fLock) {
+			writeFrame();
+		}
+	}
+
+	/**
+	 * Sends the current frame and stops the flush thread. The underlying stream is not
+	 * closed.
+	 */
+	public void close() {
+		synchronized (fLock) {
+			if (fClosed)
+				return;
+			writeFrame();
+			fClosed= true;
+			fLock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> iff an I/O error occurred
+	 */
+	public boolean checkError() {
+		synchronized (fLock) {
+			return fError;
+		}
+	}
+
+	/**
+	 * Sends the current frame. Must be called while holding the lock.
+	 */
+	private void writeFrame() {
+		fFlushRequested= false;
+		if (fFrame.size() == 0 || fError)
+			return;
+		try {
+			fOutput.writeInt(fFrame.size());
+			fFrame.writeTo(fOutput);
+			fOutput.flush();
+		} catch (IOException e) {
+			fError= true;
+		}
+		fFrame.reset();
+	}
+
+	/**
+	 * Encodes a message of the binary protocol.
+	 *
+	 * @param message the message
+	 * @param output the stream to write to
+	 * @throws IOException if writing fails
+	 */
+	public static void encode(String message, DataOutputStream output) throws IOException {
+		int opCode= 0;
+		if (message.length() >= MessageIds.MSG_HEADER_LENGTH) {
+			String[] headers= MessageIds.BINARY_MESSAGE_HEADERS;
+			for (int i= 0; i < headers.length; i++) {
+				if (message.startsWith(headers[i])) {
+					opCode= i + 1;
+					message= message.substring(MessageIds.MSG_HEADER_LENGTH);
+					break;
+				}
+			}
+		}
+		byte[] bytes= message.getBytes("UTF-8"); //$NON-NLS-1$
+		output.writeByte(opCode);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -120,6 +120,41 @@ public class MessageIds {
 	 */
 	public static final String TEST_RERUN=	">RERUN  "; //$NON-NLS-1$
 
+	/**
+	 * Offer of the RemoteTestRunner to switch to another protocol.
+	 * PROTOCOL_OFFER + protocolName.
+	 * Clients that don't know the offer ignore it, and the text protocol is used.
+	 */
+	public static final String PROTOCOL_OFFER= "%PROTOCL"; //$NON-NLS-1$
+	/**
+	 * Request to switch to a protocol that has been offered.
+	 * PROTOCOL_ACCEPT + protocolName
+	 */
+	public static final String PROTOCOL_ACCEPT= ">PROTOCL"; //$NON-NLS-1$
+	/**
+	 * Notification that all following messages are sent with the binary protocol.
+	 * After the line delimiter of this message, the stream consists of frames:
+	 * the frame length in bytes (int), followed by the messages of the frame.
+	 * Each message is encoded as the index of its header in
+	 * {@link #BINARY_MESSAGE_HEADERS} plus 1 (byte, 0 if the message has no
+	 * header of the table), the length of the rest of the message in bytes (int),
+	 * and the UTF-8 bytes of the rest of the message. Numbers are big-endian.
+	 */
+	public static final String BINARY_START= "%BINARY "; //$NON-NLS-1$
+	/**
+	 * Name of the binary protocol, see {@link #BINARY_START}.
+	 */
+	public static final String BINARY_PROTOCOL= "binary1"; //$NON-NLS-1$
+	/**
+	 * Headers of the messages that are encoded as one byte in the binary protocol.
+	 * The order must not be changed.
+	 */
+	public static final String[] BINARY_MESSAGE_HEADERS= {
+		TEST_TREE, TEST_START, TEST_END, TEST_ERROR, TEST_FAILED,
+		TRACE_START, TRACE_END, EXPECTED_START, EXPECTED_END, ACTUAL_START, ACTUAL_END,
+		RTRACE_START, RTRACE_END, TEST_RUN_START, TEST_RUN_END, TEST_STOPPED, TEST_RERAN
+	};
+
 	/**
 	 * MessageFormat to encode test method identifiers:
 	 * testMethod(testClass)
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,15 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Print writer for sending messages
 	 */
 	private PrintWriter fWriter;
+	/**
+	 * Writer for sending messages with the binary protocol, or <code>null</code>
+	 * if the text protocol is used
+	 */
+	private BinaryMessageWriter fBinaryWriter;
+	/**
+	 * Has the client accepted the binary protocol
+	 */
+	private volatile boolean fBinaryProtocolAccepted= false;
 	/**
 	 * Reader for incoming messages
 	 */
@@ -143,6 +152,12 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 							break;
 						}
 
+						else if (message.startsWith(MessageIds.PROTOCOL_ACCEPT)) {
+							String protocol= message.substring(MessageIds.MSG_HEADER_LENGTH);
+							if (MessageIds.BINARY_PROTOCOL.equals(protocol))
+								fBinaryProtocolAccepted= true;
+						}
+
 						else if (message.startsWith(MessageIds.TEST_RERUN)) {
 							String arg= message.substring(MessageIds.MSG_HEADER_LENGTH);
 							//format: testId className testName
@@ -572,6 +587,9 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
                 }
 				fReaderThread= new ReaderThread();
 				fReaderThread.start();
+				// clients that know the binary protocol accept it, older clients ignore the offer
+				fWriter.println(MessageIds.PROTOCOL_OFFER + MessageIds.BINARY_PROTOCOL);
+				fWriter.flush();
 				return true;
 			} catch(IOException e){
 				exception= e;
@@ -589,6 +607,10 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	 * Shutsdown the connection to the remote test listener.
 	 */
 	private void shutDown() {
+		if (fBinaryWriter != null) {
+			fBinaryWriter.close();
+			fBinaryWriter= null;
+		}
 		if (fWriter != null) {
 			fWriter.close();
 			fWriter= null;
@@ -626,6 +648,12 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	public void sendMessage(String msg) {
 		if(fWriter == null)
 			return;
+		if (fBinaryWriter == null && fBinaryProtocolAccepted)
+			switchToBinaryProtocol();
+		if (fBinaryWriter != null) {
+			fBinaryWriter.write(String.valueOf(msg));
+			return;
+		}
 		fWriter.println(msg);
 //		if (!fConsoleMode)
 //			System.out.println(msg);
@@ -638,12 +666,14 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 	private void notifyTestRunEnded(long elapsedTime) {
 		fSender.sendMessage(MessageIds.TEST_RUN_END + elapsedTime);
 		fSender.flush();
+		flushFrames();
 		//shutDown();
 	}
 
 	protected void notifyTestRunStopped(long elapsedTime) {
 		fSender.sendMessage(MessageIds.TEST_STOPPED + elapsedTime);
 		fSender.flush();
+		flushFrames();
 		//shutDown();
 	}
 
@@ -659,11 +689,44 @@ public class RemoteTestRunner implements MessageSender, IVisitsTestTrees {
 		if (fPort != -1) {
 			fSender.sendMessage(MessageIds.TEST_RERAN + r.fRerunTestId + " " + r.fRerunClassName + " " + r.fRerunTestName + " " + status); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			fSender.flush();
+			flushFrames();
 		}
 	}
 
 	public void flush() {
-	    fWriter.flush();
+		if (fBinaryWriter != null)
+			fBinaryWriter.flush();
+		else
+			fWriter.flush();
+	}
+
+	/**
+	 * Sends the pending frame of the binary protocol without delay.
+	 */
+	private void flushFrames() {
+		if (fBinaryWriter != null)
+			fBinaryWriter.flushNow();
+	}
+
+	/**
+	 * Switches to the binary protocol after the client has accepted it.
+	 * Only called from the thread that sends messages, so that the switch
+	 * happens at a message boundary. The client is only told about the switch
+	 * once the binary writer has been created.
+	 */
+	private void switchToBinaryProtocol() {
+		BinaryMessageWriter binaryWriter;
+		try {
+			binaryWriter= new BinaryMessageWriter(fClientSocket.getOutputStream());
+		} catch (IOException e) {
+			if (fDebugMode)
+				e.printStackTrace();
+			fBinaryProtocolAccepted= false;
+			return;
+		}
+		fWriter.println(MessageIds.BINARY_START);
+		fWriter.flush();
+		fBinaryWriter= binaryWriter;
 	}
 
 	public void runTests(TestExecution execution) {
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+import org.eclipse.jdt.text.tests.performance.ResourceTestHelper;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.source.Annotation;
+import org.eclipse.jface.text.source.projection.ProjectionAnnotationModel;
+import org.eclipse.jface.text.source.projection.ProjectionViewer;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.ui.text.folding.DefaultJavaFoldingStructureProvider;
+
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+/**
+ * Tests that the folding structure computed with the cached ranges of the unchanged members is
+ * the same as the one computed from scratch.
+ *
+ * @since 3.12
+ */
+public class JavaFoldingStructureProviderTest extends TestCase {
+
+	private static final String CONTENT=
+			"/**\n" +
+			" * Header.\n" +
+			" */\n" +
+			"package junit.framework;\n" +
+			"\n" +
+			"import java.util.List;\n" +
+			"import java.util.Map;\n" +
+			"\n" +
+			"/**\n" +
+			" * A class.\n" +
+			" */\n" +
+			"public class FoldingInput {\n" +
+			"\t/**\n" +
+			"\t * A field.\n" +
+			"\t */\n" +
+			"\tint fField;\n" +
+			"\n" +
+			"\t/**\n" +
+			"\t * Returns one.\n" +
+			"\t *\n" +
+			"\t * @return one\n" +
+			"\t */\n" +
+			"\tpublic int one() {\n" +
+			"\t\treturn 1;\n" +
+			"\t}\n" +
+			"\n" +
+			"\t/**\n" +
+			"\t * Returns two.\n" +
+			"\t *\n" +
+			"\t * @return two\n" +
+			"\t */\n" +
+			"\tpublic int two() {\n" +
+			"\t\treturn 2;\n" +
+			"\t}\n" +
+			"\n" +
+			"\tclass Inner {\n" +
+			"\t\t/**\n" +
+			"\t\t * Returns three.\n" +
+			"\t\t */\n" +
+			"\t\tint three() {\n" +
+			"\t\t\treturn 3;\n" +
+			"\t\t}\n" +
+			"\t}\n" +
+			"\n" +
+			"\t/**\n" +
+			"\t * Returns four.\n" +
+			"\t */\n" +
+			"\tpublic int four() {\n" +
+			"\t\treturn 4;\n" +
+			"\t}\n" +
+			"}\n";
+
+	private String fFile;
+
+	private JavaEditor fEditor;
+
+	private IDocument fDocument;
+
+	private DefaultJavaFoldingStructureProvider fProvider;
+
+	private IElementChangedListener fProviderListener;
+
+	private ICompilationUnit fCompilationUnit;
+
+	private volatile ElementChangedEvent fEvent;
+
+	private final IElementChangedListener fRecorder= new IElementChangedListener() {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			fEvent= event;
+		}
+	};
+
+	public static Test setUpTest(Test someTest) {
+		return new JUnitProjectTestSetup(someTest);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(JavaFoldingStructureProviderTest.class));
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fFile= "/" + JUnitProjectTestSetup.getProject().getElementName() + "/src/junit/framework/FoldingInput.java";
+		ResourceTestHelper.write(fFile, CONTENT);
+		EditorTestHelper.enableFolding(true);
+		fEditor= (JavaEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(fFile), true);
+		EditorTestHelper.joinBackgroundActivities(fEditor);
+		fDocument= EditorTestHelper.getDocument(fEditor);
+
+		fProvider= (DefaultJavaFoldingStructureProvider) new Accessor(fEditor, JavaEditor.class).get("fProjectionModelUpdater");
+		// drive the provider from the test only
+		fProviderListener= (IElementChangedListener) new Accessor(fProvider, DefaultJavaFoldingStructureProvider.class).get("fElementListener");
+		assertNotNull(fProviderListener);
+		JavaCore.removeElementChangedListener(fProviderListener);
+		JavaCore.addElementChangedListener(fRecorder, ElementChangedEvent.POST_RECONCILE);
+		fCompilationUnit= (ICompilationUnit) EditorUtility.getEditorInputJavaElement(fEditor, false);
+
+		setIncremental(true);
+		fProvider.initialize(); // fills the cache
+		assertFalse(getRegions().isEmpty());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaCore.removeElementChangedListener(fRecorder);
+		setIncremental(true);
+		EditorTestHelper.closeAllEditors();
+		ResourceTestHelper.delete(fFile);
+		EditorTestHelper.resetFolding();
+	}
+
+	public void testEditBetweenMembers() throws Exception {
+		int offset= getOffset("\tint fField;\n") + "\tint fField;\n".length();
+		replace(offset, 0, "\n\t// between\n\n");
+		update();
+		assertSameAsFullUpdate();
+
+		replace(offset, "\n\t// between\n\n".length(), "");
+		update();
+		assertSameAsFullUpdate();
+	}
+
+	public void testEditInJavadoc() throws Exception {
+		int offset= getOffset("Returns two.") + "Returns two.".length();
+		replace(offset, 0, "\n\t * More about two.\n\t *");
+		update();
+		assertSameAsFullUpdate();
+
+		// shorten the Javadoc of the method in the inner type
+		offset= getOffset("\t\t * Returns three.\n");
+		replace(offset, "\t\t * Returns three.\n".length(), "");
+		update();
+		assertSameAsFullUpdate();
+	}
+
+	public void testEditAtMemberBoundary() throws Exception {
+		// at the start of the Javadoc of a method
+		int offset= getOffset("/**\n\t * Returns two.");
+		replace(offset, 0, "int fBefore;\n\t");
+		update();
+		assertSameAsFullUpdate();
+
+		// right after the closing brace of a method
+		offset= getOffset("\t\treturn 1;\n\t}") + "\t\treturn 1;\n\t}".length();
+		replace(offset, 0, " int fAfter;");
+		update();
+		assertSameAsFullUpdate();
+
+		// remove the closing brace of a method and add it again
+		offset= getOffset("\t\treturn 4;\n\t}") + "\t\treturn 4;\n\t".length();
+		replace(offset, 1, "");
+		update();
+		replace(offset, 0, "}");
+		update();
+		assertSameAsFullUpdate();
+	}
+
+	public void testSeveralEditsInOneUpdate() throws Exception {
+		replace(getOffset("Returns four."), 0, "Still ");
+		replace(getOffset("\t\treturn 1;"), 0, "\t\tint i= 0;\n");
+		replace(getOffset("\tint fField;"), "\tint fField;".length(), "\tint fField, fOther;");
+		replace(getOffset("\tclass Inner {"), 0, "\t/**\n\t * An inner class.\n\t */\n");
+		update();
+		assertSameAsFullUpdate();
+	}
+
+	private int getOffset(String text) {
+		int offset= fDocument.get().indexOf(text);
+		assertTrue(offset > 0);
+		return offset;
+	}
+
+	private void replace(int offset, int length, String text) throws Exception {
+		fDocument.replace(offset, length, text);
+	}
+
+	/**
+	 * Reconciles the changes of the document and updates the folding structure with the
+	 * delta of the reconcile, which may also have been done by the reconciler of the editor.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	private void update() throws Exception {
+		fEvent= null;
+		fCompilationUnit.reconcile(ICompilationUnit.NO_AST, false, null, null);
+		assertNotNull(fEvent);
+		fProviderListener.elementChanged(fEvent);
+		EditorTestHelper.runEventQueue();
+	}
+
+	private void assertSameAsFullUpdate() {
+		List<String> incremental= getRegions();
+		setIncremental(false);
+		try {
+			fProvider.initialize();
+		} finally {
+			setIncremental(true);
+		}
+		assertEquals(getRegions(), incremental);
+	}
+
+	private void setIncremental(boolean incremental) {
+		new Accessor(fProvider, DefaultJavaFoldingStructureProvider.class).set("fIncremental", incremental);
+	}
+
+	private List<String> getRegions() {
+		ProjectionAnnotationModel model= ((ProjectionViewer) fEditor.getViewer()).getProjectionAnnotationModel();
+		List<String> result= new ArrayList<>();
+		for (Iterator<Annotation> iter= model.getAnnotationIterator(); iter.hasNext();) {
+			Position position= model.getPosition(iter.next());
+			result.add(position.getOffset() + ":" + position.getLength());
+		}
+		Collections.sort(result);
+		return result;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -1142,4 +1142,34 @@ public class JavaHeuristicScannerTest extends TestCase {
 		String indent= fScanner.computeIndentation(offset).toString();
 		assertEquals("\t", indent);
 	}
+
+	public void testPeersAfterChanges() throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("class A {\n");
+		buf.append("\tvoid m() {\n");
+		buf.append("\t\tfoo(\")\" + bar(1), 2);\n");
+		buf.append("\t}\n");
+		buf.append("}\n");
+		fDocument.set(buf.toString());
+
+		String content= fDocument.get();
+		assertEquals(content.indexOf("foo(") + 3, fHeuristicScanner.findOpeningPeer(content.indexOf("2)"), '(', ')'));
+		assertEquals(content.indexOf("1)") + 1, fHeuristicScanner.findClosingPeer(content.indexOf("bar(") + 4, '(', ')'));
+		assertEquals(content.indexOf("2)") + 1, fHeuristicScanner.findClosingPeer(content.indexOf("\" +"), '(', ')'));
+		assertEquals(content.indexOf("m() {") + 4, fHeuristicScanner.findOpeningPeer(content.indexOf("foo"), '{', '}'));
+		assertEquals(JavaHeuristicScanner.NOT_FOUND, fHeuristicScanner.findOpeningPeer(content.indexOf("foo"), content.indexOf("m() {") + 4, '{', '}'));
+
+		// comment out the method header, the closing brace of the method now closes the class
+		fDocument.replace(content.indexOf("void"), 0, "//");
+		content= fDocument.get();
+		assertEquals(content.indexOf("A {") + 2, fHeuristicScanner.findOpeningPeer(content.indexOf("foo"), '{', '}'));
+		assertEquals(content.indexOf("\t}") + 1, new JavaHeuristicScanner(fDocument).findClosingPeer(content.indexOf("A {") + 3, '{', '}'));
+
+		// close the string early, the parenthesis in the string closes the call
+		fDocument.replace(content.indexOf("\")\"") + 1, 0, "\"");
+		content= fDocument.get();
+		assertEquals(content.indexOf("foo(") + 3, fHeuristicScanner.findOpeningPeer(content.indexOf(")\"") - 1, '(', ')'));
+		assertEquals(content.indexOf(")\""), fHeuristicScanner.findClosingPeer(content.indexOf("foo(") + 4, '(', ')'));
+		assertEquals(JavaHeuristicScanner.NOT_FOUND, fHeuristicScanner.findOpeningPeer(content.indexOf("2)"), '(', ')'));
+	}
 }
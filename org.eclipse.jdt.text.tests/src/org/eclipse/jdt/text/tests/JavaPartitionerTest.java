@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.eclipse.jdt.text.tests;
 
+import java.util.List;
+
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
@@ -23,13 +25,23 @@ import org.eclipse.jface.text.IDocumentPartitioner;
 import org.eclipse.jface.text.IDocumentPartitioningListener;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.TypedRegion;
+import org.eclipse.jface.text.rules.FastPartitioner;
 
 import org.eclipse.jdt.ui.text.IJavaPartitions;
 import org.eclipse.jdt.ui.text.JavaTextTools;
 
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+
 
 public class JavaPartitionerTest extends TestCase {
 
+	private static final class ListenerDocument extends Document {
+		int getListenerCount() {
+			List<?> listeners= getDocumentListeners();
+			return listeners.size();
+		}
+	}
+
 	private JavaTextTools fTextTools;
 	private Document fDocument;
 	protected boolean fDocumentPartitioningChanged;
@@ -799,4 +811,66 @@ public class JavaPartitionerTest extends TestCase {
 			assertTrue(false);
 		}
 	}
+
+	public void testEditingUnterminatedCommentInLargeDocument() throws Exception {
+		StringBuffer buffer= new StringBuffer();
+		for (int i= 0; i < 2000; i++) {
+			buffer.append("int f").append(i).append("= 0; // field\n");
+			if (i % 100 == 0)
+				buffer.append("/* comment\n * \"text\" */\n");
+		}
+		fDocument.set(buffer.toString());
+		int offset= fDocument.getLength() / 3;
+
+		fDocument.replace(offset, 0, "/*");
+		checkIncrementalPartitioning();
+		for (int i= 0; i < 20; i++) {
+			fDocument.replace(offset + 2 + i, 0, i % 5 == 0 ? "\n" : "x");
+			checkIncrementalPartitioning();
+		}
+		fDocument.replace(offset + 5, 0, "*");
+		checkIncrementalPartitioning();
+		fDocument.replace(offset + 6, 0, "/");
+		checkIncrementalPartitioning();
+		fDocument.replace(offset + 6, 1, "");
+		checkIncrementalPartitioning();
+		fDocument.replace(offset, 2, "");
+		checkIncrementalPartitioning();
+	}
+
+	public void testScannerDetachesFromDocument() throws Exception {
+		ListenerDocument document= new ListenerDocument();
+		document.set("class A {\n/* comment */\n}\n");
+		int listeners= document.getListenerCount();
+		FastJavaPartitionScanner scanner= new FastJavaPartitionScanner();
+		scanner.setCheckpointsEnabled(true);
+		IDocumentPartitioner partitioner= new FastPartitioner(scanner, new String[] {
+			IJavaPartitions.JAVA_DOC,
+			IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+			IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+			IJavaPartitions.JAVA_STRING,
+			IJavaPartitions.JAVA_CHARACTER
+		});
+		partitioner.connect(document);
+		document.setDocumentPartitioner(partitioner);
+		document.replace(12, 0, "x");
+		document.replace(13, 0, "x");
+		assertEquals(listeners + 1, document.getListenerCount());
+
+		partitioner.disconnect();
+		document.setDocumentPartitioner(null);
+		document.replace(12, 0, "x");
+		document.replace(13, 0, "x");
+		assertEquals(listeners, document.getListenerCount());
+	}
+
+	private void checkIncrementalPartitioning() throws BadLocationException {
+		Document expected= new Document(fDocument.get());
+		IDocumentPartitioner partitioner= fTextTools.createDocumentPartitioner();
+		partitioner.connect(expected);
+		expected.setDocumentPartitioner(partitioner);
+
+		checkPartitioning(expected.computePartitioning(0, expected.getLength()), fDocument.computePartitioning(0, fDocument.getLength()));
+		partitioner.disconnect();
+	}
 }
@@ -47,6 +47,7 @@ public class JdtTextTestSuite {
 		suite.addTest(MarkOccurrenceTest.suite());
 		suite.addTest(MarkOccurrenceTest17.suite());
 		suite.addTest(MarkOccurrenceTest18.suite());
+		suite.addTest(JavaFoldingStructureProviderTest.suite());
 		suite.addTest(PluginsNotLoadedTest.suite());
 		PluginsNotLoadedTest.addLoadedPlugIns(
 				new String[] {
@@ -58,6 +59,7 @@ public class JdtTextTestSuite {
 		suite.addTest(BracketInserterTest.suite());
 		suite.addTest(SpellingTestSuite.suite());
 		suite.addTest(SemanticHighlightingTest.suite());
+		suite.addTest(SemanticHighlightingIncrementalTest.suite());
 		suite.addTest(AutoboxingSemanticHighlightingTest.suite());
 		suite.addTest(NewForLoopJavaContextTest.suite());
 		suite.addTest(IteratorForLoopJavaContextTest.suite());
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,7 +12,9 @@
 package org.eclipse.jdt.text.tests;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
 
@@ -96,13 +98,40 @@ public class OverrideIndicatorTest extends TestCase {
 	}
 
 	public void testCountOverrideIndicators() {
+		int count= waitForOverrideIndicators(new Annotation[0]);
+		assertEquals(3, count);
+	}
+
+	public void testOverrideIndicatorsAfterChanges() throws Exception {
+		testCountOverrideIndicators();
+		int offset= fDocument.get().indexOf("String toString()") + "String ".length();
+		assertTrue(offset > 0);
+
+		fDocument.replace(offset, "toString".length(), "toText");
+		int count= waitForOverrideIndicators(fOverrideAnnotations);
+		assertEquals(2, count);
+		for (int i= 0; i < fOverrideAnnotations.length; i++)
+			assertTrue(fOverrideAnnotations[i].getText().startsWith("implements junit.framework.Test."));
+
+		fDocument.replace(offset, "toText".length(), "toString");
+		count= waitForOverrideIndicators(fOverrideAnnotations);
+		assertEquals(3, count);
+		testOverrideIndicatorText();
+	}
+
+	/*
+	 * Waits until the override indicators have been replaced by a reconcile,
+	 * i.e. until there are indicators that are not among the previous ones.
+	 */
+	private int waitForOverrideIndicators(Annotation[] previous) {
+		List<Annotation> previousAnnotations= Arrays.asList(previous);
 		int count= 0;
 		long timeOut= System.currentTimeMillis() + 60000;
 		while (true) {
 			EditorTestHelper.runEventQueue(fEditor);
 			computeOverrideIndicators();
 			count= fOverrideAnnotations.length;
-			if (count > 0)
+			if (count > 0 && !previousAnnotations.contains(fOverrideAnnotations[0]))
 				break;
 
 			synchronized (this) {
@@ -113,7 +142,7 @@ public class OverrideIndicatorTest extends TestCase {
 			}
 			assertTrue(System.currentTimeMillis() < timeOut);
 		}
-		assertEquals(3, count);
+		return count;
 	}
 
 	public void testOverrideIndicatorState() {
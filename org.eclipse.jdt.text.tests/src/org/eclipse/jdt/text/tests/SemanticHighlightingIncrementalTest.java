@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.text.tests.performance.EditorTestHelper;
+import org.eclipse.jdt.text.tests.performance.ResourceTestHelper;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jface.preference.IPreferenceStore;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.Position;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlighting;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingPresenter;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingReconciler;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightings;
+import org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener;
+
+/**
+ * Tests that the semantic highlighting computed by re-visiting only the body declarations
+ * affected by an edit is the same as the one computed by visiting the whole AST.
+ *
+ * @since 3.12
+ */
+public class SemanticHighlightingIncrementalTest extends TestCase {
+
+	private static final String CONTENT=
+			"package junit.framework;\n" +
+			"\n" +
+			"import java.util.List;\n" +
+			"\n" +
+			"public class HighlightingInput {\n" +
+			"\tstatic final int CONSTANT= 1;\n" +
+			"\n" +
+			"\tprivate int fField;\n" +
+			"\n" +
+			"\t@Deprecated\n" +
+			"\tvoid old() {\n" +
+			"\t}\n" +
+			"\n" +
+			"\tpublic int one(int param) {\n" +
+			"\t\tint local= param + fField;\n" +
+			"\t\told();\n" +
+			"\t\treturn local + CONSTANT;\n" +
+			"\t}\n" +
+			"\n" +
+			"\tstatic {\n" +
+			"\t\tSystem.out.println(CONSTANT);\n" +
+			"\t}\n" +
+			"\n" +
+			"\tpublic <T> T two(List<T> list) {\n" +
+			"\t\tfor (T element : list) {\n" +
+			"\t\t\treturn element;\n" +
+			"\t\t}\n" +
+			"\t\treturn null;\n" +
+			"\t}\n" +
+			"\n" +
+			"\tclass Inner {\n" +
+			"\t\tint three() {\n" +
+			"\t\t\treturn fField + one(3);\n" +
+			"\t\t}\n" +
+			"\t}\n" +
+			"}\n";
+
+	private String fFile;
+
+	private JavaEditor fEditor;
+
+	private IDocument fDocument;
+
+	private SemanticHighlightingManager fManager;
+
+	private SemanticHighlightingReconciler fReconciler;
+
+	private ICompilationUnit fCompilationUnit;
+
+	public static Test setUpTest(Test someTest) {
+		return new JUnitProjectTestSetup(someTest);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(SemanticHighlightingIncrementalTest.class));
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		enableAllSemanticHighlightings();
+		fFile= "/" + JUnitProjectTestSetup.getProject().getElementName() + "/src/junit/framework/HighlightingInput.java";
+		ResourceTestHelper.write(fFile, CONTENT);
+		fEditor= (JavaEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(fFile), true);
+		EditorTestHelper.joinBackgroundActivities(fEditor);
+		fDocument= EditorTestHelper.getDocument(fEditor);
+
+		fManager= (SemanticHighlightingManager) new Accessor(fEditor, JavaEditor.class).get("fSemanticManager");
+		fReconciler= fManager.getReconciler();
+		assertNotNull(fReconciler);
+		// drive the reconciler from the test only
+		new Accessor(fEditor, CompilationUnitEditor.class).invoke("removeReconcileListener", new Class[] { IJavaReconcilingListener.class }, new Object[] { fReconciler });
+		fCompilationUnit= (ICompilationUnit) EditorUtility.getEditorInputJavaElement(fEditor, false);
+
+		fReconciler.setIncremental(true);
+		reconcile(); // the first reconcile after switching the mode is always a full one
+		assertFalse(getPositions().isEmpty());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fReconciler.setIncremental(true);
+		EditorTestHelper.closeAllEditors();
+		ResourceTestHelper.delete(fFile);
+		resetAllSemanticHighlightings();
+	}
+
+	public void testEditInMethodBody() throws Exception {
+		// a new local variable that is used in the same method
+		int offset= getOffset("\t\told();\n");
+		replace(offset, 0, "\t\tint added= local;\n");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		// a local variable that now hides a field
+		replace(getOffset("added= local"), "added".length(), "fField");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		// remove the declaration again
+		offset= getOffset("\t\tint fField= local;\n");
+		replace(offset, "\t\tint fField= local;\n".length(), "");
+		reconcile();
+		assertSameAsFullReconcile();
+	}
+
+	public void testEditInInitializerAndInnerType() throws Exception {
+		replace(getOffset("System.out.println(CONSTANT);"), 0, "int i= CONSTANT; ");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		replace(getOffset("fField + one(3)"), "fField".length(), "CONSTANT");
+		reconcile();
+		assertSameAsFullReconcile();
+	}
+
+	public void testEditOutsideMethodBody() throws Exception {
+		// a new field changes the highlighting of references in other members
+		int offset= getOffset("\tprivate int fField;\n");
+		replace(offset, 0, "\tint local;\n");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		// renaming a field changes references in all method bodies
+		replace(getOffset("int fField;"), "int fField".length(), "int fRenamed");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		// a change of a method signature
+		replace(getOffset("int one(int param)"), "int one(int param)".length(), "int one(long param)");
+		reconcile();
+		assertSameAsFullReconcile();
+
+		// a method that is no longer deprecated
+		offset= getOffset("\t@Deprecated\n");
+		replace(offset, "\t@Deprecated\n".length(), "");
+		reconcile();
+		assertSameAsFullReconcile();
+	}
+
+	public void testEditsInsideAndOutsideInOneReconcile() throws Exception {
+		replace(getOffset("\t\treturn null;"), 0, "\t\tint unused= CONSTANT;\n");
+		replace(getOffset("\tstatic final int CONSTANT"), 0, "\tstatic int fOther;\n");
+		reconcile();
+		assertSameAsFullReconcile();
+	}
+
+	public void testSeveralEditsInOneMethodBody() throws Exception {
+		replace(getOffset("\t\treturn local + CONSTANT;"), 0, "\t\tlocal++;\n");
+		replace(getOffset("\t\tint local= param"), 0, "\t\tparam--;\n");
+		reconcile();
+		assertSameAsFullReconcile();
+	}
+
+	private int getOffset(String text) {
+		int offset= fDocument.get().indexOf(text);
+		assertTrue(offset > 0);
+		return offset;
+	}
+
+	private void replace(int offset, int length, String text) throws Exception {
+		fDocument.replace(offset, length, text);
+	}
+
+	private void reconcile() throws Exception {
+		fReconciler.reconciled(createAST(), false, new NullProgressMonitor());
+		EditorTestHelper.runEventQueue();
+	}
+
+	private CompilationUnit createAST() {
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setSource(fCompilationUnit);
+		parser.setResolveBindings(true);
+		parser.setStatementsRecovery(ASTProvider.SHARED_AST_STATEMENT_RECOVERY);
+		parser.setBindingsRecovery(ASTProvider.SHARED_BINDING_RECOVERY);
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	private void assertSameAsFullReconcile() throws Exception {
+		List<String> incremental= getPositions();
+		fReconciler.setIncremental(false);
+		try {
+			reconcile();
+			assertEquals(getPositions(), incremental);
+		} finally {
+			fReconciler.setIncremental(true);
+		}
+		reconcile(); // consumes the dirty region of the mode switch
+	}
+
+	/**
+	 * Returns the highlighted positions as "offset:length:highlighting" strings, where the
+	 * highlighting is the index of the semantic highlighting of the position.
+	 *
+	 * @return the sorted highlighted positions
+	 * @throws Exception if something goes wrong
+	 */
+	private List<String> getPositions() throws Exception {
+		SemanticHighlightingPresenter presenter= (SemanticHighlightingPresenter) new Accessor(fManager, SemanticHighlightingManager.class).get("fPresenter");
+		String positionCategory= (String) new Accessor(presenter, SemanticHighlightingPresenter.class).invoke("getPositionCategory", new Object[0]);
+		Object[] highlightings= (Object[]) new Accessor(fManager, SemanticHighlightingManager.class).get("fHighlightings");
+		Position[] positions= fDocument.getPositions(positionCategory);
+		List<String> result= new ArrayList<>();
+		for (int i= 0; i < positions.length; i++) {
+			if (positions[i].isDeleted())
+				continue;
+			Object highlighting= new Accessor(positions[i], "org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager$HighlightedPosition", getClass().getClassLoader()).invoke("getHighlighting", new Object[0]);
+			int index= -1;
+			for (int j= 0; j < highlightings.length; j++) {
+				if (highlightings[j] == highlighting)
+					index= j;
+			}
+			result.add(positions[i].getOffset() + ":" + positions[i].getLength() + ":" + index);
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static void enableAllSemanticHighlightings() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		SemanticHighlighting[] semanticHighlightings= SemanticHighlightings.getSemanticHighlightings();
+		for (int i= 0; i < semanticHighlightings.length; i++)
+			store.setValue(SemanticHighlightings.getEnabledPreferenceKey(semanticHighlightings[i]), true);
+	}
+
+	private static void resetAllSemanticHighlightings() {
+		IPreferenceStore store= JavaPlugin.getDefault().getPreferenceStore();
+		SemanticHighlighting[] semanticHighlightings= SemanticHighlightings.getSemanticHighlightings();
+		for (int i= 0; i < semanticHighlightings.length; i++) {
+			String enabledPreferenceKey= SemanticHighlightings.getEnabledPreferenceKey(semanticHighlightings[i]);
+			if (!store.isDefault(enabledPreferenceKey))
+				store.setToDefault(enabledPreferenceKey);
+		}
+	}
+}
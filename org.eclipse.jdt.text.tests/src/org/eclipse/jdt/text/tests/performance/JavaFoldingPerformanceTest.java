@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.ui.text.folding.DefaultJavaFoldingStructureProvider;
+
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+
+/**
+ * Measures the time to update the folding structure of a class with 5000 methods after typing
+ * in a method body, once reusing the ranges of the unchanged members and once computing the
+ * ranges of all members.
+ *
+ * @since 3.12
+ */
+public class JavaFoldingPerformanceTest extends TextPerformanceTestCase {
+
+	private static final Class<JavaFoldingPerformanceTest> THIS= JavaFoldingPerformanceTest.class;
+
+	private static final String FILE= "/" + PerformanceTestSetup.PROJECT + "/Eclipse SWT Custom Widgets/common/org/eclipse/swt/custom/ManyMethods.java";
+
+	private static final int METHODS= 5000;
+
+	private static final int WARM_UP_RUNS= 5;
+
+	private static final int MEASURED_RUNS= 20;
+
+	private AbstractTextEditor fEditor;
+
+	private DefaultJavaFoldingStructureProvider fProvider;
+
+	private IElementChangedListener fProviderListener;
+
+	private ICompilationUnit fCompilationUnit;
+
+	private volatile ElementChangedEvent fEvent;
+
+	private final IElementChangedListener fRecorder= new IElementChangedListener() {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			fEvent= event;
+		}
+	};
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		ResourceTestHelper.write(FILE, createContent());
+		EditorTestHelper.enableFolding(true);
+		fEditor= (AbstractTextEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(FILE), true);
+		EditorTestHelper.joinBackgroundActivities(fEditor);
+
+		fProvider= (DefaultJavaFoldingStructureProvider) new Accessor(fEditor, JavaEditor.class).get("fProjectionModelUpdater");
+		// drive the provider from the test only
+		fProviderListener= (IElementChangedListener) new Accessor(fProvider, DefaultJavaFoldingStructureProvider.class).get("fElementListener");
+		assertNotNull(fProviderListener);
+		JavaCore.removeElementChangedListener(fProviderListener);
+		JavaCore.addElementChangedListener(fRecorder, ElementChangedEvent.POST_RECONCILE);
+		fCompilationUnit= (ICompilationUnit) EditorUtility.getEditorInputJavaElement(fEditor, false);
+
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		JavaCore.removeElementChangedListener(fRecorder);
+		setIncremental(true);
+		EditorTestHelper.closeAllEditors();
+		ResourceTestHelper.delete(FILE);
+		EditorTestHelper.resetFolding();
+	}
+
+	/**
+	 * Measures the update after typing in a method body when the ranges of all members are
+	 * computed.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testFullUpdate() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), false);
+		measure(createPerformanceMeter(), getMeasuredRuns(), false);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	/**
+	 * Measures the update after typing in a method body when the ranges of the unchanged members
+	 * are reused.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testIncrementalUpdate() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), true);
+		measure(createPerformanceMeter(), getMeasuredRuns(), true);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, boolean incremental) throws Exception {
+		IDocument document= EditorTestHelper.getDocument(fEditor);
+		int offset= document.get().indexOf("return " + METHODS / 2 + ";");
+		assertTrue(offset > 0);
+
+		setIncremental(incremental);
+		fProvider.initialize(); // fills the cache in incremental mode
+
+		for (int i= 0; i < runs; i++) {
+			ElementChangedEvent event= change(document, offset, 0, " ");
+			performanceMeter.start();
+			fProviderListener.elementChanged(event);
+			performanceMeter.stop();
+			EditorTestHelper.runEventQueue();
+
+			fProviderListener.elementChanged(change(document, offset, 1, ""));
+			EditorTestHelper.runEventQueue();
+		}
+	}
+
+	private void setIncremental(boolean incremental) {
+		new Accessor(fProvider, DefaultJavaFoldingStructureProvider.class).set("fIncremental", incremental);
+	}
+
+	/**
+	 * Changes the document and returns the delta of the reconcile, which may also have been
+	 * done by the reconciler of the editor.
+	 *
+	 * @param document the document
+	 * @param offset the offset of the change
+	 * @param length the length of the replaced text
+	 * @param text the new text
+	 * @return the reconcile event
+	 * @throws Exception if something goes wrong
+	 */
+	private ElementChangedEvent change(IDocument document, int offset, int length, String text) throws Exception {
+		fEvent= null;
+		document.replace(offset, length, text);
+		fCompilationUnit.reconcile(ICompilationUnit.NO_AST, false, null, null);
+		assertNotNull(fEvent);
+		return fEvent;
+	}
+
+	private static String createContent() {
+		StringBuffer buffer= new StringBuffer();
+		buffer.append("package org.eclipse.swt.custom;\n\n");
+		buffer.append("/**\n * Many methods.\n */\n");
+		buffer.append("public class ManyMethods {\n");
+		for (int i= 0; i < METHODS; i++) {
+			buffer.append("\t/**\n");
+			buffer.append("\t * Returns ").append(i).append(".\n");
+			buffer.append("\t *\n");
+			buffer.append("\t * @return the number\n");
+			buffer.append("\t */\n");
+			buffer.append("\tpublic int method").append(i).append("() {\n");
+			buffer.append("\t\treturn ").append(i).append(";\n");
+			buffer.append("\t}\n\n");
+		}
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentPartitioner;
+import org.eclipse.jface.text.rules.FastPartitioner;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+import org.eclipse.jdt.internal.ui.text.FastJavaPartitionScanner;
+
+/**
+ * Measures the partitioning cost per keystroke when typing behind an unterminated
+ * <code>/*</code> in a file with 50000 lines, once with the checkpoints of the partition
+ * scanner and once without.
+ *
+ * @since 3.12
+ */
+public class JavaPartitionerPerformanceTest extends TextPerformanceTestCase {
+
+	private static final Class<JavaPartitionerPerformanceTest> THIS= JavaPartitionerPerformanceTest.class;
+
+	private static final String[] CONTENT_TYPES= new String[] {
+		IJavaPartitions.JAVA_DOC,
+		IJavaPartitions.JAVA_MULTI_LINE_COMMENT,
+		IJavaPartitions.JAVA_SINGLE_LINE_COMMENT,
+		IJavaPartitions.JAVA_STRING,
+		IJavaPartitions.JAVA_CHARACTER
+	};
+
+	private static final int LINES= 50000;
+
+	private static final int WARM_UP_RUNS= 3;
+
+	private static final int MEASURED_RUNS= 10;
+
+	/** Keystrokes per run */
+	private static final int KEYSTROKES= 50;
+
+	private IDocument fDocument;
+
+	private FastJavaPartitionScanner fScanner;
+
+	private IDocumentPartitioner fPartitioner;
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fDocument= new Document(createContent());
+		fScanner= new FastJavaPartitionScanner();
+		fPartitioner= new FastPartitioner(fScanner, CONTENT_TYPES);
+		fPartitioner.connect(fDocument);
+		fDocument.setDocumentPartitioner(fPartitioner);
+
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		fPartitioner.disconnect();
+	}
+
+	/**
+	 * Measures typing behind an unterminated comment with checkpoints.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testTypingInUnterminatedComment() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), true);
+		measure(createPerformanceMeter(), getMeasuredRuns(), true);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	/**
+	 * Measures typing behind an unterminated comment without checkpoints.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testTypingInUnterminatedCommentWithoutCheckpoints() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), false);
+		measure(createPerformanceMeter(), getMeasuredRuns(), false);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, boolean checkpoints) throws Exception {
+		fScanner.setCheckpointsEnabled(checkpoints);
+		// there is no "*/" behind the comment, it extends to the end of the document
+		int offset= fDocument.getLineOffset(LINES / 10);
+		fDocument.replace(offset, 0, "/*");
+		offset+= 2;
+
+		for (int i= 0; i < runs; i++) {
+			performanceMeter.start();
+			for (int j= 0; j < KEYSTROKES; j++)
+				fDocument.replace(offset + j, 0, j % 10 == 9 ? "\n" : "x");
+			performanceMeter.stop();
+
+			fDocument.replace(offset, KEYSTROKES, "");
+		}
+
+		assertEquals(IJavaPartitions.JAVA_MULTI_LINE_COMMENT, fDocument.getPartition(fDocument.getLength() - 1).getType());
+		fDocument.replace(offset - 2, 2, "");
+	}
+
+	private static String createContent() {
+		StringBuffer buffer= new StringBuffer();
+		buffer.append("class Large {\n");
+		for (int i= 0; i < LINES - 2; i++) {
+			switch (i % 5) {
+				case 0:
+					buffer.append("\t// field ").append(i).append('\n');
+					break;
+				case 1:
+					buffer.append("\tString s").append(i).append("= \"value\";\n");
+					break;
+				default:
+					buffer.append("\tint f").append(i).append("= 'c'; // line\n");
+					break;
+			}
+		}
+		buffer.append("}\n");
+		return buffer.toString();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -49,6 +49,9 @@ public class PerformanceTestSuite extends TestSuite {
 		addTest(SynchronizedLineDifferInitializationTest.suite());
 		addTest(DocumentLineDifferModificationTest.suite());
 		addTest(SpellCheckingTest.suite());
+		addTest(SemanticHighlightingReconcilerTest.suite());
+		addTest(JavaPartitionerPerformanceTest.suite());
+		addTest(JavaFoldingPerformanceTest.suite());
 
 
 		/* !!! IMPORTANT NOTE: The following test must be the last one !!! */
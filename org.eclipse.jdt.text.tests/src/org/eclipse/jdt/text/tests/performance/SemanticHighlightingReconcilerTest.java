@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.text.tests.performance;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.text.tests.Accessor;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.jface.text.IDocument;
+
+import org.eclipse.ui.texteditor.AbstractTextEditor;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.EditorUtility;
+import org.eclipse.jdt.internal.ui.javaeditor.JavaEditor;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingManager;
+import org.eclipse.jdt.internal.ui.javaeditor.SemanticHighlightingReconciler;
+import org.eclipse.jdt.internal.ui.text.java.IJavaReconcilingListener;
+
+/**
+ * Measures the time to reconcile the semantic highlighting of a large file after
+ * typing in a method body, once visiting the whole AST and once visiting only the
+ * affected method.
+ *
+ * @since 3.12
+ */
+public class SemanticHighlightingReconcilerTest extends TextPerformanceTestCase {
+
+	private static final Class<SemanticHighlightingReconcilerTest> THIS= SemanticHighlightingReconcilerTest.class;
+
+	private static final String FILE= PerformanceTestSetup.STYLED_TEXT;
+
+	private static final int WARM_UP_RUNS= 5;
+
+	private static final int MEASURED_RUNS= 20;
+
+	/** A line inside a method body */
+	private static final int LINE= 3347;
+
+	private static final int COLUMN= 38;
+
+	private AbstractTextEditor fEditor;
+
+	private SemanticHighlightingReconciler fReconciler;
+
+	private ICompilationUnit fCompilationUnit;
+
+	public static Test suite() {
+		return new PerformanceTestSetup(new TestSuite(THIS));
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fEditor= (AbstractTextEditor) EditorTestHelper.openInEditor(ResourceTestHelper.findFile(FILE), true);
+		EditorTestHelper.joinBackgroundActivities(fEditor);
+
+		SemanticHighlightingManager manager= (SemanticHighlightingManager) new Accessor(fEditor, JavaEditor.class).get("fSemanticManager");
+		fReconciler= manager.getReconciler();
+		assertNotNull(fReconciler);
+		// drive the reconciler from the test only
+		new Accessor(fEditor, CompilationUnitEditor.class).invoke("removeReconcileListener", new Class[] { IJavaReconcilingListener.class }, new Object[] { fReconciler });
+		fCompilationUnit= (ICompilationUnit) EditorUtility.getEditorInputJavaElement(fEditor, false);
+
+		setWarmUpRuns(WARM_UP_RUNS);
+		setMeasuredRuns(MEASURED_RUNS);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		fReconciler.setIncremental(true);
+		EditorTestHelper.closeAllEditors();
+	}
+
+	/**
+	 * Measures the time to visit the whole AST after typing in a method body.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testFullReconcile() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), false);
+		measure(createPerformanceMeter(), getMeasuredRuns(), false);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	/**
+	 * Measures the time to visit only the affected method after typing in its body.
+	 *
+	 * @throws Exception if something goes wrong
+	 */
+	public void testIncrementalReconcile() throws Exception {
+		measure(getNullPerformanceMeter(), getWarmUpRuns(), true);
+		measure(createPerformanceMeter(), getMeasuredRuns(), true);
+		commitAllMeasurements();
+		assertAllPerformance();
+	}
+
+	private void measure(PerformanceMeter performanceMeter, int runs, boolean incremental) throws Exception {
+		IDocument document= EditorTestHelper.getDocument(fEditor);
+		int offset= document.getLineOffset(LINE) + COLUMN;
+
+		fReconciler.setIncremental(incremental);
+		reconcile(); // the first reconcile after switching the mode is always a full one
+
+		for (int i= 0; i < runs; i++) {
+			document.replace(offset, 0, " ");
+			CompilationUnit ast= createAST();
+			performanceMeter.start();
+			fReconciler.reconciled(ast, false, new NullProgressMonitor());
+			performanceMeter.stop();
+			EditorTestHelper.runEventQueue();
+
+			document.replace(offset, 1, "");
+			reconcile();
+		}
+	}
+
+	private void reconcile() {
+		fReconciler.reconciled(createAST(), false, new NullProgressMonitor());
+		EditorTestHelper.runEventQueue();
+	}
+
+	private CompilationUnit createAST() {
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setSource(fCompilationUnit);
+		parser.setResolveBindings(true);
+		parser.setStatementsRecovery(ASTProvider.SHARED_AST_STATEMENT_RECOVERY);
+		parser.setBindingsRecovery(ASTProvider.SHARED_BINDING_RECOVERY);
+		return (CompilationUnit) parser.createAST(null);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -40,6 +40,7 @@ import org.eclipse.jdt.core.IPackageFragmentRoot;
 import org.eclipse.jdt.core.JavaCore;
 
 import org.eclipse.jdt.internal.corext.refactoring.RefactoringAvailabilityTester;
+import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsConstraintsSolver;
 import org.eclipse.jdt.internal.corext.refactoring.generics.InferTypeArgumentsRefactoring;
 
 import org.eclipse.jdt.ui.tests.refactoring.infra.ZipTools;
@@ -460,5 +461,58 @@ public class InferTypeArgumentsTests extends RefactoringTest {
 		// regression test for https://bugs.eclipse.org/bugs/show_bug.cgi?id=216627
 		performCuOK();
 	}
-	
+
+	private static String getIndependentListsContent(String packageName) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package ").append(packageName).append(";\n");
+		buf.append("import java.util.ArrayList;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("public class A {\n");
+		for (int i= 0; i < 300; i++) {
+			buf.append("    Object m").append(i).append("(List arg) {\n");
+			buf.append("        List list= new ArrayList();\n");
+			switch (i % 3) {
+				case 0:
+					buf.append("        list.add(Integer.valueOf(").append(i).append("));\n");
+					buf.append("        list.add(Long.valueOf(").append(i).append("));\n");
+					break;
+				case 1:
+					buf.append("        list.add(\"").append(i).append("\");\n");
+					buf.append("        list.add(new StringBuffer());\n");
+					break;
+				default:
+					buf.append("        list.add(new ArrayList());\n");
+					buf.append("        list.addAll(arg);\n");
+					break;
+			}
+			buf.append("        return list.get(0);\n");
+			buf.append("    }\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+
+	public void testParallelSolverSameResult() throws Exception {
+		// many independent constraint components, so that they are solved in parallel if possible
+		IPackageFragment sequentialPack= getRoot().createPackageFragment("sequential", true, null);
+		IPackageFragment parallelPack= getRoot().createPackageFragment("parallel", true, null);
+		ICompilationUnit sequentialCu= sequentialPack.createCompilationUnit("A.java", getIndependentListsContent("sequential"), true, null);
+		ICompilationUnit parallelCu= parallelPack.createCompilationUnit("A.java", getIndependentListsContent("parallel"), true, null);
+
+		String oldValue= System.getProperty(InferTypeArgumentsConstraintsSolver.PARALLEL_PROPERTY);
+		try {
+			System.setProperty(InferTypeArgumentsConstraintsSolver.PARALLEL_PROPERTY, "false");
+			assertTrue(perform(new IJavaElement[] { sequentialCu }, RefactoringStatus.OK, RefactoringStatus.OK));
+			System.setProperty(InferTypeArgumentsConstraintsSolver.PARALLEL_PROPERTY, "true");
+			assertTrue(perform(new IJavaElement[] { parallelCu }, RefactoringStatus.OK, RefactoringStatus.OK));
+		} finally {
+			if (oldValue == null)
+				System.clearProperty(InferTypeArgumentsConstraintsSolver.PARALLEL_PROPERTY);
+			else
+				System.setProperty(InferTypeArgumentsConstraintsSolver.PARALLEL_PROPERTY, oldValue);
+		}
+		String sequential= sequentialCu.getSource();
+		assertFalse(getIndependentListsContent("sequential").equals(sequential));
+		assertEqualLines(sequential.replaceFirst("package sequential;", "package parallel;"), parallelCu.getSource());
+	}
 }
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBufferManager;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.ltk.core.refactoring.Refactoring;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.refactoring.IJavaRefactorings;
+import org.eclipse.jdt.core.refactoring.descriptors.RenameJavaElementDescriptor;
+
+import org.eclipse.jdt.internal.core.refactoring.descriptors.RefactoringSignatureDescriptorFactory;
+import org.eclipse.jdt.internal.corext.refactoring.util.FileContentFilter;
+
+/**
+ * Tests the textual matches of a rename refactoring and the {@link FileContentFilter} that
+ * skips the files without matches.
+ */
+public class TextMatchUpdaterTests extends RefactoringTest {
+
+	private static final Class<TextMatchUpdaterTests> clazz= TextMatchUpdaterTests.class;
+
+	private static final String TEXT= "OldType";
+
+	private static final int BLOCK_SIZE= 64 * 1024;
+
+	// more than twice the number of compilation units the scan gives to one thread
+	private static final int UNIT_COUNT= 48;
+
+	public TextMatchUpdaterTests(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new RefactoringTestSetup(new TestSuite(clazz));
+	}
+
+	private IFile createFile(String name, byte[] content, String charset) throws Exception {
+		IFolder folder= (IFolder) getPackageP().getResource();
+		IFile file= folder.getFile(name);
+		file.create(new ByteArrayInputStream(content), true, null);
+		file.setCharset(charset, null);
+		return file;
+	}
+
+	private static byte[] createContent(int length, int textOffset) throws Exception {
+		byte[] result= new byte[length];
+		Arrays.fill(result, (byte) 'x');
+		if (textOffset >= 0) {
+			byte[] text= TEXT.getBytes("US-ASCII");
+			System.arraycopy(text, 0, result, textOffset, text.length);
+		}
+		return result;
+	}
+
+	public void testSmallFiles() throws Exception {
+		FileContentFilter filter= new FileContentFilter(TEXT);
+		assertTrue(filter.mayContain(createFile("start.txt", createContent(100, 0), "UTF-8")));
+		assertTrue(filter.mayContain(createFile("end.txt", createContent(100, 100 - TEXT.length()), "UTF-8")));
+		assertFalse(filter.mayContain(createFile("none.txt", createContent(100, -1), "UTF-8")));
+		assertFalse(filter.mayContain(createFile("prefix.txt", "x OldTyp".getBytes("US-ASCII"), "US-ASCII")));
+		assertFalse(filter.mayContain(createFile("empty.txt", new byte[0], "ISO-8859-1")));
+		assertTrue(new FileContentFilter("").mayContain(createFile("empty2.txt", new byte[0], "ISO-8859-1")));
+	}
+
+	public void testBlockBoundary() throws Exception {
+		FileContentFilter filter= new FileContentFilter(TEXT);
+		int length= 3 * BLOCK_SIZE + 100;
+		// the text spans the end of the first and the start of the second block
+		assertTrue(filter.mayContain(createFile("first.txt", createContent(length, BLOCK_SIZE - 3), "UTF-8")));
+		// the text spans the end of the second read, which starts with the kept tail of the first
+		assertTrue(filter.mayContain(createFile("second.txt", createContent(length, 2 * BLOCK_SIZE - 10), "UTF-8")));
+		// the text ends a full block or starts the next one
+		assertTrue(filter.mayContain(createFile("endOfBlock.txt", createContent(length, BLOCK_SIZE - TEXT.length()), "UTF-8")));
+		assertTrue(filter.mayContain(createFile("startOfBlock.txt", createContent(length, BLOCK_SIZE), "UTF-8")));
+		// the text ends the file
+		assertTrue(filter.mayContain(createFile("endOfFile.txt", createContent(length, length - TEXT.length()), "UTF-8")));
+		assertTrue(filter.mayContain(createFile("exactBlock.txt", createContent(BLOCK_SIZE, BLOCK_SIZE - TEXT.length()), "UTF-8")));
+
+		assertFalse(filter.mayContain(createFile("none.txt", createContent(length, -1), "UTF-8")));
+		assertFalse(filter.mayContain(createFile("noneExactBlock.txt", createContent(2 * BLOCK_SIZE, -1), "UTF-8")));
+	}
+
+	public void testCharsets() throws Exception {
+		FileContentFilter filter= new FileContentFilter("\u00e4" + TEXT);
+		String content= "x \u00e4" + TEXT + " x";
+		assertTrue(filter.mayContain(createFile("latin1.txt", content.getBytes("ISO-8859-1"), "ISO-8859-1")));
+		assertTrue(filter.mayContain(createFile("utf8.txt", content.getBytes("UTF-8"), "UTF-8")));
+		// the same text in another encoding
+		assertFalse(filter.mayContain(createFile("mixed.txt", content.getBytes("UTF-8"), "ISO-8859-1")));
+
+		// the text cannot be encoded, so the file is not searched
+		assertTrue(new FileContentFilter("\u20ac").mayContain(createFile("ascii.txt", "x".getBytes("US-ASCII"), "US-ASCII")));
+	}
+
+	public void testNotAsciiCompatibleCharsets() throws Exception {
+		FileContentFilter filter= new FileContentFilter(TEXT);
+		String[] charsets= { "UTF-16", "UTF-16BE", "UTF-16LE", "UTF-32" };
+		for (int i= 0; i < charsets.length; i++) {
+			// files in these charsets are always accepted, whether or not they contain the text
+			assertTrue(charsets[i], filter.mayContain(createFile("with" + i + ".txt", ("x " + TEXT).getBytes(charsets[i]), charsets[i])));
+			assertTrue(charsets[i], filter.mayContain(createFile("without" + i + ".txt", "x".getBytes(charsets[i]), charsets[i])));
+		}
+	}
+
+	public void testOpenBuffer() throws Exception {
+		FileContentFilter filter= new FileContentFilter(TEXT);
+		IFile file= createFile("buffer.txt", createContent(100, -1), "UTF-8");
+		assertFalse(filter.mayContain(file));
+
+		ITextFileBufferManager manager= FileBuffers.getTextFileBufferManager();
+		IPath path= file.getFullPath();
+		manager.connect(path, LocationKind.IFILE, null);
+		try {
+			// the unsaved content of the buffer is not on disk
+			manager.getTextFileBuffer(path, LocationKind.IFILE).getDocument().replace(0, 0, TEXT);
+			assertTrue(filter.mayContain(file));
+		} finally {
+			manager.disconnect(path, LocationKind.IFILE, null);
+		}
+		assertFalse(filter.mayContain(file));
+	}
+
+	public void testParallelRename() throws Exception {
+		ICompilationUnit type= getPackageP().createCompilationUnit(TEXT + ".java", "package p;\npublic class " + TEXT + " {\n}\n", true, null);
+		ICompilationUnit[] cus= new ICompilationUnit[UNIT_COUNT];
+		for (int i= 0; i < UNIT_COUNT; i++)
+			cus[i]= getPackageP().createCompilationUnit("C" + i + ".java", getSource(i, TEXT), true, null);
+
+		IType classA= getType(type, TEXT);
+		RenameJavaElementDescriptor descriptor= RefactoringSignatureDescriptorFactory.createRenameJavaElementDescriptor(IJavaRefactorings.RENAME_TYPE);
+		descriptor.setJavaElement(classA);
+		descriptor.setNewName("NewType");
+		descriptor.setUpdateReferences(true);
+		descriptor.setUpdateTextualOccurrences(true);
+		Refactoring refactoring= createRefactoring(descriptor);
+		assertNull("was supposed to pass", performRefactoring(refactoring));
+
+		assertTrue(getPackageP().getCompilationUnit("NewType.java").exists());
+		for (int i= 0; i < UNIT_COUNT; i++)
+			assertEqualLines(cus[i].getElementName(), getSource(i, "NewType"), cus[i].getSource());
+	}
+
+	/**
+	 * Returns the source of a compilation unit in the parallel rename test. Every third unit
+	 * contains no match, the others contain textual matches and some a reference to the type.
+	 *
+	 * @param i the number of the compilation unit
+	 * @param name the name of the renamed type
+	 * @return the source
+	 */
+	private static String getSource(int i, String name) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package p;\n");
+		if (i % 3 == 0) {
+			buf.append("/** Mentions OtherType only. */\n");
+			buf.append("class C").append(i).append(" {\n");
+			buf.append("    String s= \"Old\" + \"Type\";\n");
+		} else {
+			buf.append("/** Uses ").append(name).append(". */\n");
+			buf.append("class C").append(i).append(" {\n");
+			buf.append("    String s= \"").append(name).append("\";\n");
+			if (i % 3 == 1)
+				buf.append("    ").append(name).append(" f; // a ").append(name).append("\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -27,6 +27,7 @@ public class AllReorgPerformanceTests {
 		suite.addTest(RenameMethodPerfTests1.suite());
 		suite.addTest(RenameMethodPerfTests2.suite());
 		suite.addTest(RenameMethodWithOverloadPerfTests.suite());
+		suite.addTest(RenameInterfaceMethodPerfTests.suite());
 
 		suite.addTest(MoveCompilationUnitPerfTests1.suite());
 		suite.addTest(MoveCompilationUnitPerfTests2.suite());
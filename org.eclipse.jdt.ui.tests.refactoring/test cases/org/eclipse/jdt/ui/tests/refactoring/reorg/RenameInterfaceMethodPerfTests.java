@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.refactoring.reorg;
+
+import junit.framework.Test;
+
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IPackageFragment;
+
+import org.eclipse.jdt.internal.corext.refactoring.rename.RenameVirtualMethodProcessor;
+
+import org.eclipse.jdt.ui.tests.refactoring.infra.RefactoringPerformanceTestSetup;
+
+/**
+ * Renames an interface method that is implemented and called in every compilation unit.
+ */
+public class RenameInterfaceMethodPerfTests extends RepeatingRefactoringPerformanceTestCase {
+
+	public static Test suite() {
+		// we must make sure that cold is executed before warm
+		OrderedTestSuite suite= new OrderedTestSuite(RenameInterfaceMethodPerfTests.class, new String[] {
+			"testCold_10_10",
+			"test_10_10",
+			"test_100_10",
+			"test_1000_10",
+		});
+		return new RefactoringPerformanceTestSetup(suite);
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new RefactoringPerformanceTestSetup(someTest);
+	}
+
+	public RenameInterfaceMethodPerfTests(String name) {
+		super(name);
+	}
+
+	public void testCold_10_10() throws Exception {
+		executeRefactoring(10, 10, false, 10);
+	}
+
+	public void test_10_10() throws Exception {
+		executeRefactoring(10, 10, true, 10);
+	}
+
+	public void test_100_10() throws Exception {
+		executeRefactoring(100, 10, true, 10);
+	}
+
+	public void test_1000_10() throws Exception {
+		tagAsSummary("Rename interface method with many implementors", Dimension.ELAPSED_PROCESS);
+		executeRefactoring(1000, 10, true, 10);
+	}
+
+	@Override
+	protected void doExecuteRefactoring(int numberOfCus, int numberOfRefs, boolean measure) throws Exception {
+		ICompilationUnit cunit= generateSources(numberOfCus, numberOfRefs);
+		IMethod method= cunit.findPrimaryType().getMethod("foo", new String[0]);
+		RenameVirtualMethodProcessor processor= new RenameVirtualMethodProcessor(method);
+		processor.setNewElementName("foo2");
+		executeRefactoring(new RenameRefactoring(processor), measure);
+	}
+
+	private ICompilationUnit generateSources(int numberOfCus, int numberOfRefs) throws Exception {
+		IPackageFragment definition= getTestProject().getSourceFolder().createPackageFragment("def", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package def;\n");
+		buf.append("public interface I {\n");
+		buf.append("    void foo();\n");
+		buf.append("}\n");
+		ICompilationUnit result= definition.createCompilationUnit("I.java", buf.toString(), false, null);
+
+		IPackageFragment implementors= getTestProject().getSourceFolder().createPackageFragment("impl", false, null);
+		for (int i= 0; i < numberOfCus; i++) {
+			createImplementorCu(implementors, i, numberOfRefs);
+		}
+		return result;
+	}
+
+	private void createImplementorCu(IPackageFragment pack, int index, int numberOfRefs) throws Exception {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package " + pack.getElementName() + ";\n");
+		buf.append("import def.I;\n");
+		buf.append("public class Impl" + index + " implements I {\n");
+		buf.append("    public void foo() {\n");
+		buf.append("    }\n");
+		buf.append("    public void ref(I i) {\n");
+		for (int i= 0; i < numberOfRefs; i++) {
+			buf.append("        i.foo();\n");
+		}
+		buf.append("    }\n");
+		buf.append("}\n");
+		pack.createCompilationUnit("Impl" + index + ".java", buf.toString(), false, null);
+	}
+
+	@Override
+	protected void assertMeasurements() {
+		assertPerformanceInRelativeBand(Dimension.CPU_TIME, -100, +10);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -34,6 +34,8 @@ import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.internal.corext.dom.HierarchicalASTVisitor;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.EnumeratedTypeSet;
+import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets.TypeSetEnvironment;
 
 import org.eclipse.jdt.ui.tests.refactoring.RefactoringTestSetup;
 import org.eclipse.jdt.ui.tests.refactoring.infra.AbstractCUTestCase;
@@ -255,6 +257,7 @@ public class TypeEnvironmentTests extends AbstractCUTestCase {
 			assertTrue("Not same erasure", types[i].getErasure().isEqualTo(bindings[i].getErasure()));
 			assertTrue("Not same type declaration", types[i].getTypeDeclaration().isEqualTo(bindings[i].getTypeDeclaration()));
 			assertTrue("Not same type", types[i] == environment.create(bindings[i]));
+			assertTrue("Not same type for id", types[i] == environment.getType(types[i].getTypeId()));
 
 		}
 		for (int o= 0; o < bindings.length; o++) {
@@ -262,10 +265,19 @@ public class TypeEnvironmentTests extends AbstractCUTestCase {
 				checkCanAssignTo(bindings[o], bindings[i], types[o], types[i]);
 			}
 		}
+		// answered from the memoized assignability relation
+		for (int o= 0; o < bindings.length; o++) {
+			for (int i= 0; i < bindings.length; i++) {
+				checkCanAssignTo(bindings[o], bindings[i], types[o], types[i]);
+			}
+		}
 		TypeEnvironment secondEnvironment= new TypeEnvironment();
+		TType[] secondTypes= new TType[bindings.length];
 		for (int i= 0; i < bindings.length; i++) {
-			assertTrue("Equal to second environment", types[i].equals(secondEnvironment.create(bindings[i])));
+			secondTypes[i]= secondEnvironment.create(bindings[i]);
+			assertTrue("Equal to second environment", types[i].equals(secondTypes[i]));
 		}
+		checkEnumeratedTypeSet(environment, types, secondTypes);
 		ITypeBinding[] restoredBindings= TypeEnvironment.createTypeBindings(types, RefactoringTestSetup.getProject());
 		assertEquals("Not same length", restoredBindings.length, bindings.length);
 		for (int i= 0; i < restoredBindings.length; i++) {
@@ -273,6 +285,50 @@ public class TypeEnvironmentTests extends AbstractCUTestCase {
 		}
 	}
 
+	private void checkEnumeratedTypeSet(TypeEnvironment environment, TType[] types, TType[] foreignTypes) {
+		environment.initializeJavaLangObject(RefactoringTestSetup.getProject());
+		EnumeratedTypeSet set= new EnumeratedTypeSet(new TypeSetEnvironment(environment));
+		List<TType> expected= new ArrayList<>();
+		for (int i= 0; i < types.length; i++) {
+			boolean added= !expected.contains(types[i]);
+			if (added)
+				expected.add(types[i]);
+			assertEquals("Not added", added, set.add(types[i]));
+		}
+		assertEquals("Not same members", expected, getMembers(set));
+		for (int i= 0; i < foreignTypes.length; i++) {
+			assertFalse("Contains type of other environment", set.contains(foreignTypes[i]));
+			assertFalse("Removed type of other environment", set.remove(foreignTypes[i]));
+		}
+
+		EnumeratedTypeSet copy= (EnumeratedTypeSet) set.makeClone();
+		List<TType> remaining= new ArrayList<>();
+		for (int i= 0; i < expected.size(); i++) {
+			if (i % 2 == 0)
+				assertTrue("Not removed", set.remove(expected.get(i)));
+			else
+				remaining.add(expected.get(i));
+		}
+		assertEquals("Not same members after remove", remaining, getMembers(set));
+		if (!expected.isEmpty()) {
+			set.add(expected.get(0));
+			remaining.add(expected.get(0));
+			assertEquals("Not same members after add", remaining, getMembers(set));
+		}
+
+		set.addAll(copy);
+		assertEquals("Not same size", copy.size(), set.size());
+		assertTrue("Not equal", set.equals(copy) && copy.equals(set));
+		assertEquals("Not same hash code", copy.hashCode(), set.hashCode());
+	}
+
+	private static List<TType> getMembers(EnumeratedTypeSet set) {
+		List<TType> result= new ArrayList<>();
+		for (Iterator<TType> iter= set.iterator(); iter.hasNext();)
+			result.add(iter.next());
+		return result;
+	}
+
 	private void checkCanAssignTo(ITypeBinding rhsBinding, ITypeBinding lhsBinding, TType rhs, TType lhs) {
 		boolean coreResult= rhsBinding.isAssignmentCompatible(lhsBinding);
 		boolean uiResult= rhs.canAssignTo(lhs);
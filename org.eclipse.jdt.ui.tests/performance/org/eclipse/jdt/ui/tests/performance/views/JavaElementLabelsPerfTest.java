@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.JavaElementLabels;
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.ui.viewsupport.JavaElementLabelCache;
+
+/**
+ * Measures the labels of 100000 members as shown while scrolling through a viewer: every window
+ * of visible rows is labeled several times, once with the label cache and once without.
+ */
+public class JavaElementLabelsPerfTest extends JdtPerformanceTestCase {
+
+	private static final int CU_COUNT= 100;
+	private static final int METHOD_COUNT= 1000;
+	private static final int REPEAT= 5;
+
+	/** Rows visible at once */
+	private static final int WINDOW= 1000;
+	/** Times the rows of a window are labeled */
+	private static final int REFRESHES= 3;
+
+	private static final long FLAGS= JavaElementLabels.ALL_DEFAULT | JavaElementLabels.M_APP_RETURNTYPE | JavaElementLabels.COLORIZE;
+
+	private static class MyTestSetup extends TestSetup {
+		public static IJavaProject fJProject1;
+		public static IJavaElement[] fMembers;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		@Override
+		protected void setUp() throws Exception {
+			fJProject1= JavaProjectHelper.createJavaProject("LabelPerf", "bin");
+			assertTrue("rt not found", JavaProjectHelper.addRTJar(fJProject1) != null);
+			IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+			IPackageFragment pack= sourceFolder.createPackageFragment("pack", false, null);
+			List<IJavaElement> members= new ArrayList<>(CU_COUNT * METHOD_COUNT);
+			for (int i= 0; i < CU_COUNT; i++) {
+				ICompilationUnit cu= pack.createCompilationUnit("C" + i + ".java", getContent("C" + i), false, null);
+				members.addAll(Arrays.asList(cu.getTypes()[0].getMethods()));
+			}
+			fMembers= members.toArray(new IJavaElement[members.size()]);
+			assertEquals(CU_COUNT * METHOD_COUNT, fMembers.length);
+		}
+
+		@Override
+		protected void tearDown() throws Exception {
+			fMembers= null;
+			if (fJProject1 != null && fJProject1.exists())
+				JavaProjectHelper.delete(fJProject1);
+		}
+	}
+
+	public static Test suite() {
+		OrderedTestSuite suite= new OrderedTestSuite(JavaElementLabelsPerfTest.class, new String[] {
+			"testLabelsWithoutCache",
+			"testLabelsWithCache"
+		});
+		return new MyTestSetup(suite);
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public JavaElementLabelsPerfTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaElementLabelCache.getInstance().setEnabled(true);
+		super.tearDown();
+	}
+
+	public void testLabelsWithoutCache() throws Exception {
+		measureLabels(false);
+	}
+
+	public void testLabelsWithCache() throws Exception {
+		tagAsSummary("Labels of 100000 members", Dimension.ELAPSED_PROCESS);
+		measureLabels(true);
+	}
+
+	private void measureLabels(boolean cache) throws Exception {
+		JavaElementLabelCache.getInstance().setEnabled(cache);
+		IJavaElement[] members= MyTestSetup.fMembers;
+		String expected= JavaElementLabels.getStyledTextLabel(members[0], FLAGS).getString();
+		for (int i= 0; i < REPEAT; i++) {
+			joinBackgroudActivities();
+			startMeasuring();
+			for (int start= 0; start < members.length; start+= WINDOW) {
+				int end= Math.min(start + WINDOW, members.length);
+				for (int j= 0; j < REFRESHES; j++) {
+					for (int k= start; k < end; k++)
+						JavaElementLabels.getStyledTextLabel(members[k], FLAGS);
+				}
+			}
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertEquals(expected, JavaElementLabels.getStyledTextLabel(members[0], FLAGS).getString());
+		assertPerformanceInRelativeBand(Dimension.ELAPSED_PROCESS, -100, +10);
+	}
+
+	private static String getContent(String typeName) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package pack;\n");
+		buf.append("import java.util.List;\n");
+		buf.append("import java.util.Map;\n");
+		buf.append("public class ").append(typeName).append(" {\n");
+		for (int i= 0; i < METHOD_COUNT; i++) {
+			buf.append("    public <T> Map<String, List<T>> method").append(i).append("(List<? extends T> list, int count, String... names) {\n");
+			buf.append("        return null;\n");
+			buf.append("    }\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.ByteArrayInputStream;
+
+import junit.extensions.TestSetup;
+import junit.framework.Test;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+import org.eclipse.test.OrderedTestSuite;
+import org.eclipse.test.performance.Dimension;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.jface.viewers.StructuredSelection;
+
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.PlatformUI;
+
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.ui.JavaUI;
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.ui.packageview.PackageExplorerContentProvider;
+import org.eclipse.jdt.internal.ui.packageview.PackageExplorerPart;
+
+/**
+ * Measures how the Package Explorer follows a burst of deltas, like the ones sent while a version
+ * control system switches branches. The deltas are sent from a background thread, so the
+ * resulting view updates are collected and applied in one batch.
+ */
+public class PackageExplorerDeltaPerfTest extends JdtPerformanceTestCase {
+
+	private static final int PACKAGE_COUNT= 40;
+	private static final int CU_COUNT= 25;
+	private static final int REPEAT= 10;
+
+	private static class MyTestSetup extends TestSetup {
+		public static IJavaProject fJProject1;
+		public static IPackageFragmentRoot fSourceFolder;
+
+		public MyTestSetup(Test test) {
+			super(test);
+		}
+
+		@Override
+		protected void setUp() throws Exception {
+			fJProject1= JavaProjectHelper.createJavaProject("DeltaPerf", "bin");
+			assertTrue("rt not found", JavaProjectHelper.addRTJar(fJProject1) != null);
+			fSourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+			for (int i= 0; i < PACKAGE_COUNT; i++) {
+				IPackageFragment pack= fSourceFolder.createPackageFragment("pack" + i, false, null);
+				for (int j= 0; j < CU_COUNT; j++) {
+					pack.createCompilationUnit("C" + j + ".java", getContent(pack, "C" + j, 0), false, null);
+				}
+			}
+		}
+
+		@Override
+		protected void tearDown() throws Exception {
+			if (fJProject1 != null && fJProject1.exists())
+				JavaProjectHelper.delete(fJProject1);
+		}
+	}
+
+	public static Test suite() {
+		OrderedTestSuite suite= new OrderedTestSuite(PackageExplorerDeltaPerfTest.class, new String[] {
+			"testSwitchBranch"
+		});
+		return new MyTestSetup(suite);
+	}
+
+	public static Test setUpTest(Test someTest) {
+		return new MyTestSetup(someTest);
+	}
+
+	public PackageExplorerDeltaPerfTest(String name) {
+		super(name);
+	}
+
+	public void testSwitchBranch() throws Exception {
+		IWorkbenchPage page= PlatformUI.getWorkbench().getActiveWorkbenchWindow().getActivePage();
+		PackageExplorerPart view= (PackageExplorerPart) page.showView(JavaUI.ID_PACKAGES);
+		view.getTreeViewer().expandToLevel(MyTestSetup.fSourceFolder, 2);
+		PackageExplorerContentProvider provider= (PackageExplorerContentProvider) view.getTreeViewer().getContentProvider();
+		int savedRefreshes= provider.getSavedRefreshCount();
+
+		tagAsSummary("Package Explorer updates after switching branches", Dimension.ELAPSED_PROCESS);
+		for (int i= 1; i <= REPEAT; i++) {
+			joinBackgroudActivities();
+			startMeasuring();
+			switchBranch(i);
+			view.selectReveal(new StructuredSelection(MyTestSetup.fJProject1)); // runs pending updates
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertTrue("No refreshes saved", provider.getSavedRefreshCount() > savedRefreshes);
+		assertPerformanceInRelativeBand(Dimension.ELAPSED_PROCESS, -100, +10);
+	}
+
+	/**
+	 * Changes all compilation units, one package per workspace operation, in a background thread.
+	 * Every compilation unit gets a new method, and in every package one compilation unit is
+	 * replaced by another one.
+	 *
+	 * @param generation the number of the branch to switch to
+	 * @throws Exception if changing the files fails
+	 */
+	private void switchBranch(final int generation) throws Exception {
+		final CoreException[] exception= new CoreException[1];
+		Thread thread= new Thread("Switch branch") {
+			@Override
+			public void run() {
+				try {
+					for (int i= 0; i < PACKAGE_COUNT; i++) {
+						final IPackageFragment pack= MyTestSetup.fSourceFolder.getPackageFragment("pack" + i);
+						ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+							@Override
+							public void run(IProgressMonitor monitor) throws CoreException {
+								changePackage(pack, generation);
+							}
+						}, null);
+					}
+				} catch (CoreException e) {
+					exception[0]= e;
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		if (exception[0] != null)
+			throw exception[0];
+	}
+
+	private static void changePackage(IPackageFragment pack, int generation) throws CoreException {
+		IFolder folder= (IFolder) pack.getResource();
+		for (int j= 0; j < CU_COUNT; j++) {
+			IFile file= folder.getFile("C" + j + ".java");
+			if (file.exists())
+				file.setContents(new ByteArrayInputStream(getContent(pack, "C" + j, generation).getBytes()), true, false, null);
+		}
+		IFile removed= folder.getFile("Branch" + (generation - 1) + ".java");
+		if (removed.exists())
+			removed.delete(true, null);
+		String added= "Branch" + generation;
+		folder.getFile(added + ".java").create(new ByteArrayInputStream(getContent(pack, added, generation).getBytes()), true, null);
+	}
+
+	private static String getContent(IPackageFragment pack, String typeName, int generation) {
+		StringBuffer buf= new StringBuffer();
+		buf.append("package ").append(pack.getElementName()).append(";\n");
+		buf.append("public class ").append(typeName).append(" {\n");
+		for (int i= 0; i <= generation; i++) {
+			buf.append("    public void method").append(i).append("() {\n");
+			buf.append("    }\n");
+		}
+		buf.append("}\n");
+		return buf.toString();
+	}
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.performance.views;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+
+import org.eclipse.jdt.ui.tests.performance.JdtPerformanceTestCase;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.RemoteTestRunner;
+
+/**
+ * Measures the throughput of the protocol between the {@link RemoteTestRunner} and the
+ * {@link RemoteTestRunnerClient} over a loopback socket, for a suite of many fast tests.
+ */
+public class RemoteTestRunnerProtocolPerfTest extends JdtPerformanceTestCase {
+
+	private static final int TEST_COUNT= 20000;
+
+	private static final int WARM_UP_RUNS= 2;
+
+	private static final int RUNS= 10;
+
+	public static class FastTests extends TestCase {
+		public FastTests(String name) {
+			super(name);
+		}
+
+		@Override
+		protected void runTest() {
+			// nothing to test
+		}
+
+		public static Test suite() {
+			TestSuite suite= new TestSuite(FastTests.class.getName());
+			for (int i= 0; i < TEST_COUNT; i++)
+				suite.addTest(new FastTests("test" + i));
+			return suite;
+		}
+	}
+
+	private static class LoopbackTestRunner extends RemoteTestRunner {
+		public void run(int port) {
+			init(new String[] { "-classnames", FastTests.class.getName(), "-port", String.valueOf(port) });
+			run();
+		}
+	}
+
+	private static class CountingListener implements ITestRunListener2 {
+		final CountDownLatch fDone= new CountDownLatch(1);
+		int fTreeEntries;
+		int fStarted;
+		int fEnded;
+
+		@Override
+		public void testRunStarted(int testCount) {
+		}
+
+		@Override
+		public void testRunEnded(long elapsedTime) {
+			fDone.countDown();
+		}
+
+		@Override
+		public void testRunStopped(long elapsedTime) {
+			fDone.countDown();
+		}
+
+		@Override
+		public void testStarted(String testId, String testName) {
+			fStarted++;
+		}
+
+		@Override
+		public void testEnded(String testId, String testName) {
+			fEnded++;
+		}
+
+		@Override
+		public void testRunTerminated() {
+			fDone.countDown();
+		}
+
+		@Override
+		public void testTreeEntry(String description) {
+			fTreeEntries++;
+		}
+
+		@Override
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+		}
+
+		@Override
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+		}
+	}
+
+	public static Test suite() {
+		return new TestSuite(RemoteTestRunnerProtocolPerfTest.class);
+	}
+
+	public void testTextProtocol() throws Exception {
+		measure(false);
+	}
+
+	public void testBinaryProtocol() throws Exception {
+		measure(true);
+	}
+
+	private void measure(boolean binary) throws Exception {
+		for (int i= 0; i < WARM_UP_RUNS + RUNS; i++) {
+			PerformanceMeter meter= i < WARM_UP_RUNS ? Performance.getDefault().getNullPerformanceMeter() : fPerformanceMeter;
+			runTests(binary, meter);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private void runTests(boolean binary, PerformanceMeter meter) throws Exception {
+		int port= findFreePort();
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		client.setBinaryProtocolEnabled(binary);
+		CountingListener listener= new CountingListener();
+		client.startListening(new ITestRunListener2[] { listener }, port);
+		// give the client time to open the server socket, the runner retries only every 2 seconds
+		Thread.sleep(200);
+		try {
+			meter.start();
+			new LoopbackTestRunner().run(port);
+			assertTrue("test run did not end", listener.fDone.await(2, TimeUnit.MINUTES));
+			meter.stop();
+		} finally {
+			client.stopWaiting();
+		}
+		// make sure that the intended protocol has been measured
+		assertEquals(binary, client.isBinaryProtocol());
+		assertEquals(TEST_COUNT + 1, listener.fTreeEntries);
+		assertEquals(TEST_COUNT, listener.fStarted);
+		assertEquals(TEST_COUNT, listener.fEnded);
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket socket= new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
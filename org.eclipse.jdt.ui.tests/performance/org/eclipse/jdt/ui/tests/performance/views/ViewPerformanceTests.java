@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,7 +23,10 @@ public class ViewPerformanceTests extends TestCase {
 		suite.addTest(PackageExplorerWarmPerfTest.suite());
 		suite.addTest(PackageExplorerWorkspacePerfTest.suite());
 		suite.addTest(PackageExplorerWorkspaceWarmPerfTest.suite());
+		suite.addTest(PackageExplorerDeltaPerfTest.suite());
+		suite.addTest(JavaElementLabelsPerfTest.suite());
 		suite.addTest(TypeHierarchyPerfTest.suite());
+		suite.addTest(RemoteTestRunnerProtocolPerfTest.suite());
 		return suite;
 	}
 }
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.junit.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.junit.model.ITestRunListener2;
+import org.eclipse.jdt.internal.junit.model.RemoteTestRunnerClient;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageReader;
+import org.eclipse.jdt.internal.junit.runner.BinaryMessageWriter;
+import org.eclipse.jdt.internal.junit.runner.MessageIds;
+import org.eclipse.jdt.internal.junit.runner.RemoteTestRunner;
+
+/**
+ * Tests the binary protocol between the {@link RemoteTestRunner} and the
+ * {@link RemoteTestRunnerClient}.
+ */
+public class BinaryProtocolTest extends TestCase {
+
+	/**
+	 * Tests whose failures are reported to the client.
+	 */
+	public static class FailingTests extends TestCase {
+		public FailingTests(String name) {
+			super(name);
+		}
+
+		public void testPass() {
+			// passes
+		}
+
+		public void testComparison() {
+			// a line that starts with a header, but not with the one that ends the trace or the value
+			assertEquals("expected\nsecond line", "actual\n%TRACES \u00e4\u00f6\u00fc");
+		}
+
+		public void testHeaderLikeMessage() {
+			fail(MessageIds.TRACE_END + "\n" + MessageIds.TEST_FAILED + "1,x\n" + MessageIds.EXPECTED_START);
+		}
+
+		public void testError() {
+			throw new IllegalStateException("error \u20ac");
+		}
+
+		public void testLongValues() {
+			StringBuffer buf= new StringBuffer();
+			while (buf.length() <= BinaryMessageWriter.MAX_FRAME_SIZE)
+				buf.append("a long message ");
+			assertEquals(buf.toString(), buf.toString() + ".");
+		}
+	}
+
+	private static class LoopbackTestRunner extends RemoteTestRunner {
+		public void run(int port) {
+			init(new String[] { "-classnames", FailingTests.class.getName(), "-port", String.valueOf(port) });
+			run();
+		}
+	}
+
+	private static class RecordingListener implements ITestRunListener2 {
+		final CountDownLatch fDone= new CountDownLatch(1);
+		final List<String> fEvents= Collections.synchronizedList(new ArrayList<String>());
+
+		@Override
+		public void testRunStarted(int testCount) {
+			fEvents.add("runStarted " + testCount);
+		}
+
+		@Override
+		public void testRunEnded(long elapsedTime) {
+			fEvents.add("runEnded");
+			fDone.countDown();
+		}
+
+		@Override
+		public void testRunStopped(long elapsedTime) {
+			fEvents.add("runStopped");
+			fDone.countDown();
+		}
+
+		@Override
+		public void testStarted(String testId, String testName) {
+			fEvents.add("started " + testName);
+		}
+
+		@Override
+		public void testEnded(String testId, String testName) {
+			fEvents.add("ended " + testName);
+		}
+
+		@Override
+		public void testRunTerminated() {
+			fEvents.add("runTerminated");
+			fDone.countDown();
+		}
+
+		@Override
+		public void testTreeEntry(String description) {
+			fEvents.add("tree " + description);
+		}
+
+		@Override
+		public void testFailed(int status, String testId, String testName, String trace, String expected, String actual) {
+			String event= "failed " + status + " " + testName + "\ntrace: " + trace + "\nexpected: " + expected + "\nactual: " + actual;
+			// the binary protocol ends the last line of a multi-line message with \n instead of the line separator of the runner
+			fEvents.add(event.replace("\r\n", "\n"));
+		}
+
+		@Override
+		public void testReran(String testId, String testClass, String testName, int status, String trace, String expected, String actual) {
+			fEvents.add("reran " + testName);
+		}
+	}
+
+	private static final String[] MESSAGES= {
+		"",
+		"plain text",
+		MessageIds.TEST_TREE + "1,testPass(Tests),false,1",
+		MessageIds.TEST_START + "2,testFail(Tests)",
+		MessageIds.TEST_FAILED + "2,testFail(Tests)",
+		MessageIds.TRACE_START,
+		"junit.framework.AssertionFailedError: " + MessageIds.TRACE_END,
+		MessageIds.TRACE_END,
+		MessageIds.TRACE_END + MessageIds.TRACE_END,
+		"%TRACEE", // shorter than a header
+		"%TRACEEX", // same length as a header, but no header
+		" " + MessageIds.TEST_END + "1,x", // header not at the start
+		MessageIds.PROTOCOL_OFFER + MessageIds.BINARY_PROTOCOL, // header that has no opcode
+		MessageIds.BINARY_START,
+		"line\nbreaks\r\nand\rmore",
+		"umlauts \u00e4\u00f6\u00fc, euro \u20ac, surrogates \ud83d\ude00",
+		MessageIds.TEST_RUN_END + "42",
+	};
+
+	public void testRoundTrip() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output, 0);
+		for (int i= 0; i < MESSAGES.length; i++)
+			writer.write(MESSAGES[i]);
+		writer.flush();
+		writer.write(MessageIds.TEST_STOPPED + "1");
+		writer.close();
+		assertFalse(writer.checkError());
+
+		List<String[]> frames= readFrames(output.toByteArray());
+		assertEquals(2, frames.size());
+		assertEquals(Arrays.asList(MESSAGES), Arrays.asList(frames.get(0)));
+		assertEquals(Arrays.asList(MessageIds.TEST_STOPPED + "1"), Arrays.asList(frames.get(1)));
+	}
+
+	public void testEmptyFlush() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output, 0);
+		writer.flush();
+		writer.flushNow();
+		writer.close();
+		assertEquals(0, output.size());
+		writer.write("after close");
+		assertEquals(0, output.size());
+	}
+
+	public void testLargeFrames() throws Exception {
+		StringBuffer buf= new StringBuffer();
+		while (buf.length() <= 3 * BinaryMessageWriter.MAX_FRAME_SIZE)
+			buf.append("\u00e4 large ").append(buf.length());
+		String large= MessageIds.TRACE_START + buf.toString();
+
+		List<String> messages= new ArrayList<String>();
+		for (int i= 0; i < 20000; i++)
+			messages.add(MessageIds.TEST_START + i + ",test" + i + "(Tests)");
+		messages.add(large);
+		messages.add(MessageIds.TRACE_END);
+
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output);
+		for (String message : messages)
+			writer.write(message);
+		writer.close();
+		assertFalse(writer.checkError());
+
+		List<String[]> frames= readFrames(output.toByteArray());
+		assertTrue(frames.size() > 2);
+		List<String> read= new ArrayList<String>();
+		for (String[] frame : frames)
+			read.addAll(Arrays.asList(frame));
+		assertEquals(messages.size(), read.size());
+		assertEquals(messages, read);
+	}
+
+	public void testCorruptFrame() throws Exception {
+		ByteArrayOutputStream output= new ByteArrayOutputStream();
+		BinaryMessageWriter writer= new BinaryMessageWriter(output, 0);
+		writer.write(MessageIds.TEST_START + "1,test(Tests)");
+		writer.close();
+		byte[] bytes= output.toByteArray();
+		bytes[4]= (byte) (MessageIds.BINARY_MESSAGE_HEADERS.length + 1); // unknown opcode
+		try {
+			readFrames(bytes);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+
+		byte[] truncated= Arrays.copyOf(output.toByteArray(), output.size() - 1);
+		try {
+			readFrames(truncated);
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	public void testFailuresMatchTextProtocol() throws Exception {
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		List<String> binary= runTests(client, true);
+		assertTrue(client.isBinaryProtocol());
+
+		client= new RemoteTestRunnerClient();
+		List<String> text= runTests(client, false);
+		assertFalse(client.isBinaryProtocol());
+
+		assertEquals(text, binary);
+	}
+
+	public void testDisabledClient() throws Exception {
+		RemoteTestRunnerClient client= new RemoteTestRunnerClient();
+		List<String> events= runTests(client, false);
+		assertFalse(client.isBinaryProtocol());
+
+		assertEquals("runEnded", events.get(events.size() - 1));
+		int failures= 0;
+		for (String event : events) {
+			if (event.startsWith("failed "))
+				failures++;
+		}
+		assertEquals(4, failures);
+
+		String comparison= getFailure(events, "testComparison");
+		assertTrue(comparison, comparison.startsWith("failed 2 testComparison(" + FailingTests.class.getName() + ")\ntrace: junit.framework.ComparisonFailure"));
+		assertTrue(comparison, comparison.endsWith("\nexpected: expected\nsecond line\n\nactual: actual\n%TRACES \u00e4\u00f6\u00fc\n"));
+
+		String headerLike= getFailure(events, "testHeaderLikeMessage");
+		assertTrue(headerLike, headerLike.indexOf(MessageIds.TRACE_END + "\n" + MessageIds.TEST_FAILED + "1,x\n" + MessageIds.EXPECTED_START + "\n") != -1);
+
+		String error= getFailure(events, "testError");
+		assertTrue(error, error.startsWith("failed 1 testError(") && error.indexOf("java.lang.IllegalStateException: error \u20ac\n") != -1);
+	}
+
+	private static String getFailure(List<String> events, String testName) {
+		for (String event : events) {
+			if (event.startsWith("failed ") && event.indexOf(" " + testName + "(") != -1)
+				return event;
+		}
+		fail(testName);
+		return null;
+	}
+
+	private static List<String[]> readFrames(byte[] bytes) throws IOException {
+		BinaryMessageReader reader= new BinaryMessageReader(new ByteArrayInputStream(bytes));
+		List<String[]> frames= new ArrayList<String[]>();
+		String[] frame;
+		while ((frame= reader.readFrame()) != null)
+			frames.add(frame);
+		return frames;
+	}
+
+	private static List<String> runTests(RemoteTestRunnerClient client, boolean binary) throws Exception {
+		final int port= findFreePort();
+		client.setBinaryProtocolEnabled(binary);
+		RecordingListener listener= new RecordingListener();
+		client.startListening(new ITestRunListener2[] { listener }, port);
+		// give the client time to open the server socket, the runner retries only every 2 seconds
+		Thread.sleep(200);
+		try {
+			// run in a new thread, so that the traces don't depend on the calling test
+			Thread runner= new Thread("LoopbackTestRunner") {
+				@Override
+				public void run() {
+					new LoopbackTestRunner().run(port);
+				}
+			};
+			runner.start();
+			assertTrue("test run did not end", listener.fDone.await(2, TimeUnit.MINUTES));
+			runner.join(10000);
+		} finally {
+			client.stopWaiting();
+		}
+		synchronized (listener.fEvents) {
+			return new ArrayList<String>(listener.fEvents);
+		}
+	}
+
+	private static int findFreePort() throws IOException {
+		try (ServerSocket socket= new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.junit.tests;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jdt.internal.junit.model.FailureTraceStore;
+
+public class FailureTraceStoreTest extends TestCase {
+
+	private File fFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		fFile= File.createTempFile("FailureTraceStoreTest", ".traces");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fFile.delete();
+	}
+
+	private long[] writeStore() throws Exception {
+		FailureTraceStore store= new FailureTraceStore(fFile);
+		store.begin();
+		assertTrue(store.isWriting());
+		assertFalse(store.isComplete());
+		long first= store.append(0, "trace0", null, "actual0");
+		long second= store.append(3, "trace3", "expected3", null);
+		store.commit(5);
+		assertFalse(store.isWriting());
+		store.close();
+		return new long[] { first, second };
+	}
+
+	public void testCommitAndReadIndex() throws Exception {
+		long[] offsets= writeStore();
+
+		FailureTraceStore store= new FailureTraceStore(fFile);
+		assertTrue(store.isComplete());
+		assertEquals(offsets[0], store.getOffset(0));
+		assertEquals(-1, store.getOffset(1));
+		assertEquals(offsets[1], store.getOffset(3));
+		assertEquals(-1, store.getOffset(4));
+		assertEquals(-1, store.getOffset(5));
+		assertEquals(Arrays.asList("trace3", "expected3", null), Arrays.asList(store.read(offsets[1])));
+		assertEquals(Arrays.asList("trace0", null, "actual0"), Arrays.asList(store.read(offsets[0])));
+		store.close();
+	}
+
+	public void testTruncatedFooter() throws Exception {
+		writeStore();
+		try (RandomAccessFile file= new RandomAccessFile(fFile, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+
+		FailureTraceStore store= new FailureTraceStore(fFile);
+		assertFalse(store.isComplete());
+		assertEquals(-1, store.getOffset(0));
+	}
+
+	public void testUncommitted() throws Exception {
+		FailureTraceStore store= new FailureTraceStore(fFile);
+		store.begin();
+		store.append(0, "trace0", null, null);
+		store.close();
+
+		assertFalse(new FailureTraceStore(fFile).isComplete());
+	}
+
+	public void testReuse() throws Exception {
+		long[] offsets= writeStore();
+
+		// a complete store is used without writing it again
+		FailureTraceStore store= new FailureTraceStore(fFile);
+		assertTrue(store.isComplete());
+		assertEquals(Arrays.asList("trace3", "expected3", null), Arrays.asList(store.read(offsets[1])));
+
+		// writing again discards the old records
+		store.begin();
+		assertFalse(store.isComplete());
+		long offset= store.append(1, "new", null, null);
+		store.commit(2);
+		assertTrue(store.isComplete());
+		assertEquals(-1, store.getOffset(0));
+		assertEquals(offset, store.getOffset(1));
+		assertEquals(Arrays.asList("new", null, null), Arrays.asList(store.read(offset)));
+
+		store.delete();
+		assertFalse(fFile.exists());
+		assertFalse(store.isComplete());
+	}
+}
@@ -38,6 +38,8 @@ public class JUnitJUnitTests {
 
 		suite.addTest(TestRunSessionSerializationTests3.suite());
 		suite.addTest(TestRunSessionSerializationTests4.suite());
+		suite.addTestSuite(FailureTraceStoreTest.class);
+		suite.addTestSuite(BinaryProtocolTest.class);
 
 		suite.addTestSuite(JUnit3TestFinderTest.class);
 		suite.addTestSuite(JUnit4TestFinderTest.class);
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import org.eclipse.jdt.internal.corext.dom.ASTBatchParser;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class ASTBatchParserTest extends CoreTests {
+
+	private static final Class<ASTBatchParserTest> THIS= ASTBatchParserTest.class;
+
+	private static final int UNIT_COUNT= 20;
+
+	private IJavaProject fJProject1;
+	private ICompilationUnit[] fUnits;
+
+	public ASTBatchParserTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJProject1= ProjectTestSetup.getProject();
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack= sourceFolder.createPackageFragment("test1", false, null);
+		pack.createCompilationUnit("Base.java", "package test1;\npublic class Base {\n}\n", false, null);
+		fUnits= new ICompilationUnit[UNIT_COUNT];
+		for (int i= 0; i < UNIT_COUNT; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package test1;\n");
+			buf.append("public class E").append(i).append(" extends Base {\n");
+			buf.append("}\n");
+			fUnits[i]= pack.createCompilationUnit("E" + i + ".java", buf.toString(), false, null);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.clear(fJProject1, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private static class BindingRequestor extends ASTRequestor {
+		final List<ICompilationUnit> fAccepted= new ArrayList<>();
+
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+			fAccepted.add(source);
+			IBinding[] bindings= createBindings(new String[] { "Ltest1/Base;" });
+			assertTrue(bindings[0] instanceof ITypeBinding);
+			assertEquals("Base", ((ITypeBinding) bindings[0]).getName());
+		}
+	}
+
+	private void assertAllAccepted(List<ICompilationUnit> accepted) {
+		assertEquals(UNIT_COUNT, accepted.size());
+		for (int i= 0; i < UNIT_COUNT; i++)
+			assertEquals(fUnits[i], accepted.get(i));
+	}
+
+	public void testCreateBindingsInAcceptAST() throws Exception {
+		BindingRequestor requestor= new BindingRequestor();
+		new ASTBatchParser().createASTs(fUnits, new String[0], requestor, null);
+		assertAllAccepted(requestor.fAccepted);
+	}
+
+	public void testCreateBindingsInAcceptASTStreaming() throws Exception {
+		// more than one batch
+		BindingRequestor requestor= new BindingRequestor();
+		new ASTBatchParser(UNIT_COUNT / 4).createASTs(fUnits, new String[0], requestor, null);
+		assertAllAccepted(requestor.fAccepted);
+	}
+
+	private static class ResultRequestor extends ASTRequestor {
+		final List<ICompilationUnit> fAccepted= new ArrayList<>();
+		final List<String> fResults= new ArrayList<>();
+		private final Thread fCaller= Thread.currentThread();
+
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+			assertSame(fCaller, Thread.currentThread());
+			assertEquals(source, ast.getJavaElement());
+			fAccepted.add(source);
+			fResults.add(source.getElementName() + ": " + ast.getProblems().length + " problems\n" + ast.toString());
+		}
+	}
+
+	public void testParallelOrder() throws Exception {
+		ResultRequestor sequential= new ResultRequestor();
+		new ASTBatchParser(UNIT_COUNT / 4).createASTs(fUnits, new String[0], sequential, null);
+
+		// more than one batch, parsed ahead of the requestor
+		ResultRequestor parallel= new ResultRequestor();
+		new ASTBatchParser(UNIT_COUNT / 4, true).createASTs(fUnits, new String[0], parallel, null);
+		assertAllAccepted(parallel.fAccepted);
+		assertEquals(sequential.fResults, parallel.fResults);
+	}
+}
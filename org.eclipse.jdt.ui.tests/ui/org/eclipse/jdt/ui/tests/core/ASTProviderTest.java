@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2011 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -32,12 +32,16 @@ import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.refactoring.CompilationUnitChange;
 
 import org.eclipse.jdt.ui.JavaUI;
 import org.eclipse.jdt.ui.SharedASTProvider;
 
+import org.eclipse.jdt.internal.ui.javaeditor.ASTCache;
+import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
+
 
 /**
  * Tests the AST provider.
@@ -144,6 +148,70 @@ public class ASTProviderTest extends CoreTests {
 		cu.getBuffer().save(null, true);
 	}
 
+	private static CompilationUnit createAST(ICompilationUnit cu) {
+		ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
+		parser.setSource(cu);
+		parser.setResolveBindings(true);
+		return (CompilationUnit) parser.createAST(null);
+	}
+
+	private static void insert(ICompilationUnit cu, String before, String text) throws Exception {
+		cu.getBuffer().replace(cu.getBuffer().getContents().lastIndexOf(before), 0, text);
+		cu.reconcile(ICompilationUnit.NO_AST, false, null, null);
+	}
+
+	public void testCacheBodyAndSignatureChanges() throws Exception {
+		IPackageFragment pack1= fSourceFolder.createPackageFragment("test1", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class A {\n");
+		buf.append("    void foo() {\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		ICompilationUnit cuA= pack1.createCompilationUnit("A.java", buf.toString(), false, null);
+		buf= new StringBuffer();
+		buf.append("package test1;\n");
+		buf.append("public class B extends A {\n");
+		buf.append("}\n");
+		ICompilationUnit cuB= pack1.createCompilationUnit("B.java", buf.toString(), false, null);
+
+		ASTCache cache= new ASTCache(5);
+		cache.install();
+		try {
+			CompilationUnit astA= createAST(cuA);
+			CompilationUnit astB= createAST(cuB);
+			cache.put(cuA, astA, ASTCache.getModificationStamp(cuA));
+			cache.put(cuB, astB, ASTCache.getModificationStamp(cuB));
+			assertSame(astA, cache.get(cuA));
+			assertSame(astB, cache.get(cuB));
+			assertEquals(2, cache.getHits());
+			assertEquals(0, cache.getMisses());
+
+			cuA.becomeWorkingCopy(null);
+			try {
+				// a body change only evicts the changed unit
+				insert(cuA, "    }\n}", "        int i= 0;\n");
+				assertNull(cache.get(cuA));
+				assertSame(astB, cache.get(cuB));
+				assertEquals(3, cache.getHits());
+				assertEquals(1, cache.getMisses());
+
+				// an added member evicts the units that may refer to it
+				astA= createAST(cuA);
+				cache.put(cuA, astA, ASTCache.getModificationStamp(cuA));
+				insert(cuA, "}", "    void bar() {\n    }\n");
+				assertNull(cache.get(cuA));
+				assertNull(cache.get(cuB));
+				assertEquals(3, cache.getHits());
+				assertEquals(3, cache.getMisses());
+			} finally {
+				cuA.discardWorkingCopy();
+			}
+		} finally {
+			cache.dispose();
+		}
+	}
+
 	private static String getNormalizeNumber(int number) {
 		if (number < 10) {
 			return "000" + number;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.jdt.ui.tests.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -26,6 +27,7 @@ import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
 
 import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchy;
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchyVisitor;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
 
 import org.eclipse.jdt.ui.tests.callhierarchy.CallHierarchyTestHelper;
@@ -452,6 +454,49 @@ public class CallHierarchyTest extends TestCase {
         assertEquals("Wrong line number", 12, recursiveMethod2Wrapper.getMethodCall().getFirstCallLocation().getLineNumber());
     }
 
+    public void testExportCallersBreadthFirst() throws Exception {
+        helper.createSimpleClasses();
+
+        final List<MethodWrapper> visited= new ArrayList<>();
+        CallHierarchyVisitor visitor= new CallHierarchyVisitor() {
+            @Override
+            public boolean visit(MethodWrapper methodWrapper) {
+                visited.add(methodWrapper);
+                return true;
+            }
+        };
+        MethodWrapper[] roots= CallHierarchy.getDefault().getCallerRoots(new IMember[] { helper.getMethod1() });
+        CallHierarchy.getDefault().exportBreadthFirst(roots, 3, visitor, new NullProgressMonitor());
+
+        assertEquals(6, visited.size());
+        for (int i= 1; i < visited.size(); i++)
+            assertTrue("Not breadth first", visited.get(i - 1).getLevel() <= visited.get(i).getLevel());
+        assertEquals(helper.getMethod1(), visited.get(0).getMember());
+        helper.assertCalls(new IMember[] { helper.getMethod2(), helper.getMethod3() }, visited.subList(1, 3).toArray());
+        helper.assertCalls(new IMember[] { helper.getMethod3(), helper.getMethod4() }, visited.subList(3, 5).toArray());
+        assertEquals(helper.getMethod4(), visited.get(5).getMember());
+        assertEquals(4, visited.get(5).getLevel());
+    }
+
+    public void testExportCallersBreadthFirstRecursive() throws Exception {
+        helper.createSimpleClasses();
+
+        final List<MethodWrapper> visited= new ArrayList<>();
+        CallHierarchyVisitor visitor= new CallHierarchyVisitor() {
+            @Override
+            public boolean visit(MethodWrapper methodWrapper) {
+                visited.add(methodWrapper);
+                return true;
+            }
+        };
+        MethodWrapper[] roots= CallHierarchy.getDefault().getCallerRoots(new IMember[] { helper.getRecursiveMethod1() });
+        CallHierarchy.getDefault().exportBreadthFirst(roots, 10, visitor, new NullProgressMonitor());
+
+        // recursiveMethod1 <- recursiveMethod2 <- recursiveMethod1 (recursive, not expanded)
+        assertEquals(3, visited.size());
+        assertTrue(visited.get(2).isRecursive());
+    }
+
     private void assertRecursive(MethodWrapper[] callResults, boolean shouldBeRecursive) {
         for (int i= 0; i < callResults.length; i++) {
             assertEquals(
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ public class CoreTests extends TestCase {
 
 		TestSuite suite= new TestSuite(CoreTests.class.getName());
 		suite.addTest(AddImportTest.suite());
+		suite.addTest(ASTBatchParserTest.suite());
 		suite.addTest(SourceActionTests.suite());
 		suite.addTest(ASTNodesInsertTest.suite());
 		suite.addTest(BindingsNameTest.suite());
@@ -59,11 +60,14 @@ public class CoreTests extends TestCase {
 		suite.addTest(ScopeAnalyzerTest.suite());
 		suite.addTest(TemplateStoreTest.suite());
 		suite.addTest(TypeHierarchyTest.suite());
+		suite.addTest(SuperTypeHierarchyCacheTest.suite());
 		suite.addTest(TypeRulesTest.suite());
 		suite.addTest(TypeInfoTest.suite());
 		suite.addTest(StringsTest.suite());
 		suite.addTest(IndentManipulationTest.suite());
 		suite.addTest(SelectionHistoryTest.suite());
+		suite.addTest(HistoryJournalTest.suite());
+		suite.addTest(TypeNameIndexTest.suite());
 		suite.addTest(ASTProviderTest.suite());
 		suite.addTest(JDTFlagsTest18.suite());
 
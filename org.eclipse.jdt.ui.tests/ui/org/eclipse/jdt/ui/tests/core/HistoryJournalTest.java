@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.w3c.dom.Element;
+
+import org.eclipse.jdt.internal.corext.util.History;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests the journal of {@link History}.
+ */
+public class HistoryJournalTest extends TestCase {
+
+	private static final Class<HistoryJournalTest> THIS= HistoryJournalTest.class;
+
+	private static final String FILE_NAME= "HistoryJournalTest.xml";
+
+	private static final class TestHistory extends History<String, String> {
+
+		public TestHistory() {
+			super(FILE_NAME);
+		}
+		@Override
+		protected void setAttributes(Object object, Element element) {
+			element.setAttribute("name", (String) object);
+		}
+		@Override
+		protected String createFromElement(Element element) {
+			return element.getAttribute("name");
+		}
+		@Override
+		protected String getKey(String object) {
+			return object;
+		}
+		public synchronized List<String> getEntries() {
+			return new ArrayList<>(getKeys());
+		}
+	}
+
+	private File fFile;
+	private File fJournal;
+
+	public HistoryJournalTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fFile= JavaPlugin.getDefault().getStateLocation().append(FILE_NAME).toFile();
+		fJournal= JavaPlugin.getDefault().getStateLocation().append(FILE_NAME + ".journal").toFile();
+		deleteFiles();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		deleteFiles();
+	}
+
+	private void deleteFiles() {
+		fFile.delete();
+		fJournal.delete();
+	}
+
+	private static TestHistory load() {
+		TestHistory history= new TestHistory();
+		history.load();
+		return history;
+	}
+
+	private static void access(TestHistory history, String[] names) {
+		for (int i= 0; i < names.length; i++)
+			history.accessed(names[i]);
+	}
+
+	public void testReplay() throws Exception {
+		TestHistory history= new TestHistory();
+		access(history, new String[] { "a", "b", "c" });
+		history.save();
+		history.remove("b");
+		history.accessed("a");
+		history.save();
+
+		assertFalse(fFile.exists());
+		assertTrue(fJournal.exists());
+		assertEquals(Arrays.asList("c", "a"), load().getEntries());
+	}
+
+	public void testJournalOnlyChanges() throws Exception {
+		TestHistory history= new TestHistory();
+		access(history, new String[] { "a", "b", "c" });
+		history.save();
+		long length= fJournal.length();
+
+		// accessing all entries in their order does not change the history
+		access(history, new String[] { "a", "b", "c" });
+		history.save();
+		assertEquals(length, fJournal.length());
+
+		history.accessed("a");
+		history.save();
+		long recordLength= fJournal.length() - length;
+		assertTrue(recordLength > 0);
+
+		history.accessed("d");
+		history.save();
+		assertEquals(length + 2 * recordLength, fJournal.length());
+
+		assertEquals(Arrays.asList("b", "c", "a", "d"), load().getEntries());
+	}
+
+	public void testCompaction() throws Exception {
+		TestHistory history= new TestHistory();
+		int saves= 0;
+		for (; saves < 1000 && (!fFile.exists() || fJournal.exists()); saves++) {
+			history.accessed("e" + saves);
+			history.save();
+		}
+		assertTrue(fFile.exists());
+		assertFalse(fJournal.exists());
+		assertTrue(saves > 1);
+		assertTrue(saves < 1000);
+
+		history.accessed("e0");
+		history.save();
+		assertTrue(fJournal.exists());
+		assertEquals(history.getEntries(), load().getEntries());
+	}
+
+	public void testTruncatedJournal() throws Exception {
+		TestHistory history= new TestHistory();
+		access(history, new String[] { "a", "b" });
+		history.save();
+		history.accessed("c");
+		history.save();
+		try (RandomAccessFile file= new RandomAccessFile(fJournal, "rw")) {
+			file.setLength(file.length() - 1);
+		}
+
+		TestHistory loaded= load();
+		assertEquals(Arrays.asList("a", "b"), loaded.getEntries());
+		loaded.save();
+		assertTrue(fFile.exists());
+		assertFalse(fJournal.exists());
+		assertEquals(Arrays.asList("a", "b"), load().getEntries());
+	}
+
+	public void testStaleJournal() throws Exception {
+		TestHistory history= new TestHistory();
+		access(history, new String[] { "a", "b" });
+		history.save();
+		byte[] journal= Files.readAllBytes(fJournal.toPath());
+
+		// compact, but leave the old journal behind as if the workbench had crashed
+		history.remove("a");
+		for (int i= 0; i < 1000 && fJournal.exists(); i++) {
+			history.accessed("e" + i);
+			history.save();
+		}
+		assertFalse(fJournal.exists());
+		Files.write(fJournal.toPath(), journal);
+
+		TestHistory loaded= load();
+		assertEquals(history.getEntries(), loaded.getEntries());
+		assertFalse(loaded.contains("a"));
+
+		loaded.accessed("c");
+		loaded.save();
+		List<String> expected= loaded.getEntries();
+		assertEquals(expected, load().getEntries());
+	}
+}
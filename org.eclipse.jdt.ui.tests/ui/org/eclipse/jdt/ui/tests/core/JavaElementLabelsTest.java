@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,7 @@ import org.eclipse.jdt.testplugin.JavaProjectHelper;
 import org.eclipse.core.runtime.CoreException;
 
 import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.viewers.StyledString;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
@@ -662,4 +663,43 @@ public class JavaElementLabelsTest extends CoreTests {
 		lab= JavaElementLabels.getTextLabel(foo2, JavaElementLabels.ALL_DEFAULT | JavaElementLabels.ALL_FULLY_QUALIFIED | JavaElementLabels.M_PARAMETER_ANNOTATIONS);
 		assertEqualString(lab, "org.test.Annotations.foo2(@Ann(value=\"\", cl=Annotations.class, ints={1, 2, -19}, ch='\\u0000', sh=32767, r=@Retention(value=RetentionPolicy.SOURCE)) String)");
 	}
+
+	public void testMethodLabelAfterChange() throws Exception {
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject1, "src");
+		IPackageFragment pack1= sourceFolder.createPackageFragment("org.test", false, null);
+		StringBuffer buf= new StringBuffer();
+		buf.append("package org.test;\n");
+		buf.append("public class Changed {\n");
+		buf.append("    public int foo(int i) {\n");
+		buf.append("        return i;\n");
+		buf.append("    }\n");
+		buf.append("}\n");
+		String content= buf.toString();
+		ICompilationUnit cu= pack1.createCompilationUnit("Changed.java", content, false, null);
+
+		long flags= JavaElementLabels.ALL_DEFAULT | JavaElementLabels.M_APP_RETURNTYPE;
+		IJavaElement foo= cu.getElementAt(content.indexOf("foo"));
+		assertExpectedLabel(foo, "foo(int) : int", flags);
+		assertEqualString(JavaElementLabels.getStyledTextLabel(foo, flags).getString(), "foo(int) : int");
+
+		cu.becomeWorkingCopy(null);
+		try {
+			cu.getBuffer().replace(content.indexOf("int foo"), "int".length(), "long");
+			cu.reconcile(ICompilationUnit.NO_AST, false, null, null);
+			assertExpectedLabel(foo, "foo(int) : long", flags);
+
+			cu.getBuffer().replace(content.indexOf("int i") + 1, "int".length(), "long");
+			cu.reconcile(ICompilationUnit.NO_AST, false, null, null);
+			foo= cu.getElementAt(content.indexOf("foo"));
+			assertExpectedLabel(foo, "foo(long) : long", flags);
+
+			// the cached styled label must not be changed by the caller
+			StyledString styled= JavaElementLabels.getStyledTextLabel(foo, flags);
+			styled.append("x");
+			assertEqualString(JavaElementLabels.getStyledTextLabel(foo, flags).getString(), "foo(long) : long");
+		} finally {
+			cu.discardWorkingCopy();
+		}
+		assertExpectedLabel(cu.getElementAt(content.indexOf("foo")), "foo(int) : int", flags);
+	}
 }
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.ITypeHierarchy;
+
+import org.eclipse.jdt.internal.corext.util.SuperTypeHierarchyCache;
+
+/**
+ * Tests {@link SuperTypeHierarchyCache}.
+ */
+public class SuperTypeHierarchyCacheTest extends TestCase {
+
+	private static final Class<SuperTypeHierarchyCacheTest> THIS= SuperTypeHierarchyCacheTest.class;
+
+	private IJavaProject fJProject;
+	private IPackageFragment fPack;
+
+	public SuperTypeHierarchyCacheTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	public static Test setUpTest(Test test) {
+		return new ProjectTestSetup(test);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJProject= ProjectTestSetup.getProject();
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject, "src");
+		fPack= root.createPackageFragment("pack", true, null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.clear(fJProject, ProjectTestSetup.getDefaultClasspath());
+	}
+
+	private IType createType(String name, String superclass) throws Exception {
+		ICompilationUnit cu= fPack.createCompilationUnit(name + ".java", "package pack;\npublic class " + name + " extends " + superclass + " {\n}\n", true, null);
+		return cu.getType(name);
+	}
+
+	public void testHit() throws Exception {
+		IType type= createType("A", "Object");
+		assertFalse(SuperTypeHierarchyCache.hasInCache(type));
+
+		long misses= SuperTypeHierarchyCache.getCacheMisses();
+		long hits= SuperTypeHierarchyCache.getCacheHits();
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(type);
+		assertTrue(hierarchy.contains(type));
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+		assertTrue(SuperTypeHierarchyCache.hasInCache(type));
+
+		assertSame(hierarchy, SuperTypeHierarchyCache.getTypeHierarchy(type));
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+		assertEquals(hits + 1, SuperTypeHierarchyCache.getCacheHits());
+		assertSame(SuperTypeHierarchyCache.getMethodOverrideTester(type), SuperTypeHierarchyCache.getMethodOverrideTester(type));
+	}
+
+	public void testMiss() throws Exception {
+		IType a= createType("A", "Object");
+		IType b= createType("B", "Object");
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(a);
+
+		// a hierarchy of another type is not returned
+		long misses= SuperTypeHierarchyCache.getCacheMisses();
+		assertFalse(SuperTypeHierarchyCache.hasInCache(b));
+		ITypeHierarchy other= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		assertNotSame(hierarchy, other);
+		assertTrue(other.contains(b));
+		assertEquals(misses + 1, SuperTypeHierarchyCache.getCacheMisses());
+	}
+
+	public void testEviction() throws Exception {
+		int maxEntries= Integer.getInteger("org.eclipse.jdt.ui.superTypeHierarchyCache.maxEntries", 32).intValue();
+		IType[] types= new IType[maxEntries + 8];
+		for (int i= 0; i < types.length; i++) {
+			types[i]= createType("C" + i, "Object");
+			SuperTypeHierarchyCache.getTypeHierarchy(types[i]);
+		}
+		// the hierarchy that has just been added is never evicted
+		assertTrue(SuperTypeHierarchyCache.hasInCache(types[types.length - 1]));
+
+		int cached= 0;
+		for (int i= 0; i < types.length; i++) {
+			if (SuperTypeHierarchyCache.hasInCache(types[i]))
+				cached++;
+		}
+		assertTrue("cached: " + cached, cached <= maxEntries);
+
+		long misses= SuperTypeHierarchyCache.getCacheMisses();
+		for (int i= 0; i < types.length; i++)
+			assertTrue(SuperTypeHierarchyCache.getTypeHierarchy(types[i]).contains(types[i]));
+		assertTrue(SuperTypeHierarchyCache.getCacheMisses() > misses);
+	}
+
+	public void testInvalidation() throws Exception {
+		IType a= createType("A", "Object");
+		IType b= createType("B", "A");
+		ITypeHierarchy hierarchy= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		assertEquals(a, hierarchy.getSuperclass(b));
+		assertTrue(SuperTypeHierarchyCache.hasInCache(b));
+
+		// changing the superclass of A changes the hierarchy of B
+		IFile file= (IFile) a.getCompilationUnit().getResource();
+		file.setContents(new ByteArrayInputStream("package pack;\npublic class A extends java.util.ArrayList {\n}\n".getBytes()), true, false, null);
+		assertFalse(SuperTypeHierarchyCache.hasInCache(b));
+
+		ITypeHierarchy newHierarchy= SuperTypeHierarchyCache.getTypeHierarchy(b);
+		assertNotSame(hierarchy, newHierarchy);
+		assertEquals("ArrayList", newHierarchy.getSuperclass(a).getElementName());
+	}
+}
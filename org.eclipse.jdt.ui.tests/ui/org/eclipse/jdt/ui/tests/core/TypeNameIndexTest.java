@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+
+import org.eclipse.jdt.internal.corext.util.TypeNameIndex;
+
+/**
+ * Tests {@link TypeNameIndex}.
+ */
+public class TypeNameIndexTest extends TestCase {
+
+	private static final Class<TypeNameIndexTest> THIS= TypeNameIndexTest.class;
+
+	private IJavaProject fJProject;
+	private IPackageFragment fPack;
+	private TypeNameIndex fIndex;
+
+	public TypeNameIndexTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return new TestSuite(THIS);
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		fJProject= JavaProjectHelper.createJavaProject("TestProject", "bin");
+		IPackageFragmentRoot root= JavaProjectHelper.addSourceContainer(fJProject, "src");
+		fPack= root.createPackageFragment("pack", true, null);
+		fPack.createCompilationUnit("Xyzzy.java", "package pack;\npublic class Xyzzy {\n class XyzzyInner {}\n}\nclass xyzzyLower {}\n", true, null);
+		fPack.createCompilationUnit("Other.java", "package pack;\npublic class Other {}\n", true, null);
+
+		// start with an index that has not been built yet
+		TypeNameIndex.shutdown();
+		fIndex= TypeNameIndex.getInstance();
+		assertNotNull("index disabled", fIndex);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		JavaProjectHelper.delete(fJProject);
+	}
+
+	private List<String> getCandidates(String namePattern, int matchKind) throws Exception {
+		TypeNameMatch[] candidates= fIndex.getCandidates(namePattern, matchKind, new NullProgressMonitor());
+		List<String> result= new ArrayList<>();
+		for (int i= 0; i < candidates.length; i++) {
+			if (candidates[i].getPackageName().equals("pack"))
+				result.add(candidates[i].getTypeQualifiedName());
+		}
+		return result;
+	}
+
+	public void testPrefix() throws Exception {
+		assertEquals(Arrays.asList("Xyzzy", "Xyzzy.XyzzyInner", "xyzzyLower"), getCandidates("xyzzy", SearchPattern.R_PREFIX_MATCH));
+		assertEquals(Arrays.asList("Xyzzy.XyzzyInner"), getCandidates("XyzzyI", SearchPattern.R_PREFIX_MATCH));
+		assertEquals(Arrays.asList("Other"), getCandidates("Oth*r", SearchPattern.R_PATTERN_MATCH));
+	}
+
+	public void testCompilationUnitChanges() throws Exception {
+		assertEquals(Arrays.asList("Other"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+
+		ICompilationUnit cu= fPack.createCompilationUnit("OtherNew.java", "package pack;\npublic class OtherNew {}\n", true, null);
+		assertEquals(Arrays.asList("Other", "OtherNew"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+
+		cu.delete(true, null);
+		assertEquals(Arrays.asList("Other"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+	}
+
+	public void testReconciledWorkingCopy() throws Exception {
+		ICompilationUnit cu= fPack.getCompilationUnit("Other.java");
+		assertEquals(Arrays.asList("Other"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+
+		cu.becomeWorkingCopy(null);
+		try {
+			cu.getBuffer().setContents("package pack;\npublic class Other {}\nclass OtherUnsaved {}\n");
+			cu.reconcile(ICompilationUnit.NO_AST, false, null, null);
+			assertEquals(Arrays.asList("Other", "OtherUnsaved"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+		} finally {
+			cu.discardWorkingCopy();
+		}
+		assertEquals(Arrays.asList("Other"), getCandidates("Other", SearchPattern.R_PREFIX_MATCH));
+	}
+
+	public void testCanceledQuery() throws Exception {
+		NullProgressMonitor monitor= new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			fIndex.getCandidates("Xyzzy", SearchPattern.R_PREFIX_MATCH, monitor);
+			fail("query not canceled");
+		} catch (OperationCanceledException e) {
+			// expected
+		}
+		// the build goes on for the next query, the candidates of an exact match include the longer names
+		assertEquals(Arrays.asList("Xyzzy", "Xyzzy.XyzzyInner", "xyzzyLower"), getCandidates("Xyzzy", SearchPattern.R_EXACT_MATCH));
+	}
+}
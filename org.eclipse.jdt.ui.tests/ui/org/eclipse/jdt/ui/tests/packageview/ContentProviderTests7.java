@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.packageview;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.eclipse.jdt.testplugin.JavaProjectHelper;
+
+import org.eclipse.ui.IViewPart;
+import org.eclipse.ui.IWorkbenchPage;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.IPackageFragmentRoot;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+import org.eclipse.jdt.internal.ui.packageview.PackageExplorerContentProvider;
+
+
+/**
+ * Tests the coalescing of the view updates of the PackageExplorerContentProvider.
+ *
+ * @since 3.12
+ */
+public class ContentProviderTests7 extends TestCase {
+
+	private static final class TestContentProvider extends PackageExplorerContentProvider {
+
+		private final List<Runnable> fRunnables= new ArrayList<>();
+
+		TestContentProvider() {
+			super(false);
+		}
+
+		void add(Object parent, Object element) {
+			postAdd(parent, element, fRunnables);
+		}
+
+		void remove(Object element) {
+			postRemove(element, fRunnables);
+		}
+
+		void refresh(Object element, boolean updateLabels) {
+			postRefresh(new ArrayList<>(Arrays.asList(element)), updateLabels, fRunnables);
+		}
+
+		void run() {
+			Collection<Runnable> runnables= new ArrayList<>(fRunnables);
+			fRunnables.clear();
+			executeRunnables(runnables);
+		}
+	}
+
+	private MockPluginView fMyPart;
+	private TestContentProvider fProvider;
+
+	private IJavaProject fJProject;
+	private IPackageFragment fPack;
+	private ICompilationUnit fCu;
+
+	public ContentProviderTests7(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		TestSuite suite= new TestSuite(ContentProviderTests7.class.getName());
+		//$JUnit-BEGIN$
+		suite.addTestSuite(ContentProviderTests7.class);
+		//$JUnit-END$
+		return suite;
+	}
+
+	public void testRepeatedRemove() throws Exception {
+		fProvider.remove(fCu);
+		fProvider.remove(fCu);
+		fProvider.run();
+
+		assertEquals(Arrays.asList(new Object[] { fCu }), fMyPart.getRemovedObjects());
+		assertEquals(1, fProvider.getSavedUpdateCount());
+	}
+
+	public void testRemoveAddRemove() throws Exception {
+		fProvider.remove(fCu);
+		fProvider.add(fPack, fCu);
+		fProvider.remove(fCu);
+		fProvider.run();
+
+		assertEquals(Arrays.asList(new Object[] { fCu, fCu }), fMyPart.getRemovedObjects());
+		assertTrue("No add happened", fMyPart.hasAddHappened()); //$NON-NLS-1$
+		assertEquals(fCu, fMyPart.getAddedObject());
+		assertEquals(0, fProvider.getSavedUpdateCount());
+	}
+
+	public void testAddBelowRefreshedParent() throws Exception {
+		fProvider.add(fPack, fCu);
+		fProvider.refresh(fPack, true);
+		fProvider.run();
+
+		assertFalse("Add happened", fMyPart.hasAddHappened()); //$NON-NLS-1$
+		assertEquals(Arrays.asList(new Object[] { fPack }), fMyPart.getRefreshedObject());
+		assertEquals(1, fProvider.getSavedUpdateCount());
+	}
+
+	public void testRefreshBelowRefreshedParent() throws Exception {
+		fProvider.refresh(fCu, true);
+		fProvider.refresh(fPack, true);
+		fProvider.refresh(fPack, false);
+		fProvider.run();
+
+		assertEquals(Arrays.asList(new Object[] { fPack }), fMyPart.getRefreshedObject());
+		assertEquals(2, fProvider.getSavedRefreshCount());
+	}
+
+	public void testKeepOrder() throws Exception {
+		fProvider.refresh(fCu, false);
+		fProvider.remove(fCu);
+		fProvider.refresh(fPack, false);
+		fProvider.run();
+
+		assertEquals(Arrays.asList(new Object[] { fCu, fPack }), fMyPart.getRefreshedObject());
+		assertEquals(Arrays.asList(new Object[] { fCu }), fMyPart.getRemovedObjects());
+		assertEquals(0, fProvider.getSavedRefreshCount());
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fJProject= JavaProjectHelper.createJavaProject("TestProject", "bin");//$NON-NLS-1$//$NON-NLS-2$
+		IPackageFragmentRoot sourceFolder= JavaProjectHelper.addSourceContainer(fJProject, "src"); //$NON-NLS-1$
+		fPack= sourceFolder.createPackageFragment("pack1", false, null); //$NON-NLS-1$
+		fCu= fPack.createCompilationUnit("A.java", "package pack1;\npublic class A {\n}\n", false, null); //$NON-NLS-1$ //$NON-NLS-2$
+
+		IWorkbenchPage page= JavaPlugin.getActivePage();
+		assertNotNull(page);
+		IViewPart myPart= page.showView("org.eclipse.jdt.ui.tests.packageview.MockPluginView"); //$NON-NLS-1$
+		assertTrue("Unable to get view", myPart instanceof MockPluginView); //$NON-NLS-1$
+		fMyPart= (MockPluginView) myPart;
+
+		fProvider= new TestContentProvider();
+		fProvider.inputChanged(fMyPart.getTreeViewer(), null, null);
+		fMyPart.clear();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		fProvider.dispose();
+		JavaProjectHelper.delete(fJProject);
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.ui.tests.quickfix;
+
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+
+import org.eclipse.jdt.internal.corext.fix.CleanUpConstants;
+import org.eclipse.jdt.internal.corext.fix.CleanUpRefactoring;
+
+import org.eclipse.jdt.ui.cleanup.ICleanUp;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests that a clean up whose compilation units are parsed in more than one batch produces the
+ * same changes as a clean up that parses all of them in one batch.
+ */
+public class CleanUpStreamingTest extends CleanUpTestCase {
+
+	private static final Class<CleanUpStreamingTest> THIS= CleanUpStreamingTest.class;
+
+	private static final int UNIT_COUNT= 30;
+
+	private static final int MAX_LIVE_ASTS= 4;
+
+	public CleanUpStreamingTest(String name) {
+		super(name);
+	}
+
+	public static Test suite() {
+		return setUpTest(new TestSuite(THIS));
+	}
+
+	private ICompilationUnit[] createUnits(String packageName) throws Exception {
+		IPackageFragment pack= fSourceFolder.createPackageFragment(packageName, false, null);
+		ICompilationUnit[] result= new ICompilationUnit[UNIT_COUNT];
+		for (int i= 0; i < UNIT_COUNT; i++) {
+			StringBuffer buf= new StringBuffer();
+			buf.append("package ").append(packageName).append(";\n");
+			buf.append("import java.util.List;\n");
+			buf.append("public class E").append(i).append(" {\n");
+			buf.append("    public void foo() {\n");
+			buf.append("        int unused= ").append(i).append(";\n");
+			buf.append("        System.out.println(").append(i).append(");\n");
+			buf.append("    }\n");
+			buf.append("}\n");
+			result[i]= pack.createCompilationUnit("E" + i + ".java", buf.toString(), false, null);
+		}
+		return result;
+	}
+
+	private void cleanUp(ICompilationUnit[] cus, int maxLiveASTs) throws Exception {
+		CleanUpRefactoring ref= new CleanUpRefactoring();
+		ref.setUseOptionsFromProfile(true);
+		ref.setMaxLiveASTs(maxLiveASTs);
+		ICleanUp[] cleanUps= JavaPlugin.getDefault().getCleanUpRegistry().createCleanUps();
+		performRefactoring(ref, cus, cleanUps);
+	}
+
+	public void testMoreUnitsThanOneBatch() throws Exception {
+		enable(CleanUpConstants.REMOVE_UNUSED_CODE_IMPORTS);
+		enable(CleanUpConstants.REMOVE_UNUSED_CODE_LOCAL_VARIABLES);
+
+		ICompilationUnit[] oneBatch= createUnits("test1");
+		cleanUp(oneBatch, UNIT_COUNT);
+
+		ICompilationUnit[] batches= createUnits("test2");
+		cleanUp(batches, MAX_LIVE_ASTS);
+
+		for (int i= 0; i < UNIT_COUNT; i++) {
+			String expected= oneBatch[i].getBuffer().getContents().replace("package test1;", "package test2;");
+			String actual= batches[i].getBuffer().getContents();
+			assertTrue(actual, actual.indexOf("List") == -1 && actual.indexOf("unused") == -1);
+			assertEquals(expected, actual);
+		}
+	}
+}
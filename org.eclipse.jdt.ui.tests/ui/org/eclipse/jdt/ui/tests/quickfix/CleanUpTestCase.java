@@ -83,6 +83,7 @@ public class CleanUpTestCase extends QuickFixTest {
 		suite.addTest(CleanUpStressTest.suite());
 		suite.addTest(CleanUpTest.suite());
 		suite.addTest(CleanUpTest18.suite());
+		suite.addTest(CleanUpStreamingTest.suite());
 		suite.addTest(CleanUpAnnotationTest.suite());
 		suite.addTest(SaveParticipantTest.suite());
 		suite.addTest(CleanUpActionTest.suite());
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,7 +20,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.StringTokenizer;
 
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubProgressMonitor;
 
 import org.eclipse.jface.preference.IPreferenceStore;
 
@@ -148,6 +151,55 @@ public class CallHierarchy {
 		roots.add(root);
 	}
 
+	/**
+	 * Traverses the call hierarchies below the given roots breadth first. The children of all
+	 * levels are searched in parallel before the first level is visited, see
+	 * {@link CallHierarchyExpander}. No workbench is needed, so this can be used to export call
+	 * hierarchies headless.
+	 * <p>
+	 * For each wrapper, the visitor's {@link CallHierarchyVisitor#preVisit(MethodWrapper)},
+	 * {@link CallHierarchyVisitor#visit(MethodWrapper)} and
+	 * {@link CallHierarchyVisitor#postVisit(MethodWrapper)} are called in a row. The children
+	 * of a wrapper are visited on the next level if <code>visit</code> returns
+	 * <code>true</code>. Recursive calls are visited, but not expanded.
+	 * </p>
+	 *
+	 * @param roots the roots, e.g. from {@link #getCallerRoots(IMember[])}
+	 * @param maxDepth the number of levels to visit below the roots
+	 * @param visitor the visitor
+	 * @param progressMonitor the progress monitor, or <code>null</code>
+	 * @throws OperationCanceledException if the monitor has been canceled
+	 * @since 3.12
+	 */
+	public void exportBreadthFirst(MethodWrapper[] roots, int maxDepth, CallHierarchyVisitor visitor, IProgressMonitor progressMonitor) {
+		IProgressMonitor monitor= progressMonitor != null ? progressMonitor : new NullProgressMonitor();
+		monitor.beginTask("", maxDepth + 2); //$NON-NLS-1$
+		try {
+			new CallHierarchyExpander(maxDepth, monitor).expand(roots);
+			monitor.worked(1);
+
+			List<MethodWrapper> level= Arrays.asList(roots);
+			for (int depth= 0; !level.isEmpty(); depth++) {
+				List<MethodWrapper> next= new ArrayList<>();
+				for (Iterator<MethodWrapper> iter= level.iterator(); iter.hasNext();) {
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
+					MethodWrapper wrapper= iter.next();
+					visitor.preVisit(wrapper);
+					if (visitor.visit(wrapper) && depth < maxDepth && wrapper.canHaveChildren() && !wrapper.isRecursive()) {
+						// the children are cached by now
+						next.addAll(Arrays.asList(wrapper.getCalls(new SubProgressMonitor(monitor, 0))));
+					}
+					visitor.postVisit(wrapper);
+				}
+				level= next;
+				monitor.worked(1);
+			}
+		} finally {
+			monitor.done();
+		}
+	}
+
     public static CallLocation getCallLocation(Object element) {
         CallLocation callLocation = null;
 
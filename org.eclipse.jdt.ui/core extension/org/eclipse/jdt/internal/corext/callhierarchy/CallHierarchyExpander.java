@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.callhierarchy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Fills the result caches of call hierarchy trees several levels ahead of the viewer.
+ * <p>
+ * The children of the nodes are searched in parallel on a work-stealing pool. A member that
+ * occurs in several branches of the same tree is only searched and expanded once, the other
+ * branches take its children from the result cache that all wrappers of a tree share. The wrappers passed in
+ * are not modified, so they can be shown in a viewer while the expander runs.
+ * </p>
+ * <p>
+ * The parallel search can be turned off with the system property
+ * <code>org.eclipse.jdt.ui.callHierarchy.parallel=false</code>.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class CallHierarchyExpander {
+
+	private static final boolean PARALLEL= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.callHierarchy.parallel", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static ForkJoinPool fgPool;
+
+	/**
+	 * Delegates cancellation to the monitor of the caller. Progress of the workers is not
+	 * reported, since the caller's monitor must only be used from one thread.
+	 */
+	private static final class CancelMonitor extends NullProgressMonitor {
+		private final IProgressMonitor fMonitor;
+
+		CancelMonitor(IProgressMonitor monitor) {
+			fMonitor= monitor;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return fMonitor.isCanceled();
+		}
+	}
+
+	private final class ExpandTask extends RecursiveAction {
+		private static final long serialVersionUID= 1L;
+
+		private final MethodWrapper fWrapper;
+		private final int fLevels;
+		private final ConcurrentHashMap<String, Integer> fExpanded;
+
+		ExpandTask(MethodWrapper wrapper, int levels, ConcurrentHashMap<String, Integer> expanded) {
+			fWrapper= wrapper;
+			fLevels= levels;
+			fExpanded= expanded;
+		}
+
+		@Override
+		protected void compute() {
+			List<MethodWrapper> children= expand(fWrapper, fLevels, fExpanded);
+			if (fLevels <= 1 || children.isEmpty())
+				return;
+			List<ExpandTask> tasks= new ArrayList<>(children.size());
+			for (Iterator<MethodWrapper> iter= children.iterator(); iter.hasNext();)
+				tasks.add(new ExpandTask(iter.next(), fLevels - 1, fExpanded));
+			invokeAll(tasks);
+		}
+	}
+
+	private final int fLevels;
+	private final IProgressMonitor fMonitor;
+
+	/**
+	 * Creates an expander.
+	 *
+	 * @param levels the number of levels to search below the wrappers passed to
+	 *            {@link #expand(MethodWrapper[])}
+	 * @param monitor the monitor to check for cancellation, or <code>null</code>
+	 */
+	public CallHierarchyExpander(int levels, IProgressMonitor monitor) {
+		fLevels= levels;
+		fMonitor= new CancelMonitor(monitor != null ? monitor : new NullProgressMonitor());
+	}
+
+	/**
+	 * Searches the children of the given wrappers and of their descendants down to the
+	 * configured number of levels, and stores them in the result caches of the trees. Returns
+	 * when all searches are done or the monitor has been canceled.
+	 *
+	 * @param wrappers the wrappers to expand
+	 */
+	public void expand(MethodWrapper[] wrappers) {
+		if (fLevels <= 0 || wrappers.length == 0)
+			return;
+		// wrappers of different roots have different caches
+		Map<Map<String, Map<String, MethodCall>>, ConcurrentHashMap<String, Integer>> expandedByCache= new IdentityHashMap<>();
+		final List<ExpandTask> tasks= new ArrayList<>(wrappers.length);
+		for (int i= 0; i < wrappers.length; i++) {
+			Map<String, Map<String, MethodCall>> cache= wrappers[i].getMethodCache();
+			ConcurrentHashMap<String, Integer> expanded= expandedByCache.get(cache);
+			if (expanded == null) {
+				expanded= new ConcurrentHashMap<>();
+				expandedByCache.put(cache, expanded);
+			}
+			tasks.add(new ExpandTask(wrappers[i], fLevels, expanded));
+		}
+		if (PARALLEL) {
+			// make sure lazily initialized state is not created by several workers at once
+			CallHierarchy.getDefault().getSearchScope();
+			getPool().invoke(new RecursiveAction() {
+				private static final long serialVersionUID= 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} else {
+			expandSequentially(tasks);
+		}
+	}
+
+	private void expandSequentially(List<ExpandTask> tasks) {
+		LinkedList<ExpandTask> queue= new LinkedList<>(tasks);
+		while (!queue.isEmpty()) {
+			ExpandTask task= queue.removeFirst();
+			List<MethodWrapper> children= expand(task.fWrapper, task.fLevels, task.fExpanded);
+			if (task.fLevels <= 1)
+				continue;
+			for (Iterator<MethodWrapper> iter= children.iterator(); iter.hasNext();)
+				queue.add(new ExpandTask(iter.next(), task.fLevels - 1, task.fExpanded));
+		}
+	}
+
+	/**
+	 * Searches the children of one wrapper unless they are cached or searched by another task.
+	 *
+	 * @param wrapper the wrapper
+	 * @param levels the number of levels to expand below the wrapper
+	 * @param expanded the number of levels expanded below each member of the wrapper's tree,
+	 *            by key of the member
+	 * @return new wrappers for the children that need to be expanded further, empty if the
+	 *         member has already been expanded as deep in another branch
+	 */
+	private List<MethodWrapper> expand(MethodWrapper wrapper, int levels, ConcurrentHashMap<String, Integer> expanded) {
+		if (fMonitor.isCanceled() || !wrapper.canHaveChildren() || wrapper.isRecursive())
+			return Collections.emptyList();
+		if (!claim(expanded, wrapper.getMethodCall().getKey(), levels))
+			return Collections.emptyList();
+		Map<String, MethodCall> calls= wrapper.getCachedCalls();
+		if (calls == null) {
+			try {
+				calls= wrapper.findChildren(fMonitor);
+				if (calls == null || fMonitor.isCanceled())
+					return Collections.emptyList();
+				wrapper.cacheCalls(calls);
+			} catch (OperationCanceledException e) {
+				return Collections.emptyList();
+			} catch (RuntimeException e) {
+				JavaPlugin.log(e);
+				return Collections.emptyList();
+			}
+		}
+		List<MethodWrapper> result= new ArrayList<>(calls.size());
+		for (Iterator<MethodCall> iter= calls.values().iterator(); iter.hasNext();)
+			result.add(wrapper.createMethodWrapper(iter.next()));
+		return result;
+	}
+
+	private static boolean claim(ConcurrentHashMap<String, Integer> expanded, String key, int levels) {
+		while (true) {
+			Integer previous= expanded.putIfAbsent(key, Integer.valueOf(levels));
+			if (previous == null)
+				return true;
+			if (previous.intValue() >= levels)
+				return false;
+			if (expanded.replace(key, previous, Integer.valueOf(levels)))
+				return true;
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (fgPool == null)
+			fgPool= new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+		return fgPool;
+	}
+}
@@ -90,7 +90,7 @@ public class CallerMethodWrapper extends MethodWrapper {
 	}
 
 	/**
-	 * @return The result of the search for children
+	 * @return The result of the search for children, or <code>null</code> if the search failed
 	 * @see org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper#findChildren(org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	@Override
@@ -155,7 +155,7 @@ public class CallerMethodWrapper extends MethodWrapper {
 
 		} catch (CoreException e) {
 			JavaPlugin.log(e);
-			return new HashMap<>(0);
+			return null;
 		}
 	}
 
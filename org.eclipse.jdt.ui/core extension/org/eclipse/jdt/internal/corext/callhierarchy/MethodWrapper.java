@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -16,6 +16,7 @@ package org.eclipse.jdt.internal.corext.callhierarchy;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -41,7 +42,8 @@ public abstract class MethodWrapper extends PlatformObject {
     /*
      * A cache of previously found methods. This cache should be searched
      * before adding a "new" method object reference to the list of elements.
-     * This way previously found methods won't be searched again.
+     * This way previously found methods won't be searched again. The cache is shared by
+     * all wrappers of a tree and may be filled by a {@link CallHierarchyExpander} in parallel.
      */
     private Map<String, Map<String, MethodCall>> fMethodCache;
     private final MethodCall fMethodCall;
@@ -57,7 +59,7 @@ public abstract class MethodWrapper extends PlatformObject {
         Assert.isNotNull(methodCall);
 
         if (parent == null) {
-            setMethodCache(new HashMap<String, Map<String, MethodCall>>());
+            setMethodCache(new ConcurrentHashMap<String, Map<String, MethodCall>>());
             fLevel = 1;
         } else {
             setMethodCache(parent.getMethodCache());
@@ -83,6 +85,10 @@ public abstract class MethodWrapper extends PlatformObject {
     public MethodWrapper[] getCalls(IProgressMonitor progressMonitor) {
         if (fElements == null) {
             doFindChildren(progressMonitor);
+            if (fElements == null) {
+                // the search failed, search again on the next request
+                return new MethodWrapper[0];
+            }
         }
 
         MethodWrapper[] result = new MethodWrapper[fElements.size()];
@@ -203,11 +209,6 @@ public abstract class MethodWrapper extends PlatformObject {
 
     protected abstract String getTaskName();
 
-    private void addCallToCache(MethodCall methodCall) {
-        Map<String, MethodCall> cachedCalls = lookupMethod(this.getMethodCall());
-        cachedCalls.put(methodCall.getKey(), methodCall);
-    }
-
 	/**
 	 * Creates a method wrapper for the child of the receiver.
 	 * 
@@ -217,14 +218,12 @@ public abstract class MethodWrapper extends PlatformObject {
     protected abstract MethodWrapper createMethodWrapper(MethodCall methodCall);
 
     private void doFindChildren(IProgressMonitor progressMonitor) {
-        Map<String, MethodCall> existingResults = lookupMethod(getMethodCall());
+        Map<String, MethodCall> existingResults = getCachedCalls();
 
-        if (existingResults != null && !existingResults.isEmpty()) {
+        if (existingResults != null) {
             fElements = new HashMap<>();
             fElements.putAll(existingResults);
         } else {
-            initCalls();
-
             if (progressMonitor != null) {
                 progressMonitor.beginTask(getTaskName(), 100);
             }
@@ -275,49 +274,51 @@ public abstract class MethodWrapper extends PlatformObject {
      * callees, depending on the concrete subclass).
      * @param progressMonitor a progress monitor
      *
-     * @return a map from handle identifier ({@link String}) to {@link MethodCall}
+     * @return a map from handle identifier ({@link String}) to {@link MethodCall}, or
+     *         <code>null</code> if the search failed
      */
     protected abstract Map<String, MethodCall> findChildren(IProgressMonitor progressMonitor);
 
-    private Map<String, Map<String, MethodCall>> getMethodCache() {
+    Map<String, Map<String, MethodCall>> getMethodCache() {
         return fMethodCache;
     }
 
-    private void initCalls() {
-        this.fElements = new HashMap<>();
-
-        initCacheForMethod();
+    /**
+     * Looks up a previously created search result in the "global" cache.
+     *
+     * @return the previously found search results, or <code>null</code> if the children
+     *         of this member have not been searched yet
+     */
+    Map<String, MethodCall> getCachedCalls() {
+        return getMethodCache().get(getMethodCall().getKey());
     }
 
     /**
-     * Looks up a previously created search result in the "global" cache.
-     * @param methodCall the method call
-     * @return the List of previously found search results
+     * Stores the complete search result for this member in the "global" cache. The result of a
+     * failed search is not cached, so that the next request searches again.
+     *
+     * @param calls a map from handle identifier to {@link MethodCall}, or <code>null</code> if
+     *            the search failed
      */
-    private Map<String, MethodCall> lookupMethod(MethodCall methodCall) {
-        return getMethodCache().get(methodCall.getKey());
+    void cacheCalls(Map<String, MethodCall> calls) {
+        if (calls == null)
+            return;
+        getMethodCache().put(getMethodCall().getKey(), new HashMap<>(calls));
     }
 
     private void performSearch(IProgressMonitor progressMonitor) {
-        fElements = findChildren(progressMonitor);
-
-        for (Iterator<String> iter = fElements.keySet().iterator(); iter.hasNext();) {
-            checkCanceled(progressMonitor);
+        Map<String, MethodCall> calls = findChildren(progressMonitor);
+        checkCanceled(progressMonitor);
 
-            MethodCall methodCall = getMethodCallFromMap(fElements, iter.next());
-            addCallToCache(methodCall);
-        }
+        // only complete results are cached, other wrappers must not see a partial result
+        cacheCalls(calls);
+        fElements = calls;
     }
 
     private MethodCall getMethodCallFromMap(Map<String, MethodCall> elements, String key) {
         return elements.get(key);
     }
 
-    private void initCacheForMethod() {
-        Map<String, MethodCall> cachedCalls = new HashMap<>();
-        getMethodCache().put(this.getMethodCall().getKey(), cachedCalls);
-    }
-
     /**
      * Checks with the progress monitor to see whether the creation of the type hierarchy
      * should be canceled. Should be regularly called
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2007, 2013 IBM Corporation and others.
+ * Copyright (c) 2007, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,18 +13,27 @@ package org.eclipse.jdt.internal.corext.dom;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.ASTRequestor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.IBinding;
 
 import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
@@ -33,11 +42,182 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * Creates AST from a set of compilation units. Uses the
  * batch parser. Splits the set of compilation units in subsets
  * such that it is unlikely that a out of memory exception will occur.
+ * <p>
+ * Clients can ask for the batches to be parsed in parallel, see
+ * {@link #ASTBatchParser(int, boolean)}. If more than one batch has to be parsed, the
+ * batches are then parsed on a bounded fork-join pool. The results are still reported to
+ * the requestor on the calling thread, batch after batch in the order of the given
+ * compilation units. Parsing and processing overlap only at the granularity of batches:
+ * the ASTs of a batch are reported after the whole batch has been parsed, while the
+ * following batches are parsed. The number of batches that are parsed ahead is limited
+ * and shrinks to one when the heap is running low. Since the parser of a batch is done
+ * when its ASTs are reported, the parallel mode only helps requestors that don't create
+ * bindings. The parallel mode can be disabled with the system property
+ * <code>org.eclipse.jdt.ui.astBatchParser.parallel=false</code>.
+ * </p>
  *
  * @since 3.4
  */
 public class ASTBatchParser {
 
+	/**
+	 * A batch of compilation units that is parsed by a worker and whose
+	 * results are reported to the client's requestor on the calling thread.
+	 * The client's requestor cannot create bindings, since the parser
+	 * is done when the results are reported.
+	 */
+	private final class ParseBatch extends ASTRequestor implements Callable<ParseBatch> {
+
+		private final ICompilationUnit[] fUnits;
+		private final String[] fBindingKeys;
+		private final IProgressMonitor fCancelMonitor;
+		private final Map<ICompilationUnit, CompilationUnit> fASTs;
+		private final Map<String, IBinding> fBindings;
+
+		public ParseBatch(ICompilationUnit[] units, String[] bindingKeys, IProgressMonitor cancelMonitor) {
+			fUnits= units;
+			fBindingKeys= bindingKeys;
+			fCancelMonitor= cancelMonitor;
+			fASTs= new HashMap<>(units.length * 2);
+			fBindings= new LinkedHashMap<>();
+		}
+
+		@Override
+		public ParseBatch call() throws Exception {
+			createParser(fUnits[0].getJavaProject()).createASTs(fUnits, fBindingKeys, this, fCancelMonitor);
+			return this;
+		}
+
+		@Override
+		public void acceptAST(ICompilationUnit source, CompilationUnit ast) {
+			fASTs.put(source, ast);
+		}
+
+		@Override
+		public void acceptBinding(String bindingKey, IBinding binding) {
+			fBindings.put(bindingKey, binding);
+		}
+
+		/**
+		 * Reports the parsed ASTs in the order of the units in this batch, followed by
+		 * the bindings.
+		 * 
+		 * @param requestor the requestor to report to
+		 */
+		public void deliver(ASTRequestor requestor) {
+			for (int i= 0; i < fUnits.length; i++) {
+				CompilationUnit ast= fASTs.remove(fUnits[i]);
+				if (ast != null)
+					requestor.acceptAST(fUnits[i], ast);
+			}
+			for (Iterator<Map.Entry<String, IBinding>> iterator= fBindings.entrySet().iterator(); iterator.hasNext();) {
+				Map.Entry<String, IBinding> entry= iterator.next();
+				requestor.acceptBinding(entry.getKey(), entry.getValue());
+			}
+			fBindings.clear();
+		}
+
+		public int size() {
+			return fUnits.length;
+		}
+	}
+
+	/**
+	 * Cuts the compilation units of each project into batches of a size that is chosen when the
+	 * batch is requested.
+	 */
+	private static final class BatchCursor {
+
+		private final ICompilationUnit[][] fProjectUnits;
+		private int fProject;
+		private int fOffset;
+
+		public BatchCursor(ICompilationUnit[] compilationUnits) {
+			fProjectUnits= splitByProject(compilationUnits);
+		}
+
+		public boolean hasNext() {
+			return fProject < fProjectUnits.length;
+		}
+
+		public ICompilationUnit[] next(int maxSize) {
+			ICompilationUnit[] units= fProjectUnits[fProject];
+			ICompilationUnit[] result;
+			if (fOffset == 0 && units.length <= maxSize) {
+				result= units;
+				fOffset= units.length;
+			} else {
+				int end= Math.min(fOffset + maxSize, units.length);
+				result= Arrays.copyOfRange(units, fOffset, end);
+				fOffset= end;
+			}
+			if (fOffset == units.length) {
+				fProjectUnits[fProject]= null;
+				fProject++;
+				fOffset= 0;
+			}
+			return result;
+		}
+
+		/**
+		 * @return <code>true</code> if the remaining units don't fit into a single batch of the
+		 *         given size
+		 */
+		public boolean hasMoreThan(int size) {
+			int remaining= 0;
+			for (int i= fProject; i < fProjectUnits.length; i++) {
+				remaining+= fProjectUnits[i].length;
+				if (i == fProject)
+					remaining-= fOffset;
+				if (i > fProject || remaining > size)
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Progress monitor for workers: reports no progress, but forwards cancellation of the
+	 * client's monitor.
+	 */
+	private static final class CancelForwardingMonitor extends NullProgressMonitor {
+
+		private final IProgressMonitor fClientMonitor;
+		private volatile boolean fCanceled;
+
+		public CancelForwardingMonitor(IProgressMonitor clientMonitor) {
+			fClientMonitor= clientMonitor;
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled || fClientMonitor.isCanceled();
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			fCanceled= canceled;
+		}
+	}
+
+	private static final boolean PARALLEL= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.astBatchParser.parallel", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * Maximal number of batches that are parsed at the same time. Each parsed batch keeps the
+	 * bindings of all its ASTs alive until it has been reported.
+	 */
+	private static final int MAX_LIVE_BATCHES= 3;
+
+	private static final int PARALLELISM= Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_LIVE_BATCHES));
+
+	/**
+	 * Minimal fraction of the maximal heap that has to be available to parse more than one batch
+	 * ahead.
+	 */
+	private static final double MIN_FREE_MEMORY_RATIO= 0.3;
+
+	private static ForkJoinPool fgPool;
+
 	private static final int MAX_AT_ONCE;
 	static {
 		long maxMemory= Runtime.getRuntime().maxMemory() / (1 << 20); // in MiB
@@ -49,11 +229,65 @@ public class ASTBatchParser {
 		else                        MAX_AT_ONCE=  25;
 	}
 
+	private final int fMaxLiveASTs;
+
+	private final boolean fParallel;
+
+	/**
+	 * Creates a batch parser that splits the compilation units into batches whose size only
+	 * depends on the maximal heap size.
+	 */
+	public ASTBatchParser() {
+		fMaxLiveASTs= 0;
+		fParallel= false;
+	}
+
+	/**
+	 * Creates a batch parser for streaming clients. The size of each batch adapts to the heap
+	 * headroom measured when the batch is started, and the number of ASTs that have been parsed but
+	 * not yet reported to the requestor never exceeds <code>maxLiveASTs</code>.
+	 * 
+	 * @param maxLiveASTs the maximal number of ASTs that are alive at the same time, must be
+	 *            positive
+	 * @since 3.12
+	 */
+	public ASTBatchParser(int maxLiveASTs) {
+		this(maxLiveASTs, false);
+	}
+
+	/**
+	 * Creates a batch parser for streaming clients, see {@link #ASTBatchParser(int)}, that can
+	 * parse batches in parallel.
+	 * <p>
+	 * In the parallel mode the ASTs and bindings of a batch are reported after the parser of the
+	 * batch has finished, while the next batches are parsed. Processing a batch therefore only
+	 * overlaps with parsing the following batches, not with parsing the same batch. The
+	 * requestor must not call {@link ASTRequestor#createBindings(String[])}, which only works
+	 * while the parser is running, so only requestors that don't create bindings should use
+	 * this mode.
+	 * </p>
+	 * 
+	 * @param maxLiveASTs the maximal number of ASTs that are alive at the same time, must be
+	 *            positive
+	 * @param parallel <code>true</code> to parse batches in parallel, in which case the
+	 *            requestor must not create bindings
+	 * @since 3.12
+	 */
+	public ASTBatchParser(int maxLiveASTs, boolean parallel) {
+		Assert.isLegal(maxLiveASTs > 0);
+		fMaxLiveASTs= maxLiveASTs;
+		fParallel= parallel;
+	}
+
 	/**
 	 * Creates ASTs for each compilation unit in <code>units</code>.
 	 * <p>
-	 * <code>ASTRequestor.acceptAST</code> is called in no particular order to
+	 * <code>ASTRequestor.acceptAST</code> is called on the calling thread to
 	 * pass the compilation unit and the corresponding AST to <code>requestor</code>.
+	 * Units of one project are reported together, projects in the order in which
+	 * they first occur in <code>compilationUnits</code>. Unless this parser has been
+	 * created for parallel parsing, the requestor can create bindings while it is
+	 * called.
 	 * </p>
 	 * <p>
 	 * The <code>bindingKeys</code> parameter specifies bindings keys
@@ -76,25 +310,13 @@ public class ASTBatchParser {
 
 		monitor.beginTask("", compilationUnits.length); //$NON-NLS-1$
 		try {
-
-			ICompilationUnit[][] splited= splitByProject(compilationUnits);
-			for (int i= 0; i < splited.length; i++) {
-				ICompilationUnit[] units= splited[i];
-
-				if (units.length <= MAX_AT_ONCE) {
+			BatchCursor batches= new BatchCursor(compilationUnits);
+			if (fParallel && PARALLEL && batches.hasMoreThan(getBatchSize(0))) {
+				createASTsInParallel(batches, bindingKeys, requestor, monitor);
+			} else {
+				while (batches.hasNext()) {
+					ICompilationUnit[] units= batches.next(getBatchSize(0));
 					createParser(units[0].getJavaProject()).createASTs(units, bindingKeys, requestor, new SubProgressMonitor(monitor, units.length));
-				} else {
-					List<ICompilationUnit> list= Arrays.asList(units);
-					int end= 0;
-					int cursor= 0;
-					while (cursor < units.length) {
-						end= Math.min(end + MAX_AT_ONCE, units.length);
-						List<ICompilationUnit> toParse= list.subList(cursor, end);
-
-						createParser(units[0].getJavaProject()).createASTs(toParse.toArray(new ICompilationUnit[toParse.size()]), bindingKeys, requestor,
-								new SubProgressMonitor(monitor, toParse.size()));
-						cursor= end;
-					}
 				}
 			}
 		} finally {
@@ -102,6 +324,114 @@ public class ASTBatchParser {
 		}
 	}
 
+	private void createASTsInParallel(BatchCursor batches, String[] bindingKeys, ASTRequestor requestor, IProgressMonitor monitor) {
+		ForkJoinPool pool= getPool();
+		CancelForwardingMonitor cancelMonitor= new CancelForwardingMonitor(monitor);
+		LinkedList<Future<ParseBatch>> inFlight= new LinkedList<>();
+		int liveASTs= 0;
+		try {
+			while (batches.hasNext() || !inFlight.isEmpty()) {
+				if (inFlight.isEmpty())
+					liveASTs+= submit(pool, batches.next(getBatchSize(liveASTs)), bindingKeys, cancelMonitor, inFlight);
+				liveASTs= submitAhead(pool, batches, bindingKeys, cancelMonitor, inFlight, liveASTs);
+				ParseBatch batch= waitFor(inFlight.removeFirst());
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				// the next batches are parsed while this one is processed
+				liveASTs= submitAhead(pool, batches, bindingKeys, cancelMonitor, inFlight, liveASTs);
+				batch.deliver(requestor);
+				liveASTs-= batch.size();
+				monitor.worked(batch.size());
+			}
+		} finally {
+			if (!inFlight.isEmpty()) {
+				cancelMonitor.setCanceled(true);
+				for (Iterator<Future<ParseBatch>> iterator= inFlight.iterator(); iterator.hasNext();) {
+					iterator.next().cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Submits batches until {@link #PARALLELISM} batches are in flight or the memory or the live
+	 * AST budget is exhausted.
+	 * 
+	 * @return the new number of ASTs that are parsed or being parsed
+	 */
+	private int submitAhead(ForkJoinPool pool, BatchCursor batches, String[] bindingKeys, IProgressMonitor cancelMonitor, LinkedList<Future<ParseBatch>> inFlight, int liveASTs) {
+		while (batches.hasNext() && inFlight.size() < PARALLELISM && hasMemoryHeadroom() && hasLiveASTBudget(liveASTs))
+			liveASTs+= submit(pool, batches.next(getBatchSize(liveASTs)), bindingKeys, cancelMonitor, inFlight);
+		return liveASTs;
+	}
+
+	private int submit(ForkJoinPool pool, ICompilationUnit[] units, String[] bindingKeys, IProgressMonitor cancelMonitor, LinkedList<Future<ParseBatch>> inFlight) {
+		inFlight.add(pool.submit(new ParseBatch(units, bindingKeys, cancelMonitor)));
+		return units.length;
+	}
+
+	private boolean hasLiveASTBudget(int liveASTs) {
+		return fMaxLiveASTs == 0 || liveASTs < fMaxLiveASTs;
+	}
+
+	/**
+	 * Returns the size of the next batch.
+	 * 
+	 * @param liveASTs the number of ASTs that are already parsed or being parsed
+	 * @return the number of compilation units to parse in the next batch
+	 */
+	private int getBatchSize(int liveASTs) {
+		if (fMaxLiveASTs == 0)
+			return MAX_AT_ONCE;
+
+		Runtime runtime= Runtime.getRuntime();
+		long freeMemory= (runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory())) / (1 << 20); // in MiB
+
+		int size;
+		if      (freeMemory >= 1000) size= 400;
+		else if (freeMemory >=  750) size= 300;
+		else if (freeMemory >=  500) size= 200;
+		else if (freeMemory >=  250) size= 100;
+		else                         size=  25;
+		return Math.max(1, Math.min(size, fMaxLiveASTs - liveASTs));
+	}
+
+	private static ParseBatch waitFor(Future<ParseBatch> future) {
+		boolean interrupted= false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted= true;
+				} catch (ExecutionException e) {
+					Throwable cause= e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	private static boolean hasMemoryHeadroom() {
+		Runtime runtime= Runtime.getRuntime();
+		long maxMemory= runtime.maxMemory();
+		long used= runtime.totalMemory() - runtime.freeMemory();
+		return maxMemory - used >= maxMemory * MIN_FREE_MEMORY_RATIO;
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (fgPool == null)
+			fgPool= new ForkJoinPool(PARALLELISM);
+		return fgPool;
+	}
+
 	/**
 	 * Creates a new parser which can be used to create ASTs
 	 * for compilation units in <code>project</code>
@@ -124,7 +454,8 @@ public class ASTBatchParser {
 		if (hasOnlyOneProject(units))
 			return new ICompilationUnit[][] { units };
 
-		Hashtable<IJavaProject, ArrayList<ICompilationUnit>> projectTable= new Hashtable<>();
+		// keep the projects in the order of their first occurrence, so that results are reported in a defined order
+		Map<IJavaProject, ArrayList<ICompilationUnit>> projectTable= new LinkedHashMap<>();
 
 		for (int i= 0; i < units.length; i++) {
 			ICompilationUnit unit= units[i];
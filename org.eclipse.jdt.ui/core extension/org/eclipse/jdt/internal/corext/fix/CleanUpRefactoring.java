@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -329,6 +329,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		private List<ParseListElement> fParseList;
 		private final Hashtable<ICompilationUnit, List<CleanUpChange>> fSolutions;
 		private final Hashtable<ICompilationUnit, ICompilationUnit> fWorkingCopies; // map from primary to working copy
+		private final List<Change> fResult;
 		private final Map<String, String> fCleanUpOptions;
 		private final int fSize;
 		private int fIndex;
@@ -336,6 +337,7 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		public CleanUpFixpointIterator(CleanUpTarget[] targets, ICleanUp[] cleanUps) {
 			fSolutions= new Hashtable<>(targets.length);
 			fWorkingCopies= new Hashtable<>();
+			fResult= new ArrayList<>();
 
 			fParseList= new ArrayList<>(targets.length);
 			for (int i= 0; i < targets.length; i++) {
@@ -387,7 +389,8 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 				CleanUpRefactoringProgressMonitor cuMonitor= new CleanUpRefactoringProgressMonitor(monitor, parseList.size() + sourceList.size(), fSize, fIndex);
 				CleanUpASTRequestor requestor= new CleanUpASTRequestor(fParseList, fSolutions, cuMonitor);
 				if (parseList.size() > 0) {
-					ASTBatchParser parser= new ASTBatchParser() {
+					// the requestor does not create bindings, so the batches can be parsed in parallel
+					ASTBatchParser parser= new ASTBatchParser(fMaxLiveASTs, true) {
 						@Override
 						protected ASTParser createParser(IJavaProject project) {
 							ASTParser result= createCleanUpASTParser();
@@ -420,10 +423,41 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 				fParseList= requestor.getUndoneElements();
 				fIndex= cuMonitor.getIndex();
+				flushFinishedUnits();
 			} finally {
 			}
 		}
 
+		/**
+		 * Creates the final changes for all compilation units that don't need another pass and
+		 * releases their intermediate solutions and working copies.
+		 */
+		private void flushFinishedUnits() {
+			HashSet<ICompilationUnit> pending= new HashSet<>();
+			for (Iterator<ParseListElement> iter= fParseList.iterator(); iter.hasNext();) {
+				pending.add(iter.next().getTarget().getCompilationUnit());
+			}
+
+			for (Iterator<Entry<ICompilationUnit, List<CleanUpChange>>> iterator= fSolutions.entrySet().iterator(); iterator.hasNext();) {
+				Entry<ICompilationUnit, List<CleanUpChange>> entry= iterator.next();
+				ICompilationUnit unit= entry.getKey();
+				if (pending.contains(unit))
+					continue;
+
+				fResult.add(createChange(unit, entry.getValue()));
+				iterator.remove();
+
+				ICompilationUnit workingCopy= fWorkingCopies.remove(unit);
+				if (workingCopy != null) {
+					try {
+						workingCopy.discardWorkingCopy();
+					} catch (JavaModelException e) {
+						JavaPlugin.log(e);
+					}
+				}
+			}
+		}
+
 		public void dispose() {
 			for (Iterator<ICompilationUnit> iterator= fWorkingCopies.values().iterator(); iterator.hasNext();) {
 				ICompilationUnit cu= iterator.next();
@@ -445,39 +479,30 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		}
 
 		public Change[] getResult() {
+			flushFinishedUnits();
+			return fResult.toArray(new Change[fResult.size()]);
+		}
 
-			Change[] result= new Change[fSolutions.size()];
-			int i=0;
-			for (Iterator<Entry<ICompilationUnit, List<CleanUpChange>>> iterator= fSolutions.entrySet().iterator(); iterator.hasNext();) {
-				Entry<ICompilationUnit, List<CleanUpChange>>  entry= iterator.next();
-
-				List<CleanUpChange> changes= entry.getValue();
-				ICompilationUnit unit= entry.getKey();
-
-				int saveMode;
-				if (fLeaveFilesDirty) {
-					saveMode= TextFileChange.LEAVE_DIRTY;
-				} else {
-					saveMode= TextFileChange.KEEP_SAVE_STATE;
-				}
+		private Change createChange(ICompilationUnit unit, List<CleanUpChange> changes) {
+			int saveMode;
+			if (fLeaveFilesDirty) {
+				saveMode= TextFileChange.LEAVE_DIRTY;
+			} else {
+				saveMode= TextFileChange.KEEP_SAVE_STATE;
+			}
 
-				if (changes.size() == 1) {
-					CleanUpChange change= changes.get(0);
-					change.setSaveMode(saveMode);
-					result[i]= change;
-				} else {
-					MultiStateCompilationUnitChange mscuc= new MultiStateCompilationUnitChange(getChangeName(unit), unit);
-					for (int j= 0; j < changes.size(); j++) {
-						mscuc.addChange(createGroupFreeChange(changes.get(j)));
-					}
-					mscuc.setSaveMode(saveMode);
-					result[i]= mscuc;
+			if (changes.size() == 1) {
+				CleanUpChange change= changes.get(0);
+				change.setSaveMode(saveMode);
+				return change;
+			} else {
+				MultiStateCompilationUnitChange mscuc= new MultiStateCompilationUnitChange(getChangeName(unit), unit);
+				for (int j= 0; j < changes.size(); j++) {
+					mscuc.addChange(createGroupFreeChange(changes.get(j)));
 				}
-
-				i++;
+				mscuc.setSaveMode(saveMode);
+				return mscuc;
 			}
-
-			return result;
 		}
 
 		private TextChange createGroupFreeChange(CleanUpChange change) {
@@ -513,6 +538,12 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 	 */
 	private static final int SLOW_CLEAN_UP_THRESHOLD= 2000;
 
+	/**
+	 * The maximal number of ASTs that are parsed ahead of the fix calculation. Batch sizes adapt to
+	 * the available heap within this bound, see {@link ASTBatchParser#ASTBatchParser(int, boolean)}.
+	 */
+	private static final int MAX_LIVE_ASTS= Integer.getInteger("org.eclipse.jdt.ui.cleanUp.maxLiveASTs", 800).intValue(); //$NON-NLS-1$
+
 	private final List<ICleanUp> fCleanUps;
 	private final Hashtable<IJavaProject, List<CleanUpTarget>> fProjects;
 	private Change fChange;
@@ -521,6 +552,8 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 
 	private boolean fUseOptionsFromProfile;
 
+	private int fMaxLiveASTs= MAX_LIVE_ASTS;
+
 	public CleanUpRefactoring() {
 		this(FixMessages.CleanUpRefactoring_Refactoring_name);
 	}
@@ -592,6 +625,17 @@ public class CleanUpRefactoring extends Refactoring implements IScheduledRefacto
 		fLeaveFilesDirty= leaveFilesDirty;
 	}
 
+	/**
+	 * Sets the maximal number of ASTs that are parsed ahead of the fix calculation. Used for
+	 * testing.
+	 *
+	 * @param maxLiveASTs the maximal number of live ASTs, must be positive
+	 * @since 3.12
+	 */
+	public void setMaxLiveASTs(int maxLiveASTs) {
+		fMaxLiveASTs= maxLiveASTs;
+	}
+
 	@Override
 	public String getName() {
 		return fName;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,12 +10,19 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.util;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -38,14 +45,19 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jdt.internal.corext.CorextMessages;
 
@@ -59,8 +71,13 @@ import org.eclipse.jdt.internal.ui.viewsupport.BasicElementLabels;
  * MAX_HISTORY_SIZE. If the list exceeds this size the eldest element is removed
  * from the list. An element can be added/renewed with a call to <code>accessed(Object)</code>.
  *
- * The history can be stored to/loaded from an xml file.
- * 
+ * The history can be stored to/loaded from an xml file. Changes are appended to a journal
+ * file next to the xml file by a background job. Only the entries that have been added, moved
+ * or removed since the last save are journaled. When the journal has grown too large, the
+ * history is compacted, i.e. the xml file is rewritten and the journal is deleted. The xml file
+ * and the journal carry a generation number, so that a journal left behind by an interrupted
+ * compaction is not replayed.
+ *
  * @param <K> key type
  * @param <V> value type
  */
@@ -70,6 +87,27 @@ public abstract class History<K, V> {
 	private static final String DEFAULT_INFO_NODE_NAME= "infoNode"; //$NON-NLS-1$
 	private static final int MAX_HISTORY_SIZE= 60;
 
+	private static final String JOURNAL_EXTENSION= ".journal"; //$NON-NLS-1$
+	private static final int JOURNAL_MAGIC= 0x4A484A32; // "JHJ2"
+	private static final String GENERATION_ATTRIBUTE= "journalGeneration"; //$NON-NLS-1$
+	private static final byte JOURNAL_ACCESSED= 1;
+	private static final byte JOURNAL_REMOVED= 2;
+
+	/**
+	 * Number of journal records after which the history is compacted.
+	 */
+	private static final int COMPACTION_THRESHOLD= 4 * MAX_HISTORY_SIZE;
+
+	/**
+	 * Delay in milliseconds between a change and its background save.
+	 */
+	private static final long SAVE_DELAY= 1000;
+
+	/**
+	 * If <code>false</code>, every save rewrites the xml file and no journal is written.
+	 */
+	private static final boolean JOURNAL_ENABLED= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.historyJournal", "true")).booleanValue(); //$NON-NLS-1$//$NON-NLS-2$
+
 	private static JavaUIException createException(Throwable t, String message) {
 		return new JavaUIException(JavaUIStatus.createError(IStatus.ERROR, message, t));
 	}
@@ -80,6 +118,33 @@ public abstract class History<K, V> {
 	private final String fRootNodeName;
 	private final String fInfoNodeName;
 
+	/**
+	 * Lock that serializes the writes to the history files. Acquired before the history lock.
+	 */
+	private final Object fSaveLock= new Object();
+	private final SaveJob fSaveJob;
+
+	// the entries as stored in the history files, guarded by the history lock
+	private final Map<K, V> fSaved= new LinkedHashMap<>();
+	private boolean fChanged;
+	private int fJournalCount;
+	private boolean fCompactionNeeded;
+	private long fGeneration;
+	private Document fJournalDocument;
+
+	private class SaveJob extends Job {
+		public SaveJob() {
+			super(Messages.format(CorextMessages.History_save_job, BasicElementLabels.getResourceName(fFileName)));
+			setSystem(true);
+			setPriority(Job.DECORATE);
+		}
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			save();
+			return Status.OK_STATUS;
+		}
+	}
+
 	public History(String fileName, String rootNodeName, String infoNodeName) {
 		fHistory= new LinkedHashMap<K, V>(80, 0.75f, true) {
 			private static final long serialVersionUID= 1L;
@@ -92,6 +157,7 @@ public abstract class History<K, V> {
 		fRootNodeName= rootNodeName;
 		fInfoNodeName= infoNodeName;
 		fPositions= new Hashtable<>(MAX_HISTORY_SIZE);
+		fSaveJob= new SaveJob();
 	}
 
 	public History(String fileName) {
@@ -101,6 +167,7 @@ public abstract class History<K, V> {
 	public synchronized void accessed(V object) {
 		fHistory.put(getKey(object), object);
 		rebuildPositions();
+		changed();
 	}
 
 	public synchronized boolean contains(V object) {
@@ -116,14 +183,18 @@ public abstract class History<K, V> {
 	}
 
 	public synchronized Object remove(V object) {
-		Object removed= fHistory.remove(getKey(object));
+		V removed= fHistory.remove(getKey(object));
 		rebuildPositions();
+		if (removed != null)
+			changed();
 		return removed;
 	}
 
 	public synchronized Object removeKey(Object key) {
-		Object removed= fHistory.remove(key);
+		V removed= fHistory.remove(key);
 		rebuildPositions();
+		if (removed != null)
+			changed();
 		return removed;
 	}
 
@@ -182,30 +253,72 @@ public abstract class History<K, V> {
 				}
 			}
 		}
+		File journal= getJournalFile();
+		if (journal.exists()) {
+			try {
+				loadJournal(journal);
+			} catch (IOException e) {
+				JavaPlugin.log(e);
+				fCompactionNeeded= true;
+			}
+			if (!JOURNAL_ENABLED)
+				fCompactionNeeded= true;
+			if (fCompactionNeeded)
+				fSaveJob.schedule(SAVE_DELAY);
+		}
+		fSaved.clear();
+		fSaved.putAll(fHistory);
 	}
 
-	public synchronized void save() {
-		IPath stateLocation= JavaPlugin.getDefault().getStateLocation().append(fFileName);
-		File file= stateLocation.toFile();
-		OutputStream out= null;
-		try {
-			out= new FileOutputStream(file);
-			save(out);
-		} catch (IOException e) {
-			JavaPlugin.log(e);
-		} catch (CoreException e) {
-			JavaPlugin.log(e);
-		} catch (TransformerFactoryConfigurationError e) {
-			// The XML library can be misconficgured (e.g. via
-			// -Djava.endorsed.dirs=C:\notExisting\xerces-2_7_1)
-			JavaPlugin.log(e);
-		} finally {
-			try {
-				if (out != null) {
-					out.close();
+	/**
+	 * Writes the changes since the last save. Either appends them to the journal, or compacts
+	 * the history if the journal has become too large.
+	 * <p>
+	 * Changes are saved by a background job shortly after they happened. Clients only need to
+	 * call this method to force the changes to disk, e.g. on shutdown.
+	 * </p>
+	 */
+	public void save() {
+		synchronized (fSaveLock) {
+			fSaveJob.cancel();
+			byte[] snapshot= null;
+			byte[] records= null;
+			long generation;
+			synchronized (this) {
+				if (!fChanged && !fCompactionNeeded)
+					return;
+				if (JOURNAL_ENABLED && !fCompactionNeeded) {
+					ByteArrayOutputStream out= new ByteArrayOutputStream();
+					int count= createRecords(new DataOutputStream(out));
+					if (count >= 0 && fJournalCount + count <= COMPACTION_THRESHOLD) {
+						records= out.toByteArray();
+						fJournalCount+= count;
+					}
 				}
+				if (records == null) {
+					snapshot= createSnapshot(fGeneration + 1);
+					if (snapshot == null)
+						return;
+					fGeneration++;
+					fJournalCount= 0;
+				}
+				generation= fGeneration;
+				fSaved.clear();
+				fSaved.putAll(fHistory);
+				fChanged= false;
+				fCompactionNeeded= false;
+			}
+			try {
+				if (snapshot != null)
+					writeSnapshot(snapshot);
+				else
+					appendToJournal(records, generation);
 			} catch (IOException e) {
 				JavaPlugin.log(e);
+				// the changes are lost from the journal, rewrite everything on the next save
+				synchronized (this) {
+					fCompactionNeeded= true;
+				}
 			}
 		}
 	}
@@ -242,6 +355,185 @@ public abstract class History<K, V> {
 	 */
 	protected abstract K getKey(V object);
 
+	/**
+	 * Marks the history as changed and schedules a background save. Must be called while holding
+	 * the history lock.
+	 */
+	private void changed() {
+		fChanged= true;
+		fSaveJob.schedule(SAVE_DELAY);
+	}
+
+	/**
+	 * Writes the journal records that turn the saved entries into the current ones. Entries that
+	 * are no longer in the history are recorded as removed. The longest prefix of the current
+	 * entries that still is in the saved order stays untouched, all following entries are
+	 * recorded as accessed. Must be called while holding the history lock.
+	 *
+	 * @param out the stream to write the records to
+	 * @return the number of records, or -1 if an entry cannot be journaled
+	 */
+	private int createRecords(DataOutputStream out) {
+		int count= 0;
+		try {
+			for (Iterator<Map.Entry<K, V>> iter= fSaved.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<K, V> entry= iter.next();
+				if (!fHistory.containsKey(entry.getKey())) {
+					writeRecord(out, JOURNAL_REMOVED, entry.getValue());
+					count++;
+				}
+			}
+			Iterator<K> saved= fSaved.keySet().iterator();
+			boolean inSavedOrder= true;
+			for (Iterator<Map.Entry<K, V>> iter= fHistory.entrySet().iterator(); iter.hasNext();) {
+				Map.Entry<K, V> entry= iter.next();
+				if (inSavedOrder)
+					inSavedOrder= advanceTo(saved, entry.getKey());
+				if (!inSavedOrder) {
+					writeRecord(out, JOURNAL_ACCESSED, entry.getValue());
+					count++;
+				}
+			}
+		} catch (IOException e) {
+			// attribute too long for the journal
+			return -1;
+		} catch (ParserConfigurationException e) {
+			JavaPlugin.log(e);
+			return -1;
+		}
+		return count;
+	}
+
+	private static <K> boolean advanceTo(Iterator<K> iterator, K key) {
+		while (iterator.hasNext()) {
+			if (iterator.next().equals(key))
+				return true;
+		}
+		return false;
+	}
+
+	private void writeRecord(DataOutputStream out, byte kind, V object) throws IOException, ParserConfigurationException {
+		Element element= getJournalDocument().createElement(fInfoNodeName);
+		setAttributes(object, element);
+		NamedNodeMap attributes= element.getAttributes();
+		int length= attributes.getLength();
+		out.writeByte(kind);
+		out.writeShort(length);
+		for (int i= 0; i < length; i++) {
+			Attr attribute= (Attr) attributes.item(i);
+			out.writeUTF(attribute.getName());
+			out.writeUTF(attribute.getValue());
+		}
+	}
+
+	private Document getJournalDocument() throws ParserConfigurationException {
+		if (fJournalDocument == null)
+			fJournalDocument= DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		return fJournalDocument;
+	}
+
+	private File getJournalFile() {
+		return JavaPlugin.getDefault().getStateLocation().append(fFileName + JOURNAL_EXTENSION).toFile();
+	}
+
+	/**
+	 * Replays the journal on top of the loaded xml file. A truncated last record, e.g. after a
+	 * crash, is ignored and the history is compacted on the next save. A journal of another
+	 * generation than the xml file is left over from an interrupted compaction and is ignored.
+	 *
+	 * @param journal the journal file
+	 * @throws IOException if reading fails
+	 */
+	private void loadJournal(File journal) throws IOException {
+		try (DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(journal)))) {
+			if (in.readInt() != JOURNAL_MAGIC || in.readLong() != fGeneration) {
+				fCompactionNeeded= true;
+				return;
+			}
+			Document document= getJournalDocument();
+			while (true) {
+				int kind= in.read();
+				if (kind == -1)
+					break;
+				Element element= document.createElement(fInfoNodeName);
+				int length= in.readShort();
+				for (int i= 0; i < length; i++) {
+					String name= in.readUTF();
+					element.setAttribute(name, in.readUTF());
+				}
+				V object= createFromElement(element);
+				if (object != null) {
+					if (kind == JOURNAL_ACCESSED)
+						fHistory.put(getKey(object), object);
+					else
+						fHistory.remove(getKey(object));
+				}
+				fJournalCount++;
+			}
+		} catch (EOFException e) {
+			fCompactionNeeded= true;
+		} catch (ParserConfigurationException e) {
+			JavaPlugin.log(e);
+			fCompactionNeeded= true;
+		} finally {
+			rebuildPositions();
+		}
+	}
+
+	private void appendToJournal(byte[] records, long generation) throws IOException {
+		File journal= getJournalFile();
+		boolean isNew= !journal.exists() || journal.length() == 0;
+		try (DataOutputStream out= new DataOutputStream(new FileOutputStream(journal, true))) {
+			if (isNew) {
+				out.writeInt(JOURNAL_MAGIC);
+				out.writeLong(generation);
+			}
+			out.write(records);
+		}
+	}
+
+	/**
+	 * Serializes the whole history. Must be called while holding the history lock.
+	 *
+	 * @param generation the generation of the journals that belong to the xml file
+	 * @return the xml file contents, or <code>null</code> if serialization failed
+	 */
+	private byte[] createSnapshot(long generation) {
+		ByteArrayOutputStream out= new ByteArrayOutputStream();
+		try {
+			save(out, generation);
+		} catch (CoreException e) {
+			JavaPlugin.log(e);
+			return null;
+		} catch (TransformerFactoryConfigurationError e) {
+			// The XML library can be misconficgured (e.g. via
+			// -Djava.endorsed.dirs=C:\notExisting\xerces-2_7_1)
+			JavaPlugin.log(e);
+			return null;
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Replaces the xml file with the given contents and deletes the journal. If the journal
+	 * cannot be deleted, e.g. after a crash, its generation does not match the new xml file.
+	 *
+	 * @param snapshot the new contents of the xml file
+	 * @throws IOException if writing fails
+	 */
+	private void writeSnapshot(byte[] snapshot) throws IOException {
+		IPath stateLocation= JavaPlugin.getDefault().getStateLocation();
+		File file= stateLocation.append(fFileName).toFile();
+		File tmp= stateLocation.append(fFileName + ".tmp").toFile(); //$NON-NLS-1$
+		try (OutputStream out= new FileOutputStream(tmp)) {
+			out.write(snapshot);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		File journal= getJournalFile();
+		if (journal.exists() && !journal.delete())
+			throw new IOException("Could not delete " + journal); //$NON-NLS-1$
+	}
+
 	private void rebuildPositions() {
 		fPositions.clear();
 		Collection<V> values= fHistory.values();
@@ -271,6 +563,15 @@ public abstract class History<K, V> {
 		if (!root.getNodeName().equalsIgnoreCase(fRootNodeName)) {
 			return;
 		}
+		String generation= root.getAttribute(GENERATION_ATTRIBUTE);
+		if (generation.length() > 0) {
+			try {
+				fGeneration= Long.parseLong(generation);
+			} catch (NumberFormatException e) {
+				// the journal will not match
+				fGeneration= -1;
+			}
+		}
 		NodeList list= root.getChildNodes();
 		int length= list.getLength();
 		for (int i= 0; i < length; ++i) {
@@ -288,13 +589,14 @@ public abstract class History<K, V> {
 		rebuildPositions();
 	}
 
-	private void save(OutputStream stream) throws CoreException {
+	private void save(OutputStream stream, long generation) throws CoreException {
 		try {
 			DocumentBuilderFactory factory= DocumentBuilderFactory.newInstance();
 			DocumentBuilder builder= factory.newDocumentBuilder();
 			Document document= builder.newDocument();
 
 			Element rootElement = document.createElement(fRootNodeName);
+			rootElement.setAttribute(GENERATION_ATTRIBUTE, Long.toString(generation));
 			document.appendChild(rootElement);
 
 			Iterator<V> values= getValues().iterator();
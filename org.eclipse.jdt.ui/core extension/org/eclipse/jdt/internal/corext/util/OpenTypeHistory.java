@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,8 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.w3c.dom.Element;
 
@@ -168,6 +170,9 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	private volatile boolean fNeedsConsistencyCheck;
 	// Map of cached time stamps
 	private Map<TypeNameMatch, Long> fTimestampMapping;
+	// Entries that have been loaded but not validated yet. Concurrent since
+	// needConsistencyCheck() isn't synchronized.
+	private final Set<TypeNameMatch> fUnvalidated= Collections.newSetFromMap(new ConcurrentHashMap<TypeNameMatch, Boolean>());
 
 	private final IElementChangedListener fDeltaListener;
 	private final UpdateJob fUpdateJob;
@@ -196,8 +201,13 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	private OpenTypeHistory() {
 		super(FILENAME, NODE_ROOT, NODE_TYPE_INFO);
 		fTimestampMapping= new HashMap<>();
-		fNeedsConsistencyCheck= true;
 		load();
+		synchronized (this) {
+			// drop the time stamps of entries that have been removed by the journal
+			fTimestampMapping.keySet().retainAll(getKeys());
+			// the loaded entries are validated on first access, see checkConsistency(IProgressMonitor)
+			fUnvalidated.addAll(getKeys());
+		}
 		fDeltaListener= new TypeHistoryDeltaListener();
 		JavaCore.addElementChangedListener(fDeltaListener);
 		fUpdateJob= new UpdateJob();
@@ -216,12 +226,25 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 		fUpdateJob.schedule();
 	}
 
+	/**
+	 * @return <code>true</code> if the history has been marked as inconsistent or if it has
+	 *         entries that have not been validated since they were loaded
+	 */
 	public boolean needConsistencyCheck() {
-		return fNeedsConsistencyCheck;
+		return fNeedsConsistencyCheck || !fUnvalidated.isEmpty();
 	}
 
+	/**
+	 * Validates the entries of the history. If the history has been marked as inconsistent, all
+	 * entries are checked, otherwise only the loaded entries that have not been validated yet.
+	 * Callers run this before they access the entries for the first time, so that the entries
+	 * loaded at startup are validated on first access instead of after loading.
+	 *
+	 * @param monitor the progress monitor
+	 * @throws OperationCanceledException if the check has been canceled
+	 */
 	public void checkConsistency(IProgressMonitor monitor) throws OperationCanceledException {
-		if (!fNeedsConsistencyCheck)
+		if (!needConsistencyCheck())
 			return;
 		if (fUpdateJob.getState() == Job.RUNNING) {
 			try {
@@ -234,7 +257,7 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 				// waiting for the update job.
 			}
 		}
-		if (!fNeedsConsistencyCheck)
+		if (!needConsistencyCheck())
 			return;
 		internalCheckConsistency(monitor);
 	}
@@ -257,11 +280,13 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	@Override
 	public synchronized TypeNameMatch remove(TypeNameMatch info) {
 		fTimestampMapping.remove(info);
+		fUnvalidated.remove(info);
 		return (TypeNameMatch)super.remove(info);
 	}
 
 	public synchronized void replace(TypeNameMatch old, TypeNameMatch newMatch) {
 		fTimestampMapping.remove(old);
+		fUnvalidated.remove(old);
 		fTimestampMapping.put(newMatch, new Long(getContainerTimestamp(newMatch)));
 		super.remove(old);
 		super.accessed(newMatch);
@@ -298,14 +323,15 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 	}
 
 	private synchronized void internalCheckConsistency(IProgressMonitor monitor) throws OperationCanceledException {
-		// Setting fNeedsConsistencyCheck is necessary here since
+		// Reading fNeedsConsistencyCheck once is necessary here since
 		// markAsInconsistent isn't synchronized.
-		fNeedsConsistencyCheck= true;
-		List<TypeNameMatch> typesToCheck= new ArrayList<>(getKeys());
+		boolean checkAll= fNeedsConsistencyCheck;
+		List<TypeNameMatch> typesToCheck= new ArrayList<>(checkAll ? getKeys() : fUnvalidated);
 		monitor.beginTask(CorextMessages.TypeInfoHistory_consistency_check, typesToCheck.size());
 		monitor.setTaskName(CorextMessages.TypeInfoHistory_consistency_check);
 		for (Iterator<TypeNameMatch> iter= typesToCheck.iterator(); iter.hasNext();) {
 			TypeNameMatch type= iter.next();
+			fUnvalidated.remove(type);
 			long currentTimestamp= getContainerTimestamp(type);
 			Long lastTested= fTimestampMapping.get(type);
 			if (lastTested != null && currentTimestamp != IResource.NULL_STAMP && currentTimestamp == lastTested.longValue() && !isContainerDirty(type))
@@ -331,7 +357,8 @@ public class OpenTypeHistory extends History<TypeNameMatch, TypeNameMatch> {
 			monitor.worked(1);
 		}
 		monitor.done();
-		fNeedsConsistencyCheck= false;
+		if (checkAll)
+			fNeedsConsistencyCheck= false;
 	}
 
 	private long getContainerTimestamp(TypeNameMatch match) {
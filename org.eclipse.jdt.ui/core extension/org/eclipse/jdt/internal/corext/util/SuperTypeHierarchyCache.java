@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,8 +11,8 @@
 package org.eclipse.jdt.internal.corext.util;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -23,6 +23,20 @@ import org.eclipse.jdt.core.JavaModelException;
 
 /**
  * A thread-safe cache for super type hierarchies.
+ * <p>
+ * The cache is split into segments that are locked independently, so that clients running
+ * concurrently (quick fixes, override indicators, refactorings) don't contend on a single monitor
+ * and don't evict each other's hierarchies. A type is assigned to a home segment by its hash code;
+ * newly built hierarchies are stored in the home segment of their focus type, and lookups only
+ * check the home segment of the requested type. A hierarchy of a subtype is therefore only
+ * reused for a supertype if both have the same home segment.
+ * </p>
+ * <p>
+ * The cache budget can be configured with the system properties
+ * <code>org.eclipse.jdt.ui.superTypeHierarchyCache.maxEntries</code> (total number of hierarchies)
+ * and <code>org.eclipse.jdt.ui.superTypeHierarchyCache.maxBytes</code> (estimated retained size,
+ * <code>0</code> for no limit).
+ * </p>
  * 
  * @see JDTUIHelperClasses
  */
@@ -30,24 +44,39 @@ public class SuperTypeHierarchyCache {
 
 	private static class HierarchyCacheEntry implements ITypeHierarchyChangedListener {
 
-		private ITypeHierarchy fTypeHierarchy;
+		private final Segment fSegment;
+		private final ITypeHierarchy fTypeHierarchy;
+		private final long fEstimatedSize;
 		private long fLastAccess;
+		private boolean fDisposed;
 
-		public HierarchyCacheEntry(ITypeHierarchy hierarchy) {
+		/**
+		 * Method override testers for types of this hierarchy. Accessed while holding the lock of
+		 * {@link #fSegment}.
+		 */
+		private final Map<IType, MethodOverrideTester> fMethodOverrideTesters= new LRUMap<>(TESTERS_PER_HIERARCHY);
+
+		public HierarchyCacheEntry(Segment segment, ITypeHierarchy hierarchy) {
+			fSegment= segment;
 			fTypeHierarchy= hierarchy;
+			fEstimatedSize= estimateSize(hierarchy);
 			fTypeHierarchy.addTypeHierarchyChangedListener(this);
 			markAsAccessed();
 		}
 
 		@Override
 		public void typeHierarchyChanged(ITypeHierarchy typeHierarchy) {
-			removeHierarchyEntryFromCache(this);
+			fSegment.remove(this);
 		}
 
 		public ITypeHierarchy getTypeHierarchy() {
 			return fTypeHierarchy;
 		}
 
+		public long getEstimatedSize() {
+			return fEstimatedSize;
+		}
+
 		public void markAsAccessed() {
 			fLastAccess= System.currentTimeMillis();
 		}
@@ -56,10 +85,15 @@ public class SuperTypeHierarchyCache {
 			return fLastAccess;
 		}
 
+		public boolean isDisposed() {
+			return fDisposed;
+		}
+
 		public void dispose() {
-			if (fTypeHierarchy != null) {
+			if (!fDisposed) {
+				fMethodOverrideTesters.clear();
 				fTypeHierarchy.removeTypeHierarchyChangedListener(this);
-				fTypeHierarchy= null;
+				fDisposed= true;
 			}
 		}
 
@@ -70,14 +104,107 @@ public class SuperTypeHierarchyCache {
 
 	}
 
+	/**
+	 * A part of the cache with its own lock and its own share of the budget.
+	 */
+	private static class Segment {
+
+		private final ArrayList<HierarchyCacheEntry> fEntries= new ArrayList<>();
+		private final int fMaxEntries;
+		private final long fMaxBytes;
+		private long fEstimatedSize;
+
+		public Segment(int maxEntries, long maxBytes) {
+			fMaxEntries= maxEntries;
+			fMaxBytes= maxBytes;
+		}
+
+		public synchronized HierarchyCacheEntry find(IType type) {
+			for (int i= fEntries.size() - 1; i >= 0; i--) {
+				HierarchyCacheEntry curr= fEntries.get(i);
+				ITypeHierarchy hierarchy= curr.getTypeHierarchy();
+				if (!hierarchy.exists()) {
+					remove(curr);
+				} else if (hierarchy.contains(type)) {
+					curr.markAsAccessed();
+					return curr;
+				}
+			}
+			return null;
+		}
+
+		public synchronized HierarchyCacheEntry add(ITypeHierarchy hierarchy) {
+			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(this, hierarchy);
+			// find obsolete entries first, then remove entries that were least recently accessed
+			for (int i= fEntries.size() - 1; i >= 0; i--) {
+				HierarchyCacheEntry entry= fEntries.get(i);
+				ITypeHierarchy curr= entry.getTypeHierarchy();
+				if (!curr.exists() || hierarchy.contains(curr.getType())) {
+					remove(entry);
+				}
+			}
+			while (!fEntries.isEmpty() && isOverBudget(newEntry.getEstimatedSize())) {
+				HierarchyCacheEntry oldest= null;
+				for (int i= 0; i < fEntries.size(); i++) {
+					HierarchyCacheEntry entry= fEntries.get(i);
+					if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
+						oldest= entry;
+					}
+				}
+				remove(oldest);
+			}
+			fEntries.add(newEntry);
+			fEstimatedSize+= newEntry.getEstimatedSize();
+			return newEntry;
+		}
+
+		private boolean isOverBudget(long additionalSize) {
+			if (fEntries.size() >= fMaxEntries)
+				return true;
+			return fMaxBytes > 0 && fEstimatedSize + additionalSize > fMaxBytes;
+		}
+
+		public synchronized void remove(HierarchyCacheEntry entry) {
+			if (fEntries.remove(entry)) {
+				fEstimatedSize-= entry.getEstimatedSize();
+			}
+			entry.dispose();
+		}
+
+		public synchronized MethodOverrideTester getMethodOverrideTester(HierarchyCacheEntry entry, IType type) {
+			if (entry.isDisposed()) // entry has been evicted in the meantime, don't cache
+				return new MethodOverrideTester(type, entry.getTypeHierarchy());
+			MethodOverrideTester tester= entry.fMethodOverrideTesters.get(type);
+			if (tester == null) {
+				tester= new MethodOverrideTester(type, entry.getTypeHierarchy());
+				entry.fMethodOverrideTesters.put(type, tester);
+			}
+			return tester;
+		}
+	}
+
+	private static final int SEGMENT_COUNT= 4;
+	private static final int TESTERS_PER_HIERARCHY= 8;
 
-	private static final int CACHE_SIZE= 8;
+	/**
+	 * Rough estimate of the retained size of one type in a super type hierarchy (handle, super
+	 * type and flag tables).
+	 */
+	private static final int ESTIMATED_BYTES_PER_TYPE= 512;
 
-	private static ArrayList<HierarchyCacheEntry> fgHierarchyCache= new ArrayList<>(CACHE_SIZE);
-	private static Map<IType, MethodOverrideTester> fgMethodOverrideTesterCache= new LRUMap<>(CACHE_SIZE);
+	private static final int MAX_ENTRIES= Math.max(SEGMENT_COUNT, Integer.getInteger("org.eclipse.jdt.ui.superTypeHierarchyCache.maxEntries", 32).intValue()); //$NON-NLS-1$
+	private static final long MAX_BYTES= Long.getLong("org.eclipse.jdt.ui.superTypeHierarchyCache.maxBytes", 0).longValue(); //$NON-NLS-1$
 
-	private static int fgCacheHits= 0;
-	private static int fgCacheMisses= 0;
+	private static final Segment[] fgSegments= new Segment[SEGMENT_COUNT];
+	static {
+		for (int i= 0; i < SEGMENT_COUNT; i++) {
+			fgSegments[i]= new Segment(MAX_ENTRIES / SEGMENT_COUNT, MAX_BYTES / SEGMENT_COUNT);
+		}
+	}
+
+	private static final AtomicLong fgCacheHits= new AtomicLong();
+	private static final AtomicLong fgCacheMisses= new AtomicLong();
+	private static final AtomicLong fgRebuildTime= new AtomicLong();
 
 	/**
 	 * Returns a super type hierarchy that contains the given type.
@@ -95,32 +222,8 @@ public class SuperTypeHierarchyCache {
 	}
 
 	public static MethodOverrideTester getMethodOverrideTester(IType type) throws JavaModelException {
-		MethodOverrideTester test= null;
-		synchronized (fgMethodOverrideTesterCache) {
-			test= fgMethodOverrideTesterCache.get(type);
-		}
-		if (test == null) {
-			ITypeHierarchy hierarchy= getTypeHierarchy(type); // don't nest the locks
-			synchronized (fgMethodOverrideTesterCache) {
-				test= fgMethodOverrideTesterCache.get(type); // test again after waiting a long time for 'getTypeHierarchy'
-				if (test == null) {
-					test= new MethodOverrideTester(type, hierarchy);
-					fgMethodOverrideTesterCache.put(type, test);
-				}
-			}
-		}
-		return test;
-	}
-
-	private static void removeMethodOverrideTester(ITypeHierarchy hierarchy) {
-		synchronized (fgMethodOverrideTesterCache) {
-			for (Iterator<MethodOverrideTester> iter= fgMethodOverrideTesterCache.values().iterator(); iter.hasNext();) {
-				MethodOverrideTester curr= iter.next();
-				if (curr.getTypeHierarchy().equals(hierarchy)) {
-					iter.remove();
-				}
-			}
-		}
+		HierarchyCacheEntry entry= getTypeHierarchyEntry(type, null); // don't nest the locks
+		return entry.fSegment.getMethodOverrideTester(entry, type);
 	}
 
 	/**
@@ -136,99 +239,67 @@ public class SuperTypeHierarchyCache {
 	 * @throws JavaModelException if a problem occurs
 	 */
 	public static ITypeHierarchy getTypeHierarchy(IType type, IProgressMonitor progressMonitor) throws JavaModelException {
-		ITypeHierarchy hierarchy= findTypeHierarchyInCache(type);
-		if (hierarchy == null) {
-			fgCacheMisses++;
-			hierarchy= type.newSupertypeHierarchy(progressMonitor);
-			addTypeHierarchyToCache(hierarchy);
-		} else {
-			fgCacheHits++;
-		}
-		return hierarchy;
+		return getTypeHierarchyEntry(type, progressMonitor).getTypeHierarchy();
 	}
 
-	private static void addTypeHierarchyToCache(ITypeHierarchy hierarchy) {
-		synchronized (fgHierarchyCache) {
-			int nEntries= fgHierarchyCache.size();
-			if (nEntries >= CACHE_SIZE) {
-				// find obsolete entries or remove entry that was least recently accessed
-				HierarchyCacheEntry oldest= null;
-				ArrayList<HierarchyCacheEntry> obsoleteHierarchies= new ArrayList<>(CACHE_SIZE);
-				for (int i= 0; i < nEntries; i++) {
-					HierarchyCacheEntry entry= fgHierarchyCache.get(i);
-					ITypeHierarchy curr= entry.getTypeHierarchy();
-					if (!curr.exists() || hierarchy.contains(curr.getType())) {
-						obsoleteHierarchies.add(entry);
-					} else {
-						if (oldest == null || entry.getLastAccess() < oldest.getLastAccess()) {
-							oldest= entry;
-						}
-					}
-				}
-				if (!obsoleteHierarchies.isEmpty()) {
-					for (int i= 0; i < obsoleteHierarchies.size(); i++) {
-						removeHierarchyEntryFromCache(obsoleteHierarchies.get(i));
-					}
-				} else if (oldest != null) {
-					removeHierarchyEntryFromCache(oldest);
-				}
-			}
-			HierarchyCacheEntry newEntry= new HierarchyCacheEntry(hierarchy);
-			fgHierarchyCache.add(newEntry);
+	private static HierarchyCacheEntry getTypeHierarchyEntry(IType type, IProgressMonitor progressMonitor) throws JavaModelException {
+		HierarchyCacheEntry entry= findEntryInCache(type);
+		if (entry != null) {
+			fgCacheHits.incrementAndGet();
+			return entry;
 		}
+		fgCacheMisses.incrementAndGet();
+		long start= System.nanoTime();
+		ITypeHierarchy hierarchy= type.newSupertypeHierarchy(progressMonitor);
+		fgRebuildTime.addAndGet(System.nanoTime() - start);
+		return getHomeSegment(type).add(hierarchy);
 	}
 
-
 	/**
 	 * Check if the given type is in the hierarchy cache.
 	 * @param type a type
 	 * @return <code>true</code> if a hierarchy for the given type is cached
 	 */
 	public static boolean hasInCache(IType type) {
-		return findTypeHierarchyInCache(type) != null;
+		return findEntryInCache(type) != null;
 	}
 
+	private static HierarchyCacheEntry findEntryInCache(IType type) {
+		return getHomeSegment(type).find(type);
+	}
 
-	private static ITypeHierarchy findTypeHierarchyInCache(IType type) {
-		synchronized (fgHierarchyCache) {
-			for (int i= fgHierarchyCache.size() - 1; i>= 0; i--) {
-				HierarchyCacheEntry curr= fgHierarchyCache.get(i);
-				ITypeHierarchy hierarchy= curr.getTypeHierarchy();
-				if (!hierarchy.exists()) {
-					removeHierarchyEntryFromCache(curr);
-				} else {
-					if (hierarchy.contains(type)) {
-						curr.markAsAccessed();
-						return hierarchy;
-					}
-				}
-			}
-		}
-		return null;
+	private static Segment getHomeSegment(IType type) {
+		int hash= type.hashCode();
+		hash^= hash >>> 16;
+		return fgSegments[(hash & 0x7fffffff) % fgSegments.length];
 	}
 
-	private static void removeHierarchyEntryFromCache(HierarchyCacheEntry entry) {
-		synchronized (fgHierarchyCache) {
-			removeMethodOverrideTester(entry.getTypeHierarchy());
-			entry.dispose();
-			fgHierarchyCache.remove(entry);
-		}
+	private static long estimateSize(ITypeHierarchy hierarchy) {
+		return (long) hierarchy.getAllTypes().length * ESTIMATED_BYTES_PER_TYPE;
 	}
 
 
 	/**
 	 * Gets the number of times the hierarchy could be taken from the hierarchy.
-	 * @return Returns a int
+	 * @return the number of cache hits
 	 */
-	public static int getCacheHits() {
-		return fgCacheHits;
+	public static long getCacheHits() {
+		return fgCacheHits.get();
 	}
 
 	/**
 	 * Gets the number of times the hierarchy was build. Used for testing.
-	 * @return Returns a int
+	 * @return the number of cache misses
+	 */
+	public static long getCacheMisses() {
+		return fgCacheMisses.get();
+	}
+
+	/**
+	 * Gets the accumulated time spent building hierarchies on cache misses.
+	 * @return the rebuild time in nanoseconds
 	 */
-	public static int getCacheMisses() {
-		return fgCacheMisses;
+	public static long getRebuildTime() {
+		return fgRebuildTime.get();
 	}
 }
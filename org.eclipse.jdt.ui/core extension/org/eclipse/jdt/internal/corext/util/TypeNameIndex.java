@@ -0,0 +1,464 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.util;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.search.IJavaSearchConstants;
+import org.eclipse.jdt.core.search.SearchEngine;
+import org.eclipse.jdt.core.search.SearchPattern;
+import org.eclipse.jdt.core.search.TypeNameMatch;
+import org.eclipse.jdt.core.search.TypeNameMatchRequestor;
+
+import org.eclipse.jdt.internal.corext.CorextMessages;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+/**
+ * Resident index of the names of all types in the workspace scope, used by the open type dialog
+ * to find the candidates for a name pattern without a search.
+ * <p>
+ * The types are sorted by their simple names in lower case, so the candidates for prefix, exact
+ * and wildcard patterns with a literal prefix, and for camel case patterns (same first character)
+ * are a range of the index. The candidates still have to be matched against the pattern.
+ * </p>
+ * <p>
+ * The index is built in the background on the first query and is only softly referenced. A query
+ * that is canceled while waiting for the index does not cancel the build. Changes of compilation
+ * units, including reconciled changes of primary working copies, are applied incrementally on the
+ * next query; changes of class paths, projects, package fragment roots and libraries discard the
+ * index.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class TypeNameIndex {
+
+	private static final boolean ENABLED= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.typeNameIndex", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final int PROJECT_CHANGE_FLAGS= IJavaElementDelta.F_OPENED | IJavaElementDelta.F_CLOSED
+			| IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED;
+
+	private static final int ROOT_CHANGE_FLAGS= IJavaElementDelta.F_ADDED_TO_CLASSPATH | IJavaElementDelta.F_REMOVED_FROM_CLASSPATH
+			| IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED | IJavaElementDelta.F_REORDER;
+
+	private static final class Entry {
+		final String fKey;
+		final TypeNameMatch fMatch;
+
+		Entry(TypeNameMatch match) {
+			fKey= toKey(match.getSimpleTypeName());
+			fMatch= match;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR= new Comparator<Entry>() {
+		@Override
+		public int compare(Entry e1, Entry e2) {
+			return e1.fKey.compareTo(e2.fKey);
+		}
+	};
+
+	private class DeltaListener implements IElementChangedListener {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+
+		private void processDelta(IJavaElementDelta delta) {
+			IJavaElement element= delta.getElement();
+			boolean isChanged= delta.getKind() == IJavaElementDelta.CHANGED;
+			switch (element.getElementType()) {
+				case IJavaElement.JAVA_MODEL:
+					processChildren(delta);
+					break;
+				case IJavaElement.JAVA_PROJECT:
+					if (!isChanged || (delta.getFlags() & PROJECT_CHANGE_FLAGS) != 0)
+						invalidate();
+					else
+						processChildren(delta);
+					break;
+				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+					if (!isChanged || (delta.getFlags() & ROOT_CHANGE_FLAGS) != 0)
+						invalidate();
+					else
+						processChildren(delta);
+					break;
+				case IJavaElement.PACKAGE_FRAGMENT:
+					if (!isChanged)
+						invalidate();
+					else
+						processChildren(delta);
+					break;
+				case IJavaElement.COMPILATION_UNIT:
+					ICompilationUnit unit= (ICompilationUnit) element;
+					if (JavaModelUtil.isPrimary(unit))
+						unitChanged(unit);
+					break;
+				case IJavaElement.CLASS_FILE:
+					// class folder on the build path
+					invalidate();
+					break;
+				default:
+					break;
+			}
+		}
+
+		private void processChildren(IJavaElementDelta delta) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++)
+				processDelta(children[i]);
+		}
+	}
+
+	/**
+	 * Builds the index, independent of the monitors of the queries waiting for it.
+	 */
+	private final class BuildJob extends Job {
+		/* Set when the job has finished, guarded by the index. */
+		boolean fDone;
+		Entry[] fResult;
+		CoreException fException;
+
+		BuildJob() {
+			super(CorextMessages.TypeNameIndex_build_job);
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			Entry[] result= null;
+			CoreException exception= null;
+			try {
+				result= build(monitor);
+			} catch (CoreException e) {
+				exception= e;
+			} catch (OperationCanceledException e) {
+				// the index has been shut down
+			}
+			buildDone(this, result, exception);
+			return result == null && exception == null ? Status.CANCEL_STATUS : Status.OK_STATUS;
+		}
+	}
+
+	private static TypeNameIndex fgInstance;
+
+	private final IElementChangedListener fDeltaListener;
+
+	private SoftReference<Entry[]> fEntries;
+
+	/**
+	 * Primary compilation units that have changed since the index has been built.
+	 */
+	private final Set<ICompilationUnit> fChangedUnits= new HashSet<>();
+
+	/**
+	 * Incremented whenever the index is discarded.
+	 */
+	private int fInvalidationCount;
+
+	/**
+	 * The job that is building the index, or <code>null</code>.
+	 */
+	private BuildJob fBuildJob;
+
+	/**
+	 * @return the index, or <code>null</code> if the index is disabled by the system property
+	 *         <code>org.eclipse.jdt.ui.typeNameIndex</code>
+	 */
+	public static synchronized TypeNameIndex getInstance() {
+		if (!ENABLED)
+			return null;
+		if (fgInstance == null)
+			fgInstance= new TypeNameIndex();
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		if (fgInstance == null)
+			return;
+		fgInstance.doShutdown();
+		fgInstance= null;
+	}
+
+	private TypeNameIndex() {
+		fDeltaListener= new DeltaListener();
+		JavaCore.addElementChangedListener(fDeltaListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+	}
+
+	private synchronized void doShutdown() {
+		JavaCore.removeElementChangedListener(fDeltaListener);
+		if (fBuildJob != null)
+			fBuildJob.cancel();
+		invalidate();
+	}
+
+	/**
+	 * Returns the types of the workspace scope whose simple names can match the given name
+	 * pattern. The result is a superset of the matching types.
+	 *
+	 * @param namePattern the name pattern, see {@link TypeInfoFilter#getNamePattern()}
+	 * @param matchKind the match kind of the name pattern, see
+	 *            {@link TypeInfoFilter#getSearchFlags()}
+	 * @param monitor the progress monitor
+	 * @return the candidate types, sorted by simple name
+	 * @throws CoreException if the index cannot be built
+	 * @throws OperationCanceledException if the monitor has been canceled
+	 */
+	public TypeNameMatch[] getCandidates(String namePattern, int matchKind, IProgressMonitor monitor) throws CoreException {
+		Entry[] entries= getEntries(monitor);
+		int start= 0;
+		int end= entries.length;
+		String prefix= getPrefix(namePattern, matchKind);
+		if (prefix.length() > 0) {
+			start= indexOf(entries, prefix);
+			end= indexOf(entries, prefix + Character.MAX_VALUE);
+		}
+		TypeNameMatch[] result= new TypeNameMatch[end - start];
+		for (int i= start; i < end; i++)
+			result[i - start]= entries[i].fMatch;
+		return result;
+	}
+
+	/**
+	 * Returns the prefix of the lower case simple names that can match the pattern.
+	 *
+	 * @param namePattern the name pattern
+	 * @param matchKind the match kind
+	 * @return the prefix of all candidates, can be empty
+	 */
+	private static String getPrefix(String namePattern, int matchKind) {
+		switch (matchKind) {
+			case SearchPattern.R_EXACT_MATCH:
+			case SearchPattern.R_PREFIX_MATCH:
+				return toKey(namePattern);
+			case SearchPattern.R_CAMELCASE_MATCH:
+			case SearchPattern.R_CAMELCASE_SAME_PART_COUNT_MATCH:
+				// camel case matches and the prefix fall back share the first character
+				return namePattern.length() == 0 ? "" : toKey(namePattern.substring(0, 1)); //$NON-NLS-1$
+			case SearchPattern.R_PATTERN_MATCH:
+				int i= 0;
+				while (i < namePattern.length()) {
+					char ch= namePattern.charAt(i);
+					// the wildcard matcher compares upper and lower case, which only agrees with the key for ASCII
+					if (ch == '*' || ch == '?' || ch > 127)
+						break;
+					i++;
+				}
+				return toKey(namePattern.substring(0, i));
+			default:
+				return ""; //$NON-NLS-1$
+		}
+	}
+
+	private static int indexOf(Entry[] entries, String key) {
+		int low= 0;
+		int high= entries.length;
+		while (low < high) {
+			int mid= (low + high) >>> 1;
+			if (entries[mid].fKey.compareTo(key) < 0)
+				low= mid + 1;
+			else
+				high= mid;
+		}
+		return low;
+	}
+
+	private static String toKey(String name) {
+		int length= name.length();
+		for (int i= 0; i < length; i++) {
+			char ch= name.charAt(i);
+			if (Character.toLowerCase(ch) != ch) {
+				char[] chars= name.toCharArray();
+				for (int j= i; j < length; j++)
+					chars[j]= Character.toLowerCase(chars[j]);
+				return new String(chars);
+			}
+		}
+		return name;
+	}
+
+	private Entry[] getEntries(IProgressMonitor monitor) throws CoreException {
+		Entry[] entries;
+		ICompilationUnit[] units;
+		int invalidationCount;
+		synchronized (this) {
+			entries= fEntries != null ? fEntries.get() : null;
+			if (entries == null)
+				entries= waitForBuild(monitor);
+			if (fChangedUnits.isEmpty())
+				return entries;
+			units= fChangedUnits.toArray(new ICompilationUnit[fChangedUnits.size()]);
+			fChangedUnits.clear();
+			invalidationCount= fInvalidationCount;
+		}
+		// don't hold the lock while reading the types from the Java model
+		Entry[] added= createEntries(units);
+		synchronized (this) {
+			if (invalidationCount == fInvalidationCount) {
+				Entry[] current= fEntries != null ? fEntries.get() : null;
+				if (current != null) {
+					entries= update(current, units, added);
+					fEntries= new SoftReference<>(entries);
+					return entries;
+				}
+			}
+		}
+		return update(entries, units, added);
+	}
+
+	/**
+	 * Starts building the index unless it is being built already, and waits for the build. The
+	 * caller must hold the lock of the index.
+	 *
+	 * @param monitor the progress monitor of the query
+	 * @return the built entries
+	 * @throws CoreException if the index cannot be built
+	 * @throws OperationCanceledException if the query has been canceled
+	 */
+	private Entry[] waitForBuild(IProgressMonitor monitor) throws CoreException {
+		if (fBuildJob == null) {
+			fChangedUnits.clear();
+			fBuildJob= new BuildJob();
+			fBuildJob.schedule();
+		}
+		BuildJob job= fBuildJob;
+		while (!job.fDone) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			try {
+				wait(100);
+			} catch (InterruptedException e) {
+				throw new OperationCanceledException();
+			}
+		}
+		if (job.fException != null)
+			throw job.fException;
+		if (job.fResult == null)
+			throw new OperationCanceledException();
+		return job.fResult;
+	}
+
+	private synchronized void buildDone(BuildJob job, Entry[] result, CoreException exception) {
+		job.fResult= result;
+		job.fException= exception;
+		job.fDone= true;
+		// the result of a build that has been discarded is only returned to the waiting queries
+		if (fBuildJob == job) {
+			fBuildJob= null;
+			if (result != null)
+				fEntries= new SoftReference<>(result);
+		}
+		notifyAll();
+	}
+
+	private static Entry[] build(IProgressMonitor monitor) throws CoreException {
+		final List<Entry> entries= new ArrayList<>();
+		TypeNameMatchRequestor requestor= new TypeNameMatchRequestor() {
+			@Override
+			public void acceptTypeNameMatch(TypeNameMatch match) {
+				entries.add(new Entry(match));
+			}
+		};
+		new SearchEngine().searchAllTypeNames(null, 0, null, SearchPattern.R_PREFIX_MATCH, IJavaSearchConstants.TYPE,
+				SearchEngine.createWorkspaceScope(), requestor, IJavaSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, monitor);
+		if (monitor.isCanceled())
+			throw new OperationCanceledException();
+		Entry[] result= entries.toArray(new Entry[entries.size()]);
+		Arrays.sort(result, ENTRY_COMPARATOR);
+		return result;
+	}
+
+	/**
+	 * Returns the entries for the current types of the given compilation units.
+	 *
+	 * @param units the changed compilation units
+	 * @return the entries, sorted
+	 */
+	private static Entry[] createEntries(ICompilationUnit[] units) {
+		List<Entry> added= new ArrayList<>();
+		for (int i= 0; i < units.length; i++) {
+			ICompilationUnit unit= units[i];
+			if (!unit.exists())
+				continue;
+			try {
+				IType[] types= unit.getAllTypes();
+				for (int k= 0; k < types.length; k++)
+					added.add(new Entry(SearchEngine.createTypeNameMatch(types[k], types[k].getFlags())));
+			} catch (JavaModelException e) {
+				JavaPlugin.log(e);
+			}
+		}
+		Entry[] result= added.toArray(new Entry[added.size()]);
+		Arrays.sort(result, ENTRY_COMPARATOR);
+		return result;
+	}
+
+	/**
+	 * Replaces the types of the given compilation units, keeping the order.
+	 *
+	 * @param entries the current entries
+	 * @param units the changed compilation units
+	 * @param newEntries the sorted entries for the current types of the units
+	 * @return the new entries
+	 */
+	private static Entry[] update(Entry[] entries, ICompilationUnit[] units, Entry[] newEntries) {
+		Set<ICompilationUnit> unitSet= new HashSet<>(Arrays.asList(units));
+		List<Entry> result= new ArrayList<>(entries.length + newEntries.length);
+		int k= 0;
+		for (int i= 0; i < entries.length; i++) {
+			Entry entry= entries[i];
+			ICompilationUnit unit= entry.fMatch.getType().getCompilationUnit();
+			if (unit != null && unitSet.contains(unit))
+				continue;
+			while (k < newEntries.length && ENTRY_COMPARATOR.compare(newEntries[k], entry) < 0)
+				result.add(newEntries[k++]);
+			result.add(entry);
+		}
+		while (k < newEntries.length)
+			result.add(newEntries[k++]);
+		return result.toArray(new Entry[result.size()]);
+	}
+
+	private synchronized void unitChanged(ICompilationUnit unit) {
+		if (fEntries != null || fBuildJob != null)
+			fChangedUnits.add(unit);
+	}
+
+	private synchronized void invalidate() {
+		fEntries= null;
+		fChangedUnits.clear();
+		fInvalidationCount++;
+		// a running build finishes for the queries that wait for it
+		fBuildJob= null;
+	}
+}
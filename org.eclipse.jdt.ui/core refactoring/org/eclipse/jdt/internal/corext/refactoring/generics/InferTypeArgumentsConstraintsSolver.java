@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,12 +17,17 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -60,22 +65,38 @@ public class InferTypeArgumentsConstraintsSolver {
 
 	private final static String CHOSEN_TYPE= "chosenType"; //$NON-NLS-1$
 
-	private final InferTypeArgumentsTCModel fTCModel;
-	private TypeSetEnvironment fTypeSetEnvironment;
+	/**
+	 * System property that tells whether independent components of the constraint graph are solved
+	 * in parallel. It is read on every run, so that tests can compare both modes.
+	 */
+	public static final String PARALLEL_PROPERTY= "org.eclipse.jdt.ui.inferTypeArguments.parallel"; //$NON-NLS-1$
+
+	private static final int PARALLELISM= Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+
+	/**
+	 * Minimal number of constraint variables for which the solver runs in parallel.
+	 */
+	private static final int MIN_PARALLEL_VARIABLES= 1000;
 
 	/**
-	 * The work-list used by the type constraint solver to hold the set of
-	 * nodes in the constraint graph that remain to be (re-)processed. Entries
-	 * are <code>ConstraintVariable2</code>s.
+	 * Minimal number of constraint variables that are solved by one worker.
 	 */
-	private LinkedList<ConstraintVariable2> fWorkList;
+	private static final int MIN_CHUNK_SIZE= 100;
+
+	private static ForkJoinPool fgPool;
+
+	private final InferTypeArgumentsTCModel fTCModel;
 
 	private InferTypeArgumentsUpdate fUpdate;
 
+	/**
+	 * Set when solving in parallel has been aborted, tells the remaining workers to stop.
+	 */
+	private volatile boolean fAborted;
+
 
 	public InferTypeArgumentsConstraintsSolver(InferTypeArgumentsTCModel typeConstraintFactory) {
 		fTCModel= typeConstraintFactory;
-		fWorkList= new LinkedList<>();
 	}
 
 	public InferTypeArgumentsUpdate solveConstraints(IProgressMonitor pm) {
@@ -86,7 +107,6 @@ public class InferTypeArgumentsConstraintsSolver {
 		if (allConstraintVariables.length == 0)
 			return fUpdate;
 
-		fTypeSetEnvironment= new TypeSetEnvironment(fTCModel.getTypeEnvironment());
 		ParametricStructureComputer parametricStructureComputer= new ParametricStructureComputer(allConstraintVariables, fTCModel);
 		Collection<CollectionElementVariable2> newVars= parametricStructureComputer.createElemConstraintVariables();
 
@@ -120,149 +140,368 @@ public class InferTypeArgumentsConstraintsSolver {
 			fTCModel.createElementEqualsConstraints(typeConstraint.getLeft(), typeConstraint.getRight());
 		}
 
-		initializeTypeEstimates(allConstraintVariables);
 		if (pm.isCanceled())
 			throw new OperationCanceledException();
-		fWorkList.addAll(Arrays.asList(allConstraintVariables));
-		runSolver(new SubProgressMonitor(pm, 1));
+		solveComponents(computeComponents(allConstraintVariables), allConstraintVariables.length, new SubProgressMonitor(pm, 1));
 		chooseTypes(allConstraintVariables, new SubProgressMonitor(pm, 1));
 		findCastsToRemove(fTCModel.getCastVariables());
 		return fUpdate;
 	}
 
-	private void initializeTypeEstimates(ConstraintVariable2[] allConstraintVariables) {
+	/**
+	 * Partitions the constraint variables into the connected components of the constraint graph.
+	 * Two variables are connected if they are in the same type equivalence set or if they are used
+	 * in the same type constraint, so the type estimates of different components can be computed
+	 * independently of each other.
+	 *
+	 * @param allConstraintVariables all constraint variables
+	 * @return the components, with the variables in the order of <code>allConstraintVariables</code>
+	 */
+	private List<ConstraintVariable2[]> computeComponents(ConstraintVariable2[] allConstraintVariables) {
+		Map<ConstraintVariable2, Integer> indices= new HashMap<>();
+		for (int i= 0; i < allConstraintVariables.length; i++) {
+			indices.put(allConstraintVariables[i], Integer.valueOf(i));
+		}
+
+		int[] parents= new int[allConstraintVariables.length];
+		for (int i= 0; i < parents.length; i++) {
+			parents[i]= i;
+		}
 		for (int i= 0; i < allConstraintVariables.length; i++) {
 			ConstraintVariable2 cv= allConstraintVariables[i];
-			//TODO: not necessary for types that are not used in a TypeConstraint but only as type in CollectionElementVariable
-			//TODO: handle nested element variables; see ParametricStructureComputer.createAndInitVars()
 			TypeEquivalenceSet set= cv.getTypeEquivalenceSet();
-			if (set == null) {
-				set= new TypeEquivalenceSet(cv);
-				set.setTypeEstimate(createInitialEstimate(cv));
-				cv.setTypeEquivalenceSet(set);
-			} else {
-				TypeSet typeEstimate= (TypeSet) cv.getTypeEstimate();
-				if (typeEstimate == null) {
-					ConstraintVariable2[] cvs= set.getContributingVariables();
-					typeEstimate= fTypeSetEnvironment.getUniverseTypeSet();
-					for (int j= 0; j < cvs.length; j++) //TODO: optimize: just try to find an immutable CV; if not found, use Universe
-						typeEstimate= typeEstimate.intersectedWith(createInitialEstimate(cvs[j]));
-					set.setTypeEstimate(typeEstimate);
+			if (set != null) {
+				ConstraintVariable2[] contributingVariables= set.getContributingVariables();
+				for (int j= 0; j < contributingVariables.length; j++) {
+					union(parents, i, indices.get(contributingVariables[j]));
 				}
 			}
+			List<ITypeConstraint2> usedIn= fTCModel.getUsedIn(cv);
+			for (Iterator<ITypeConstraint2> iter= usedIn.iterator(); iter.hasNext();) {
+				ITypeConstraint2 tc= iter.next();
+				union(parents, i, indices.get(tc.getLeft()));
+				union(parents, i, indices.get(tc.getRight()));
+			}
 		}
+
+		Map<Integer, List<ConstraintVariable2>> components= new LinkedHashMap<>();
+		for (int i= 0; i < allConstraintVariables.length; i++) {
+			Integer root= Integer.valueOf(find(parents, i));
+			List<ConstraintVariable2> component= components.get(root);
+			if (component == null) {
+				component= new ArrayList<>(1);
+				components.put(root, component);
+			}
+			component.add(allConstraintVariables[i]);
+		}
+		List<ConstraintVariable2[]> result= new ArrayList<>(components.size());
+		for (Iterator<List<ConstraintVariable2>> iter= components.values().iterator(); iter.hasNext();) {
+			List<ConstraintVariable2> component= iter.next();
+			result.add(component.toArray(new ConstraintVariable2[component.size()]));
+		}
+		return result;
 	}
 
-	private TypeSet createInitialEstimate(ConstraintVariable2 cv) {
-		// TODO: check assumption: only immutable CVs have a type
-//		ParametricStructure parametricStructure= fElemStructureEnv.elemStructure(cv);
-//		if (parametricStructure != null && parametricStructure != ParametricStructureComputer.ParametricStructure.NONE) {
-//			return SubTypesOfSingleton.create(parametricStructure.getBase());
-//		}
-
-		TType type= cv.getType();
-		if (type == null) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
-
-		} else if (cv instanceof IndependentTypeVariable2) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
-			//TODO: solve problem with recursive bounds
-//			TypeVariable tv= (TypeVariable) type;
-//			TType[] bounds= tv.getBounds();
-//			TypeSet result= SubTypesOfSingleton.create(bounds[0].getErasure());
-//			for (int i= 1; i < bounds.length; i++) {
-//				result= result.intersectedWith(SubTypesOfSingleton.create(bounds[i].getErasure()));
-//			}
-//			return result;
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i]= parents[parents[i]];
+			i= parents[i];
+		}
+		return i;
+	}
 
-		} else if (cv instanceof ArrayTypeVariable2) {
-			return fTypeSetEnvironment.getUniverseTypeSet();
-		} else if (cv instanceof ArrayElementVariable2) {
-			if (cv.getType() != null && cv.getType().isTypeVariable()) {
-				return fTypeSetEnvironment.getUniverseTypeSet();
+	private static void union(int[] parents, int i, Integer j) {
+		if (j == null)
+			return; // not a variable of the model
+		int iRoot= find(parents, i);
+		int jRoot= find(parents, j.intValue());
+		if (iRoot != jRoot)
+			parents[Math.max(iRoot, jRoot)]= Math.min(iRoot, jRoot);
+	}
+
+	private void solveComponents(List<ConstraintVariable2[]> components, int variableCount, IProgressMonitor pm) {
+		pm.beginTask("", variableCount); //$NON-NLS-1$
+		try {
+			List<List<ConstraintVariable2[]>> chunks= createChunks(components, variableCount);
+			boolean parallel= Boolean.valueOf(System.getProperty(PARALLEL_PROPERTY, "true")).booleanValue(); //$NON-NLS-1$
+			if (parallel && PARALLELISM > 1 && chunks.size() > 1 && variableCount >= MIN_PARALLEL_VARIABLES) {
+				solveInParallel(chunks, pm);
 			} else {
-				return new SingletonTypeSet(type, fTypeSetEnvironment);
+				TypeSetEnvironment typeSetEnvironment= new TypeSetEnvironment(fTCModel.getTypeEnvironment());
+				for (Iterator<List<ConstraintVariable2[]>> iter= chunks.iterator(); iter.hasNext();) {
+					ComponentSolver solver= new ComponentSolver(iter.next(), typeSetEnvironment, pm);
+					pm.worked(solver.call().intValue());
+				}
 			}
-
-		} else if (type.isVoidType()) {
-			return fTypeSetEnvironment.getEmptyTypeSet();
-		} else {
-			return new SingletonTypeSet(type, fTypeSetEnvironment);
+		} finally {
+			pm.done();
 		}
 	}
 
-	private void runSolver(SubProgressMonitor pm) {
-		pm.beginTask("", fWorkList.size() * 3); //$NON-NLS-1$
-		while (! fWorkList.isEmpty()) {
-			// Get a variable whose type estimate has changed
-			ConstraintVariable2 cv= fWorkList.removeFirst();
-			List<ITypeConstraint2> usedIn= fTCModel.getUsedIn(cv);
-			processConstraints(usedIn);
-			pm.worked(1);
-			if (pm.isCanceled())
-				throw new OperationCanceledException();
+	private void solveInParallel(List<List<ConstraintVariable2[]>> chunks, IProgressMonitor pm) {
+		ForkJoinPool pool= getPool();
+		List<Future<Integer>> futures= new ArrayList<>(chunks.size());
+		boolean completed= false;
+		try {
+			for (Iterator<List<ConstraintVariable2[]>> iter= chunks.iterator(); iter.hasNext();) {
+				// TypeSetEnvironments are not thread-safe, so every worker gets its own
+				TypeSetEnvironment typeSetEnvironment= new TypeSetEnvironment(fTCModel.getTypeEnvironment());
+				futures.add(pool.submit(new ComponentSolver(iter.next(), typeSetEnvironment, pm)));
+			}
+			for (Iterator<Future<Integer>> iter= futures.iterator(); iter.hasNext();) {
+				pm.worked(waitFor(iter.next()).intValue());
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+			}
+			completed= true;
+		} finally {
+			if (!completed) {
+				fAborted= true;
+				for (Iterator<Future<Integer>> iter= futures.iterator(); iter.hasNext();) {
+					iter.next().cancel(false);
+				}
+			}
 		}
-		pm.done();
 	}
 
 	/**
-	 * Given a list of <code>ITypeConstraint2</code>s that all refer to a
-	 * given <code>ConstraintVariable2</code> (whose type bound has presumably
-	 * just changed), process each <code>ITypeConstraint</code>, propagating
-	 * the type bound across the constraint as needed.
+	 * Groups the given components into chunks of roughly equal size, so that small components
+	 * don't have to be scheduled one by one.
 	 *
-	 * @param usedIn the <code>List</code> of <code>ITypeConstraint2</code>s
-	 * to process
+	 * @param components the components
+	 * @param variableCount the total number of constraint variables in the components
+	 * @return the chunks
 	 */
-	private void processConstraints(List<ITypeConstraint2> usedIn) {
-		Iterator<ITypeConstraint2> iter= usedIn.iterator();
-		while (iter.hasNext()) {
-			ITypeConstraint2 tc= iter.next();
-
-				maintainSimpleConstraint(tc);
-				//TODO: prune tcs which cannot cause further changes
-				// Maybe these should be pruned after a special first loop over all ConstraintVariables,
-				// Since this can only happen once for every CV in the work list.
-//				if (isConstantConstraint(stc))
-//					fTypeConstraintFactory.removeUsedIn(stc, changedCv);
+	private static List<List<ConstraintVariable2[]>> createChunks(List<ConstraintVariable2[]> components, int variableCount) {
+		int chunkSize= Math.max(MIN_CHUNK_SIZE, variableCount / (PARALLELISM * 4));
+		List<List<ConstraintVariable2[]>> result= new ArrayList<>();
+		List<ConstraintVariable2[]> chunk= new ArrayList<>();
+		int size= 0;
+		for (Iterator<ConstraintVariable2[]> iter= components.iterator(); iter.hasNext();) {
+			ConstraintVariable2[] component= iter.next();
+			chunk.add(component);
+			size+= component.length;
+			if (size >= chunkSize) {
+				result.add(chunk);
+				chunk= new ArrayList<>();
+				size= 0;
+			}
+		}
+		if (!chunk.isEmpty())
+			result.add(chunk);
+		return result;
+	}
+
+	private static <T> T waitFor(Future<T> future) {
+		boolean interrupted= false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted= true;
+				} catch (ExecutionException e) {
+					Throwable cause= e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
 		}
 	}
 
-	private void maintainSimpleConstraint(ITypeConstraint2 stc) {
-		ConstraintVariable2 left= stc.getLeft();
-		ConstraintVariable2 right= stc.getRight();
+	private static synchronized ForkJoinPool getPool() {
+		if (fgPool == null)
+			fgPool= new ForkJoinPool(PARALLELISM);
+		return fgPool;
+	}
+
+	/**
+	 * Computes the type estimates of a group of connected components of the constraint graph.
+	 * Solvers of different components can run concurrently, as long as they don't share a
+	 * {@link TypeSetEnvironment}.
+	 */
+	private final class ComponentSolver implements Callable<Integer> {
+
+		private final List<ConstraintVariable2[]> fComponents;
+		private final TypeSetEnvironment fTypeSetEnvironment;
+		private final IProgressMonitor fMonitor;
+
+		/**
+		 * The work-list used by the type constraint solver to hold the set of
+		 * nodes in the constraint graph that remain to be (re-)processed. Entries
+		 * are <code>ConstraintVariable2</code>s.
+		 */
+		private final LinkedList<ConstraintVariable2> fWorkList= new LinkedList<>();
+
+		/**
+		 * @param components the components to solve
+		 * @param typeSetEnvironment the type set environment, must not be used by other threads
+		 * @param monitor the monitor, only used to check for cancellation
+		 */
+		public ComponentSolver(List<ConstraintVariable2[]> components, TypeSetEnvironment typeSetEnvironment, IProgressMonitor monitor) {
+			fComponents= components;
+			fTypeSetEnvironment= typeSetEnvironment;
+			fMonitor= monitor;
+		}
 
-		TypeEquivalenceSet leftSet= left.getTypeEquivalenceSet();
-		TypeEquivalenceSet rightSet= right.getTypeEquivalenceSet();
-		TypeSet leftEstimate= (TypeSet) leftSet.getTypeEstimate();
-		TypeSet rightEstimate= (TypeSet) rightSet.getTypeEstimate();
+		/**
+		 * @return the number of constraint variables in the solved components
+		 */
+		@Override
+		public Integer call() {
+			int count= 0;
+			for (Iterator<ConstraintVariable2[]> iter= fComponents.iterator(); iter.hasNext();) {
+				ConstraintVariable2[] component= iter.next();
+				checkCanceled();
+				initializeTypeEstimates(component);
+				fWorkList.addAll(Arrays.asList(component));
+				runSolver();
+				count+= component.length;
+			}
+			return Integer.valueOf(count);
+		}
+
+		private void checkCanceled() {
+			if (fAborted || fMonitor.isCanceled())
+				throw new OperationCanceledException();
+		}
+
+		private void initializeTypeEstimates(ConstraintVariable2[] allConstraintVariables) {
+			for (int i= 0; i < allConstraintVariables.length; i++) {
+				ConstraintVariable2 cv= allConstraintVariables[i];
+				//TODO: not necessary for types that are not used in a TypeConstraint but only as type in CollectionElementVariable
+				//TODO: handle nested element variables; see ParametricStructureComputer.createAndInitVars()
+				TypeEquivalenceSet set= cv.getTypeEquivalenceSet();
+				if (set == null) {
+					set= new TypeEquivalenceSet(cv);
+					set.setTypeEstimate(createInitialEstimate(cv));
+					cv.setTypeEquivalenceSet(set);
+				} else {
+					TypeSet typeEstimate= (TypeSet) cv.getTypeEstimate();
+					if (typeEstimate == null) {
+						ConstraintVariable2[] cvs= set.getContributingVariables();
+						typeEstimate= fTypeSetEnvironment.getUniverseTypeSet();
+						for (int j= 0; j < cvs.length; j++) //TODO: optimize: just try to find an immutable CV; if not found, use Universe
+							typeEstimate= typeEstimate.intersectedWith(createInitialEstimate(cvs[j]));
+						set.setTypeEstimate(typeEstimate);
+					}
+				}
+			}
+		}
 
-		if (leftEstimate.isUniverse() && rightEstimate.isUniverse())
-			return; // nothing to do
+		private TypeSet createInitialEstimate(ConstraintVariable2 cv) {
+			// TODO: check assumption: only immutable CVs have a type
+//			ParametricStructure parametricStructure= fElemStructureEnv.elemStructure(cv);
+//			if (parametricStructure != null && parametricStructure != ParametricStructureComputer.ParametricStructure.NONE) {
+//				return SubTypesOfSingleton.create(parametricStructure.getBase());
+//			}
 
-		if (leftEstimate.equals(rightEstimate))
-			return; // nothing to do
+			TType type= cv.getType();
+			if (type == null) {
+				return fTypeSetEnvironment.getUniverseTypeSet();
 
-		TypeSet lhsSuperTypes= leftEstimate.superTypes();
-		TypeSet rhsSubTypes= rightEstimate.subTypes();
+			} else if (cv instanceof IndependentTypeVariable2) {
+				return fTypeSetEnvironment.getUniverseTypeSet();
+				//TODO: solve problem with recursive bounds
+//				TypeVariable tv= (TypeVariable) type;
+//				TType[] bounds= tv.getBounds();
+//				TypeSet result= SubTypesOfSingleton.create(bounds[0].getErasure());
+//				for (int i= 1; i < bounds.length; i++) {
+//					result= result.intersectedWith(SubTypesOfSingleton.create(bounds[i].getErasure()));
+//				}
+//				return result;
+
+			} else if (cv instanceof ArrayTypeVariable2) {
+				return fTypeSetEnvironment.getUniverseTypeSet();
+			} else if (cv instanceof ArrayElementVariable2) {
+				if (cv.getType() != null && cv.getType().isTypeVariable()) {
+					return fTypeSetEnvironment.getUniverseTypeSet();
+				} else {
+					return new SingletonTypeSet(type, fTypeSetEnvironment);
+				}
 
-		if (! rhsSubTypes.containsAll(leftEstimate)) {
-			TypeSet xsection= leftEstimate.intersectedWith(rhsSubTypes);
+			} else if (type.isVoidType()) {
+				return fTypeSetEnvironment.getEmptyTypeSet();
+			} else {
+				return new SingletonTypeSet(type, fTypeSetEnvironment);
+			}
+		}
 
-//			if (xsection.isEmpty()) // too bad, but this can happen
-//				throw new IllegalStateException("Type estimate set is now empty for LHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		private void runSolver() {
+			while (! fWorkList.isEmpty()) {
+				// Get a variable whose type estimate has changed
+				ConstraintVariable2 cv= fWorkList.removeFirst();
+				List<ITypeConstraint2> usedIn= fTCModel.getUsedIn(cv);
+				processConstraints(usedIn);
+				checkCanceled();
+			}
+		}
 
-			leftSet.setTypeEstimate(xsection);
-			fWorkList.addAll(Arrays.asList(leftSet.getContributingVariables()));
+		/**
+		 * Given a list of <code>ITypeConstraint2</code>s that all refer to a
+		 * given <code>ConstraintVariable2</code> (whose type bound has presumably
+		 * just changed), process each <code>ITypeConstraint</code>, propagating
+		 * the type bound across the constraint as needed.
+		 *
+		 * @param usedIn the <code>List</code> of <code>ITypeConstraint2</code>s
+		 * to process
+		 */
+		private void processConstraints(List<ITypeConstraint2> usedIn) {
+			Iterator<ITypeConstraint2> iter= usedIn.iterator();
+			while (iter.hasNext()) {
+				ITypeConstraint2 tc= iter.next();
+
+					maintainSimpleConstraint(tc);
+					//TODO: prune tcs which cannot cause further changes
+					// Maybe these should be pruned after a special first loop over all ConstraintVariables,
+					// Since this can only happen once for every CV in the work list.
+//					if (isConstantConstraint(stc))
+//						fTypeConstraintFactory.removeUsedIn(stc, changedCv);
+			}
 		}
-		if (! lhsSuperTypes.containsAll(rightEstimate)) {
-			TypeSet xsection= rightEstimate.intersectedWith(lhsSuperTypes);
 
-//			if (xsection.isEmpty())
-//				throw new IllegalStateException("Type estimate set is now empty for RHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+		private void maintainSimpleConstraint(ITypeConstraint2 stc) {
+			ConstraintVariable2 left= stc.getLeft();
+			ConstraintVariable2 right= stc.getRight();
+
+			TypeEquivalenceSet leftSet= left.getTypeEquivalenceSet();
+			TypeEquivalenceSet rightSet= right.getTypeEquivalenceSet();
+			TypeSet leftEstimate= (TypeSet) leftSet.getTypeEstimate();
+			TypeSet rightEstimate= (TypeSet) rightSet.getTypeEstimate();
+
+			if (leftEstimate.isUniverse() && rightEstimate.isUniverse())
+				return; // nothing to do
+
+			if (leftEstimate.equals(rightEstimate))
+				return; // nothing to do
+
+			TypeSet lhsSuperTypes= leftEstimate.superTypes();
+			TypeSet rhsSubTypes= rightEstimate.subTypes();
+
+			if (! rhsSubTypes.containsAll(leftEstimate)) {
+				TypeSet xsection= leftEstimate.intersectedWith(rhsSubTypes);
 
-			rightSet.setTypeEstimate(xsection);
-			fWorkList.addAll(Arrays.asList(rightSet.getContributingVariables()));
+//				if (xsection.isEmpty()) // too bad, but this can happen
+//					throw new IllegalStateException("Type estimate set is now empty for LHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+				leftSet.setTypeEstimate(xsection);
+				fWorkList.addAll(Arrays.asList(leftSet.getContributingVariables()));
+			}
+			if (! lhsSuperTypes.containsAll(rightEstimate)) {
+				TypeSet xsection= rightEstimate.intersectedWith(lhsSuperTypes);
+
+//				if (xsection.isEmpty())
+//					throw new IllegalStateException("Type estimate set is now empty for RHS in " + left + " <= " + right + "; estimates were " + leftEstimate + " <= " + rightEstimate); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+				rightSet.setTypeEstimate(xsection);
+				fWorkList.addAll(Arrays.asList(rightSet.getContributingVariables()));
+			}
 		}
 	}
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,12 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.rename;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
@@ -26,8 +29,10 @@ import org.eclipse.ltk.core.refactoring.RefactoringStatusContext;
 import org.eclipse.ltk.core.refactoring.participants.CheckConditionsContext;
 
 import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IRegion;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.ITypeHierarchy;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.Signature;
 
@@ -196,11 +201,13 @@ public class RenameVirtualMethodProcessor extends RenameMethodProcessor {
 		try{
 			Set<IMethod> result= new HashSet<>();
 			Set<IType> types= getRelatedTypes();
-			pm.beginTask("", types.size()); //$NON-NLS-1$
+			pm.beginTask("", types.size() + 3); //$NON-NLS-1$
+			ITypeHierarchy hierarchy= createRelatedTypesHierarchy(types, new SubProgressMonitor(pm, 3));
+			Set<IType> classes= new HashSet<>(Arrays.asList(hierarchy.getAllClasses()));
 			for (Iterator<IType> iter= types.iterator(); iter.hasNext(); ) {
 				final IMethod found= Checks.findMethod(method, iter.next());
-				final IType declaring= found.getDeclaringType();
-				result.addAll(Arrays.asList(hierarchyDeclaresMethodName(new SubProgressMonitor(pm, 1), declaring.newTypeHierarchy(new SubProgressMonitor(pm, 1)), found, newName)));
+				result.addAll(Arrays.asList(relatedTypeDeclaresMethodName(hierarchy, classes, found, newName)));
+				pm.worked(1);
 			}
 			return result.toArray(new IMethod[result.size()]);
 		} finally {
@@ -208,6 +215,93 @@ public class RenameVirtualMethodProcessor extends RenameMethodProcessor {
 		}
 	}
 
+	/**
+	 * Creates one hierarchy with the related types, their supertypes and their subtypes. This
+	 * replaces a hierarchy per related type, which is expensive for interface methods with many
+	 * implementations.
+	 *
+	 * @param types the related types
+	 * @param pm the progress monitor
+	 * @return the hierarchy
+	 * @throws JavaModelException if a hierarchy cannot be created
+	 */
+	private static ITypeHierarchy createRelatedTypesHierarchy(Set<IType> types, IProgressMonitor pm) throws JavaModelException {
+		try {
+			pm.beginTask("", 3); //$NON-NLS-1$
+			IRegion region= JavaCore.newRegion();
+			for (Iterator<IType> iter= types.iterator(); iter.hasNext();)
+				region.add(iter.next());
+			ITypeHierarchy supertypeHierarchy= JavaCore.newTypeHierarchy(region, null, new SubProgressMonitor(pm, 1));
+
+			// every related type is a subtype of a topmost related type, so are its subtypes
+			List<IType> topmostTypes= new ArrayList<>();
+			for (Iterator<IType> iter= types.iterator(); iter.hasNext();) {
+				IType type= iter.next();
+				if (!containsAny(types, supertypeHierarchy.getAllSupertypes(type)))
+					topmostTypes.add(type);
+			}
+			IProgressMonitor subtypesMonitor= new SubProgressMonitor(pm, 1);
+			subtypesMonitor.beginTask("", topmostTypes.size()); //$NON-NLS-1$
+			for (Iterator<IType> iter= topmostTypes.iterator(); iter.hasNext();) {
+				IType type= iter.next();
+				IType[] subtypes= type.newTypeHierarchy(new SubProgressMonitor(subtypesMonitor, 1)).getAllSubtypes(type);
+				for (int i= 0; i < subtypes.length; i++)
+					region.add(subtypes[i]);
+			}
+			subtypesMonitor.done();
+			return JavaCore.newTypeHierarchy(region, null, new SubProgressMonitor(pm, 1));
+		} finally {
+			pm.done();
+		}
+	}
+
+	private static boolean containsAny(Set<IType> set, IType[] types) {
+		for (int i= 0; i < types.length; i++) {
+			if (set.contains(types[i]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the methods with the new name in the hierarchy of the declaring type of the given
+	 * method, like {@link RenameMethodProcessor#hierarchyDeclaresMethodName(IProgressMonitor, ITypeHierarchy, IMethod, String)}
+	 * does for the type hierarchy of that type.
+	 *
+	 * @param hierarchy the hierarchy of the related types
+	 * @param allClasses the classes in the hierarchy
+	 * @param method the method
+	 * @param newName the new name
+	 * @return the methods that would clash with the renamed method
+	 * @throws CoreException if a type cannot be accessed
+	 */
+	private static IMethod[] relatedTypeDeclaresMethodName(ITypeHierarchy hierarchy, Set<IType> allClasses, IMethod method, String newName) throws CoreException {
+		Set<IMethod> result= new HashSet<>();
+		IType type= method.getDeclaringType();
+		IMethod foundMethod= Checks.findMethod(newName, method.getParameterTypes().length, false, type);
+		if (foundMethod != null)
+			result.add(foundMethod);
+
+		// the classes of the hierarchy of the type: the type, its subtypes and their supertypes
+		Set<IType> classes= new LinkedHashSet<>();
+		addClasses(type, hierarchy, allClasses, classes);
+		IType[] subtypes= hierarchy.getAllSubtypes(type);
+		for (int i= 0; i < subtypes.length; i++)
+			addClasses(subtypes[i], hierarchy, allClasses, classes);
+		result.addAll(Arrays.asList(classesDeclareMethodName(hierarchy, new ArrayList<>(classes), method, newName)));
+		return result.toArray(new IMethod[result.size()]);
+	}
+
+	private static void addClasses(IType type, ITypeHierarchy hierarchy, Set<IType> allClasses, Set<IType> classes) {
+		if (allClasses.contains(type))
+			classes.add(type);
+		IType[] supertypes= hierarchy.getAllSupertypes(type);
+		for (int i= 0; i < supertypes.length; i++) {
+			if (allClasses.contains(supertypes[i]))
+				classes.add(supertypes[i]);
+		}
+	}
+
 	private boolean isSpecialCase() throws CoreException {
 		String[] noParams= new String[0];
 		String[] specialNames= new String[]{"toString", "toString", "toString", "toString", "equals", //$NON-NLS-5$ //$NON-NLS-4$ //$NON-NLS-3$ //$NON-NLS-2$ //$NON-NLS-1$
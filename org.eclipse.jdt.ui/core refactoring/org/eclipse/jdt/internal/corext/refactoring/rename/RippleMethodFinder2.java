@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -57,6 +57,7 @@ public class RippleMethodFinder2 {
 	private MultiMap<IType, IType> fRootReps;
 	private Map<IType, ITypeHierarchy> fRootHierarchies;
 	private UnionFind fUnionFind;
+	private Set<IType> fUnitedTypes;
 
 	private final boolean fExcludeBinaries;
 	private final ReferencesInBinaryContext fBinaryRefs;
@@ -380,10 +381,12 @@ public class RippleMethodFinder2 {
 			IType type= iter.next();
 			fUnionFind.init(type);
 		}
+		fUnitedTypes= new HashSet<>();
 		for (Iterator<IType> iter= fTypeToMethod.keySet().iterator(); iter.hasNext();) {
 			IType type= iter.next();
 			uniteWithSupertypes(type, type);
 		}
+		fUnitedTypes= null;
 		fRootReps= new MultiMap<>();
 		for (Iterator<IType> iter= fRootTypes.iterator(); iter.hasNext();) {
 			IType type= iter.next();
@@ -395,6 +398,10 @@ public class RippleMethodFinder2 {
 	}
 
 	private void uniteWithSupertypes(IType anchor, IType type) throws JavaModelException {
+		// uniting is idempotent; a supertype declaring the method is reached once per subtype,
+		// e.g. an interface from each of its many implementations
+		if (anchor.equals(type) && !fUnitedTypes.add(type))
+			return;
 		IType[] supertypes= fHierarchy.getSupertypes(type);
 		for (int i= 0; i < supertypes.length; i++) {
 			IType supertype= supertypes[i];
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,7 +14,14 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -47,10 +54,25 @@ import org.eclipse.jdt.internal.corext.refactoring.SearchResultGroup;
 import org.eclipse.jdt.internal.corext.refactoring.changes.TextChangeCompatibility;
 import org.eclipse.jdt.internal.corext.refactoring.rename.RefactoringScanner.TextMatch;
 import org.eclipse.jdt.internal.corext.refactoring.tagging.ITextUpdating;
+import org.eclipse.jdt.internal.corext.refactoring.util.FileContentFilter;
 import org.eclipse.jdt.internal.corext.refactoring.util.TextChangeManager;
 
+/**
+ * Updates the textual matches of a renamed element in comments and strings.
+ * <p>
+ * The compilation units in the scope are scanned in parallel. Units whose file does not contain
+ * the current name are skipped before their buffer is opened, see {@link FileContentFilter}. The
+ * parallel scan can be disabled with the system property
+ * <code>org.eclipse.jdt.ui.textMatchUpdater.parallel=false</code>.
+ * </p>
+ */
 class TextMatchUpdater {
 
+	private static final boolean PARALLEL= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.textMatchUpdater.parallel", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	// minimal number of compilation units to scan in parallel
+	private static final int PARALLEL_THRESHOLD= 16;
+
 	private static final String TEXT_EDIT_LABEL= RefactoringCoreMessages.TextMatchUpdater_update;
 
 	private static final GroupCategorySet TEXTUAL_MATCHES= new GroupCategorySet(
@@ -63,7 +85,9 @@ class TextMatchUpdater {
 	private final SearchResultGroup[] fReferences;
 	private final boolean fOnlyQualified;
 
-	private final RefactoringScanner fScanner;
+	private final String fCurrentName;
+	private final String fCurrentQualifier;
+	private final FileContentFilter fFilter;
 	private final String fNewName;
 	private final int fCurrentNameLength;
 
@@ -77,8 +101,10 @@ class TextMatchUpdater {
 		fOnlyQualified= onlyQualified;
 
 		fNewName= newName;
+		fCurrentName= currentName;
+		fCurrentQualifier= currentQualifier;
 		fCurrentNameLength= currentName.length();
-		fScanner= new RefactoringScanner(currentName, currentQualifier);
+		fFilter= new FileContentFilter(currentName);
 	}
 
 	static void perform(IProgressMonitor pm, IJavaSearchScope scope, String currentName, String currentQualifier, String newName, TextChangeManager manager, SearchResultGroup[] references, boolean onlyQualified) throws JavaModelException{
@@ -93,12 +119,19 @@ class TextMatchUpdater {
 		try{
 			IProject[] projectsInScope= getProjectsInScope();
 
-			pm.beginTask("", projectsInScope.length); //$NON-NLS-1$
+			pm.beginTask("", 2 * projectsInScope.length); //$NON-NLS-1$
 
+			List<ICompilationUnit> cus= new ArrayList<>();
 			for (int i =0 ; i < projectsInScope.length; i++){
 				if (pm.isCanceled())
 					throw new OperationCanceledException();
-				addTextMatches(projectsInScope[i], new SubProgressMonitor(pm, 1));
+				collectCompilationUnits(projectsInScope[i], cus, new SubProgressMonitor(pm, 1));
+			}
+			List<Set<TextMatch>> matches= scan(cus, new SubProgressMonitor(pm, projectsInScope.length));
+			for (int i= 0; i < cus.size(); i++) {
+				Set<TextMatch> cuMatches= matches.get(i);
+				if (cuMatches != null)
+					addCuTextMatches(cus.get(i), cuMatches);
 			}
 		} finally{
 			pm.done();
@@ -120,7 +153,7 @@ class TextMatchUpdater {
 		return projectsInScope.toArray(new IProject[projectsInScope.size()]);
 	}
 
-	private void addTextMatches(IResource resource, IProgressMonitor pm) throws JavaModelException{
+	private void collectCompilationUnits(IResource resource, List<ICompilationUnit> cus, IProgressMonitor pm) throws JavaModelException{
 		try{
 			String task= RefactoringCoreMessages.TextMatchUpdater_searching + resource.getFullPath();
 			if (resource instanceof IFile){
@@ -132,7 +165,7 @@ class TextMatchUpdater {
 					return;
 				if (! fScope.encloses(element))
 					return;
-				addCuTextMatches((ICompilationUnit) element);
+				cus.add((ICompilationUnit) element);
 
 			} else if (resource instanceof IContainer){
 				IResource[] members= ((IContainer) resource).members();
@@ -142,7 +175,7 @@ class TextMatchUpdater {
 					if (pm.isCanceled())
 						throw new OperationCanceledException();
 
-					addTextMatches(members[i], new SubProgressMonitor(pm, 1));
+					collectCompilationUnits(members[i], cus, new SubProgressMonitor(pm, 1));
 				}
 			}
 		} catch (JavaModelException e){
@@ -154,12 +187,93 @@ class TextMatchUpdater {
 		}
 	}
 
-	private void addCuTextMatches(ICompilationUnit cu) throws JavaModelException{
-		fScanner.scan(cu);
-		Set<TextMatch> matches= fScanner.getMatches(); //Set of TextMatch
-		if (matches.size() == 0)
-			return;
+	/**
+	 * Scans the given compilation units for text matches, in parallel if there are enough of them.
+	 *
+	 * @param cus the compilation units
+	 * @param pm the progress monitor
+	 * @return the matches of each compilation unit, or <code>null</code> for units without matches
+	 * @throws JavaModelException if a buffer cannot be read
+	 */
+	private List<Set<TextMatch>> scan(final List<ICompilationUnit> cus, IProgressMonitor pm) throws JavaModelException {
+		pm.beginTask("", cus.size()); //$NON-NLS-1$
+		try {
+			List<Set<TextMatch>> result= new ArrayList<>(cus.size());
+			int threads= Math.min(Runtime.getRuntime().availableProcessors(), cus.size() / PARALLEL_THRESHOLD);
+			if (!PARALLEL || threads < 2) {
+				for (Iterator<ICompilationUnit> iter= cus.iterator(); iter.hasNext();) {
+					if (pm.isCanceled())
+						throw new OperationCanceledException();
+					result.add(scan(iter.next()));
+					pm.worked(1);
+				}
+				return result;
+			}
+			ExecutorService executor= Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "TextMatchUpdater"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			try {
+				List<Future<Set<TextMatch>>> futures= new ArrayList<>(cus.size());
+				for (Iterator<ICompilationUnit> iter= cus.iterator(); iter.hasNext();) {
+					final ICompilationUnit cu= iter.next();
+					futures.add(executor.submit(new Callable<Set<TextMatch>>() {
+						@Override
+						public Set<TextMatch> call() throws JavaModelException {
+							return scan(cu);
+						}
+					}));
+				}
+				for (Iterator<Future<Set<TextMatch>>> iter= futures.iterator(); iter.hasNext();) {
+					if (pm.isCanceled())
+						throw new OperationCanceledException();
+					result.add(getResult(iter.next()));
+					pm.worked(1);
+				}
+				return result;
+			} finally {
+				executor.shutdownNow();
+			}
+		} finally {
+			pm.done();
+		}
+	}
+
+	private static Set<TextMatch> getResult(Future<Set<TextMatch>> future) throws JavaModelException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} catch (ExecutionException e) {
+			Throwable cause= e.getCause();
+			if (cause instanceof JavaModelException)
+				throw (JavaModelException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private Set<TextMatch> scan(ICompilationUnit cu) throws JavaModelException {
+		if (!cu.isWorkingCopy() && !cu.hasUnsavedChanges()) {
+			IResource resource= cu.getResource();
+			if (resource instanceof IFile && !fFilter.mayContain((IFile) resource))
+				return null;
+		}
+		RefactoringScanner scanner= new RefactoringScanner(fCurrentName, fCurrentQualifier);
+		scanner.scan(cu);
+		Set<TextMatch> matches= scanner.getMatches();
+		return matches.isEmpty() ? null : matches;
+	}
 
+	private void addCuTextMatches(ICompilationUnit cu, Set<TextMatch> matches) {
 		removeReferences(cu, matches);
 		if (matches.size() != 0)
 			addTextUpdates(cu, matches);
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,8 +10,6 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
 
-import java.util.Map;
-
 import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jdt.core.IType;
@@ -59,14 +57,12 @@ public abstract class HierarchyType extends TType {
 
 	public boolean isSubType(HierarchyType other) {
 		if (getEnvironment() == other.getEnvironment()) {
-			Map<TypeTuple, Boolean> cache= getEnvironment().getSubTypeCache();
-			TypeTuple key= new TypeTuple(this, other);
-			Boolean value= cache.get(key);
-			if (value != null)
-				return value.booleanValue();
+			TypeRelationMatrix subTypes= getEnvironment().getSubTypeRelation();
+			int value= subTypes.get(getTypeId(), other.getTypeId());
+			if (value != TypeRelationMatrix.UNKNOWN)
+				return value == TypeRelationMatrix.TRUE;
 			boolean isSub= doIsSubType(other);
-			value= Boolean.valueOf(isSub);
-			cache.put(key, value);
+			subTypes.set(getTypeId(), other.getTypeId(), isSub);
 			return isSub;
 		}
 		return doIsSubType(other);
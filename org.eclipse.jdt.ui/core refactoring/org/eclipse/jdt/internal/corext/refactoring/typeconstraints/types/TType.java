@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,10 +10,6 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
 import org.eclipse.core.runtime.Assert;
 
 import org.eclipse.jdt.core.dom.ITypeBinding;
@@ -68,6 +64,7 @@ public abstract class TType {
 	protected static final TType[] EMPTY_TYPE_ARRAY= new TType[0];
 
 	private TypeEnvironment fEnvironment;
+	private final int fTypeId;
 	private String fBindingKey;
 	private int fModifiers;
 	private int fFlags;
@@ -80,6 +77,7 @@ public abstract class TType {
 	 */
 	protected TType(TypeEnvironment environment) {
 		fEnvironment= environment;
+		fTypeId= environment.addType(this);
 	}
 
 	/**
@@ -139,6 +137,17 @@ public abstract class TType {
 		return fEnvironment;
 	}
 
+	/**
+	 * Returns the id of this type. Ids are dense and unique within the type's environment.
+	 *
+	 * @return the id of this type
+	 * @see TypeEnvironment#getType(int)
+	 * @since 3.12
+	 */
+	public final int getTypeId() {
+		return fTypeId;
+	}
+
 	/**
 	 * Returns the key of the binding from which this type
 	 * got constructed.
@@ -514,14 +523,7 @@ public abstract class TType {
 	 * 		was not created with rememberSubtypes == true
 	 */
 	public TType[] getSubTypes() throws IllegalStateException {
-		Map<TType, ArrayList<TType>> subTypes= fEnvironment.getSubTypes();
-		if (subTypes == null)
-			throw new IllegalStateException("This TypeEnvironment does not remember subtypes"); //$NON-NLS-1$
-		List<TType> subtypes= subTypes.get(this);
-		if (subtypes == null)
-			return EMPTY_TYPE_ARRAY;
-		else
-			return subtypes.toArray(new TType[subtypes.size()]);
+		return fEnvironment.getSubTypes(this);
 	}
 
 	/**
@@ -534,7 +536,16 @@ public abstract class TType {
 	public final boolean canAssignTo(TType lhs) {
 		if (this.isTypeEquivalentTo(lhs))
 			return true;
-		return doCanAssignTo(lhs);
+		if (fEnvironment != lhs.fEnvironment)
+			return doCanAssignTo(lhs);
+
+		TypeRelationMatrix assignability= fEnvironment.getAssignabilityRelation();
+		int value= assignability.get(fTypeId, lhs.fTypeId);
+		if (value != TypeRelationMatrix.UNKNOWN)
+			return value == TypeRelationMatrix.TRUE;
+		boolean canAssign= doCanAssignTo(lhs);
+		assignability.set(fTypeId, lhs.fTypeId, canAssign);
+		return canAssign;
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,9 +11,7 @@
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -39,35 +37,23 @@ import org.eclipse.jdt.internal.ui.javaeditor.ASTProvider;
  * A type environment comprises a set of {@link TType}s that stand for Java {@link ITypeBinding}s.
  * In contrast to type bindings, TTypes of the same type environment also work across project boundaries and
  * across compiler environments, i.e. a type environment can handle bindings from multiple {@link ASTParser} sessions.
+ * <p>
+ * Types are created and subtypes are recorded while holding the lock of the environment, so that
+ * the workers of the parallel constraints solver can create types, e.g. array types, concurrently.
+ * </p>
  * 
  * @see TType
  */
 public class TypeEnvironment {
 
-	private static class ProjectKeyPair {
-		private final IJavaProject fProject;
-		private final String fBindingKey;
-
-		public ProjectKeyPair(IJavaProject project, String bindingKey) {
-			fProject= project;
-			fBindingKey= bindingKey;
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (this == other)
-				return true;
-			if (! (other instanceof ProjectKeyPair))
-				return false;
-			ProjectKeyPair otherPair= (ProjectKeyPair) other;
-			return fProject.equals(otherPair.fProject) && fBindingKey.equals(otherPair.fBindingKey);
-		}
-
-		@Override
-		public int hashCode() {
-			return fProject.hashCode() + fBindingKey.hashCode();
-		}
-	}
+	/**
+	 * Interning table of all types of this environment.
+	 * <p>
+	 * Must be initialized before the predefined types, since every type adds itself on creation.
+	 * </p>
+	 * @since 3.12
+	 */
+	private final TypeTable fTypeTable= new TypeTable();
 
 	/** Type code for the primitive type "int". */
 	public final PrimitiveType INT= new PrimitiveType(this, PrimitiveType.INT, BindingKey.createTypeBindingKey("int")); //$NON-NLS-1$
@@ -103,27 +89,21 @@ public class TypeEnvironment {
 		"java.lang.Double",  //$NON-NLS-1$
 		"java.lang.Byte"};  //$NON-NLS-1$
 
-	private TType OBJECT_TYPE= null;
-
-	private List<Map<TType, ArrayType>>      fArrayTypes= new ArrayList<>();
-	private Map<IJavaElement, StandardType>  fStandardTypes= new HashMap<>();
-	private Map<IJavaElement, GenericType>   fGenericTypes= new HashMap<>();
-	private Map<ProjectKeyPair, ParameterizedType> fParameterizedTypes= new HashMap<>();
-	private Map<IJavaElement, RawType>       fRawTypes= new HashMap<>();
-	private Map<IJavaElement, TypeVariable>  fTypeVariables= new HashMap<>();
-	private Map<ProjectKeyPair, CaptureType> fCaptureTypes= new HashMap<>();
-	private Map<TType, ExtendsWildcardType>  fExtendsWildcardTypes= new HashMap<>();
-	private Map<TType, SuperWildcardType>    fSuperWildcardTypes= new HashMap<>();
+	private volatile TType OBJECT_TYPE= null;
+
 	private UnboundWildcardType fUnboundWildcardType= null;
 
-	private static final int MAX_ENTRIES= 1024;
-	private Map<TypeTuple, Boolean> fSubTypeCache= new LinkedHashMap<TypeTuple, Boolean>(50, 0.75f, true) {
-		private static final long serialVersionUID= 1L;
-		@Override
-		protected boolean removeEldestEntry(Map.Entry<TypeTuple, Boolean> eldest) {
-			return size() > MAX_ENTRIES;
-		}
-	};
+	/**
+	 * Memoized subtype relation of hierarchy types.
+	 * @since 3.12
+	 */
+	private final TypeRelationMatrix fSubTypeRelation= new TypeRelationMatrix();
+
+	/**
+	 * Memoized results of {@link TType#canAssignTo(TType)}.
+	 * @since 3.12
+	 */
+	private final TypeRelationMatrix fAssignabilityRelation= new TypeRelationMatrix();
 
 	/**
 	 * Map from TType to its known subtypes, or <code>null</code> iff subtype
@@ -182,11 +162,37 @@ public class TypeEnvironment {
 		fRemoveCapures= removeCapures;
 	}
 
-	Map<TypeTuple, Boolean> getSubTypeCache() {
-		return fSubTypeCache;
+	TypeRelationMatrix getSubTypeRelation() {
+		return fSubTypeRelation;
+	}
+
+	TypeRelationMatrix getAssignabilityRelation() {
+		return fAssignabilityRelation;
 	}
 
-	public TType create(ITypeBinding binding) {
+	/**
+	 * Adds a newly created type to this environment.
+	 *
+	 * @param type the type, not initialized yet
+	 * @return the id of the type
+	 */
+	int addType(TType type) {
+		return fTypeTable.add(type);
+	}
+
+	/**
+	 * Returns the type with the given id.
+	 *
+	 * @param id the id of a type of this environment
+	 * @return the type
+	 * @see TType#getTypeId()
+	 * @since 3.12
+	 */
+	public TType getType(int id) {
+		return fTypeTable.get(id);
+	}
+
+	public synchronized TType create(ITypeBinding binding) {
 		if (binding.isPrimitive()) {
 			return createPrimitiveType(binding);
 		} else if (binding.isArray()) {
@@ -241,7 +247,7 @@ public class TypeEnvironment {
 		return OBJECT_TYPE;
 	}
 
-	public void initializeJavaLangObject(IJavaProject project) {
+	public synchronized void initializeJavaLangObject(IJavaProject project) {
 		if (OBJECT_TYPE != null)
 			return;
 		
@@ -249,7 +255,7 @@ public class TypeEnvironment {
 		Assert.isTrue(objectType.isJavaLangObject());
 	}
 	
-	void initializeJavaLangObject(ITypeBinding object) {
+	synchronized void initializeJavaLangObject(ITypeBinding object) {
 		if (OBJECT_TYPE != null)
 			return;
 
@@ -266,7 +272,7 @@ public class TypeEnvironment {
 		return null;
 	}
 
-	StandardType createBoxed(PrimitiveType type, IJavaProject focus) {
+	synchronized StandardType createBoxed(PrimitiveType type, IJavaProject focus) {
 		String fullyQualifiedName= BOXED_PRIMITIVE_NAMES[type.getId()];
 		return createStandardType(fullyQualifiedName, focus);
 	}
@@ -274,7 +280,7 @@ public class TypeEnvironment {
 	private StandardType createStandardType(String fullyQualifiedName, IJavaProject focus) {
 		try {
 			IType javaElementType= focus.findType(fullyQualifiedName);
-			StandardType result= fStandardTypes.get(javaElementType);
+			StandardType result= (StandardType) fTypeTable.lookup(TType.STANDARD_TYPE, javaElementType, null);
 			if (result != null)
 				return result;
 			ASTParser parser= ASTParser.newParser(ASTProvider.SHARED_AST_LEVEL);
@@ -287,8 +293,20 @@ public class TypeEnvironment {
 		return null;
 	}
 
-	Map<TType, ArrayList<TType>> getSubTypes() {
-		return fSubTypes;
+	/**
+	 * Returns the known direct subtypes of the given type.
+	 *
+	 * @param type a type of this environment
+	 * @return the subtypes
+	 * @throws IllegalStateException if this environment does not remember subtypes
+	 */
+	synchronized TType[] getSubTypes(TType type) throws IllegalStateException {
+		if (fSubTypes == null)
+			throw new IllegalStateException("This TypeEnvironment does not remember subtypes"); //$NON-NLS-1$
+		List<TType> subtypes= fSubTypes.get(type);
+		if (subtypes == null)
+			return TType.EMPTY_TYPE_ARRAY;
+		return subtypes.toArray(new TType[subtypes.size()]);
 	}
 
 	private void cacheSubType(TType supertype, TType result) {
@@ -325,55 +343,40 @@ public class TypeEnvironment {
 		return null;
 	}
 
-	private ArrayType createArrayType(ITypeBinding binding) {
-		int index= binding.getDimensions() - 1;
+	private synchronized ArrayType createArrayType(ITypeBinding binding) {
 		TType elementType= create(binding.getElementType());
-		Map<TType, ArrayType> arrayTypes= getArrayTypesMap(index);
-		ArrayType result= arrayTypes.get(elementType);
+		Integer dimensions= Integer.valueOf(binding.getDimensions());
+		ArrayType result= (ArrayType) fTypeTable.lookup(TType.ARRAY_TYPE, elementType, dimensions);
 		if (result != null)
 			return result;
 		result= new ArrayType(this);
-		arrayTypes.put(elementType, result);
+		fTypeTable.index(result.getTypeId(), TType.ARRAY_TYPE, elementType, dimensions);
 		result.initialize(binding, elementType);
 		return result;
 	}
 
-	public ArrayType createArrayType(TType elementType, int dimensions) {
+	public synchronized ArrayType createArrayType(TType elementType, int dimensions) {
 		Assert.isTrue(! elementType.isArrayType());
 		Assert.isTrue(! elementType.isAnonymous());
 		Assert.isTrue(dimensions > 0);
 
-		int index= dimensions - 1;
-		Map<TType, ArrayType> arrayTypes= getArrayTypesMap(index);
-		ArrayType result= arrayTypes.get(elementType);
+		Integer key= Integer.valueOf(dimensions);
+		ArrayType result= (ArrayType) fTypeTable.lookup(TType.ARRAY_TYPE, elementType, key);
 		if (result != null)
 			return result;
 		result= new ArrayType(this, BindingKey.createArrayTypeBindingKey(elementType.getBindingKey(), dimensions));
-		arrayTypes.put(elementType, result);
+		fTypeTable.index(result.getTypeId(), TType.ARRAY_TYPE, elementType, key);
 		result.initialize(elementType, dimensions);
 		return result;
 	}
 
-	private Map<TType, ArrayType> getArrayTypesMap(int index) {
-		int oldLength= fArrayTypes.size();
-		if (index >= oldLength) {
-			fArrayTypes.addAll(Collections.<Map<TType,ArrayType>>nCopies(index + 1 - oldLength, null));
-		}
-		Map<TType, ArrayType> arrayTypes= fArrayTypes.get(index);
-		if (arrayTypes == null) {
-			arrayTypes= new HashMap<>();
-			fArrayTypes.set(index, arrayTypes);
-		}
-		return arrayTypes;
-	}
-
 	private StandardType createStandardType(ITypeBinding binding) {
 		IJavaElement javaElement= binding.getJavaElement();
-		StandardType result= fStandardTypes.get(javaElement);
+		StandardType result= (StandardType) fTypeTable.lookup(TType.STANDARD_TYPE, javaElement, null);
 		if (result != null)
 			return result;
 		result= new StandardType(this);
-		fStandardTypes.put(javaElement, result);
+		fTypeTable.index(result.getTypeId(), TType.STANDARD_TYPE, javaElement, null);
 		result.initialize(binding, (IType)javaElement);
 		if (OBJECT_TYPE == null && result.isJavaLangObject())
 			OBJECT_TYPE= result;
@@ -382,11 +385,11 @@ public class TypeEnvironment {
 
 	private GenericType createGenericType(ITypeBinding binding) {
 		IJavaElement javaElement= binding.getJavaElement();
-		GenericType result= fGenericTypes.get(javaElement);
+		GenericType result= (GenericType) fTypeTable.lookup(TType.GENERIC_TYPE, javaElement, null);
 		if (result != null)
 			return result;
 		result= new GenericType(this);
-		fGenericTypes.put(javaElement, result);
+		fTypeTable.index(result.getTypeId(), TType.GENERIC_TYPE, javaElement, null);
 		result.initialize(binding, (IType)javaElement);
 		cacheSubType(result.getSuperclass(), result);
 		cacheSubTypes(result.getInterfaces(), result);
@@ -396,12 +399,11 @@ public class TypeEnvironment {
 	private ParameterizedType createParameterizedType(ITypeBinding binding) {
 		IJavaProject javaProject= binding.getJavaElement().getJavaProject();
 		String bindingKey= binding.getKey();
-		ProjectKeyPair pair= new ProjectKeyPair(javaProject, bindingKey);
-		ParameterizedType result= fParameterizedTypes.get(pair);
+		ParameterizedType result= (ParameterizedType) fTypeTable.lookup(TType.PARAMETERIZED_TYPE, javaProject, bindingKey);
 		if (result != null)
 			return result;
 		result= new ParameterizedType(this);
-		fParameterizedTypes.put(pair, result);
+		fTypeTable.index(result.getTypeId(), TType.PARAMETERIZED_TYPE, javaProject, bindingKey);
 		result.initialize(binding, (IType)binding.getJavaElement());
 		cacheSubType(result.getSuperclass(), result);
 		cacheSubTypes(result.getInterfaces(), result);
@@ -410,11 +412,11 @@ public class TypeEnvironment {
 
 	private RawType createRawType(ITypeBinding binding) {
 		IJavaElement javaElement= binding.getJavaElement();
-		RawType result= fRawTypes.get(javaElement);
+		RawType result= (RawType) fTypeTable.lookup(TType.RAW_TYPE, javaElement, null);
 		if (result != null)
 			return result;
 		result= new RawType(this);
-		fRawTypes.put(javaElement, result);
+		fTypeTable.index(result.getTypeId(), TType.RAW_TYPE, javaElement, null);
 		result.initialize(binding, (IType)javaElement);
 		cacheSubType(result.getSuperclass(), result);
 		cacheSubTypes(result.getInterfaces(), result);
@@ -431,33 +433,33 @@ public class TypeEnvironment {
 
 	private TType createExtendsWildCardType(ITypeBinding binding) {
 		TType bound= create(binding.getBound());
-		ExtendsWildcardType result= fExtendsWildcardTypes.get(bound);
+		ExtendsWildcardType result= (ExtendsWildcardType) fTypeTable.lookup(TType.EXTENDS_WILDCARD_TYPE, bound, null);
 		if (result != null)
 			return result;
 		result= new ExtendsWildcardType(this);
-		fExtendsWildcardTypes.put(bound, result);
+		fTypeTable.index(result.getTypeId(), TType.EXTENDS_WILDCARD_TYPE, bound, null);
 		result.initialize(binding);
 		return result;
 	}
 
 	private TType createSuperWildCardType(ITypeBinding binding) {
 		TType bound= create(binding.getBound());
-		SuperWildcardType result= fSuperWildcardTypes.get(bound);
+		SuperWildcardType result= (SuperWildcardType) fTypeTable.lookup(TType.SUPER_WILDCARD_TYPE, bound, null);
 		if (result != null)
 			return result;
 		result= new SuperWildcardType(this);
-		fSuperWildcardTypes.put(bound, result);
+		fTypeTable.index(result.getTypeId(), TType.SUPER_WILDCARD_TYPE, bound, null);
 		result.initialize(binding);
 		return result;
 	}
 
 	private TypeVariable createTypeVariable(ITypeBinding binding) {
 		IJavaElement javaElement= binding.getJavaElement();
-		TypeVariable result= fTypeVariables.get(javaElement);
+		TypeVariable result= (TypeVariable) fTypeTable.lookup(TType.TYPE_VARIABLE, javaElement, null);
 		if (result != null)
 			return result;
 		result= new TypeVariable(this);
-		fTypeVariables.put(javaElement, result);
+		fTypeTable.index(result.getTypeId(), TType.TYPE_VARIABLE, javaElement, null);
 		result.initialize(binding, (ITypeParameter)javaElement);
 		return result;
 	}
@@ -465,12 +467,11 @@ public class TypeEnvironment {
 	private CaptureType createCaptureType(ITypeBinding binding) {
 		IJavaProject javaProject= binding.getDeclaringClass().getJavaElement().getJavaProject();
 		String bindingKey= binding.getKey();
-		ProjectKeyPair pair= new ProjectKeyPair(javaProject, bindingKey);
-		CaptureType result= fCaptureTypes.get(pair);
+		CaptureType result= (CaptureType) fTypeTable.lookup(TType.CAPTURE_TYPE, javaProject, bindingKey);
 		if (result != null)
 			return result;
 		result= new CaptureType(this);
-		fCaptureTypes.put(pair, result);
+		fTypeTable.index(result.getTypeId(), TType.CAPTURE_TYPE, javaProject, bindingKey);
 		result.initialize(binding, javaProject);
 		return result;
 	}
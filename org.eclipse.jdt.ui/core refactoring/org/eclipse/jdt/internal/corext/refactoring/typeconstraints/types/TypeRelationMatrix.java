@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
+
+import java.util.Arrays;
+
+
+/**
+ * A memoized binary relation between the types of a {@link TypeEnvironment}, e.g. the
+ * subtype relation. The relation is stored as a matrix of two bits per pair of type ids
+ * (known, value). Rows are allocated lazily and only grow up to the largest column that has been
+ * stored in them. If the matrix exceeds its budget, it is cleared.
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @since 3.12
+ */
+final class TypeRelationMatrix {
+
+	public static final int UNKNOWN= -1;
+	public static final int FALSE= 0;
+	public static final int TRUE= 1;
+
+	/**
+	 * Maximal number of words of all rows, 8 MB.
+	 */
+	private static final int MAX_WORDS= 1 << 20;
+
+	private static final int PAIRS_PER_WORD= 32;
+
+	private long[][] fRows= new long[0][];
+	private int fWords;
+
+	/**
+	 * Returns the memoized relation of the given types.
+	 *
+	 * @param row the id of the first type
+	 * @param column the id of the second type
+	 * @return {@link #TRUE}, {@link #FALSE}, or {@link #UNKNOWN} if the relation of the types is not
+	 *         known
+	 */
+	public synchronized int get(int row, int column) {
+		if (row >= fRows.length)
+			return UNKNOWN;
+		long[] words= fRows[row];
+		int word= column / PAIRS_PER_WORD;
+		if (words == null || word >= words.length)
+			return UNKNOWN;
+		int bits= (int) (words[word] >>> shift(column)) & 3;
+		if ((bits & 1) == 0)
+			return UNKNOWN;
+		return bits >>> 1;
+	}
+
+	/**
+	 * Memoizes the relation of the given types.
+	 *
+	 * @param row the id of the first type
+	 * @param column the id of the second type
+	 * @param value whether the types are related
+	 */
+	public synchronized void set(int row, int column, boolean value) {
+		int word= column / PAIRS_PER_WORD;
+		if (row >= fRows.length)
+			fRows= Arrays.copyOf(fRows, Math.max(row + 1, fRows.length * 2));
+		long[] words= fRows[row];
+		if (words == null || word >= words.length) {
+			int length= words == null ? word + 1 : Math.max(word + 1, words.length * 2);
+			int oldLength= words == null ? 0 : words.length;
+			if (fWords + length - oldLength > MAX_WORDS) {
+				clear();
+				words= null;
+				length= word + 1;
+				oldLength= 0;
+			}
+			words= words == null ? new long[length] : Arrays.copyOf(words, length);
+			fRows[row]= words;
+			fWords+= length - oldLength;
+		}
+		int shift= shift(column);
+		words[word]= (words[word] & ~(3L << shift)) | ((value ? 3L : 1L) << shift);
+	}
+
+	/**
+	 * Forgets all memoized relations.
+	 */
+	public synchronized void clear() {
+		fRows= new long[fRows.length][];
+		fWords= 0;
+	}
+
+	private static int shift(int column) {
+		return (column % PAIRS_PER_WORD) * 2;
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types;
+
+import java.util.Arrays;
+
+
+/**
+ * The interning table of the {@link TType}s of a {@link TypeEnvironment}.
+ * <p>
+ * Every type gets a dense id in the order of creation. Types can additionally be indexed by their
+ * kind and up to two key objects (e.g. the Java element of a hierarchy type, or the project and
+ * binding key of a parameterized type). The index is an open addressing hash table of type ids, so
+ * no entry or key pair objects are allocated per type.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @since 3.12
+ */
+final class TypeTable {
+
+	private static final int INITIAL_CAPACITY= 256;
+
+	private TType[] fTypes= new TType[INITIAL_CAPACITY];
+	private int fSize;
+
+	/* Index data, by type id. A kind of 0 marks types that are not indexed. */
+	private int[] fKinds= new int[INITIAL_CAPACITY];
+	private int[] fHashes= new int[INITIAL_CAPACITY];
+	private Object[] fFirstKeys= new Object[INITIAL_CAPACITY];
+	private Object[] fSecondKeys= new Object[INITIAL_CAPACITY];
+
+	/**
+	 * Slots of the index, holding <code>id + 1</code> of the indexed types, or 0 for free
+	 * slots. The length is a power of two.
+	 */
+	private int[] fSlots= new int[INITIAL_CAPACITY * 2];
+	private int fIndexed;
+
+	/**
+	 * Adds the given type to the table.
+	 *
+	 * @param type the type, may not be fully initialized yet
+	 * @return the id of the type
+	 */
+	public synchronized int add(TType type) {
+		if (fSize == fTypes.length) {
+			int capacity= fSize * 2;
+			fTypes= Arrays.copyOf(fTypes, capacity);
+			fKinds= Arrays.copyOf(fKinds, capacity);
+			fHashes= Arrays.copyOf(fHashes, capacity);
+			fFirstKeys= Arrays.copyOf(fFirstKeys, capacity);
+			fSecondKeys= Arrays.copyOf(fSecondKeys, capacity);
+		}
+		fTypes[fSize]= type;
+		return fSize++;
+	}
+
+	/**
+	 * Indexes the type with the given id by the given kind and keys.
+	 *
+	 * @param id the id of a type of this table that is not indexed yet
+	 * @param kind the kind of the type, see {@link TType#getKind()}
+	 * @param firstKey the first key, can be <code>null</code>
+	 * @param secondKey the second key, can be <code>null</code>
+	 */
+	public synchronized void index(int id, int kind, Object firstKey, Object secondKey) {
+		if ((fIndexed + 1) * 2 > fSlots.length)
+			rehash(fSlots.length * 2);
+		int hash= hash(kind, firstKey, secondKey);
+		fKinds[id]= kind;
+		fHashes[id]= hash;
+		fFirstKeys[id]= firstKey;
+		fSecondKeys[id]= secondKey;
+		insert(id, hash);
+		fIndexed++;
+	}
+
+	/**
+	 * Returns the indexed type with the given kind and keys.
+	 *
+	 * @param kind the kind of the type, see {@link TType#getKind()}
+	 * @param firstKey the first key, can be <code>null</code>
+	 * @param secondKey the second key, can be <code>null</code>
+	 * @return the type or <code>null</code> if there is none
+	 */
+	public synchronized TType lookup(int kind, Object firstKey, Object secondKey) {
+		int hash= hash(kind, firstKey, secondKey);
+		int mask= fSlots.length - 1;
+		for (int slot= hash & mask; fSlots[slot] != 0; slot= (slot + 1) & mask) {
+			int id= fSlots[slot] - 1;
+			if (fHashes[id] == hash && fKinds[id] == kind && equals(fFirstKeys[id], firstKey) && equals(fSecondKeys[id], secondKey))
+				return fTypes[id];
+		}
+		return null;
+	}
+
+	/**
+	 * @param id the id of a type
+	 * @return the type with the given id
+	 */
+	public synchronized TType get(int id) {
+		if (id >= fSize)
+			throw new IndexOutOfBoundsException(Integer.toString(id));
+		return fTypes[id];
+	}
+
+	/**
+	 * @return the number of types in this table
+	 */
+	public synchronized int size() {
+		return fSize;
+	}
+
+	private void rehash(int capacity) {
+		fSlots= new int[capacity];
+		for (int id= 0; id < fSize; id++) {
+			if (fKinds[id] != 0)
+				insert(id, fHashes[id]);
+		}
+	}
+
+	private void insert(int id, int hash) {
+		int mask= fSlots.length - 1;
+		int slot= hash & mask;
+		while (fSlots[slot] != 0)
+			slot= (slot + 1) & mask;
+		fSlots[slot]= id + 1;
+	}
+
+	private static int hash(int kind, Object firstKey, Object secondKey) {
+		int hash= kind;
+		hash= 31 * hash + (firstKey == null ? 0 : firstKey.hashCode());
+		hash= 31 * hash + (secondKey == null ? 0 : secondKey.hashCode());
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean equals(Object key, Object other) {
+		return key == null ? other == null : key.equals(other);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,9 +10,11 @@
  *******************************************************************************/
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.Assert;
 
@@ -21,24 +23,76 @@ import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints2.TTypes;
 
 /**
- * A type-safe wrapper for {@code Set<TType>} that also adds {@code TType}-specific
+ * A type-safe set of {@code TType}s that also adds {@code TType}-specific
  * functionality, e.g. subTypes() and superTypes().
+ * <p>
+ * The members are identified by {@link TType#getTypeId()}. The ids are recorded in
+ * insertion order, and the members are iterated in that order, so that clients which
+ * pick the first member of a set get the same choice regardless of the ids of the types.
+ * Sets with more than a few members additionally keep a bit set indexed by the ids, so
+ * that the set operations of the solver don't have to hash and allocate per member.
+ * </p>
  */
 public class EnumeratedTypeSet extends TypeSet {
-	static private int sCount= 0;
+	static private final AtomicInteger sCount= new AtomicInteger();
 
 	static public int getCount() {
-		return sCount;
+		return sCount.get();
 	}
 
 	static public void resetCount() {
-		sCount= 0;
+		sCount.set(0);
 	}
 
+	private static final int[] EMPTY_ORDER= new int[0];
+
 	/**
-	 * Set containing the TTypes in this EnumeratedTypeSet.
+	 * The number of members up to which no bit set is kept. A bit set costs one bit per type
+	 * id up to the highest member, i.e. up to the number of types of the environment.
 	 */
-	Set<TType> fMembers= new LinkedHashSet<>();
+	private static final int SMALL_SET_SIZE= 8;
+
+	private final class MemberIterator implements Iterator<TType> {
+
+		private int fNext= nextMember(0);
+
+		@Override
+		public boolean hasNext() {
+			return fNext < fOrderSize;
+		}
+
+		@Override
+		public TType next() {
+			if (fNext >= fOrderSize)
+				throw new NoSuchElementException();
+			TType type= getTypeSetEnvironment().getType(fOrder[fNext]);
+			fNext= nextMember(fNext + 1);
+			return type;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Bit set containing the ids of the TTypes in this EnumeratedTypeSet, or <code>null</code>
+	 * while the set is small and {@link #fOrder} contains exactly the ids of the members.
+	 */
+	private BitSet fMembers;
+
+	/**
+	 * The ids of the members in insertion order. If there is a bit set, it can also contain ids of
+	 * removed members, which are skipped when iterating, but never the id of a member twice.
+	 */
+	private int[] fOrder= EMPTY_ORDER;
+	private int fOrderSize;
+
+	/**
+	 * <code>true</code> if members have been removed since {@link #fOrder} has been compacted.
+	 */
+	private boolean fHasRemovedMembers;
 
 	/**
 	 * Constructs a new EnumeratedTypeSet with the members of Set s in it.
@@ -50,9 +104,9 @@ public class EnumeratedTypeSet extends TypeSet {
 	public EnumeratedTypeSet(Iterator<TType> types, TypeSetEnvironment typeSetEnvironment) {
 		super(typeSetEnvironment);
 		while (types.hasNext()) {
-			fMembers.add(types.next());
+			addId(typeSetEnvironment.getTypeId(types.next()));
 		}
-		sCount++;
+		sCount.incrementAndGet();
 	}
 
 	/**
@@ -62,7 +116,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	 */
 	public EnumeratedTypeSet(TypeSetEnvironment typeSetEnvironment) {
 		super(typeSetEnvironment);
-		sCount++;
+		sCount.incrementAndGet();
 	}
 
 	/**
@@ -74,8 +128,137 @@ public class EnumeratedTypeSet extends TypeSet {
 	public EnumeratedTypeSet(TType t, TypeSetEnvironment typeSetEnvironment) {
 		super(typeSetEnvironment);
 		Assert.isNotNull(t);
-		fMembers.add(t);
-		sCount++;
+		addId(typeSetEnvironment.getTypeId(t));
+		sCount.incrementAndGet();
+	}
+
+	private int nextMember(int index) {
+		if (fMembers != null) {
+			while (index < fOrderSize && !fMembers.get(fOrder[index]))
+				index++;
+		}
+		return index;
+	}
+
+	private boolean hasId(int id) {
+		if (fMembers != null)
+			return fMembers.get(id);
+		for (int i= 0; i < fOrderSize; i++) {
+			if (fOrder[i] == id)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the type with the given id at the end of the insertion order, unless it is a member
+	 * already.
+	 *
+	 * @param id the id of the type
+	 * @return <code>true</code> if the type has been added
+	 */
+	private boolean addId(int id) {
+		if (hasId(id))
+			return false;
+		if (fHasRemovedMembers)
+			compactOrder();
+		if (fMembers == null && fOrderSize == SMALL_SET_SIZE) {
+			fMembers= new BitSet();
+			for (int i= 0; i < fOrderSize; i++)
+				fMembers.set(fOrder[i]);
+		}
+		if (fOrderSize == fOrder.length)
+			fOrder= Arrays.copyOf(fOrder, Math.max(4, fOrderSize * 2));
+		fOrder[fOrderSize++]= id;
+		if (fMembers != null)
+			fMembers.set(id);
+		return true;
+	}
+
+	/**
+	 * Removes the type with the given id.
+	 *
+	 * @param id the id of the type
+	 * @return <code>true</code> if the type has been a member
+	 */
+	private boolean removeId(int id) {
+		if (fMembers != null) {
+			if (!fMembers.get(id))
+				return false;
+			fMembers.clear(id);
+			fHasRemovedMembers= true;
+			return true;
+		}
+		for (int i= 0; i < fOrderSize; i++) {
+			if (fOrder[i] == id) {
+				System.arraycopy(fOrder, i + 1, fOrder, i, fOrderSize - i - 1);
+				fOrderSize--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the ids of removed members from the insertion order, so that they can be added again,
+	 * and drops the bit set if the set has become small.
+	 */
+	private void compactOrder() {
+		int size= 0;
+		for (int i= 0; i < fOrderSize; i++) {
+			if (fMembers.get(fOrder[i]))
+				fOrder[size++]= fOrder[i];
+		}
+		fOrderSize= size;
+		fHasRemovedMembers= false;
+		if (size <= SMALL_SET_SIZE)
+			fMembers= null;
+	}
+
+	/**
+	 * Keeps only the members that are (or are not) members of the given set. The result is small,
+	 * so this is used unless both sets have a bit set.
+	 *
+	 * @param s the other set
+	 * @param retain <code>true</code> to keep the members of <code>s</code>, <code>false</code>
+	 *            to keep the others
+	 * @return <code>true</code> if members have been removed
+	 */
+	private boolean filterMembers(EnumeratedTypeSet s, boolean retain) {
+		int oldSize= size();
+		int size= 0;
+		for (int i= nextMember(0); i < fOrderSize; i= nextMember(i + 1)) {
+			int id= fOrder[i];
+			if (s.hasId(id) == retain)
+				fOrder[size++]= id;
+		}
+		fOrderSize= size;
+		fHasRemovedMembers= false;
+		if (size <= SMALL_SET_SIZE) {
+			fMembers= null;
+		} else {
+			fMembers= new BitSet();
+			for (int i= 0; i < fOrderSize; i++)
+				fMembers.set(fOrder[i]);
+		}
+		return size != oldSize;
+	}
+
+	/**
+	 * Replaces the members of this set by the members of the given set, in the same order.
+	 *
+	 * @param s the other set
+	 */
+	private void copyMembers(EnumeratedTypeSet s) {
+		fMembers= s.fMembers == null ? null : (BitSet) s.fMembers.clone();
+		fOrder= EMPTY_ORDER;
+		fOrderSize= 0;
+		fHasRemovedMembers= false;
+		for (int i= s.nextMember(0); i < s.fOrderSize; i= s.nextMember(i + 1)) {
+			if (fOrderSize == fOrder.length)
+				fOrder= Arrays.copyOf(fOrder, Math.max(4, fOrderSize * 2));
+			fOrder[fOrderSize++]= s.fOrder[i];
+		}
 	}
 
 	/**
@@ -92,19 +275,21 @@ public class EnumeratedTypeSet extends TypeSet {
 		if (o instanceof EnumeratedTypeSet) {
 			EnumeratedTypeSet other= (EnumeratedTypeSet) o;
 
-			return fMembers.equals(other.fMembers);
+			if (fMembers != null && other.fMembers != null)
+				return fMembers.equals(other.fMembers);
+			return size() == other.size() && containsAll(other);
 		} else if (o instanceof SingletonTypeSet) {
 			SingletonTypeSet other= (SingletonTypeSet) o;
 
-			return (fMembers.size() == 1) && fMembers.contains(other.anyMember());
+			return (size() == 1) && contains(other.anyMember());
 		} else if (o instanceof TypeSet) {
 			TypeSet other= (TypeSet) o;
 
 			for(Iterator<TType> otherIter= other.iterator(); otherIter.hasNext(); ) {
-				if (!fMembers.contains(otherIter.next()))
+				if (!contains(otherIter.next()))
 					return false;
 			}
-			for(Iterator<TType> myIter= fMembers.iterator(); myIter.hasNext(); ) {
+			for(Iterator<TType> myIter= iterator(); myIter.hasNext(); ) {
 				if (!other.contains(myIter.next()))
 					return false;
 			}
@@ -115,7 +300,12 @@ public class EnumeratedTypeSet extends TypeSet {
 
 	@Override
 	public int hashCode() {
-		return 37 + fMembers.hashCode();
+		// must not depend on whether there is a bit set
+		int hashCode= 0;
+		for (int i= nextMember(0); i < fOrderSize; i= nextMember(i + 1)) {
+			hashCode+= fOrder[i];
+		}
+		return 37 + hashCode;
 	}
 
 	/**
@@ -149,8 +339,7 @@ public class EnumeratedTypeSet extends TypeSet {
 			// More than an optimization: the universe never contains array types, so
 			// if s2 has array types, the following will retain them, as it should.
 			EnumeratedTypeSet ets2= (EnumeratedTypeSet) s2;
-			fMembers= new LinkedHashSet<>();
-			fMembers.addAll(ets2.fMembers);
+			copyMembers(ets2);
 		} else
 			retainAll(s2);
 	}
@@ -164,7 +353,7 @@ public class EnumeratedTypeSet extends TypeSet {
 		if (isUniverse())
 			return makeClone(); // subtypes(universe) = universe
 
-		if (fMembers.contains(getJavaLangObject()))
+		if (contains(getJavaLangObject()))
 			return getTypeSetEnvironment().getUniverseTypeSet();
 
 		return getTypeSetEnvironment().createSubTypesSet(this);
@@ -197,66 +386,64 @@ public class EnumeratedTypeSet extends TypeSet {
 	public TypeSet makeClone() {
 		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
 
-		result.fMembers.addAll(fMembers);
+		result.copyMembers(this);
 		result.initComplete();
 		return result;
 	}
 
 	public int size() {
-		return fMembers.size();
+		return fMembers == null ? fOrderSize : fMembers.cardinality();
 	}
 
 	public void clear() {
-		if (isUniverse())
-			fMembers= new LinkedHashSet<>();
-		else
-			fMembers.clear();
+		fMembers= null;
+		fOrder= EMPTY_ORDER;
+		fOrderSize= 0;
+		fHasRemovedMembers= false;
 	}
 
 	@Override
 	public boolean isEmpty() {
-		return fMembers.isEmpty();
+		return size() == 0;
 	}
 
 	public TType[] toArray() {
-		return fMembers.toArray(new TType[fMembers.size()]);
+		TType[] result= new TType[size()];
+		int i= 0;
+		for (Iterator<TType> iter= iterator(); iter.hasNext(); i++) {
+			result[i]= iter.next();
+		}
+		return result;
 	}
 
 	public boolean add(TType t) {
 		// Doesn't make sense to do here what other methods do (copy-and-modify)
 		Assert.isTrue(!isUniverse(), "Someone's trying to expand the universe!"); //$NON-NLS-1$
-		return fMembers.add(t);
+		return addId(getTypeSetEnvironment().getTypeId(t));
 	}
 
 	@Override
 	public boolean contains(TType t) {
 		if (isUniverse())
 			return true;
-		return fMembers.contains(t);
+		int id= getTypeSetEnvironment().findTypeId(t);
+		return id >= 0 && hasId(id);
 	}
 
 	public boolean remove(TType t) {
-		if (isUniverse())
-			fMembers= cloneSet(fMembers);
-		return fMembers.remove(t);
-	}
-
-	private Set<TType> cloneSet(Set<TType> members) {
-		Set<TType> result= new LinkedHashSet<>();
-		result.addAll(members);
-		return result;
+		int id= getTypeSetEnvironment().findTypeId(t);
+		return id >= 0 && removeId(id);
 	}
 
 	public boolean addAll(TypeSet s) {
-		if (s instanceof EnumeratedTypeSet) {
-			EnumeratedTypeSet ets= (EnumeratedTypeSet) s;
+		EnumeratedTypeSet ets= s instanceof EnumeratedTypeSet ? (EnumeratedTypeSet) s : s.enumerate();
+		boolean changed= false;
 
-			return fMembers.addAll(ets.fMembers);
-		} else {
-			EnumeratedTypeSet ets= s.enumerate();
-
-			return fMembers.addAll(ets.fMembers);
+		for (int i= ets.nextMember(0); i < ets.fOrderSize; i= ets.nextMember(i + 1)) {
+			if (addId(ets.fOrder[i]))
+				changed= true;
 		}
+		return changed;
 	}
 
 	@Override
@@ -277,13 +464,29 @@ public class EnumeratedTypeSet extends TypeSet {
 			return false;
 		EnumeratedTypeSet ets= s.enumerate();
 
-		return fMembers.containsAll(ets.fMembers);
+		for (int i= ets.nextMember(0); i < ets.fOrderSize; i= ets.nextMember(i + 1)) {
+			if (!hasId(ets.fOrder[i]))
+				return false;
+		}
+		return true;
 	}
 
 	public boolean removeAll(EnumeratedTypeSet s) {
-		if (isUniverse())
-			fMembers= cloneSet(fMembers);
-		return fMembers.removeAll(s.fMembers);
+		if (s.fMembers == null) {
+			boolean changed= false;
+			for (int i= 0; i < s.fOrderSize; i++) {
+				if (removeId(s.fOrder[i]))
+					changed= true;
+			}
+			return changed;
+		}
+		if (fMembers == null)
+			return filterMembers(s, false);
+
+		int oldSize= size();
+
+		fMembers.andNot(s.fMembers);
+		return removedMembers(oldSize);
 	}
 
 	public boolean retainAll(TypeSet s) {
@@ -292,45 +495,58 @@ public class EnumeratedTypeSet extends TypeSet {
 		EnumeratedTypeSet ets= (EnumeratedTypeSet) s;
 
 		if (isUniverse()) {
-			fMembers= cloneSet(ets.fMembers);
+			copyMembers(ets);
 			return true;
-		} else
-			return fMembers.retainAll(ets.fMembers);
+		} else if (fMembers == null || ets.fMembers == null) {
+			return filterMembers(ets, true);
+		} else {
+			int oldSize= size();
+
+			fMembers.and(ets.fMembers);
+			return removedMembers(oldSize);
+		}
+	}
+
+	private boolean removedMembers(int oldSize) {
+		if (size() == oldSize)
+			return false;
+		fHasRemovedMembers= true;
+		return true;
 	}
 
 	@Override
 	public boolean isSingleton() {
-		return fMembers.size() == 1;
+		return size() == 1;
 	}
 
 	@Override
 	public TType anyMember() {
-		return fMembers.iterator().next();
+		return iterator().next();
 	}
 
 	@Override
 	public TypeSet upperBound() {
-		if (fMembers.size() == 1)
-			return new SingletonTypeSet(fMembers.iterator().next(), getTypeSetEnvironment());
-		if (fMembers.contains(getJavaLangObject()))
+		if (size() == 1)
+			return new SingletonTypeSet(anyMember(), getTypeSetEnvironment());
+		if (contains(getJavaLangObject()))
 			return new SingletonTypeSet(getJavaLangObject(), getTypeSetEnvironment());
 
 		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
 
 		// Add to result each element of fMembers that has no proper supertype in fMembers
-		result.fMembers.addAll(fMembers);
-		for(Iterator<TType> iter= fMembers.iterator(); iter.hasNext(); ) {
+		result.copyMembers(this);
+		for(Iterator<TType> iter= iterator(); iter.hasNext(); ) {
 			TType t= iter.next();
 
 			if (t.isArrayType()) {
 				ArrayType at= (ArrayType) t;
 				int numDims= at.getDimensions();
 				for(Iterator<TType> subIter=TTypes.getAllSubTypesIterator(at.getElementType()); subIter.hasNext(); ) {
-					result.fMembers.remove(TTypes.createArrayType(subIter.next(), numDims));
+					result.remove(TTypes.createArrayType(subIter.next(), numDims));
 				}
 			} else {
 				for (Iterator<TType> iterator= TTypes.getAllSubTypesIterator(t); iterator.hasNext();) {
-					result.fMembers.remove(iterator.next());
+					result.remove(iterator.next());
 				}
 			}
 		}
@@ -340,21 +556,21 @@ public class EnumeratedTypeSet extends TypeSet {
 
 	@Override
 	public TypeSet lowerBound() {
-		if (fMembers.size() == 1)
-			return new SingletonTypeSet(fMembers.iterator().next(), getTypeSetEnvironment());
+		if (size() == 1)
+			return new SingletonTypeSet(anyMember(), getTypeSetEnvironment());
 
 		EnumeratedTypeSet result= new EnumeratedTypeSet(getTypeSetEnvironment());
 
 		// Add to result each element of fMembers that has no proper subtype in fMembers
-		result.fMembers.addAll(fMembers);
+		result.copyMembers(this);
 
-		for(Iterator<TType> iter= fMembers.iterator(); iter.hasNext(); ) {
+		for(Iterator<TType> iter= iterator(); iter.hasNext(); ) {
 			TType t= iter.next();
 
 			// java.lang.Object is only in the lower bound if fMembers consists
 			// of only java.lang.Object, but that case is handled above.
 			if (t.equals(getJavaLangObject())) {
-				result.fMembers.remove(t);
+				result.remove(t);
 				continue;
 			}
 
@@ -362,11 +578,11 @@ public class EnumeratedTypeSet extends TypeSet {
 				ArrayType at= (ArrayType) t;
 				int numDims= at.getDimensions();
 				for(Iterator<TType> superIter=TTypes.getAllSuperTypesIterator(at.getElementType()); superIter.hasNext(); ) {
-					result.fMembers.remove(TTypes.createArrayType(superIter.next(), numDims));
+					result.remove(TTypes.createArrayType(superIter.next(), numDims));
 				}
 			} else {
 				for (Iterator<TType> iterator= TTypes.getAllSuperTypesIterator(t); iterator.hasNext();) {
-					result.fMembers.remove(iterator.next());
+					result.remove(iterator.next());
 				}
 			}
 		}
@@ -378,31 +594,31 @@ public class EnumeratedTypeSet extends TypeSet {
 
 	@Override
 	public boolean hasUniqueLowerBound() {
-		return fMembers.size() == 1;
+		return size() == 1;
 	}
 
 	@Override
 	public boolean hasUniqueUpperBound() {
-		return fMembers.size() == 1;
+		return size() == 1;
 	}
 
 	@Override
 	public TType uniqueLowerBound() {
-		if (fMembers.size() == 1)
-			return fMembers.iterator().next();
+		if (size() == 1)
+			return anyMember();
 		return null;
 	}
 
 	@Override
 	public TType uniqueUpperBound() {
-		if (fMembers.size() == 1)
-			return fMembers.iterator().next();
+		if (size() == 1)
+			return anyMember();
 		return null;
 	}
 
 	@Override
 	public Iterator<TType> iterator() {
-		return fMembers.iterator();
+		return new MemberIterator();
 	}
 
 	/**
@@ -439,7 +655,7 @@ public class EnumeratedTypeSet extends TypeSet {
 	}
 
 	public void initComplete() {
-		Assert.isTrue(! fMembers.isEmpty());
+		Assert.isTrue(! isEmpty());
 	}
 
 }
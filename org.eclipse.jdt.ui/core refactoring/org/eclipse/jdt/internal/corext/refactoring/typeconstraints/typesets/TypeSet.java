@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,6 +11,7 @@
 package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets;
 
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints2.ITypeSet;
@@ -35,10 +36,10 @@ public abstract class TypeSet implements ITypeSet {
 		return fTypeSetEnvironment;
 	}
 
-	static private int sID= 0;
+	static private final AtomicInteger sID= new AtomicInteger();
 
-	static public int getCount() { return sID; }
-	static public void resetCount() { sID= 0; }
+	static public int getCount() { return sID.get(); }
+	static public void resetCount() { sID.set(0); }
 
 	/**
 	 * An ID unique to this EnumeratedTypeSet instance, to aid in debugging the sharing
@@ -49,7 +50,7 @@ public abstract class TypeSet implements ITypeSet {
 
 	protected TypeSet(TypeSetEnvironment typeSetEnvironment) {
 		fTypeSetEnvironment= typeSetEnvironment;
-		fID= sID++;
+		fID= sID.getAndIncrement();
 	}
 
 	/**
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -14,6 +14,8 @@ package org.eclipse.jdt.internal.corext.refactoring.typeconstraints.typesets;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.eclipse.core.runtime.Assert;
+
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TType;
 import org.eclipse.jdt.internal.corext.refactoring.typeconstraints.types.TypeEnvironment;
 
@@ -116,6 +118,33 @@ public class TypeSetEnvironment {
 		}
 	}
 
+	/**
+	 * Returns the id of the given type, used as index into the bit sets of
+	 * {@link EnumeratedTypeSet}s.
+	 *
+	 * @param type a type of this environment's type environment
+	 * @return the id of the type
+	 */
+	int getTypeId(TType type) {
+		Assert.isTrue(type.getEnvironment() == fTypeEnvironment);
+		return type.getTypeId();
+	}
+
+	/**
+	 * Returns the id of the given type, or <code>-1</code> if the type belongs to another type
+	 * environment and therefore cannot be a member of the sets of this environment.
+	 *
+	 * @param type the type
+	 * @return the id of the type, or <code>-1</code>
+	 */
+	int findTypeId(TType type) {
+		return type.getEnvironment() == fTypeEnvironment ? type.getTypeId() : -1;
+	}
+
+	TType getType(int id) {
+		return fTypeEnvironment.getType(id);
+	}
+
 	public void dumpStats() {
 		System.out.println("Common expression hits:   " + fgCommonExprHits); //$NON-NLS-1$
 		System.out.println("Common expression misses: " + fgCommonExprMisses); //$NON-NLS-1$
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.corext.refactoring.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import org.eclipse.core.resources.IFile;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.LocationKind;
+
+/**
+ * A cheap test whether a file can contain a text, done on the bytes of the file before it is
+ * decoded and tokenized.
+ * <p>
+ * The test never rejects a file that contains the text. Files with an open buffer, files that
+ * are not in the local file system and files with an encoding that is not a superset of ASCII
+ * are always accepted. The filter can be used from several threads.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class FileContentFilter {
+
+	private static final int BUFFER_SIZE= 64 * 1024;
+
+	private static final ThreadLocal<byte[]> fgBuffer= new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	private static final byte[] NOT_ENCODABLE= new byte[0];
+
+	private final String fText;
+
+	// encoded text by charset name
+	private final Map<String, byte[]> fEncodedText= new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a filter for files containing the given text.
+	 *
+	 * @param text the text to look for
+	 */
+	public FileContentFilter(String text) {
+		fText= text;
+	}
+
+	/**
+	 * Tests whether the given file can contain the text.
+	 *
+	 * @param file the file
+	 * @return <code>false</code> if the file does not contain the text, <code>true</code> if it
+	 *         contains the text or if it cannot be decided cheaply
+	 */
+	public boolean mayContain(IFile file) {
+		if (fText.length() == 0)
+			return true;
+		IPath location= file.getLocation();
+		if (location == null)
+			return true;
+		if (FileBuffers.getTextFileBufferManager().getTextFileBuffer(file.getFullPath(), LocationKind.IFILE) != null)
+			return true; // the buffer may be dirty
+		byte[] pattern;
+		try {
+			pattern= getEncodedText(file.getCharset());
+		} catch (CoreException e) {
+			return true;
+		}
+		if (pattern == NOT_ENCODABLE || pattern.length > BUFFER_SIZE / 2)
+			return true;
+		try {
+			return contains(location.toFile(), pattern);
+		} catch (IOException e) {
+			return true;
+		}
+	}
+
+	private byte[] getEncodedText(String charsetName) {
+		byte[] result= fEncodedText.get(charsetName);
+		if (result == null) {
+			result= encode(fText, charsetName);
+			fEncodedText.put(charsetName, result);
+		}
+		return result;
+	}
+
+	private static byte[] encode(String text, String charsetName) {
+		Charset charset;
+		try {
+			charset= Charset.forName(charsetName);
+		} catch (IllegalCharsetNameException e) {
+			return NOT_ENCODABLE;
+		} catch (UnsupportedCharsetException e) {
+			return NOT_ENCODABLE;
+		}
+		if (!isAsciiCompatible(charset))
+			return NOT_ENCODABLE;
+		CharsetEncoder encoder= charset.newEncoder();
+		try {
+			ByteBuffer buffer= encoder.encode(CharBuffer.wrap(text));
+			byte[] result= new byte[buffer.remaining()];
+			buffer.get(result);
+			return result;
+		} catch (CharacterCodingException e) {
+			return NOT_ENCODABLE;
+		}
+	}
+
+	/**
+	 * Tests whether a charset encodes all characters in a way that a byte sequence of an encoded
+	 * text cannot start in the middle of another character.
+	 *
+	 * @param charset the charset
+	 * @return <code>true</code> if encoded texts can be searched byte by byte
+	 */
+	private static boolean isAsciiCompatible(Charset charset) {
+		String name= charset.name();
+		return "UTF-8".equals(name) //$NON-NLS-1$
+				|| "US-ASCII".equals(name) //$NON-NLS-1$
+				|| name.startsWith("ISO-8859-") //$NON-NLS-1$
+				|| name.startsWith("windows-125"); //$NON-NLS-1$
+	}
+
+	private static boolean contains(File file, byte[] pattern) throws IOException {
+		byte[] buffer= fgBuffer.get();
+		int overlap= pattern.length - 1;
+		try (InputStream input= new FileInputStream(file)) {
+			int length= 0;
+			int read;
+			while ((read= input.read(buffer, length, buffer.length - length)) != -1) {
+				length+= read;
+				if (length < buffer.length)
+					continue;
+				if (indexOf(buffer, length, pattern) != -1)
+					return true;
+				// keep the tail, the text may span two reads
+				int keep= Math.min(overlap, length);
+				System.arraycopy(buffer, length - keep, buffer, 0, keep);
+				length= keep;
+			}
+			return indexOf(buffer, length, pattern) != -1;
+		}
+	}
+
+	private static int indexOf(byte[] buffer, int length, byte[] pattern) {
+		byte first= pattern[0];
+		int last= length - pattern.length;
+		for (int i= 0; i <= last; i++) {
+			if (buffer[i] != first)
+				continue;
+			int j= 1;
+			while (j < pattern.length && buffer[i + j] == pattern[j])
+				j++;
+			if (j == pattern.length)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -58,10 +58,12 @@ public class QualifiedNameFinder {
 
 		private final String fNewValue;
 		private final QualifiedNameSearchResult fResult;
+		private final FileContentFilter fFilter;
 
-		public ResultCollector(QualifiedNameSearchResult result, String newValue) {
+		public ResultCollector(QualifiedNameSearchResult result, String newValue, FileContentFilter filter) {
 			fResult= result;
 			fNewValue= newValue;
+			fFilter= filter;
 		}
 
 		@Override
@@ -84,6 +86,10 @@ public class QualifiedNameFinder {
 			if (segment != null && (segment.startsWith(".refactorings") || segment.startsWith(".deprecations"))) //$NON-NLS-1$ //$NON-NLS-2$
 				return false;
 
+			// skip files that cannot match before the search engine decodes them
+			if (fFilter != null && !fFilter.mayContain(file))
+				return false;
+
 			return true;
 		}
 
@@ -137,7 +143,9 @@ public class QualifiedNameFinder {
 			return;
 		}
 
-		ResultCollector collector= new ResultCollector(result, newValue);
+		// the pattern is a qualified name, unless it contains wildcards
+		FileContentFilter filter= pattern.indexOf('*') == -1 && pattern.indexOf('?') == -1 ? new FileContentFilter(pattern) : null;
+		ResultCollector collector= new ResultCollector(result, newValue, filter);
 		TextSearchEngine engine= TextSearchEngine.create();
 		Pattern searchPattern= PatternConstructor.createPattern(pattern, true, false);
 
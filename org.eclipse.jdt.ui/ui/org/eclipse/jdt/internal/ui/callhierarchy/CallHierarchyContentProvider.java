@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,10 +12,15 @@
 package org.eclipse.jdt.internal.ui.callhierarchy;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.swt.widgets.Display;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.jface.operation.IRunnableContext;
 import org.eclipse.jface.operation.IRunnableWithProgress;
@@ -30,6 +35,7 @@ import org.eclipse.jdt.core.IMethod;
 import org.eclipse.jdt.core.IType;
 import org.eclipse.jdt.core.JavaModelException;
 
+import org.eclipse.jdt.internal.corext.callhierarchy.CallHierarchyExpander;
 import org.eclipse.jdt.internal.corext.callhierarchy.CallerMethodWrapper;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodCall;
 import org.eclipse.jdt.internal.corext.callhierarchy.MethodWrapper;
@@ -60,6 +66,13 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
 
 	private final static Object[] EMPTY_ARRAY= new Object[0];
 
+	/**
+	 * Number of levels that are searched in the background below the children of an expanded
+	 * node, so that expanding them does not wait for a search. Can be set with the system property
+	 * <code>org.eclipse.jdt.ui.callHierarchy.prefetchLevels</code>, 0 turns searching ahead off.
+	 */
+	private static final int PREFETCH_LEVELS= Integer.getInteger("org.eclipse.jdt.ui.callHierarchy.prefetchLevels", 1).intValue(); //$NON-NLS-1$
+
     private DeferredTreeContentManager fManager;
     private CallHierarchyViewPart fPart;
 
@@ -292,6 +305,43 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
 		return typeName;
 	}
 
+	/**
+	 * Searches the children of the given wrappers ahead in a background job. The results are
+	 * stored in the caches of the wrappers' trees.
+	 *
+	 * @param wrappers the children of a node that has just been expanded
+	 * @since 3.12
+	 */
+	void prefetch(MethodWrapper[] wrappers) {
+		if (PREFETCH_LEVELS <= 0)
+			return;
+		final List<MethodWrapper> expandable= new ArrayList<>(wrappers.length);
+		for (int i= 0; i < wrappers.length; i++) {
+			if (wrappers[i].canHaveChildren() && !shouldStopTraversion(wrappers[i]))
+				expandable.add(wrappers[i]);
+		}
+		if (expandable.isEmpty())
+			return;
+		final int levels= Math.min(PREFETCH_LEVELS, CallHierarchyUI.getDefault().getMaxCallDepth() - expandable.get(0).getLevel() + 1);
+		if (levels <= 0)
+			return;
+		Job job= new Job(CallHierarchyMessages.CallHierarchyContentProvider_prefetch_job_name) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				new CallHierarchyExpander(levels, monitor).expand(expandable.toArray(new MethodWrapper[expandable.size()]));
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				return family == CallHierarchyContentProvider.this;
+			}
+		};
+		job.setSystem(true);
+		job.setPriority(Job.DECORATE);
+		job.schedule();
+	}
+
 	protected Object[] fetchChildren(final MethodWrapper methodWrapper) {
         IRunnableContext context= JavaPlugin.getActiveWorkbenchWindow();
         MethodWrapperRunnable runnable= new MethodWrapperRunnable(methodWrapper);
@@ -397,7 +447,7 @@ public class CallHierarchyContentProvider implements ITreeContentProvider {
      */
     @Override
 	public void dispose() {
-        // Nothing to dispose
+		Job.getJobManager().cancel(this);
     }
 
     /**
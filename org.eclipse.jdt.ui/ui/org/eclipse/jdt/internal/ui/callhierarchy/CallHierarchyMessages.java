@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -69,6 +69,7 @@ public final class CallHierarchyMessages extends NLS {
 	public static String FiltersDialog_messageMaxCallDepthInvalid;
 	public static String CallHierarchyContentProvider_searchError_title;
 	public static String CallHierarchyContentProvider_searchError_message;
+	public static String CallHierarchyContentProvider_prefetch_job_name;
 	public static String CallHierarchyLabelProvider_constructor_label;
 	public static String CallHierarchyLabelProvider_expandWithConstructorsAction_realCallers;
 	public static String CallHierarchyLabelProvider_root;
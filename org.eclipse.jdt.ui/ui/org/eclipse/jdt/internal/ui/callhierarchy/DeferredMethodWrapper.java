@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -63,7 +63,7 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
         this.fProvider = provider;
     }
 
-    private Object getCalls(IProgressMonitor monitor) {
+    private MethodWrapper[] getCalls(IProgressMonitor monitor) {
         return getMethodWrapper().getCalls(monitor);
     }
 
@@ -72,8 +72,10 @@ public class DeferredMethodWrapper extends MethodWrapperWorkbenchAdapter impleme
     	final DeferredMethodWrapper deferredMethodWrapper= (DeferredMethodWrapper)object;
     	try {
             fProvider.startFetching();
-            collector.add((Object[]) deferredMethodWrapper.getCalls(monitor), monitor);
+            MethodWrapper[] calls= deferredMethodWrapper.getCalls(monitor);
+            collector.add(calls, monitor);
             collector.done();
+            fProvider.prefetch(calls);
         } catch (OperationCanceledException e) {
         	final MethodWrapper methodWrapper= deferredMethodWrapper.getMethodWrapper();
 			if (!CallHierarchyContentProvider.isExpandWithConstructors(methodWrapper)) {
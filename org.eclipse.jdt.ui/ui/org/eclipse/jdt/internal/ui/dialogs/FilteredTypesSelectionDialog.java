@@ -20,6 +20,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.TextStyle;
@@ -33,6 +34,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
@@ -96,6 +98,7 @@ import org.eclipse.jdt.internal.corext.util.Strings;
 import org.eclipse.jdt.internal.corext.util.TypeFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoFilter;
 import org.eclipse.jdt.internal.corext.util.TypeInfoRequestorAdapter;
+import org.eclipse.jdt.internal.corext.util.TypeNameIndex;
 
 import org.eclipse.jdt.launching.IVMInstall;
 import org.eclipse.jdt.launching.IVMInstallType;
@@ -499,6 +502,11 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 	@Override
 	protected void fillContentProvider(AbstractContentProvider provider, ItemsFilter itemsFilter, IProgressMonitor progressMonitor) throws CoreException {
 		TypeItemsFilter typeSearchFilter= (TypeItemsFilter) itemsFilter;
+		TypeNameIndex index= TypeNameIndex.getInstance();
+		if (index != null) {
+			fillContentProvider(index, provider, typeSearchFilter, progressMonitor);
+			return;
+		}
 		TypeSearchRequestor requestor= new TypeSearchRequestor(provider, typeSearchFilter);
 		SearchEngine engine= new SearchEngine((WorkingCopyOwner) null);
 		String packPattern= typeSearchFilter.getPackagePattern();
@@ -530,6 +538,22 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 		}
 	}
 
+	/*
+	 * Adds the candidates of the type name index instead of searching. The filter is not in
+	 * "match everything" mode, so the content provider matches each candidate completely.
+	 */
+	private void fillContentProvider(TypeNameIndex index, AbstractContentProvider provider, TypeItemsFilter typeSearchFilter, IProgressMonitor progressMonitor) throws CoreException {
+		progressMonitor.setTaskName(JavaUIMessages.FilteredTypesSelectionDialog_searchJob_taskName);
+		TypeNameMatch[] candidates= index.getCandidates(typeSearchFilter.getNamePattern(), typeSearchFilter.getMatchRule(), progressMonitor);
+		for (int i= 0; i < candidates.length; i++) {
+			if ((i & 0xFF) == 0 && progressMonitor.isCanceled())
+				throw new OperationCanceledException();
+			TypeNameMatch match= candidates[i];
+			if (!TypeFilter.isFiltered(match))
+				provider.add(match, typeSearchFilter);
+		}
+	}
+
 	@Override
 	protected Comparator getItemsComparator() {
 		return fTypeItemsComparator;
@@ -1189,6 +1213,12 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 
 		private final String[] fVMNames;
 
+		/**
+		 * Container names by package fragment root, since computing the label of a root is
+		 * expensive compared to a comparison.
+		 */
+		private final Map<IPackageFragmentRoot, String> fRoot2Name= new ConcurrentHashMap<>();
+
 		/**
 		 * Creates new instance of TypeItemsComparator
 		 */
@@ -1298,6 +1328,15 @@ public class FilteredTypesSelectionDialog extends FilteredItemsSelectionDialog i
 
 		private String getContainerName(TypeNameMatch type) {
 			IPackageFragmentRoot root= type.getPackageFragmentRoot();
+			String containerName= fRoot2Name.get(root);
+			if (containerName == null) {
+				containerName= computeContainerName(root);
+				fRoot2Name.put(root, containerName);
+			}
+			return containerName;
+		}
+
+		private String computeContainerName(IPackageFragmentRoot root) {
 			if (root.isExternal()) {
 				String name= root.getPath().toOSString();
 				for (int i= 0; i < fInstallLocations.length; i++) {
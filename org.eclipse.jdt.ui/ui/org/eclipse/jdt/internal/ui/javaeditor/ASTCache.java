@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.javaeditor;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.core.filebuffers.FileBuffers;
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+import org.eclipse.core.filebuffers.LocationKind;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IJavaModel;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import org.eclipse.jdt.internal.corext.util.LRUMap;
+
+import org.eclipse.jdt.internal.ui.JavaPlugin;
+
+
+/**
+ * A bounded cache of shared ASTs (with bindings) for Java elements that are not the input of the
+ * active Java editor.
+ * <p>
+ * Entries are keyed by the type root and are only returned if the modification stamp of the
+ * element's buffer did not change since the AST has been created. ASTs are softly referenced,
+ * so that they can be reclaimed under memory pressure. Entries are evicted when a Java element
+ * delta reports a change of the element or of an element its bindings may refer to.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class ASTCache implements IElementChangedListener {
+
+	private static final class Entry {
+
+		private final SoftReference<CompilationUnit> fAST;
+		private final long fModificationStamp;
+
+		public Entry(CompilationUnit ast, long modificationStamp) {
+			fAST= new SoftReference<>(ast);
+			fModificationStamp= modificationStamp;
+		}
+	}
+
+	/**
+	 * Delta flags of a compilation unit that don't affect bindings of other compilation units by
+	 * themselves, e.g. editing a method body. Changed children are checked separately, see
+	 * {@link #isSignatureChange(IJavaElementDelta)}.
+	 */
+	private static final int LOCAL_CHANGE_FLAGS= IJavaElementDelta.F_CONTENT | IJavaElementDelta.F_FINE_GRAINED | IJavaElementDelta.F_AST_AFFECTED | IJavaElementDelta.F_PRIMARY_RESOURCE | IJavaElementDelta.F_CHILDREN;
+
+	/**
+	 * Delta flags of a type or member that change the signature seen by other compilation units.
+	 * {@link IJavaElementDelta#F_CONTENT} of a method or field denotes a changed return or field
+	 * type, method bodies are not part of the element infos.
+	 */
+	private static final int SIGNATURE_CHANGE_FLAGS= IJavaElementDelta.F_SUPER_TYPES | IJavaElementDelta.F_MODIFIERS | IJavaElementDelta.F_CONTENT;
+
+	private static final String DEBUG_PREFIX= "ASTCache > "; //$NON-NLS-1$
+
+	private final Map<ITypeRoot, Entry> fEntries;
+	private long fHits;
+	private long fMisses;
+
+	/**
+	 * Creates a new AST cache.
+	 *
+	 * @param size the maximal number of cached ASTs
+	 */
+	public ASTCache(int size) {
+		fEntries= new LRUMap<>(size);
+	}
+
+	/**
+	 * Installs the Java element change listener.
+	 */
+	public void install() {
+		JavaCore.addElementChangedListener(this, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+	}
+
+	/**
+	 * Removes the Java element change listener and clears the cache.
+	 */
+	public void dispose() {
+		JavaCore.removeElementChangedListener(this);
+		clear();
+	}
+
+	/**
+	 * Returns the cached AST for the given element.
+	 *
+	 * @param input the Java element
+	 * @return the AST or <code>null</code> if none is cached or the cached one is out of date
+	 */
+	public synchronized CompilationUnit get(ITypeRoot input) {
+		Entry entry= fEntries.get(input);
+		CompilationUnit ast= null;
+		if (entry != null) {
+			ast= entry.fAST.get();
+			if (ast == null || entry.fModificationStamp != getModificationStamp(input)) {
+				fEntries.remove(input);
+				ast= null;
+			}
+		}
+		if (ast != null)
+			fHits++;
+		else
+			fMisses++;
+
+		if (JavaPlugin.DEBUG_AST_PROVIDER)
+			System.out.println(DEBUG_PREFIX + (ast != null ? "hit: " : "miss: ") + input.getElementName()); //$NON-NLS-1$ //$NON-NLS-2$
+		return ast;
+	}
+
+	/**
+	 * Caches the given AST.
+	 *
+	 * @param input the Java element
+	 * @param ast the AST of the element, or <code>null</code> to remove the cached AST
+	 * @param modificationStamp the modification stamp of the element's buffer before the AST has
+	 *            been created, see {@link #getModificationStamp(ITypeRoot)}
+	 */
+	public synchronized void put(ITypeRoot input, CompilationUnit ast, long modificationStamp) {
+		if (ast == null || modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP)
+			fEntries.remove(input);
+		else
+			fEntries.put(input, new Entry(ast, modificationStamp));
+	}
+
+	/**
+	 * Removes all cached ASTs.
+	 */
+	public synchronized void clear() {
+		fEntries.clear();
+	}
+
+	/**
+	 * @return the number of requests that have been answered from the cache
+	 */
+	public synchronized long getHits() {
+		return fHits;
+	}
+
+	/**
+	 * @return the number of requests that could not be answered from the cache
+	 */
+	public synchronized long getMisses() {
+		return fMisses;
+	}
+
+	/*
+	 * @see org.eclipse.jdt.core.IElementChangedListener#elementChanged(org.eclipse.jdt.core.ElementChangedEvent)
+	 */
+	@Override
+	public void elementChanged(ElementChangedEvent event) {
+		synchronized (this) {
+			if (fEntries.isEmpty())
+				return;
+		}
+		List<IJavaElement> changedElements= new ArrayList<>();
+		List<IJavaProject> affectedProjects= new ArrayList<>();
+		collectChanges(event.getDelta(), changedElements, affectedProjects);
+		if (changedElements.isEmpty() && affectedProjects.isEmpty())
+			return;
+
+		synchronized (this) {
+			for (Iterator<ITypeRoot> iterator= fEntries.keySet().iterator(); iterator.hasNext();) {
+				ITypeRoot input= iterator.next();
+				if (isAffected(input, changedElements, affectedProjects)) {
+					if (JavaPlugin.DEBUG_AST_PROVIDER)
+						System.out.println(DEBUG_PREFIX + "evicting: " + input.getElementName()); //$NON-NLS-1$
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	private static boolean isAffected(ITypeRoot input, List<IJavaElement> changedElements, List<IJavaProject> affectedProjects) {
+		for (int i= 0; i < changedElements.size(); i++) {
+			IJavaElement changed= changedElements.get(i);
+			if (changed.equals(input) || changed.equals(input.getPrimaryElement()))
+				return true;
+		}
+		IJavaProject project= input.getJavaProject();
+		for (int i= 0; i < affectedProjects.size(); i++) {
+			IJavaProject affected= affectedProjects.get(i);
+			if (affected.equals(project) || project.isOnClasspath(affected))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the elements changed by the given delta. Compilation units with local changes
+	 * are added to <code>changedElements</code>, the projects of all other changes are added to
+	 * <code>affectedProjects</code>.
+	 *
+	 * @param delta the delta
+	 * @param changedElements the changed elements
+	 * @param affectedProjects the projects in which bindings may have changed
+	 */
+	private static void collectChanges(IJavaElementDelta delta, List<IJavaElement> changedElements, List<IJavaProject> affectedProjects) {
+		IJavaElement element= delta.getElement();
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+			case IJavaElement.PACKAGE_FRAGMENT:
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & (IJavaElementDelta.F_CLASSPATH_CHANGED | IJavaElementDelta.F_RESOLVED_CLASSPATH_CHANGED | IJavaElementDelta.F_ARCHIVE_CONTENT_CHANGED)) != 0) {
+					addAffectedProject(element, affectedProjects);
+					if (element.getElementType() == IJavaElement.JAVA_MODEL)
+						return;
+				}
+				IJavaElementDelta[] children= delta.getAffectedChildren();
+				for (int i= 0; i < children.length; i++)
+					collectChanges(children[i], changedElements, affectedProjects);
+				return;
+			case IJavaElement.COMPILATION_UNIT:
+			case IJavaElement.CLASS_FILE:
+				changedElements.add(element);
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & ~LOCAL_CHANGE_FLAGS) != 0 || hasSignatureChange(delta))
+					addAffectedProject(element, affectedProjects);
+				return;
+			default:
+				addAffectedProject(element, affectedProjects);
+				return;
+		}
+	}
+
+	private static boolean hasSignatureChange(IJavaElementDelta delta) {
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (isSignatureChange(children[i]))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tells whether the given delta of an element inside a compilation unit or class file may
+	 * change bindings of other compilation units. Added or removed types, members and package
+	 * declarations do, as well as changed super types, modifiers and return or field types.
+	 * Changes of imports and initializers, reordered members and method bodies only affect the
+	 * compilation unit itself.
+	 *
+	 * @param delta the delta of an element inside a compilation unit or class file
+	 * @return <code>true</code> if other compilation units may be affected
+	 */
+	private static boolean isSignatureChange(IJavaElementDelta delta) {
+		switch (delta.getElement().getElementType()) {
+			case IJavaElement.IMPORT_CONTAINER:
+			case IJavaElement.IMPORT_DECLARATION:
+			case IJavaElement.INITIALIZER:
+				return false;
+			case IJavaElement.TYPE:
+			case IJavaElement.METHOD:
+			case IJavaElement.FIELD:
+				if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & SIGNATURE_CHANGE_FLAGS) != 0)
+					return true;
+				return hasSignatureChange(delta);
+			default:
+				return delta.getKind() != IJavaElementDelta.CHANGED || hasSignatureChange(delta);
+		}
+	}
+
+	private static void addAffectedProject(IJavaElement element, List<IJavaProject> affectedProjects) {
+		IJavaProject project= element.getJavaProject();
+		if (element instanceof IJavaModel) {
+			// all projects are affected
+			try {
+				IJavaProject[] projects= ((IJavaModel) element).getJavaProjects();
+				for (int i= 0; i < projects.length; i++)
+					addAffectedProject(projects[i], affectedProjects);
+			} catch (JavaModelException e) {
+				JavaPlugin.log(e);
+			}
+		} else if (project != null && !affectedProjects.contains(project)) {
+			affectedProjects.add(project);
+		}
+	}
+
+	/**
+	 * Returns the modification stamp of the buffer of the given element.
+	 *
+	 * @param input the Java element
+	 * @return the modification stamp of the document that backs the element, the modification
+	 *         stamp of the underlying resource if there is no such document, or
+	 *         {@link IDocumentExtension4#UNKNOWN_MODIFICATION_STAMP} if no stamp is available
+	 */
+	public static long getModificationStamp(ITypeRoot input) {
+		if (!(input instanceof ICompilationUnit))
+			return 0; // class files only change through deltas
+
+		IResource resource= input.getResource();
+		if (resource == null)
+			return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+		ITextFileBuffer buffer= FileBuffers.getTextFileBufferManager().getTextFileBuffer(resource.getFullPath(), LocationKind.IFILE);
+		if (buffer != null) {
+			IDocument document= buffer.getDocument();
+			if (document instanceof IDocumentExtension4)
+				return ((IDocumentExtension4) document).getModificationStamp();
+			return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+		}
+		return resource.getModificationStamp();
+	}
+}
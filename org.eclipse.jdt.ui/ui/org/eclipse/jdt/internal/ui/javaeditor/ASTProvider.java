@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -19,6 +19,8 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.core.runtime.Status;
 
+import org.eclipse.jface.text.IDocumentExtension4;
+
 import org.eclipse.ui.IPartListener2;
 import org.eclipse.ui.IWindowListener;
 import org.eclipse.ui.IWorkbenchPart;
@@ -47,6 +49,13 @@ import org.eclipse.jdt.internal.ui.JavaPlugin;
 /**
  * Provides a shared AST for clients. The shared AST is
  * the AST of the active Java editor's input element.
+ * <p>
+ * ASTs of other elements that have recently been requested with
+ * {@link SharedASTProvider#WAIT_YES} or that were the input of a previously
+ * active Java editor are kept in a small cache, see {@link ASTCache}. The
+ * number of cached ASTs can be configured with the system property
+ * <code>org.eclipse.jdt.ui.astProvider.cacheSize</code>.
+ * </p>
  *
  * @since 3.0
  */
@@ -214,10 +223,26 @@ public final class ASTProvider {
 
 	private static final String DEBUG_PREFIX= "ASTProvider > "; //$NON-NLS-1$
 
+	private static final int CACHE_SIZE= Integer.getInteger("org.eclipse.jdt.ui.astProvider.cacheSize", 5).intValue(); //$NON-NLS-1$
 
 	private volatile ITypeRoot fReconcilingJavaElement;
 	private ITypeRoot fActiveJavaElement;
 	private CompilationUnit fAST;
+	/**
+	 * The modification stamp of the active element's buffer when {@link #fAST} was started to be created.
+	 * @since 3.12
+	 */
+	private long fASTModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	/**
+	 * The modification stamp of the reconciling element's buffer when the reconcile started.
+	 * @since 3.12
+	 */
+	private volatile long fReconcilingModificationStamp= IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	/**
+	 * Cache of ASTs of elements that are not the active one.
+	 * @since 3.12
+	 */
+	private final ASTCache fASTCache= new ASTCache(CACHE_SIZE);
 	private ActivationListener fActivationListener;
 	private Object fReconcileLock= new Object();
 	private Object fWaitLock= new Object();
@@ -254,6 +279,8 @@ public final class ASTProvider {
 		IWorkbenchWindow[] windows= PlatformUI.getWorkbench().getWorkbenchWindows();
 		for (int i= 0, length= windows.length; i < length; i++)
 			windows[i].getPartService().addPartListener(fActivationListener);
+
+		fASTCache.install();
 	}
 
 	void activeJavaEditorChanged(IWorkbenchPart editor) {
@@ -263,9 +290,23 @@ public final class ASTProvider {
 			javaElement= ((JavaEditor)editor).getInputJavaElement();
 
 		synchronized (this) {
+			// keep the AST of the previously active element for background consumers
+			if (fAST != null && fActiveJavaElement != null && !fActiveJavaElement.equals(javaElement))
+				fASTCache.put(fActiveJavaElement, fAST, fASTModificationStamp);
+
 			fActiveEditor= editor;
 			fActiveJavaElement= javaElement;
 			cache(null, javaElement);
+
+			if (javaElement != null) {
+				long modificationStamp= ASTCache.getModificationStamp(javaElement);
+				CompilationUnit ast= fASTCache.get(javaElement);
+				if (ast != null) {
+					fASTCache.put(javaElement, null, modificationStamp);
+					cache(ast, javaElement);
+					fASTModificationStamp= modificationStamp;
+				}
+			}
 		}
 
 		if (JavaPlugin.DEBUG_AST_PROVIDER)
@@ -320,6 +361,7 @@ public final class ASTProvider {
 			System.out.println(getThreadName() + " - " + DEBUG_PREFIX + "about to reconcile: " + toString(javaElement)); //$NON-NLS-1$ //$NON-NLS-2$
 
 		synchronized (fReconcileLock) {
+			fReconcilingModificationStamp= ASTCache.getModificationStamp(javaElement);
 			fReconcilingJavaElement= javaElement;
 			fIsReconciling= true;
 		}
@@ -394,6 +436,7 @@ public final class ASTProvider {
 			disposeAST();
 
 		fAST= ast;
+		fASTModificationStamp= ast != null ? fReconcilingModificationStamp : IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
 
 		// Signal AST change
 		synchronized (fWaitLock) {
@@ -440,6 +483,12 @@ public final class ASTProvider {
 			}
 		}
 
+		if (!isActiveElement) {
+			CompilationUnit ast= fASTCache.get(input);
+			if (ast != null)
+				return ast;
+		}
+
 		final boolean canReturnNull= waitFlag == SharedASTProvider.WAIT_NO || (waitFlag == SharedASTProvider.WAIT_ACTIVE_ONLY && !(isActiveElement && fAST == null));
 		boolean isReconciling= false;
 		final ITypeRoot activeElement;
@@ -481,6 +530,7 @@ public final class ASTProvider {
 			return null;
 
 
+		long modificationStamp= ASTCache.getModificationStamp(input);
 		CompilationUnit ast= null;
 		try {
 			ast= createAST(input, progressMonitor);
@@ -499,6 +549,8 @@ public final class ASTProvider {
 					return fAST;
 				} else
 					reconciled(ast, input, null);
+			} else if (ast != null) {
+				fASTCache.put(input, ast, modificationStamp);
 			}
 		}
 		return ast;
@@ -595,12 +647,35 @@ public final class ASTProvider {
 		fActivationListener= null;
 
 		disposeAST();
+		fASTCache.dispose();
 
 		synchronized (fWaitLock) {
 			fWaitLock.notifyAll();
 		}
 	}
 
+	/**
+	 * Returns the number of AST requests for inactive elements that have been answered from the
+	 * cache.
+	 *
+	 * @return the number of cache hits
+	 * @since 3.12
+	 */
+	public long getCacheHits() {
+		return fASTCache.getHits();
+	}
+
+	/**
+	 * Returns the number of AST requests for inactive elements that could not be answered from
+	 * the cache.
+	 *
+	 * @return the number of cache misses
+	 * @since 3.12
+	 */
+	public long getCacheMisses() {
+		return fASTCache.getMisses();
+	}
+
 	/**
 	 * Update internal structures after reconcile.
 	 * 
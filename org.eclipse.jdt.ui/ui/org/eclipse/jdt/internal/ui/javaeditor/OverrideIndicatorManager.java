@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,10 +11,15 @@
 
 package org.eclipse.jdt.internal.ui.javaeditor;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
@@ -37,6 +42,7 @@ import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Modifier;
 import org.eclipse.jdt.core.dom.SimpleName;
 
 import org.eclipse.jdt.internal.corext.dom.Bindings;
@@ -123,12 +129,195 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 		}
 	}
 
+	/**
+	 * The description of the method that a method overrides or implements.
+	 *
+	 * @since 3.12
+	 */
+	private static final class OverriddenMethod {
+		final boolean fIsImplements;
+		final String fText;
+
+		OverriddenMethod(IMethodBinding definingMethod, String methodName) {
+			ITypeBinding definingType= definingMethod.getDeclaringClass();
+			String qualifiedMethodName= definingType.getQualifiedName() + "." + methodName; //$NON-NLS-1$
+
+			fIsImplements= JdtFlags.isAbstract(definingMethod);
+			if (fIsImplements)
+				fText= Messages.format(JavaEditorMessages.OverrideIndicatorManager_implements, BasicElementLabels.getJavaElementName(qualifiedMethodName));
+			else
+				fText= Messages.format(JavaEditorMessages.OverrideIndicatorManager_overrides, BasicElementLabels.getJavaElementName(qualifiedMethodName));
+		}
+	}
+
+	/**
+	 * The methods that the methods of a type can override, by name and in the order in which
+	 * {@link Bindings#findOverriddenMethod(IMethodBinding, boolean)} searches the supertypes.
+	 * The table is built once per reconcile for each type that declares methods. The overridden
+	 * methods found in the previous reconcile are reused if the supertypes of the type have not
+	 * changed since. Only the methods of supertypes declared in the reconciled compilation unit
+	 * are compared, changes in other compilation units force a reconcile that drops the previous
+	 * results.
+	 *
+	 * @since 3.12
+	 */
+	private static final class OverridableMethods {
+		/**
+		 * The keys of the supertypes in search order, and the keys and modifiers of the methods
+		 * of the supertypes declared in the reconciled compilation unit.
+		 */
+		final String fHierarchy;
+		/** The overridden methods by method key, <code>null</code> for methods that override nothing. */
+		final Map<String, OverriddenMethod> fOverriddenMethods= new HashMap<>();
+		private Map<String, OverriddenMethod> fPreviousOverriddenMethods;
+		private ITypeBinding fType;
+		private List<ITypeBinding> fSuperclassHierarchy= new ArrayList<>();
+		private List<ITypeBinding> fInterfaceHierarchy= new ArrayList<>();
+		private Map<String, List<IMethodBinding>> fSuperclassMethods;
+		private Map<String, List<IMethodBinding>> fInterfaceMethods;
+
+		OverridableMethods(ITypeBinding type, OverridableMethods previous, CompilationUnit ast) {
+			fType= type;
+			StringBuffer hierarchy= new StringBuffer();
+			if (type.getSuperclass() != null)
+				collectHierarchy(type.getSuperclass(), fSuperclassHierarchy, newTypeSet(), hierarchy, ast);
+			hierarchy.append('\n');
+			ITypeBinding[] interfaces= type.getInterfaces();
+			Set<ITypeBinding> visited= newTypeSet();
+			for (int i= 0; i < interfaces.length; i++)
+				collectHierarchy(interfaces[i], fInterfaceHierarchy, visited, hierarchy, ast);
+			fHierarchy= hierarchy.toString();
+			fPreviousOverriddenMethods= previous != null && previous.fHierarchy.equals(fHierarchy) ? previous.fOverriddenMethods : null;
+		}
+
+		/**
+		 * Returns the method that a method of the type overrides, like
+		 * {@link Bindings#findOverriddenMethod(IMethodBinding, boolean)} with visibility test.
+		 *
+		 * @param binding the method binding, must be declared in the type of this table
+		 * @return the overridden method, or <code>null</code> if none
+		 */
+		OverriddenMethod getOverriddenMethod(IMethodBinding binding) {
+			int modifiers= binding.getModifiers();
+			if (Modifier.isPrivate(modifiers) || Modifier.isStatic(modifiers) || binding.isConstructor())
+				return null;
+			String key= binding.getKey();
+			if (fOverriddenMethods.containsKey(key))
+				return fOverriddenMethods.get(key);
+			OverriddenMethod result;
+			if (fPreviousOverriddenMethods != null && fPreviousOverriddenMethods.containsKey(key)) {
+				result= fPreviousOverriddenMethods.get(key);
+			} else {
+				IMethodBinding definingMethod= findOverriddenMethod(binding);
+				result= definingMethod != null ? new OverriddenMethod(definingMethod, binding.getName()) : null;
+			}
+			fOverriddenMethods.put(key, result);
+			return result;
+		}
+
+		/**
+		 * Drops the bindings of the table, only the overridden methods can be looked up afterwards.
+		 */
+		void release() {
+			fPreviousOverriddenMethods= null;
+			fType= null;
+			fSuperclassHierarchy= null;
+			fInterfaceHierarchy= null;
+			fSuperclassMethods= null;
+			fInterfaceMethods= null;
+		}
+
+		private IMethodBinding findOverriddenMethod(IMethodBinding binding) {
+			if (fSuperclassMethods == null) {
+				fSuperclassMethods= getMethodsByName(fSuperclassHierarchy);
+				fInterfaceMethods= getMethodsByName(fInterfaceHierarchy);
+			}
+			if (fType.getSuperclass() != null) {
+				IMethodBinding res= findOverriddenMethod(fSuperclassMethods, binding);
+				if (res != null && !Modifier.isPrivate(res.getModifiers()) && Bindings.isVisibleInHierarchy(res, fType.getPackage()))
+					return res;
+			}
+			return findOverriddenMethod(fInterfaceMethods, binding);
+		}
+
+		private static IMethodBinding findOverriddenMethod(Map<String, List<IMethodBinding>> methodsByName, IMethodBinding binding) {
+			List<IMethodBinding> methods= methodsByName.get(binding.getName());
+			if (methods != null) {
+				for (int i= 0, size= methods.size(); i < size; i++) {
+					IMethodBinding method= methods.get(i);
+					if (Bindings.isSubsignature(binding, method))
+						return method;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Adds a type and its supertypes in the order of
+		 * {@link Bindings#findOverriddenMethodInHierarchy(ITypeBinding, IMethodBinding)}. A type
+		 * that is reached again is skipped, its methods have already been searched before.
+		 *
+		 * @param type the type
+		 * @param types the list to add the types to
+		 * @param visited the types added so far
+		 * @param hierarchy the buffer to append the keys and modifiers to
+		 * @param ast the reconciled compilation unit, the methods of the types declared in it are
+		 *            appended to the hierarchy
+		 */
+		private static void collectHierarchy(ITypeBinding type, List<ITypeBinding> types, Set<ITypeBinding> visited, StringBuffer hierarchy, CompilationUnit ast) {
+			if (!visited.add(type))
+				return;
+			types.add(type);
+			hierarchy.append(type.getKey()).append('\n');
+			if (ast.findDeclaringNode(type.getTypeDeclaration()) != null) {
+				IMethodBinding[] methods= type.getDeclaredMethods();
+				for (int i= 0; i < methods.length; i++)
+					hierarchy.append(methods[i].getKey()).append(' ').append(methods[i].getModifiers()).append('\n');
+			}
+			ITypeBinding superClass= type.getSuperclass();
+			if (superClass != null)
+				collectHierarchy(superClass, types, visited, hierarchy, ast);
+			ITypeBinding[] interfaces= type.getInterfaces();
+			for (int i= 0; i < interfaces.length; i++)
+				collectHierarchy(interfaces[i], types, visited, hierarchy, ast);
+		}
+
+		private static Map<String, List<IMethodBinding>> getMethodsByName(List<ITypeBinding> types) {
+			Map<String, List<IMethodBinding>> result= new HashMap<>();
+			for (int i= 0, size= types.size(); i < size; i++) {
+				IMethodBinding[] methods= types.get(i).getDeclaredMethods();
+				for (int j= 0; j < methods.length; j++) {
+					List<IMethodBinding> methodsWithName= result.get(methods[j].getName());
+					if (methodsWithName == null) {
+						methodsWithName= new ArrayList<>(1);
+						result.put(methods[j].getName(), methodsWithName);
+					}
+					methodsWithName.add(methods[j]);
+				}
+			}
+			return result;
+		}
+
+		private static Set<ITypeBinding> newTypeSet() {
+			return Collections.newSetFromMap(new IdentityHashMap<ITypeBinding, Boolean>());
+		}
+	}
+
 	static final String ANNOTATION_TYPE= "org.eclipse.jdt.ui.overrideIndicator"; //$NON-NLS-1$
 
+	private static final boolean USE_TABLES= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.overrideIndicator.tables", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
 	private IAnnotationModel fAnnotationModel;
 	private Object fAnnotationModelLockObject;
 	private Annotation[] fOverrideAnnotations;
 	private ITypeRoot fJavaElement;
+	/**
+	 * The tables of the types of the last reconcile by type key, only used to look up the
+	 * overridden methods of that reconcile.
+	 *
+	 * @since 3.12
+	 */
+	private Map<String, OverridableMethods> fTables= Collections.emptyMap();
 
 
 	public OverrideIndicatorManager(IAnnotationModel annotationModel, ITypeRoot javaElement, CompilationUnit ast) {
@@ -166,12 +355,14 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 	 * @param progressMonitor the progress monitor
 	 * @since 3.0
 	 */
-	protected void updateAnnotations(CompilationUnit ast, IProgressMonitor progressMonitor) {
+	protected void updateAnnotations(final CompilationUnit ast, IProgressMonitor progressMonitor) {
 
 		if (ast == null || progressMonitor.isCanceled())
 			return;
 
 		final Map<Annotation, Position> annotationMap= new HashMap<>(50);
+		final Map<String, OverridableMethods> previousTables= fTables;
+		final Map<String, OverridableMethods> tables= new HashMap<>();
 
 		ast.accept(new ASTVisitor(false) {
 			/*
@@ -181,24 +372,13 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 			public boolean visit(MethodDeclaration node) {
 				IMethodBinding binding= node.resolveBinding();
 				if (binding != null) {
-					IMethodBinding definingMethod= Bindings.findOverriddenMethod(binding, true);
-					if (definingMethod != null) {
-
-						ITypeBinding definingType= definingMethod.getDeclaringClass();
-						String qualifiedMethodName= definingType.getQualifiedName() + "." + binding.getName(); //$NON-NLS-1$
-
-						boolean isImplements= JdtFlags.isAbstract(definingMethod);
-						String text;
-						if (isImplements)
-							text= Messages.format(JavaEditorMessages.OverrideIndicatorManager_implements, BasicElementLabels.getJavaElementName(qualifiedMethodName));
-						else
-							text= Messages.format(JavaEditorMessages.OverrideIndicatorManager_overrides, BasicElementLabels.getJavaElementName(qualifiedMethodName));
-
+					OverriddenMethod overriddenMethod= getOverriddenMethod(binding, previousTables, tables, ast);
+					if (overriddenMethod != null) {
 						SimpleName name= node.getName();
 						Position position= new Position(name.getStartPosition(), name.getLength());
 
 						annotationMap.put(
-								new OverrideIndicator(isImplements, text, binding.getKey()),
+								new OverrideIndicator(overriddenMethod.fIsImplements, overriddenMethod.fText, binding.getKey()),
 								position);
 
 					}
@@ -210,6 +390,11 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 		if (progressMonitor.isCanceled())
 			return;
 
+		// only the overridden methods are kept, not the bindings of this AST
+		for (Iterator<OverridableMethods> iter= tables.values().iterator(); iter.hasNext();)
+			iter.next().release();
+		fTables= tables;
+
 		synchronized (fAnnotationModelLockObject) {
 			if (fAnnotationModel instanceof IAnnotationModelExtension) {
 				((IAnnotationModelExtension)fAnnotationModel).replaceAnnotations(fOverrideAnnotations, annotationMap);
@@ -225,6 +410,33 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 		}
 	}
 
+	/**
+	 * Returns the method that a method overrides or implements. The method is resolved against
+	 * the table of its declaring type, which is created when the first method of the type is
+	 * resolved.
+	 *
+	 * @param binding the method binding
+	 * @param previousTables the tables of the previous reconcile by type key
+	 * @param tables the tables of this reconcile by type key
+	 * @param ast the compilation unit AST
+	 * @return the overridden method, or <code>null</code> if none
+	 * @since 3.12
+	 */
+	private static OverriddenMethod getOverriddenMethod(IMethodBinding binding, Map<String, OverridableMethods> previousTables, Map<String, OverridableMethods> tables, CompilationUnit ast) {
+		ITypeBinding type= binding.getDeclaringClass();
+		String typeKey= type != null ? type.getKey() : null;
+		if (!USE_TABLES || typeKey == null || binding.getKey() == null) {
+			IMethodBinding definingMethod= Bindings.findOverriddenMethod(binding, true);
+			return definingMethod != null ? new OverriddenMethod(definingMethod, binding.getName()) : null;
+		}
+		OverridableMethods table= tables.get(typeKey);
+		if (table == null) {
+			table= new OverridableMethods(type, previousTables.get(typeKey), ast);
+			tables.put(typeKey, table);
+		}
+		return table.getOverriddenMethod(binding);
+	}
+
 	/**
 	 * Removes all override indicators from this manager's annotation model.
 	 */
@@ -255,6 +467,9 @@ class OverrideIndicatorManager implements IJavaReconcilingListener {
 	 */
 	@Override
 	public void reconciled(CompilationUnit ast, boolean forced, IProgressMonitor progressMonitor) {
+		// a forced reconcile follows changes in other compilation units, which may declare supertypes
+		if (forced)
+			fTables= Collections.emptyMap();
 		updateAnnotations(ast, progressMonitor);
 	}
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -22,9 +22,13 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.source.ISourceViewer;
 
@@ -32,12 +36,16 @@ import org.eclipse.ui.IWorkbenchPartSite;
 
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.CharacterLiteral;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.ConstructorInvocation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.NodeFinder;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
@@ -222,9 +230,120 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		}
 	}
 
+	/**
+	 * Tracks the document range that has changed since the last reconcile.
+	 * <p>
+	 * The range covers all changes since the last reconcile and is kept in the coordinates
+	 * of the current document.
+	 * </p>
+	 *
+	 * @since 3.12
+	 */
+	private static class DirtyRegionTracker implements IDocumentListener, ITextInputListener {
+
+		/** The offset of the dirty range, or <code>-1</code> if the document is clean */
+		private int fDirtyOffset= -1;
+		/** The end of the dirty range (exclusive) */
+		private int fDirtyEnd;
+		/** <code>true</code> if the whole document has to be reconciled */
+		private boolean fAllDirty= true;
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			// Do nothing
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+		 */
+		@Override
+		public synchronized void documentChanged(DocumentEvent event) {
+			if (fAllDirty)
+				return;
+
+			int offset= event.getOffset();
+			int replacedEnd= offset + event.getLength();
+			int insertedEnd= offset + (event.getText() == null ? 0 : event.getText().length());
+			if (fDirtyOffset == -1) {
+				fDirtyOffset= offset;
+				fDirtyEnd= insertedEnd;
+			} else {
+				int delta= insertedEnd - replacedEnd;
+				if (fDirtyEnd >= replacedEnd)
+					fDirtyEnd+= delta;
+				fDirtyOffset= Math.min(fDirtyOffset, offset);
+				fDirtyEnd= Math.max(fDirtyEnd, insertedEnd);
+			}
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentAboutToBeChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		@Override
+		public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+			if (oldInput != null)
+				oldInput.removeDocumentListener(this);
+		}
+
+		/*
+		 * @see org.eclipse.jface.text.ITextInputListener#inputDocumentChanged(org.eclipse.jface.text.IDocument, org.eclipse.jface.text.IDocument)
+		 */
+		@Override
+		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+			markAllDirty();
+			if (newInput != null)
+				newInput.addDocumentListener(this);
+		}
+
+		public synchronized void markAllDirty() {
+			fAllDirty= true;
+			fDirtyOffset= -1;
+		}
+
+		/**
+		 * Returns the range that has changed since the last call and marks the document as clean.
+		 *
+		 * @return the changed range, an empty region if nothing changed, or <code>null</code>
+		 *         if the whole document has to be reconciled
+		 */
+		public synchronized IRegion consumeDirtyRegion() {
+			IRegion result;
+			if (fAllDirty)
+				result= null;
+			else if (fDirtyOffset == -1)
+				result= new Region(0, 0);
+			else
+				result= new Region(fDirtyOffset, fDirtyEnd - fDirtyOffset);
+			fAllDirty= false;
+			fDirtyOffset= -1;
+			return result;
+		}
+	}
+
+	/**
+	 * <code>true</code> if only the subtrees affected by document changes are reconciled by default.
+	 *
+	 * @since 3.12
+	 */
+	private static final boolean INCREMENTAL= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.semanticHighlighting.incremental", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
 	/** Position collector */
 	private PositionCollector fCollector= new PositionCollector();
 
+	/**
+	 * Dirty region tracker, <code>null</code> if not installed.
+	 * @since 3.12
+	 */
+	private DirtyRegionTracker fDirtyRegionTracker;
+	/**
+	 * <code>true</code> if only the subtrees affected by document changes are reconciled.
+	 * @since 3.12
+	 */
+	private volatile boolean fIncremental= INCREMENTAL;
+
 	/** The Java editor this semantic highlighting reconciler is installed on */
 	private JavaEditor fEditor;
 	/** The source viewer this semantic highlighting reconciler is installed on */
@@ -305,11 +424,11 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 			if (ast == null || fJobPresenter.isCanceled())
 				return;
 
-			ASTNode[] subtrees= getAffectedSubtrees(ast);
+			ASTNode[] subtrees= getAffectedSubtrees(ast, forced);
 			if (subtrees.length == 0)
 				return;
 
-			startReconcilingPositions();
+			startReconcilingPositions(subtrees);
 
 			if (!fJobPresenter.isCanceled()) {
 				fJobDeprecatedMemberHighlighting= null;
@@ -332,6 +451,8 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 
 			stopReconcilingPositions();
 		} finally {
+			if (fJobPresenter != null && fJobPresenter.isCanceled() && fDirtyRegionTracker != null)
+				fDirtyRegionTracker.markAllDirty(); // the consumed changes have not been reconciled
 			fJobPresenter= null;
 			fJobSemanticHighlightings= null;
 			fJobHighlightings= null;
@@ -343,19 +464,70 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	}
 
 	/**
-	 * @param node Root node
+	 * Returns the subtrees that may be affected by past document changes.
+	 * <p>
+	 * In incremental mode, changes that are completely inside the body of a method or
+	 * initializer only affect that body declaration. All other changes may have distant
+	 * effects (e.g. a new field changes the highlighting of references in other members),
+	 * therefore the whole AST is returned for them.
+	 * </p>
+	 *
+	 * @param ast the AST
+	 * @param forced <code>true</code> iff this reconciliation was forced
 	 * @return Array of subtrees that may be affected by past document changes
 	 */
-	private ASTNode[] getAffectedSubtrees(ASTNode node) {
-		// TODO: only return nodes which are affected by document changes - would require an 'anchor' concept for taking distant effects into account
-		return new ASTNode[] { node };
+	private ASTNode[] getAffectedSubtrees(CompilationUnit ast, boolean forced) {
+		DirtyRegionTracker tracker= fDirtyRegionTracker;
+		if (tracker == null)
+			return new ASTNode[] { ast };
+
+		IRegion dirty= tracker.consumeDirtyRegion();
+		if (!fIncremental || forced || dirty == null)
+			return new ASTNode[] { ast };
+
+		ISourceViewer sourceViewer= fSourceViewer;
+		IDocument document= sourceViewer != null ? sourceViewer.getDocument() : null;
+		if (document == null || document.getLength() != ast.getStartPosition() + ast.getLength())
+			return new ASTNode[] { ast }; // the document has changed after the AST has been created
+
+		if (dirty.getLength() == 0 && dirty.getOffset() == 0)
+			return new ASTNode[] { ast }; // forced reconcile without document changes, e.g. after a classpath change
+
+		ASTNode affected= null;
+		ASTNode node= NodeFinder.perform(ast, dirty.getOffset(), dirty.getLength());
+		while (node != null) {
+			Block body= null;
+			if (node instanceof MethodDeclaration)
+				body= ((MethodDeclaration) node).getBody();
+			else if (node instanceof Initializer)
+				body= ((Initializer) node).getBody();
+
+			if (body != null) {
+				if (body.getStartPosition() < dirty.getOffset() && dirty.getOffset() + dirty.getLength() < body.getStartPosition() + body.getLength())
+					affected= node;
+				else
+					return new ASTNode[] { ast };
+			}
+			node= node.getParent();
+		}
+		if (affected == null)
+			return new ASTNode[] { ast };
+		return new ASTNode[] { affected };
 	}
 
 	/**
 	 * Start reconciling positions.
+	 *
+	 * @param subtrees the AST subtrees that will be reconciled, positions outside of them are retained
 	 */
-	private void startReconcilingPositions() {
-		fJobPresenter.addAllPositions(fRemovedPositions);
+	private void startReconcilingPositions(ASTNode[] subtrees) {
+		for (int i= 0, n= subtrees.length; i < n; i++) {
+			ASTNode subtree= subtrees[i];
+			if (subtree.getParent() == null)
+				fJobPresenter.addAllPositions(fRemovedPositions);
+			else
+				fJobPresenter.addPositionsInRange(fRemovedPositions, subtree.getStartPosition(), subtree.getLength());
+		}
 		fNOfRemovedPositions= fRemovedPositions.size();
 	}
 
@@ -365,10 +537,7 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @param subtrees the AST subtrees
 	 */
 	private void reconcilePositions(ASTNode[] subtrees) {
-		// FIXME: remove positions not covered by subtrees
-
-
-
+		// positions not covered by subtrees have not been added to fRemovedPositions, see startReconcilingPositions(ASTNode[])
 		for (int i= 0, n= subtrees.length; i < n; i++)
 			subtrees[i].accept(fCollector);
 		List<Position> oldPositions= fRemovedPositions;
@@ -437,6 +606,12 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		fEditor= editor;
 		fSourceViewer= sourceViewer;
 
+		fDirtyRegionTracker= new DirtyRegionTracker();
+		fSourceViewer.addTextInputListener(fDirtyRegionTracker);
+		IDocument document= fSourceViewer.getDocument();
+		if (document != null)
+			document.addDocumentListener(fDirtyRegionTracker);
+
 		if (fEditor instanceof CompilationUnitEditor) {
 			((CompilationUnitEditor)fEditor).addReconcileListener(this);
 		} else if (fEditor == null) {
@@ -452,6 +627,14 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 		if (fPresenter != null)
 			fPresenter.setCanceled(true);
 
+		if (fDirtyRegionTracker != null) {
+			fSourceViewer.removeTextInputListener(fDirtyRegionTracker);
+			IDocument document= fSourceViewer.getDocument();
+			if (document != null)
+				document.removeDocumentListener(fDirtyRegionTracker);
+			fDirtyRegionTracker= null;
+		}
+
 		if (fEditor != null) {
 			if (fEditor instanceof CompilationUnitEditor)
 				((CompilationUnitEditor)fEditor).removeReconcileListener(this);
@@ -538,6 +721,35 @@ public class SemanticHighlightingReconciler implements IJavaReconcilingListener,
 	 * @since 3.2
 	 */
 	public void refresh() {
+		DirtyRegionTracker tracker= fDirtyRegionTracker;
+		if (tracker != null)
+			tracker.markAllDirty();
 		scheduleJob();
 	}
+
+	/**
+	 * Enables or disables incremental reconciling. If disabled, the whole AST is visited
+	 * on each reconcile.
+	 *
+	 * @param incremental <code>true</code> to only re-visit the body declarations affected by
+	 *            document changes
+	 * @since 3.12
+	 */
+	public void setIncremental(boolean incremental) {
+		fIncremental= incremental;
+		DirtyRegionTracker tracker= fDirtyRegionTracker;
+		if (tracker != null)
+			tracker.markAllDirty();
+	}
+
+	/**
+	 * Tells whether incremental reconciling is enabled.
+	 *
+	 * @return <code>true</code> if only the body declarations affected by document changes
+	 *         are re-visited
+	 * @since 3.12
+	 */
+	public boolean isIncremental() {
+		return fIncremental;
+	}
 }
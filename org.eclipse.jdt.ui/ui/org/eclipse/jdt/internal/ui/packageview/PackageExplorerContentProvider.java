@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -12,8 +12,10 @@ package org.eclipse.jdt.internal.ui.packageview;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
@@ -24,6 +26,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IProject;
@@ -77,6 +80,23 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	protected static final int GRANT_PARENT= 1 << 1;
 	protected static final int PROJECT= 1 << 2;
 
+	/**
+	 * Time in milliseconds during which deltas that arrive outside of the UI thread are collected
+	 * before the resulting updates are applied in one batch. Can be set with the system property
+	 * <code>org.eclipse.jdt.ui.packageExplorer.updateDelay</code>.
+	 */
+	private static final int UPDATE_DELAY= Integer.getInteger("org.eclipse.jdt.ui.packageExplorer.updateDelay", 50).intValue(); //$NON-NLS-1$
+
+	/**
+	 * Whether updates made redundant by a refresh of a parent are dropped before they are applied.
+	 * Can be turned off with the system property
+	 * <code>org.eclipse.jdt.ui.packageExplorer.coalesceUpdates=false</code>.
+	 */
+	private static final boolean COALESCE_UPDATES= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.packageExplorer.coalesceUpdates", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	// maximal number of parents visited to find a refreshed ancestor
+	private static final int MAX_ANCESTOR_DEPTH= 64;
+
 	private TreeViewer fViewer;
 	private Object fInput;
 	private boolean fIsFlatLayout;
@@ -87,6 +107,9 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 
 	private UIJob fUpdateJob;
 
+	private int fSavedRefreshCount;
+	private int fSavedUpdateCount;
+
 	/**
 	 * Creates a new content provider for Java elements.
 	 * @param provideMembers if set, members of compilation units and class files are shown
@@ -138,7 +161,7 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 			}
 			//Are we in the UIThread? If so spin it until we are done
 			if (!hasPendingUpdates && ctrl.getDisplay().getThread() == Thread.currentThread() && !fViewer.isBusy()) {
-				runUpdates(runnables);
+				runUpdates(coalesceUpdates(runnables));
 			} else {
 				synchronized (this) {
 					if (fPendingUpdates == null) {
@@ -167,7 +190,10 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 			};
 			fUpdateJob.setSystem(true);
 		}
-		fUpdateJob.schedule();
+		// collect the updates of a burst of deltas, but do not postpone a waiting update further
+		int state= fUpdateJob.getState();
+		if (state != Job.SLEEPING && state != Job.WAITING)
+			fUpdateJob.schedule(UPDATE_DELAY);
 	}
 
 	/**
@@ -182,7 +208,16 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 		if (pendingUpdates != null && fViewer != null) {
 			Control control = fViewer.getControl();
 			if (control != null && !control.isDisposed()) {
-				runUpdates(pendingUpdates);
+				Collection<Runnable> updates= coalesceUpdates(pendingUpdates);
+				boolean batch= updates.size() > 1;
+				if (batch)
+					control.setRedraw(false);
+				try {
+					runUpdates(updates);
+				} finally {
+					if (batch && !control.isDisposed())
+						control.setRedraw(true);
+				}
 			}
 		}
 	}
@@ -194,6 +229,121 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 		}
 	}
 
+	/**
+	 * Drops the updates that are made redundant by a refresh of the same element or one of its
+	 * parents. A refresh reads the current children from the model, so adds below a refreshed
+	 * element and repeated refreshes have no effect. A remove is dropped if the element has been
+	 * removed before and not been added since. The remaining updates keep their order. Must be
+	 * called in the display thread.
+	 *
+	 * @param runnables the collected view changes
+	 * @return the view changes to run
+	 */
+	private Collection<Runnable> coalesceUpdates(Collection<Runnable> runnables) {
+		if (!COALESCE_UPDATES || runnables.size() < 2)
+			return runnables;
+
+		// elements whose subtree is refreshed including the labels
+		Set<Object> refreshed= new HashSet<>();
+		boolean refreshAll= false;
+		for (Iterator<Runnable> iter= runnables.iterator(); iter.hasNext();) {
+			Runnable runnable= iter.next();
+			if (runnable instanceof RefreshUpdate && ((RefreshUpdate) runnable).fUpdateLabels) {
+				for (Iterator<Object> elements= ((RefreshUpdate) runnable).fElements.iterator(); elements.hasNext();) {
+					Object element= elements.next();
+					if (element == null || element.equals(fInput))
+						refreshAll= true;
+					else
+						refreshed.add(element);
+				}
+			}
+		}
+
+		List<Runnable> result= new ArrayList<>(runnables.size());
+		Set<Object> doneRefreshes= new HashSet<>();
+		Set<Object> doneLabelRefreshes= new HashSet<>();
+		Set<Object> doneRemoves= new HashSet<>();
+		for (Iterator<Runnable> iter= runnables.iterator(); iter.hasNext();) {
+			Runnable runnable= iter.next();
+			if (runnable instanceof RefreshUpdate) {
+				RefreshUpdate refresh= (RefreshUpdate) runnable;
+				List<Object> remaining= new ArrayList<>(refresh.fElements.size());
+				for (Iterator<Object> elements= refresh.fElements.iterator(); elements.hasNext();) {
+					Object element= elements.next();
+					boolean isRoot= element == null || element.equals(fInput);
+					boolean done= refresh.fUpdateLabels ? !doneLabelRefreshes.add(element) : !doneRefreshes.add(element);
+					if (done || !isRoot && (refreshAll || isRefreshed(getParent(element), refreshed))) {
+						fSavedRefreshCount++;
+					} else {
+						remaining.add(element);
+						doneRefreshes.add(element);
+					}
+				}
+				if (remaining.size() == refresh.fElements.size()) {
+					result.add(refresh);
+				} else if (!remaining.isEmpty()) {
+					result.add(new RefreshUpdate(remaining, refresh.fUpdateLabels));
+				}
+			} else if (runnable instanceof AddUpdate) {
+				AddUpdate add= (AddUpdate) runnable;
+				// a later remove of the element is needed again
+				doneRemoves.remove(add.fElement);
+				if (refreshAll || isRefreshed(add.fParent, refreshed)) {
+					fSavedUpdateCount++;
+				} else {
+					result.add(runnable);
+				}
+			} else if (runnable instanceof RemoveUpdate) {
+				if (!doneRemoves.add(((RemoveUpdate) runnable).fElement)) {
+					fSavedUpdateCount++;
+				} else {
+					result.add(runnable);
+				}
+			} else {
+				result.add(runnable);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tells whether the given element or one of its parents is refreshed.
+	 *
+	 * @param element the element, can be <code>null</code>
+	 * @param refreshed the refreshed elements
+	 * @return <code>true</code> if the element's subtree is refreshed
+	 */
+	private boolean isRefreshed(Object element, Set<Object> refreshed) {
+		for (int i= 0; element != null && i < MAX_ANCESTOR_DEPTH; i++) {
+			if (refreshed.contains(element))
+				return true;
+			element= getParent(element);
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of element refreshes that were dropped because the element or one of its
+	 * parents was refreshed in the same batch of updates.
+	 *
+	 * @return the number of refreshes saved
+	 * @since 3.12
+	 */
+	public int getSavedRefreshCount() {
+		return fSavedRefreshCount;
+	}
+
+	/**
+	 * Returns the number of adds and removes that were dropped because they were made redundant
+	 * by a refresh or a remove in the same batch of updates.
+	 *
+	 * @return the number of adds and removes saved
+	 * @since 3.12
+	 */
+	public int getSavedUpdateCount() {
+		return fSavedUpdateCount;
+	}
+
 
 	private boolean inputDeleted(Collection<Runnable> runnables) {
 		if (fInput == null)
@@ -929,48 +1079,78 @@ public class PackageExplorerContentProvider extends StandardJavaElementContentPr
 	}
 
 	protected void postRefresh(final List<Object> toRefresh, final boolean updateLabels, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				Object[] elements= toRefresh.toArray();
-				for (int i= 0; i < elements.length; i++) {
-					Object element= elements[i];
-					if (element == null || fViewer.testFindItems(element).length > 0) {
-						fViewer.refresh(element, updateLabels);
-					}
+		runnables.add(new RefreshUpdate(toRefresh, updateLabels));
+	}
+
+	protected void postAdd(final Object parent, final Object element, Collection<Runnable> runnables) {
+		runnables.add(new AddUpdate(parent, element));
+	}
+
+	protected void postRemove(final Object element, Collection<Runnable> runnables) {
+		runnables.add(new RemoveUpdate(element));
+	}
+
+	// The view changes that can be coalesced, see coalesceUpdates(Collection)
+
+	private final class RefreshUpdate implements Runnable {
+		final List<Object> fElements;
+		final boolean fUpdateLabels;
+
+		RefreshUpdate(List<Object> elements, boolean updateLabels) {
+			fElements= elements;
+			fUpdateLabels= updateLabels;
+		}
+
+		@Override
+		public void run() {
+			Object[] elements= fElements.toArray();
+			for (int i= 0; i < elements.length; i++) {
+				Object element= elements[i];
+				if (element == null || fViewer.testFindItems(element).length > 0) {
+					fViewer.refresh(element, fUpdateLabels);
 				}
 			}
-		});
+		}
 	}
 
-	protected void postAdd(final Object parent, final Object element, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				Widget[] items= fViewer.testFindItems(element);
-				for (int i= 0; i < items.length; i++) {
-					Widget item= items[i];
-					if (item instanceof TreeItem && !item.isDisposed()) {
-						TreeItem parentItem= ((TreeItem) item).getParentItem();
-						if (parentItem != null && !parentItem.isDisposed() && parent.equals(parentItem.getData())) {
-							return; // no add, element already added (most likely by a refresh)
-						}
+	private final class AddUpdate implements Runnable {
+		final Object fParent;
+		final Object fElement;
+
+		AddUpdate(Object parent, Object element) {
+			fParent= parent;
+			fElement= element;
+		}
+
+		@Override
+		public void run() {
+			Widget[] items= fViewer.testFindItems(fElement);
+			for (int i= 0; i < items.length; i++) {
+				Widget item= items[i];
+				if (item instanceof TreeItem && !item.isDisposed()) {
+					TreeItem parentItem= ((TreeItem) item).getParentItem();
+					if (parentItem != null && !parentItem.isDisposed() && fParent.equals(parentItem.getData())) {
+						return; // no add, element already added (most likely by a refresh)
 					}
 				}
-				fViewer.add(parent, element);
 			}
-		});
+			fViewer.add(fParent, fElement);
+		}
 	}
 
-	protected void postRemove(final Object element, Collection<Runnable> runnables) {
-		runnables.add(new Runnable() {
-			@Override
-			public void run() {
-				if (fViewer.testFindItems(element).length > 0) {
-					fViewer.remove(element);
-				}
+	private final class RemoveUpdate implements Runnable {
+		final Object fElement;
+
+		RemoveUpdate(Object element) {
+			fElement= element;
+		}
+
+		@Override
+		public void run() {
+			if (fViewer.testFindItems(fElement).length > 0) {
+				fViewer.remove(fElement);
 			}
-		});
+		}
 	}
 
 	protected void postProjectStateChanged(final Object root, Collection<Runnable> runnables) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2005 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -11,7 +11,12 @@
 package org.eclipse.jdt.internal.ui.text;
 
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.rules.ICharacterScanner;
 import org.eclipse.jface.text.rules.IPartitionTokenScanner;
 import org.eclipse.jface.text.rules.IToken;
@@ -23,6 +28,17 @@ import org.eclipse.jdt.ui.text.IJavaPartitions;
 /**
  * This scanner recognizes the JavaDoc comments, Java multi line comments, Java single line comments,
  * Java strings and Java characters.
+ * <p>
+ * While scanning multi-line comments, the scanner records its state at regular offsets of the
+ * document. When a partition is re-scanned after a change, the scan resumes from the last
+ * checkpoint in front of the change, and a comment is not scanned any further once the state
+ * after the change is the same as the one recorded before the change. This keeps re-scanning an
+ * unterminated comment that extends to the end of a large document cheap. The checkpoints are
+ * updated by a document listener that is removed again when the document changes twice without
+ * being re-scanned, which is the case once the partitioner has been disconnected. Checkpoints can
+ * be turned off with the system property
+ * <code>org.eclipse.jdt.ui.javaPartitionScanner.checkpoints=false</code>.
+ * </p>
  */
 public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPartitions {
 
@@ -43,6 +59,56 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 	private static final int STAR= 5; // postfix for MULTI_LINE_COMMENT or JAVADOC
 	private static final int CARRIAGE_RETURN=6; // postfix for STRING, CHARACTER and SINGLE_LINE_COMMENT
 
+	private static final boolean CHECKPOINTS= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.javaPartitionScanner.checkpoints", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/** The minimal distance between two checkpoints. */
+	private static final int CHECKPOINT_INTERVAL= 1024;
+
+	/**
+	 * The state of the scanner at an offset inside a multi-line comment or Javadoc.
+	 */
+	private static final class Checkpoint {
+		/** The offset of the checkpoint. */
+		int fOffset;
+		/** The state after reading the characters up to the offset. */
+		final int fState;
+		/** The last significant characters read. */
+		final int fLast;
+		/** The offset of the partition, <code>-1</code> if unknown. */
+		int fPartitionOffset;
+		/** The end offset of the partition, <code>-1</code> if unknown. */
+		int fPartitionEnd= -1;
+		/** The state of the token returned for the partition. */
+		int fPartitionState;
+
+		Checkpoint(int offset, int state, int last, int partitionOffset) {
+			fOffset= offset;
+			fState= state;
+			fLast= last;
+			fPartitionOffset= partitionOffset;
+		}
+	}
+
+	/**
+	 * Updates the checkpoints when the document changes. Detaches from the document once it is
+	 * changed again without a scan in between, i.e. when the partitioner has been disconnected.
+	 */
+	private final class CheckpointUpdater implements IDocumentListener {
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			if (fChangeOffset != Integer.MAX_VALUE) {
+				disconnectCheckpoints();
+				return;
+			}
+			String text= event.getText();
+			updateCheckpoints(event.getOffset(), event.getLength(), text == null ? 0 : text.length());
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+		}
+	}
+
 	/** The scanner. */
 	private final BufferedDocumentScanner fScanner= new BufferedDocumentScanner(1000);	// faster implementation
 
@@ -63,6 +129,23 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 	private int fJavaOffset;
 	private int fJavaLength;
 
+	private boolean fCheckpointsEnabled= CHECKPOINTS;
+	/** The document the checkpoints belong to. */
+	private IDocument fDocument;
+	private final CheckpointUpdater fCheckpointUpdater= new CheckpointUpdater();
+	/** The valid checkpoints in front of the scanned range and the ones recorded by the current scan, by offset. */
+	private final List<Checkpoint> fCheckpoints= new ArrayList<>();
+	/** The checkpoints behind the start of the current scan, by offset. */
+	private final List<Checkpoint> fOldCheckpoints= new ArrayList<>();
+	/** The index of the next old checkpoint to compare with. */
+	private int fOldIndex;
+	/** The offset at which {@link #checkpoint()} is called next. */
+	private int fNextCheckpoint= Integer.MAX_VALUE;
+	/** The lowest offset changed since the last scan. */
+	private int fChangeOffset= Integer.MAX_VALUE;
+	/** The end offset of the range to scan. */
+	private int fRangeEnd;
+
 	private final IToken[] fTokens= new IToken[] {
 		new Token(null),
 		new Token(JAVA_SINGLE_LINE_COMMENT),
@@ -108,6 +191,8 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 	 		case ICharacterScanner.EOF:
 		 		if (fTokenLength > 0) {
 		 			fLast= NONE; // ignore last
+		 			if ((fState == MULTI_LINE_COMMENT || fState == JAVADOC) && isRangeAtDocumentEnd())
+		 				setPartitionEnd(fTokenOffset + fTokenLength, fState);
 		 			return preFix(fState, JAVA, NONE, 0);
 
 		 		} else {
@@ -391,6 +476,12 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 	 			}
 	 			break;
 	 		}
+
+			if (fTokenOffset + fTokenLength >= fNextCheckpoint && (fState == MULTI_LINE_COMMENT || fState == JAVADOC)) {
+				IToken token= checkpoint();
+				if (token != null)
+					return token;
+			}
 		}
  	}
 
@@ -423,6 +514,8 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 
 	private final IToken postFix(int state) {
 		fTokenLength++;
+		if (state == MULTI_LINE_COMMENT || state == JAVADOC)
+			setPartitionEnd(fTokenOffset + fTokenLength, state);
 		fLast= NONE;
 		fState= JAVA;
 		fPrefixLength= 0;
@@ -499,6 +592,8 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 			fJavaOffset= -1;
 			fJavaLength= 0;
 		}
+
+		startScan(document, offset, length, partitionOffset);
 	}
 
 	/*
@@ -519,6 +614,234 @@ public class FastJavaPartitionScanner implements IPartitionTokenScanner, IJavaPa
 			fJavaOffset= -1;
 			fJavaLength= 0;
 		}
+
+		startScan(document, offset, length, -1);
+	}
+
+	/**
+	 * Enables or disables the checkpoints that allow to re-scan a changed multi-line comment
+	 * partially.
+	 *
+	 * @param enable <code>true</code> to record and use checkpoints
+	 * @since 3.12
+	 */
+	public void setCheckpointsEnabled(boolean enable) {
+		fCheckpointsEnabled= enable;
+		if (!enable)
+			disconnectCheckpoints();
+	}
+
+	private void disconnectCheckpoints() {
+		if (fDocument != null)
+			fDocument.removeDocumentListener(fCheckpointUpdater);
+		fDocument= null;
+		fCheckpoints.clear();
+		fOldCheckpoints.clear();
+		fOldIndex= 0;
+		fNextCheckpoint= Integer.MAX_VALUE;
+		fChangeOffset= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Prepares the checkpoints for a scan of the given range, and resumes the scan from the last
+	 * checkpoint in front of the changes if the range starts in the same partition. A scan of the
+	 * whole document starts over without checkpoints.
+	 *
+	 * @param document the document to scan
+	 * @param offset the offset of the range
+	 * @param length the length of the range
+	 * @param partitionOffset the offset of the partition the range starts in, or <code>-1</code>
+	 */
+	private void startScan(IDocument document, int offset, int length, int partitionOffset) {
+		if (!fCheckpointsEnabled || fEmulate) {
+			fNextCheckpoint= Integer.MAX_VALUE;
+			return;
+		}
+
+		boolean fullScan= partitionOffset == -1 && offset == 0 && length == document.getLength();
+		if (document != fDocument || fullScan) {
+			disconnectCheckpoints();
+			fDocument= document;
+			fDocument.addDocumentListener(fCheckpointUpdater);
+		} else {
+			flushCheckpoints();
+		}
+		fRangeEnd= offset + length;
+
+		// checkpoints behind the start are compared with the new state while scanning
+		int index= fCheckpoints.size();
+		while (index > 0 && fCheckpoints.get(index - 1).fOffset > offset)
+			index--;
+		List<Checkpoint> behind= fCheckpoints.subList(index, fCheckpoints.size());
+		fOldCheckpoints.addAll(behind);
+		behind.clear();
+		fOldIndex= 0;
+
+		if (partitionOffset != -1) {
+			int resume= -1;
+			for (int i= 0; i < fOldCheckpoints.size(); i++) {
+				Checkpoint checkpoint= fOldCheckpoints.get(i);
+				if (checkpoint.fOffset > fChangeOffset || checkpoint.fOffset > fRangeEnd)
+					break;
+				if (checkpoint.fPartitionOffset == partitionOffset)
+					resume= i;
+			}
+			if (resume != -1) {
+				Checkpoint checkpoint= fOldCheckpoints.get(resume);
+				fCheckpoints.addAll(fOldCheckpoints.subList(0, resume + 1));
+				fOldIndex= resume + 1;
+				fScanner.setRange(document, checkpoint.fOffset, fRangeEnd - checkpoint.fOffset);
+				fTokenOffset= partitionOffset;
+				fTokenLength= 0;
+				fPrefixLength= checkpoint.fOffset - partitionOffset;
+				fState= checkpoint.fState;
+				fLast= checkpoint.fLast;
+			}
+		}
+
+		fChangeOffset= Integer.MAX_VALUE;
+		updateNextCheckpoint();
+	}
+
+	/**
+	 * Called while scanning a multi-line comment or Javadoc when the next checkpoint is reached.
+	 * Records a new checkpoint, or skips the rest of the partition if the state is the same as
+	 * before the change.
+	 *
+	 * @return the token for the rest of the partition, or <code>null</code> to continue scanning
+	 */
+	private IToken checkpoint() {
+		int offset= fTokenOffset + fTokenLength;
+
+		// old checkpoints that were passed outside of a comment are no longer valid
+		while (fOldIndex < fOldCheckpoints.size() && fOldCheckpoints.get(fOldIndex).fOffset < offset)
+			fOldIndex++;
+
+		if (fOldIndex < fOldCheckpoints.size()) {
+			Checkpoint old= fOldCheckpoints.get(fOldIndex);
+			if (old.fOffset == offset) {
+				fOldIndex++;
+				if (old.fState == fState && old.fLast == fLast && old.fPartitionOffset == fTokenOffset) {
+					fCheckpoints.add(old);
+					if (old.fPartitionEnd >= offset && old.fPartitionEnd <= fRangeEnd)
+						return skipTo(old.fPartitionEnd, old.fPartitionState);
+					updateNextCheckpoint();
+					return null;
+				}
+			}
+		}
+
+		if (offset >= getLastCheckpointOffset() + CHECKPOINT_INTERVAL)
+			fCheckpoints.add(new Checkpoint(offset, fState, fLast, fTokenOffset));
+		updateNextCheckpoint();
+		return null;
+	}
+
+	/**
+	 * Ends the current partition at the given offset without scanning the rest of it. The old
+	 * checkpoints in the skipped part stay valid.
+	 *
+	 * @param end the end offset of the partition
+	 * @param state the state of the token for the partition
+	 * @return the token for the partition
+	 */
+	private IToken skipTo(int end, int state) {
+		while (fOldIndex < fOldCheckpoints.size() && fOldCheckpoints.get(fOldIndex).fOffset < end)
+			fCheckpoints.add(fOldCheckpoints.get(fOldIndex++));
+		setPartitionEnd(end, state);
+
+		fScanner.setRange(fDocument, end, fRangeEnd - end);
+		fTokenLength= end - fTokenOffset;
+		fLast= NONE;
+		fState= JAVA;
+		fPrefixLength= 0;
+		updateNextCheckpoint();
+		return fTokens[state];
+	}
+
+	/**
+	 * Records the end of the current partition in its checkpoints.
+	 *
+	 * @param end the end offset of the partition
+	 * @param state the state of the token returned for the partition
+	 */
+	private void setPartitionEnd(int end, int state) {
+		for (int i= fCheckpoints.size() - 1; i >= 0; i--) {
+			Checkpoint checkpoint= fCheckpoints.get(i);
+			if (checkpoint.fPartitionOffset != fTokenOffset)
+				break;
+			checkpoint.fPartitionEnd= end;
+			checkpoint.fPartitionState= state;
+		}
+	}
+
+	private boolean isRangeAtDocumentEnd() {
+		return fDocument != null && fRangeEnd == fDocument.getLength();
+	}
+
+	private int getLastCheckpointOffset() {
+		if (fCheckpoints.isEmpty())
+			return -CHECKPOINT_INTERVAL;
+		return fCheckpoints.get(fCheckpoints.size() - 1).fOffset;
+	}
+
+	private void updateNextCheckpoint() {
+		int next= getLastCheckpointOffset() + CHECKPOINT_INTERVAL;
+		if (fOldIndex < fOldCheckpoints.size())
+			next= Math.min(next, fOldCheckpoints.get(fOldIndex).fOffset);
+		fNextCheckpoint= next;
+	}
+
+	/**
+	 * Merges the old checkpoints behind the end of the last scan back into the valid ones.
+	 */
+	private void flushCheckpoints() {
+		if (fOldCheckpoints.isEmpty())
+			return;
+		int scanned= fTokenOffset + fTokenLength + fPrefixLength;
+		for (int i= fOldIndex; i < fOldCheckpoints.size(); i++) {
+			Checkpoint checkpoint= fOldCheckpoints.get(i);
+			if (checkpoint.fOffset > scanned && checkpoint.fOffset > getLastCheckpointOffset())
+				fCheckpoints.add(checkpoint);
+		}
+		fOldCheckpoints.clear();
+		fOldIndex= 0;
+	}
+
+	/**
+	 * Adapts the checkpoints to a change of the document. Checkpoints inside the replaced text
+	 * are removed, the ones behind it keep the state from before the change to be compared with
+	 * the state of the next scan.
+	 *
+	 * @param offset the offset of the change
+	 * @param length the length of the replaced text
+	 * @param textLength the length of the new text
+	 */
+	private void updateCheckpoints(int offset, int length, int textLength) {
+		flushCheckpoints();
+		int end= offset + length;
+		int delta= textLength - length;
+		int count= 0;
+		for (int i= 0; i < fCheckpoints.size(); i++) {
+			Checkpoint checkpoint= fCheckpoints.get(i);
+			if (checkpoint.fOffset <= offset) {
+				if (checkpoint.fPartitionEnd >= offset)
+					checkpoint.fPartitionEnd= -1;
+			} else if (checkpoint.fOffset < end) {
+				continue;
+			} else {
+				checkpoint.fOffset+= delta;
+				if (checkpoint.fPartitionOffset >= end)
+					checkpoint.fPartitionOffset+= delta;
+				else if (checkpoint.fPartitionOffset >= offset)
+					checkpoint.fPartitionOffset= -1;
+				if (checkpoint.fPartitionEnd != -1)
+					checkpoint.fPartitionEnd+= delta;
+			}
+			fCheckpoints.set(count++, checkpoint);
+		}
+		fCheckpoints.subList(count, fCheckpoints.size()).clear();
+		fChangeOffset= Math.min(fChangeOffset, offset);
 	}
 
 	/*
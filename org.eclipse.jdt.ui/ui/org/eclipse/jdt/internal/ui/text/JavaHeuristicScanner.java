@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2013 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -261,6 +261,16 @@ public final class JavaHeuristicScanner implements Symbols {
 	 * @since 3.2
 	 */
 	private ITypedRegion fCachedPartition= new TypedRegion(-1, 0, "__no_partition_at_all"); //$NON-NLS-1$
+	/**
+	 * The structure index of the document, or <code>null</code> if not yet looked up.
+	 * @since 3.12
+	 */
+	private JavaStructureIndex fStructureIndex;
+	/**
+	 * <code>true</code> if {@link #fStructureIndex} has been looked up.
+	 * @since 3.12
+	 */
+	private boolean fStructureIndexLookedUp;
 
 	/* preset stop conditions */
 	private final StopCondition fNonWSDefaultPart= new NonWhitespaceDefaultPartition();
@@ -558,6 +568,13 @@ public final class JavaHeuristicScanner implements Symbols {
 	public int findClosingPeer(int start, int bound, final char openingPeer, final char closingPeer) {
 		Assert.isLegal(start >= 0);
 
+		JavaStructureIndex index= getStructureIndex();
+		if (index != null) {
+			int peer= index.findClosingPeer(fDocument, start, bound, openingPeer, closingPeer);
+			if (peer != JavaStructureIndex.UNKNOWN)
+				return peer;
+		}
+
 		try {
 			CharacterMatch match= new CharacterMatch(new char[] {openingPeer, closingPeer});
 			int depth= 1;
@@ -613,6 +630,13 @@ public final class JavaHeuristicScanner implements Symbols {
 	public int findOpeningPeer(int start, int bound, char openingPeer, char closingPeer) {
 		Assert.isLegal(start < fDocument.getLength());
 
+		JavaStructureIndex index= getStructureIndex();
+		if (index != null) {
+			int peer= index.findOpeningPeer(fDocument, start, bound, openingPeer, closingPeer);
+			if (peer != JavaStructureIndex.UNKNOWN)
+				return peer;
+		}
+
 		try {
 			final CharacterMatch match= new CharacterMatch(new char[] {openingPeer, closingPeer});
 			int depth= 1;
@@ -844,6 +868,21 @@ public final class JavaHeuristicScanner implements Symbols {
 		return fPartition.equals(getPartition(position).getType());
 	}
 
+	/**
+	 * Returns the structure index of the document if the scanner scans the default partition of
+	 * the Java partitioning.
+	 *
+	 * @return the index, or <code>null</code>
+	 * @since 3.12
+	 */
+	private JavaStructureIndex getStructureIndex() {
+		if (!fStructureIndexLookedUp) {
+			fStructureIndex= JavaStructureIndex.getIndex(fDocument, fPartitioning, fPartition);
+			fStructureIndexLookedUp= true;
+		}
+		return fStructureIndex;
+	}
+
 	/**
 	 * Returns the partition at <code>position</code>.
 	 *
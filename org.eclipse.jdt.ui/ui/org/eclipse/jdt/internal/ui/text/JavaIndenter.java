@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -2156,6 +2156,15 @@ public final class JavaIndenter {
 	 */
 	private boolean skipScope(int openToken, int closeToken) {
 
+		switch (openToken) {
+			case Symbols.TokenLPAREN:
+				return skipPeers(openToken, '(', ')');
+			case Symbols.TokenLBRACKET:
+				return skipPeers(openToken, '[', ']');
+			case Symbols.TokenLBRACE:
+				return skipPeers(openToken, '{', '}');
+		}
+
 		int depth= 1;
 
 		while (true) {
@@ -2172,4 +2181,39 @@ public final class JavaIndenter {
 			}
 		}
 	}
+
+	/**
+	 * Skips a scope of peer characters like {@link #skipScope(int, int)}, but finds the opening
+	 * peer with {@link JavaHeuristicScanner#findOpeningPeer(int, char, char)}, which uses the
+	 * structure index of the document instead of reading the tokens of the scope. The state
+	 * after the call is the same as after reading the tokens.
+	 *
+	 * @param openToken the opening peer token
+	 * @param openingPeer the opening peer character
+	 * @param closingPeer the closing peer character
+	 * @return <code>true</code> if a matching peer was found, <code>false</code> otherwise
+	 * @since 3.12
+	 */
+	private boolean skipPeers(int openToken, char openingPeer, char closingPeer) {
+		int start= fPosition;
+		int peer= start > 0 ? fScanner.findOpeningPeer(start - 1, openingPeer, closingPeer) : JavaHeuristicScanner.NOT_FOUND;
+		boolean found= peer != JavaHeuristicScanner.NOT_FOUND;
+		if (found) {
+			fToken= openToken;
+			fPosition= peer;
+		} else {
+			// all tokens up to the start of the document have been read
+			fToken= Symbols.TokenEOF;
+			fPosition= 0;
+		}
+		// the token read before the last one is the first one behind the new position
+		int next= fScanner.findNonWhitespaceForward(found ? peer + 1 : 0, start);
+		fPreviousPos= next == JavaHeuristicScanner.NOT_FOUND ? start : next;
+		try {
+			fLine= fDocument.getLineOfOffset(fPosition);
+		} catch (BadLocationException e) {
+			fLine= -1;
+		}
+		return found;
+	}
 }
@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.text;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.DocumentPartitioningChangedEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IDocumentPartitioningListener;
+import org.eclipse.jface.text.IDocumentPartitioningListenerExtension2;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.TextUtilities;
+
+import org.eclipse.jdt.ui.text.IJavaPartitions;
+
+/**
+ * Index of the parentheses, brackets and braces in the default partition of a Java document,
+ * shared by all {@link JavaHeuristicScanner}s that scan the document.
+ * <p>
+ * For every peer character the index knows its matching peer and the innermost opening peer
+ * that is still open behind it, so finding the peer that encloses an offset does not depend on
+ * the distance to the peer. The index is built lazily up to the highest offset asked for and is
+ * truncated at the offset of every document change and partitioning change. The answers are the
+ * same as the ones of a scan that counts the nesting depth.
+ * </p>
+ * <p>
+ * The index can be turned off with the system property
+ * <code>org.eclipse.jdt.ui.javaStructureIndex=false</code>.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class JavaStructureIndex {
+
+	/**
+	 * Returned by the queries if the index cannot answer them, the caller has to scan instead.
+	 */
+	static final int UNKNOWN= -3;
+
+	private static final boolean ENABLED= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.javaStructureIndex", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/** Characters indexed when looking for a closing peer at once. */
+	private static final int CHUNK_SIZE= 16 * 1024;
+
+	private static final int PARENTHESES= 0;
+	private static final int BRACKETS= 1;
+	private static final int BRACES= 2;
+
+	private static final Map<IDocument, JavaStructureIndex> fgIndexes= new WeakHashMap<>();
+
+	/**
+	 * The peers of one kind, in document order.
+	 */
+	private static final class Peers {
+		int[] fOffsets= new int[64];
+		/** the index of the matching peer of each entry, or -1 */
+		int[] fMatches= new int[64];
+		/** the index of the innermost open opening peer behind each entry, or -1 */
+		int[] fEnclosing= new int[64];
+		int fCount;
+
+		void add(int offset, boolean opening) {
+			if (fCount == fOffsets.length) {
+				int capacity= fCount * 2;
+				fOffsets= grow(fOffsets, capacity);
+				fMatches= grow(fMatches, capacity);
+				fEnclosing= grow(fEnclosing, capacity);
+			}
+			int top= getEnclosing(fCount);
+			fOffsets[fCount]= offset;
+			fMatches[fCount]= -1;
+			if (opening) {
+				fEnclosing[fCount]= fCount;
+			} else if (top == -1) {
+				fEnclosing[fCount]= -1; // closing peer without opening peer
+			} else {
+				fMatches[top]= fCount;
+				fMatches[fCount]= top;
+				fEnclosing[fCount]= getEnclosing(top);
+			}
+			fCount++;
+		}
+
+		/**
+		 * Returns the innermost opening peer that is open in front of an entry.
+		 *
+		 * @param index the index of the entry
+		 * @return the index of the opening peer, or -1
+		 */
+		int getEnclosing(int index) {
+			return index == 0 ? -1 : fEnclosing[index - 1];
+		}
+
+		/**
+		 * Returns the number of entries in front of an offset.
+		 *
+		 * @param offset the offset
+		 * @return the number of entries with an offset &lt; <code>offset</code>
+		 */
+		int countBefore(int offset) {
+			int low= 0;
+			int high= fCount;
+			while (low < high) {
+				int mid= (low + high) >>> 1;
+				if (fOffsets[mid] < offset)
+					low= mid + 1;
+				else
+					high= mid;
+			}
+			return low;
+		}
+
+		void truncate(int offset) {
+			fCount= countBefore(offset);
+			// the opening peers that are open at the offset lost their matches
+			for (int open= getEnclosing(fCount); open != -1; open= getEnclosing(open))
+				fMatches[open]= -1;
+		}
+
+		private static int[] grow(int[] array, int capacity) {
+			int[] result= new int[capacity];
+			System.arraycopy(array, 0, result, 0, array.length);
+			return result;
+		}
+	}
+
+	private final class Updater implements IDocumentListener, IDocumentPartitioningListener, IDocumentPartitioningListenerExtension2 {
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			truncate(event.getOffset());
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+			truncate(event.getOffset());
+		}
+
+		@Override
+		public void documentPartitioningChanged(IDocument document) {
+			truncate(0);
+		}
+
+		@Override
+		public void documentPartitioningChanged(DocumentPartitioningChangedEvent event) {
+			IRegion region= event.getChangedRegion(IJavaPartitions.JAVA_PARTITIONING);
+			if (region != null)
+				truncate(region.getOffset());
+		}
+	}
+
+	private final Peers[] fPeers= { new Peers(), new Peers(), new Peers() };
+
+	/** The characters in front of this offset are indexed. */
+	private int fIndexedLength;
+
+	private JavaStructureIndex() {
+	}
+
+	/**
+	 * Returns the index of a document, creating it if needed. The index only covers the default
+	 * partition of the Java partitioning.
+	 *
+	 * @param document the document
+	 * @param partitioning the partitioning to scan
+	 * @param partition the partition to scan
+	 * @return the index, or <code>null</code> if the partition is not indexed
+	 */
+	static JavaStructureIndex getIndex(IDocument document, String partitioning, String partition) {
+		if (!ENABLED || !IJavaPartitions.JAVA_PARTITIONING.equals(partitioning) || !IDocument.DEFAULT_CONTENT_TYPE.equals(partition))
+			return null;
+		synchronized (fgIndexes) {
+			JavaStructureIndex index= fgIndexes.get(document);
+			if (index == null) {
+				index= new JavaStructureIndex();
+				// the listener must not reference the document, it is the key of the weak map
+				Updater updater= index.new Updater();
+				document.addDocumentListener(updater);
+				document.addDocumentPartitioningListener(updater);
+				fgIndexes.put(document, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Returns the position of the opening peer that encloses <code>start</code>, see
+	 * {@link JavaHeuristicScanner#findOpeningPeer(int, int, char, char)}.
+	 *
+	 * @param document the document of the index
+	 * @param start the first character being searched
+	 * @param bound the bound
+	 * @param openingPeer the opening peer character
+	 * @param closingPeer the closing peer character
+	 * @return the position of the opening peer, <code>NOT_FOUND</code> or <code>UNKNOWN</code>
+	 */
+	synchronized int findOpeningPeer(IDocument document, int start, int bound, char openingPeer, char closingPeer) {
+		int kind= getKind(openingPeer, closingPeer);
+		if (kind == -1 || start < 0)
+			return UNKNOWN;
+		try {
+			indexTo(document, start + 1);
+		} catch (BadLocationException e) {
+			return UNKNOWN;
+		}
+		Peers peers= fPeers[kind];
+		int open= peers.getEnclosing(peers.countBefore(start + 1));
+		if (open == -1 || peers.fOffsets[open] <= bound)
+			return JavaHeuristicScanner.NOT_FOUND;
+		return peers.fOffsets[open];
+	}
+
+	/**
+	 * Returns the position of the closing peer that encloses <code>start</code>, see
+	 * {@link JavaHeuristicScanner#findClosingPeer(int, int, char, char)}.
+	 *
+	 * @param document the document of the index
+	 * @param start the first character being searched
+	 * @param bound the bound
+	 * @param openingPeer the opening peer character
+	 * @param closingPeer the closing peer character
+	 * @return the position of the closing peer, <code>NOT_FOUND</code> or <code>UNKNOWN</code>
+	 */
+	synchronized int findClosingPeer(IDocument document, int start, int bound, char openingPeer, char closingPeer) {
+		int kind= getKind(openingPeer, closingPeer);
+		int length= document.getLength();
+		if (kind == -1 || start > length)
+			return UNKNOWN;
+		int end= bound == JavaHeuristicScanner.UNBOUND ? length : Math.min(bound, length);
+		Peers peers= fPeers[kind];
+		try {
+			indexTo(document, start);
+			int open= peers.getEnclosing(peers.countBefore(start));
+			if (open == -1)
+				return UNKNOWN; // the first unmatched closing peer is not indexed
+			while (peers.fMatches[open] == -1 && fIndexedLength < end)
+				indexTo(document, Math.min(end, fIndexedLength + CHUNK_SIZE));
+			int close= peers.fMatches[open];
+			if (close == -1 || peers.fOffsets[close] >= end)
+				return JavaHeuristicScanner.NOT_FOUND;
+			return peers.fOffsets[close];
+		} catch (BadLocationException e) {
+			return UNKNOWN;
+		}
+	}
+
+	private void indexTo(IDocument document, int end) throws BadLocationException {
+		end= Math.min(end, document.getLength());
+		int offset= fIndexedLength;
+		while (offset < end) {
+			ITypedRegion partition= TextUtilities.getPartition(document, IJavaPartitions.JAVA_PARTITIONING, offset, false);
+			int partitionEnd= Math.min(end, partition.getOffset() + partition.getLength());
+			if (partitionEnd <= offset) {
+				partitionEnd= offset + 1;
+			} else if (IDocument.DEFAULT_CONTENT_TYPE.equals(partition.getType())) {
+				String text= document.get(offset, partitionEnd - offset);
+				for (int i= 0; i < text.length(); i++) {
+					switch (text.charAt(i)) {
+						case '(':
+							fPeers[PARENTHESES].add(offset + i, true);
+							break;
+						case ')':
+							fPeers[PARENTHESES].add(offset + i, false);
+							break;
+						case '[':
+							fPeers[BRACKETS].add(offset + i, true);
+							break;
+						case ']':
+							fPeers[BRACKETS].add(offset + i, false);
+							break;
+						case '{':
+							fPeers[BRACES].add(offset + i, true);
+							break;
+						case '}':
+							fPeers[BRACES].add(offset + i, false);
+							break;
+					}
+				}
+			}
+			offset= partitionEnd;
+			fIndexedLength= offset;
+		}
+	}
+
+	private synchronized void truncate(int offset) {
+		if (offset >= fIndexedLength)
+			return;
+		for (int i= 0; i < fPeers.length; i++)
+			fPeers[i].truncate(offset);
+		fIndexedLength= offset;
+	}
+
+	private static int getKind(char openingPeer, char closingPeer) {
+		if (openingPeer == '(' && closingPeer == ')')
+			return PARENTHESES;
+		if (openingPeer == '[' && closingPeer == ']')
+			return BRACKETS;
+		if (openingPeer == '{' && closingPeer == '}')
+			return BRACES;
+		return -1;
+	}
+}
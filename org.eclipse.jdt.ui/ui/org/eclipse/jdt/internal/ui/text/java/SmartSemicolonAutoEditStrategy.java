@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -43,6 +43,7 @@ import org.eclipse.jdt.ui.text.IJavaPartitions;
 
 import org.eclipse.jdt.internal.ui.JavaPlugin;
 import org.eclipse.jdt.internal.ui.javaeditor.CompilationUnitEditor;
+import org.eclipse.jdt.internal.ui.text.JavaHeuristicScanner;
 import org.eclipse.jdt.internal.ui.text.SmartBackspaceManager;
 import org.eclipse.jdt.internal.ui.text.SmartBackspaceManager.UndoSpec;
 
@@ -730,20 +731,9 @@ public class SmartSemicolonAutoEditStrategy implements IAutoEditStrategy {
 
 			Assert.isTrue(document.getChar(position) == CLOSING_PAREN);
 
-			int depth= 1;
-			while (true) {
-				position= scanBackward(document, position - 1, partitioning, -1, new char[] {CLOSING_PAREN, OPENING_PAREN});
-				if (position == -1)
-					return -1;
-
-				if (document.getChar(position) == CLOSING_PAREN)
-					depth++;
-				else
-					depth--;
-
-				if (depth == 0)
-					return position;
-			}
+			// the scanner uses the structure index of the document
+			JavaHeuristicScanner scanner= new JavaHeuristicScanner(document, partitioning, IDocument.DEFAULT_CONTENT_TYPE);
+			return scanner.findOpeningPeer(position - 1, OPENING_PAREN, CLOSING_PAREN);
 
 		} catch (BadLocationException e) {
 			return -1;
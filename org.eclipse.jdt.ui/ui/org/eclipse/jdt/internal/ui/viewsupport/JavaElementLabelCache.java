@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.jdt.internal.ui.viewsupport;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.jface.viewers.StyledString;
+
+import org.eclipse.jdt.core.ElementChangedEvent;
+import org.eclipse.jdt.core.IElementChangedListener;
+import org.eclipse.jdt.core.IField;
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.IJavaElementDelta;
+import org.eclipse.jdt.core.IMethod;
+import org.eclipse.jdt.core.IOpenable;
+import org.eclipse.jdt.core.IType;
+import org.eclipse.jdt.core.JavaCore;
+
+import org.eclipse.jdt.ui.PreferenceConstants;
+
+/**
+ * Bounded cache of the labels composed by {@link JavaElementLabelComposer}, keyed by the element
+ * handle and the rendering flags.
+ * <p>
+ * The Java model has no modification stamps for elements in working copies, so every change of
+ * an element's compilation unit or class file, as reported by a delta, drops the labels of all
+ * elements in it. Changes of class paths, projects, package fragment roots and packages, and
+ * changes of the preferences drop all labels. The least recently used labels are dropped when
+ * the cache is full.
+ * </p>
+ * <p>
+ * The cache can be turned off with the system property
+ * <code>org.eclipse.jdt.ui.labelCache=false</code>. After {@link #shutdown()}, the cache is off
+ * and does not listen to changes anymore.
+ * </p>
+ *
+ * @since 3.12
+ */
+public final class JavaElementLabelCache {
+
+	private static final boolean ENABLED= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.labelCache", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final int MAX_SIZE= 10000;
+
+	private static final int CONTAINER_CHANGE_FLAGS= IJavaElementDelta.F_CHILDREN | IJavaElementDelta.F_CONTENT;
+
+	private static final class Key {
+		final IJavaElement fElement;
+		final long fFlags;
+		final boolean fStyled;
+
+		Key(IJavaElement element, long flags, boolean styled) {
+			fElement= element;
+			fFlags= flags;
+			fStyled= styled;
+		}
+
+		@Override
+		public int hashCode() {
+			return fElement.hashCode() * 31 + (int) (fFlags ^ (fFlags >>> 32)) + (fStyled ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other= (Key) obj;
+			return fFlags == other.fFlags && fStyled == other.fStyled && fElement.equals(other.fElement);
+		}
+	}
+
+	private static final class Entry {
+		final IOpenable fOpenable;
+		/** a <code>String</code> or a <code>StyledString</code> that is never modified */
+		final Object fLabel;
+
+		Entry(IOpenable openable, Object label) {
+			fOpenable= openable;
+			fLabel= label;
+		}
+	}
+
+	private class Listener implements IElementChangedListener, IPropertyChangeListener {
+		@Override
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+
+		@Override
+		public void propertyChange(PropertyChangeEvent event) {
+			invalidate();
+		}
+
+		private void processDelta(IJavaElementDelta delta) {
+			IJavaElement element= delta.getElement();
+			switch (element.getElementType()) {
+				case IJavaElement.JAVA_MODEL:
+					processChildren(delta);
+					break;
+				case IJavaElement.JAVA_PROJECT:
+				case IJavaElement.PACKAGE_FRAGMENT_ROOT:
+				case IJavaElement.PACKAGE_FRAGMENT:
+					if (delta.getKind() != IJavaElementDelta.CHANGED || (delta.getFlags() & ~CONTAINER_CHANGE_FLAGS) != 0)
+						invalidate();
+					else
+						processChildren(delta);
+					break;
+				default:
+					// compilation units and class files, or their members in reconcile deltas
+					IOpenable openable= element.getOpenable();
+					if (openable != null)
+						invalidate(openable);
+					else
+						invalidate();
+					break;
+			}
+		}
+
+		private void processChildren(IJavaElementDelta delta) {
+			IJavaElementDelta[] children= delta.getAffectedChildren();
+			for (int i= 0; i < children.length; i++)
+				processDelta(children[i]);
+		}
+	}
+
+	private static JavaElementLabelCache fgInstance;
+
+	private static boolean fgShutDown;
+
+	/** The listener, or <code>null</code> if the cache is off for good. */
+	private final Listener fListener;
+
+	private final Map<Key, Entry> fEntries= new LinkedHashMap<Key, Entry>(MAX_SIZE, 0.75f, true) {
+
+		private static final long serialVersionUID= 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Entry> entry) {
+			if (size() <= MAX_SIZE)
+				return false;
+			removeKey(entry.getValue().fOpenable, entry.getKey());
+			return true;
+		}
+	};
+
+	/**
+	 * The keys of the entries by openable, so that the labels of an openable are dropped without
+	 * looking at the other entries.
+	 */
+	private final Map<IOpenable, Set<Key>> fKeysByOpenable= new HashMap<>();
+
+	/**
+	 * Incremented whenever labels are dropped, so that labels composed before are not added.
+	 */
+	private int fInvalidationCount;
+
+	private volatile boolean fEnabled= ENABLED;
+
+	/**
+	 * @return the label cache, a cache that is off if the cache has been shut down
+	 */
+	public static synchronized JavaElementLabelCache getInstance() {
+		if (fgInstance == null)
+			fgInstance= new JavaElementLabelCache(!fgShutDown);
+		return fgInstance;
+	}
+
+	public static synchronized void shutdown() {
+		fgShutDown= true;
+		if (fgInstance == null)
+			return;
+		fgInstance.doShutdown();
+		fgInstance= new JavaElementLabelCache(false);
+	}
+
+	private JavaElementLabelCache(boolean listen) {
+		if (listen) {
+			fListener= new Listener();
+			JavaCore.addElementChangedListener(fListener, ElementChangedEvent.POST_CHANGE | ElementChangedEvent.POST_RECONCILE);
+			PreferenceConstants.getPreferenceStore().addPropertyChangeListener(fListener);
+		} else {
+			fListener= null;
+			fEnabled= false;
+		}
+	}
+
+	private void doShutdown() {
+		fEnabled= false;
+		if (fListener != null) {
+			JavaCore.removeElementChangedListener(fListener);
+			PreferenceConstants.getPreferenceStore().removePropertyChangeListener(fListener);
+		}
+		invalidate();
+	}
+
+	/**
+	 * Turns the cache on or off. Initially the cache is on unless it has been turned off by the
+	 * system property <code>org.eclipse.jdt.ui.labelCache</code>. A cache that has been shut down
+	 * cannot be turned on again.
+	 *
+	 * @param enabled <code>true</code> to use the cache
+	 */
+	public void setEnabled(boolean enabled) {
+		fEnabled= enabled && fListener != null;
+		if (!enabled)
+			invalidate();
+	}
+
+	/**
+	 * Returns the label for a Java element, see
+	 * {@link JavaElementLabelComposer#appendElementLabel(IJavaElement, long)}.
+	 *
+	 * @param element the element to render
+	 * @param flags the rendering flags
+	 * @return the label of the element
+	 */
+	String getElementLabel(IJavaElement element, long flags) {
+		IOpenable openable= getOpenable(element);
+		if (openable == null)
+			return JavaElementLabelComposer.composeElementLabel(element, flags);
+
+		Key key= new Key(element, flags, false);
+		int invalidationCount;
+		synchronized (this) {
+			Entry entry= fEntries.get(key);
+			if (entry != null)
+				return (String) entry.fLabel;
+			invalidationCount= fInvalidationCount;
+		}
+		String label= JavaElementLabelComposer.composeElementLabel(element, flags);
+		put(key, new Entry(openable, label), invalidationCount);
+		return label;
+	}
+
+	/**
+	 * Returns the styled label for a Java element, see
+	 * {@link JavaElementLabelComposer#appendElementLabel(IJavaElement, long)}.
+	 *
+	 * @param element the element to render
+	 * @param flags the rendering flags
+	 * @return a new styled label of the element
+	 */
+	StyledString getStyledElementLabel(IJavaElement element, long flags) {
+		StyledString result= new StyledString();
+		IOpenable openable= getOpenable(element);
+		if (openable == null) {
+			new JavaElementLabelComposer(result).appendElementLabel(element, flags);
+			return result;
+		}
+
+		Key key= new Key(element, flags, true);
+		int invalidationCount;
+		synchronized (this) {
+			Entry entry= fEntries.get(key);
+			if (entry != null)
+				return result.append((StyledString) entry.fLabel);
+			invalidationCount= fInvalidationCount;
+		}
+		new JavaElementLabelComposer(result).appendElementLabel(element, flags);
+		put(key, new Entry(openable, new StyledString().append(result)), invalidationCount);
+		return result;
+	}
+
+	private synchronized void put(Key key, Entry entry, int invalidationCount) {
+		if (invalidationCount != fInvalidationCount)
+			return;
+		Set<Key> keys= fKeysByOpenable.get(entry.fOpenable);
+		if (keys == null) {
+			keys= new HashSet<>();
+			fKeysByOpenable.put(entry.fOpenable, keys);
+		}
+		keys.add(key);
+		fEntries.put(key, entry);
+	}
+
+	private void removeKey(IOpenable openable, Key key) {
+		Set<Key> keys= fKeysByOpenable.get(openable);
+		if (keys != null && keys.remove(key) && keys.isEmpty())
+			fKeysByOpenable.remove(openable);
+	}
+
+	/**
+	 * Returns the openable whose changes drop the label of the element.
+	 *
+	 * @param element the element
+	 * @return the openable, or <code>null</code> if the label is not cached
+	 */
+	private IOpenable getOpenable(IJavaElement element) {
+		if (!fEnabled)
+			return null;
+		switch (element.getElementType()) {
+			case IJavaElement.JAVA_MODEL:
+			case IJavaElement.JAVA_PROJECT:
+			case IJavaElement.LOCAL_VARIABLE:
+				return null;
+			case IJavaElement.TYPE:
+				// resolved handles are equal to the unresolved ones, but have other labels
+				if (((IType) element).isResolved())
+					return null;
+				break;
+			case IJavaElement.METHOD:
+				if (((IMethod) element).isResolved())
+					return null;
+				break;
+			case IJavaElement.FIELD:
+				if (((IField) element).isResolved())
+					return null;
+				break;
+			default:
+				break;
+		}
+		return element.getOpenable();
+	}
+
+	private synchronized void invalidate() {
+		fInvalidationCount++;
+		fEntries.clear();
+		fKeysByOpenable.clear();
+	}
+
+	private synchronized void invalidate(IOpenable openable) {
+		fInvalidationCount++;
+		Set<Key> keys= fKeysByOpenable.remove(openable);
+		if (keys != null) {
+			for (Iterator<Key> iter= keys.iterator(); iter.hasNext();)
+				fEntries.remove(iter.next());
+		}
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -217,6 +217,12 @@ public class JavaElementLabelComposer {
 	private static String fgPkgNameAbbreviationPattern= ""; //$NON-NLS-1$
 	private static PackageNameAbbreviation[] fgPkgNameAbbreviation;
 
+	/*
+	 * Buffers reused for the labels composed as strings
+	 */
+	private static final int MAX_REUSED_BUFFER_CAPACITY= 1024;
+	private static final ThreadLocal<StringBuffer> fgReusedBuffer= new ThreadLocal<>();
+
 	protected final FlexibleBuffer fBuffer;
 
 	protected static final boolean getFlag(long flags, long flag) {
@@ -250,6 +256,57 @@ public class JavaElementLabelComposer {
 		this(new FlexibleStringBuffer(buffer));
 	}
 
+	/**
+	 * Returns the label for a Java element with the flags as defined by this class. The label is
+	 * taken from the {@link JavaElementLabelCache} if possible.
+	 *
+	 * @param element the element to render
+	 * @param flags the rendering flags
+	 * @return the label of the element
+	 * @since 3.12
+	 */
+	public static String getElementLabel(IJavaElement element, long flags) {
+		return JavaElementLabelCache.getInstance().getElementLabel(element, flags);
+	}
+
+	/**
+	 * Returns the styled label for a Java element with the flags as defined by this class. The
+	 * label is taken from the {@link JavaElementLabelCache} if possible.
+	 *
+	 * @param element the element to render
+	 * @param flags the rendering flags
+	 * @return a new styled label of the element, can be modified by the caller
+	 * @since 3.12
+	 */
+	public static StyledString getStyledElementLabel(IJavaElement element, long flags) {
+		return JavaElementLabelCache.getInstance().getStyledElementLabel(element, flags);
+	}
+
+	/**
+	 * Composes the label for a Java element in a buffer that is reused by the next label
+	 * composed in the same thread.
+	 *
+	 * @param element the element to render
+	 * @param flags the rendering flags
+	 * @return the label of the element
+	 * @since 3.12
+	 */
+	static String composeElementLabel(IJavaElement element, long flags) {
+		StringBuffer buffer= fgReusedBuffer.get();
+		if (buffer == null) {
+			buffer= new StringBuffer();
+		} else {
+			// a label composer that calls back into the labels must not share the buffer
+			fgReusedBuffer.set(null);
+			buffer.setLength(0);
+		}
+		new JavaElementLabelComposer(buffer).appendElementLabel(element, flags);
+		String label= buffer.toString();
+		if (buffer.capacity() <= MAX_REUSED_BUFFER_CAPACITY)
+			fgReusedBuffer.set(buffer);
+		return label;
+	}
+
 	/**
 	 * Appends the label for a Java element with the flags as defined by this class.
 	 *
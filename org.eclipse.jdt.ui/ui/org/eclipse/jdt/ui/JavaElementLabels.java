@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2011 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -487,9 +487,7 @@ public class JavaElementLabels {
 	 * @return the label of the Java element
 	 */
 	public static String getElementLabel(IJavaElement element, long flags) {
-		StringBuffer result= new StringBuffer();
-		getElementLabel(element, flags, result);
-		return Strings.markJavaElementLabelLTR(result.toString());
+		return Strings.markJavaElementLabelLTR(JavaElementLabelComposer.getElementLabel(element, flags));
 	}
 
 	/**
@@ -502,9 +500,7 @@ public class JavaElementLabels {
 	 * @since 3.4
 	 */
 	public static StyledString getStyledElementLabel(IJavaElement element, long flags) {
-		StyledString result= new StyledString();
-		getElementLabel(element, flags, result);
-		return Strings.markJavaElementLabelLTR(result);
+		return Strings.markJavaElementLabelLTR(JavaElementLabelComposer.getStyledElementLabel(element, flags));
 	}
 
 	/**
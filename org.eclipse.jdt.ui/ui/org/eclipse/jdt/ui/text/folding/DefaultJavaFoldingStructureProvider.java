@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2011 IBM Corporation and others.
+ * Copyright (c) 2006, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,7 +28,9 @@ import org.eclipse.core.runtime.Assert;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.Region;
@@ -101,6 +103,13 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		private boolean fHasHeaderComment;
 		private LinkedHashMap<JavaProjectionAnnotation, Position> fMap= new LinkedHashMap<>();
 		private IScanner fScanner;
+		/** The source to set on the scanner when it is first used, or <code>null</code>. */
+		private String fSource;
+		/**
+		 * The member ranges computed or reused by this context, or <code>null</code> if they are
+		 * not cached.
+		 */
+		private Map<IJavaElement, MemberRanges> fRanges;
 
 		private FoldingStructureComputationContext(IDocument document, ProjectionAnnotationModel model, boolean allowCollapsing, IScanner scanner) {
 			Assert.isNotNull(document);
@@ -162,6 +171,11 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		private IScanner getScanner() {
 			if (fScanner == null)
 				fScanner= ToolFactory.createScanner(true, false, false, false);
+			if (fSource != null) {
+				// set lazily, the ranges of most members are usually cached
+				fScanner.setSource(fSource.toCharArray());
+				fSource= null;
+			}
 			return fScanner;
 		}
 
@@ -284,6 +298,62 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		}
 	}
 
+	/**
+	 * The projection ranges of a member as computed by
+	 * {@link DefaultJavaFoldingStructureProvider#computeProjectionRanges(ISourceReference, DefaultJavaFoldingStructureProvider.FoldingStructureComputationContext)},
+	 * relative to the offset of the member. The offset is kept up to date with the document.
+	 *
+	 * @since 3.12
+	 */
+	private static final class MemberRanges {
+		int fOffset;
+		final int fLength;
+		/** offset and length of each region, the offsets are relative to <code>fOffset</code> */
+		final int[] fRegions;
+
+		MemberRanges(ISourceRange range, IRegion[] regions) {
+			fOffset= range.getOffset();
+			fLength= range.getLength();
+			fRegions= new int[regions.length * 2];
+			for (int i= 0; i < regions.length; i++) {
+				fRegions[2 * i]= regions[i].getOffset() - fOffset;
+				fRegions[2 * i + 1]= regions[i].getLength();
+			}
+		}
+
+		boolean isValid(ISourceRange range) {
+			return fOffset == range.getOffset() && fLength == range.getLength();
+		}
+
+		IRegion[] getRegions() {
+			IRegion[] result= new IRegion[fRegions.length / 2];
+			for (int i= 0; i < result.length; i++)
+				result[i]= new Region(fOffset + fRegions[2 * i], fRegions[2 * i + 1]);
+			return result;
+		}
+	}
+
+	/**
+	 * Records the document changes that are applied to the cached member ranges before the next
+	 * update.
+	 *
+	 * @since 3.12
+	 */
+	private final class MemberRangesUpdater implements IDocumentListener {
+		@Override
+		public void documentAboutToBeChanged(DocumentEvent event) {
+			synchronized (fMemberRangesLock) {
+				// beyond the maximum, the cached ranges are dropped anyway
+				if (fPendingChanges.size() <= MAX_PENDING_CHANGES)
+					fPendingChanges.add(new int[] { event.getOffset(), event.getLength(), event.getText() == null ? 0 : event.getText().length() });
+			}
+		}
+
+		@Override
+		public void documentChanged(DocumentEvent event) {
+		}
+	}
+
 	/**
 	 * Filter for annotations.
 	 */
@@ -360,6 +430,9 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 				if (shouldIgnoreDelta(e.getDelta().getCompilationUnitAST(), delta))
 					return;
 
+				if (fIncremental)
+					removeMemberRanges(delta);
+
 				fUpdatingCount++;
 				try {
 					update(createContext(false));
@@ -726,6 +799,50 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 	private volatile int fUpdatingCount= 0;
 
+	/**
+	 * Number of document changes between two updates up to which the cached member ranges are
+	 * adjusted instead of being dropped.
+	 * @since 3.12
+	 */
+	private static final int MAX_PENDING_CHANGES= 256;
+
+	/**
+	 * Whether the projection ranges of members are cached between updates. Can be turned off
+	 * with the system property <code>org.eclipse.jdt.ui.folding.incremental=false</code>.
+	 * @since 3.12
+	 */
+	private boolean fIncremental= Boolean.valueOf(System.getProperty("org.eclipse.jdt.ui.folding.incremental", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	/**
+	 * The cached projection ranges of the members of the input, keyed by member.
+	 * @since 3.12
+	 */
+	private Map<IJavaElement, MemberRanges> fMemberRanges= new HashMap<>();
+
+	/**
+	 * Guards {@link #fMemberRanges}, {@link #fPendingChanges} and {@link #fMemberRangesDocument}.
+	 * @since 3.12
+	 */
+	private final Object fMemberRangesLock= new Object();
+
+	/**
+	 * Offset, length and text length of the document changes since the last update.
+	 * @since 3.12
+	 */
+	private final List<int[]> fPendingChanges= new ArrayList<>();
+
+	/**
+	 * The document whose changes are recorded, or <code>null</code>.
+	 * @since 3.12
+	 */
+	private IDocument fMemberRangesDocument;
+
+	/**
+	 * Records the document changes.
+	 * @since 3.12
+	 */
+	private final IDocumentListener fMemberRangesUpdater= new MemberRangesUpdater();
+
 	/**
 	 * Creates a new folding provider. It must be
 	 * {@link #install(ITextEditor, ProjectionViewer) installed} on an editor/viewer pair before it
@@ -830,6 +947,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			JavaCore.removeElementChangedListener(fElementListener);
 			fElementListener= null;
 		}
+		resetMemberRanges(null);
 	}
 
 	/*
@@ -894,7 +1012,13 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		List<JavaProjectionAnnotation> deletions= new ArrayList<>();
 		List<JavaProjectionAnnotation> updates= new ArrayList<>();
 
+		if (fIncremental) {
+			prepareMemberRanges(ctx.getDocument());
+			ctx.fRanges= new HashMap<>();
+		}
 		computeFoldingStructure(ctx);
+		if (ctx.fRanges != null)
+			commitMemberRanges(ctx.fRanges);
 		Map<JavaProjectionAnnotation, Position> newStructure= ctx.fMap;
 		Map<IJavaElement, List<Tuple>> oldStructure= computeCurrentStructure(ctx);
 
@@ -964,9 +1088,105 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 		Annotation[] changedArray= updates.toArray(new Annotation[updates.size()]);
 		ctx.getModel().modifyAnnotations(deletedArray, additions, changedArray);
 
-		ctx.fScanner.setSource(null);
+		if (ctx.fScanner != null)
+			ctx.fScanner.setSource(null);
+		ctx.fSource= null;
     }
 
+	/**
+	 * Makes the cached member ranges match the current content of the document, by applying
+	 * the document changes since the last update. Ranges of members that have been changed are
+	 * removed.
+	 *
+	 * @param document the document of the input
+	 * @since 3.12
+	 */
+	private void prepareMemberRanges(IDocument document) {
+		synchronized (fMemberRangesLock) {
+			if (document != fMemberRangesDocument) {
+				resetMemberRanges(document);
+				return;
+			}
+			if (fPendingChanges.size() > MAX_PENDING_CHANGES) {
+				fMemberRanges.clear();
+				fPendingChanges.clear();
+				return;
+			}
+			for (int i= 0; i < fPendingChanges.size(); i++) {
+				int[] change= fPendingChanges.get(i);
+				int end= change[0] + change[1];
+				int delta= change[2] - change[1];
+				for (Iterator<MemberRanges> iter= fMemberRanges.values().iterator(); iter.hasNext();) {
+					MemberRanges ranges= iter.next();
+					if (ranges.fOffset > end)
+						ranges.fOffset+= delta;
+					else if (ranges.fOffset + ranges.fLength >= change[0])
+						iter.remove();
+				}
+			}
+			fPendingChanges.clear();
+		}
+	}
+
+	/**
+	 * Replaces the cached member ranges with the ones used by the last update. The ranges are
+	 * dropped if the input has been changed since it was reconciled, since they may have been
+	 * computed from newer content than the source ranges of the members.
+	 *
+	 * @param ranges the member ranges of the last update
+	 * @since 3.12
+	 */
+	private void commitMemberRanges(Map<IJavaElement, MemberRanges> ranges) {
+		boolean consistent;
+		try {
+			consistent= !(fInput instanceof ICompilationUnit) || ((ICompilationUnit) fInput).isConsistent();
+		} catch (JavaModelException e) {
+			consistent= false;
+		}
+		synchronized (fMemberRangesLock) {
+			if (consistent) {
+				fMemberRanges= ranges;
+			} else {
+				fMemberRanges.clear();
+				fPendingChanges.clear();
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached member ranges and starts recording the changes of another document.
+	 *
+	 * @param document the document to record changes of, or <code>null</code>
+	 * @since 3.12
+	 */
+	private void resetMemberRanges(IDocument document) {
+		synchronized (fMemberRangesLock) {
+			if (fMemberRangesDocument != null)
+				fMemberRangesDocument.removeDocumentListener(fMemberRangesUpdater);
+			fMemberRanges.clear();
+			fPendingChanges.clear();
+			fMemberRangesDocument= document;
+			if (document != null)
+				document.addDocumentListener(fMemberRangesUpdater);
+		}
+	}
+
+	/**
+	 * Removes the cached ranges of the elements of a delta and of its descendants.
+	 *
+	 * @param delta the delta
+	 * @since 3.12
+	 */
+	private void removeMemberRanges(IJavaElementDelta delta) {
+		IJavaElementDelta[] children= delta.getAffectedChildren();
+		for (int i= 0; i < children.length; i++) {
+			synchronized (fMemberRangesLock) {
+				fMemberRanges.remove(children[i].getElement());
+			}
+			removeMemberRanges(children[i]);
+		}
+	}
+
 	private void computeFoldingStructure(FoldingStructureComputationContext ctx) {
 		IParent parent= (IParent) fInput;
 		try {
@@ -976,7 +1196,7 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 			if (source == null)
 				return;
 
-			ctx.getScanner().setSource(source.toCharArray());
+			ctx.fSource= source;
 			computeFoldingStructure(parent.getChildren(), ctx);
 		} catch (JavaModelException x) {
 		}
@@ -1112,8 +1332,21 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 				if (!SourceRange.isAvailable(range))
 					return new IRegion[0];
 
-				String contents= reference.getSource();
-				if (contents == null)
+				// the ranges of the first type include the header comment in front of it
+				boolean cache= ctx.fRanges != null && reference instanceof IJavaElement && (ctx.hasFirstType() || !(reference instanceof IType));
+				if (cache) {
+					MemberRanges cached;
+					synchronized (fMemberRangesLock) {
+						cached= fMemberRanges.get(reference);
+					}
+					if (cached != null && cached.isValid(range)) {
+						ctx.fRanges.put((IJavaElement) reference, cached);
+						return cached.getRegions();
+					}
+				}
+
+				// with cached ranges, the source of the input has been checked and is not copied for each member
+				if (ctx.fRanges != null ? range.getLength() == 0 : reference.getSource() == null)
 					return new IRegion[0];
 
 				List<IRegion> regions= new ArrayList<>();
@@ -1154,6 +1387,8 @@ public class DefaultJavaFoldingStructureProvider implements IJavaFoldingStructur
 
 				IRegion[] result= new IRegion[regions.size()];
 				regions.toArray(result);
+				if (cache)
+					ctx.fRanges.put((IJavaElement) reference, new MemberRanges(range, result));
 				return result;
 		} catch (JavaModelException e) {
 		} catch (InvalidInputException e) {
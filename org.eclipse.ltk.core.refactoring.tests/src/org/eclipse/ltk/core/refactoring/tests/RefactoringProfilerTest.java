@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.PerformRefactoringOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+import org.eclipse.ltk.core.refactoring.participants.CheckConditionsContext;
+import org.eclipse.ltk.core.refactoring.participants.RefactoringParticipant;
+import org.eclipse.ltk.core.refactoring.participants.RenameArguments;
+import org.eclipse.ltk.core.refactoring.participants.RenameParticipant;
+import org.eclipse.ltk.core.refactoring.participants.RenameProcessor;
+import org.eclipse.ltk.core.refactoring.participants.RenameRefactoring;
+import org.eclipse.ltk.core.refactoring.participants.SharableParticipants;
+import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringProfiler;
+
+public class RefactoringProfilerTest extends TestCase {
+
+	private static final String PROCESSOR_ID= "org.eclipse.ltk.core.refactoring.tests.profiledProcessor";
+
+	private static final long CHECK_MILLIS= 50;
+
+	private static final Pattern PHASE= Pattern.compile("\\{\"name\":\"([^\"]*)\"(?:,\"detail\":\"([^\"]*)\")?,\"thread\":\"[^\"]*\",\"start\":\\d+,\"durationMillis\":([-0-9.E]+)");
+
+	private static class Participant extends RenameParticipant {
+		@Override
+		protected boolean initialize(Object element) {
+			return true;
+		}
+		@Override
+		public String getName() {
+			return "participant";
+		}
+		@Override
+		public RefactoringStatus checkConditions(IProgressMonitor pm, CheckConditionsContext context) throws OperationCanceledException {
+			try {
+				Thread.sleep(CHECK_MILLIS);
+			} catch (InterruptedException e) {
+				// check is shorter
+			}
+			return new RefactoringStatus();
+		}
+		@Override
+		public Change createChange(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			return null;
+		}
+	}
+
+	private static class Processor extends RenameProcessor {
+		private final IFile fFile;
+
+		public Processor(IFile file) {
+			fFile= file;
+		}
+		@Override
+		public Object[] getElements() {
+			return new Object[] { fFile };
+		}
+		@Override
+		public String getIdentifier() {
+			return PROCESSOR_ID;
+		}
+		@Override
+		public String getProcessorName() {
+			return "processor";
+		}
+		@Override
+		public boolean isApplicable() throws CoreException {
+			return true;
+		}
+		@Override
+		public RefactoringStatus checkInitialConditions(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			return new RefactoringStatus();
+		}
+		@Override
+		public RefactoringStatus checkFinalConditions(IProgressMonitor pm, CheckConditionsContext context) throws CoreException, OperationCanceledException {
+			return new RefactoringStatus();
+		}
+		@Override
+		public Change createChange(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+			TextFileChange result= new TextFileChange("", fFile);
+			result.setEdit(new ReplaceEdit(0, 3, "two"));
+			return result;
+		}
+		@Override
+		public RefactoringParticipant[] loadParticipants(RefactoringStatus status, SharableParticipants sharedParticipants) throws CoreException {
+			Participant participant= new Participant();
+			participant.initialize(this, fFile, new RenameArguments("", false));
+			return new RefactoringParticipant[] { participant };
+		}
+	}
+
+	private SimpleTestProject fProject;
+	private File fDirectory;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		fProject= new SimpleTestProject();
+		fDirectory= Files.createTempDirectory("RefactoringProfilerTest").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		RefactoringProfiler.setOutputDirectory(System.getProperty("org.eclipse.ltk.core.refactoring.profile"));
+		File[] files= fDirectory.listFiles();
+		for (int i= 0; i < files.length; i++)
+			files[i].delete();
+		fDirectory.delete();
+		fProject.delete();
+		super.tearDown();
+	}
+
+	private void performRefactoring() throws Exception {
+		IFile file= fProject.createFile(fProject.getProject(), "test.txt", "one");
+		RenameRefactoring refactoring= new RenameRefactoring(new Processor(file));
+		PerformRefactoringOperation op= new PerformRefactoringOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS);
+		ResourcesPlugin.getWorkspace().run(op, null);
+		assertEquals("two", fProject.getContent(file));
+	}
+
+	public void testProfile() throws Exception {
+		RefactoringProfiler.setOutputDirectory(fDirectory.getAbsolutePath());
+		assertTrue(RefactoringProfiler.isEnabled());
+		performRefactoring();
+		assertNull(RefactoringProfiler.getCurrent());
+
+		// PerformRefactoringOperation creates the change and performs it in two root phases
+		File[] files= fDirectory.listFiles();
+		assertEquals(2, files.length);
+		String[] profiles= new String[files.length];
+		List<String> names= new ArrayList<>();
+		List<Double> durations= new ArrayList<>();
+		for (int i= 0; i < files.length; i++) {
+			profiles[i]= new String(Files.readAllBytes(files[i].toPath()), StandardCharsets.UTF_8);
+			List<String> profileNames= new ArrayList<>();
+			Matcher matcher= PHASE.matcher(profiles[i]);
+			while (matcher.find()) {
+				profileNames.add(matcher.group(1));
+				durations.add(Double.valueOf(matcher.group(3)));
+			}
+			assertFalse(profiles[i], profileNames.isEmpty());
+			if ("createChange".equals(profileNames.get(0)))
+				names.addAll(0, profileNames);
+			else
+				names.addAll(profileNames);
+		}
+
+		// phases in pre-order, nested phases follow their parent
+		assertEquals(Arrays.asList(
+				"createChange",
+					"checkAllConditions",
+						"processor.checkInitialConditions",
+						"processor.checkFinalConditions",
+						"loadParticipants",
+						"participant.checkConditions",
+						"context.check",
+					"refactoring.createChange",
+						"processor.createChange",
+						"participant.createChange",
+						"processor.postCreateChange",
+					"initializeValidationData",
+				"performChange",
+					"isValid",
+					"perform",
+					"undo.initializeValidationData"),
+				names);
+
+		assertEquals(PROCESSOR_ID, getDetail(profiles, "createChange"));
+		assertEquals(PROCESSOR_ID, getDetail(profiles, "checkAllConditions"));
+		assertEquals(Participant.class.getName(), getDetail(profiles, "participant.checkConditions"));
+
+		for (int i= 0; i < durations.size(); i++)
+			assertTrue(String.valueOf(durations.get(i)), durations.get(i).doubleValue() >= 0);
+		// the participant check and all its enclosing phases took at least as long as its sleep
+		double check= getDuration(profiles, "participant.checkConditions");
+		assertTrue(String.valueOf(check), check >= CHECK_MILLIS - 1);
+		assertTrue(getDuration(profiles, "checkAllConditions") >= check);
+		assertTrue(getDuration(profiles, "createChange") >= getDuration(profiles, "checkAllConditions"));
+	}
+
+	public void testDisabled() throws Exception {
+		RefactoringProfiler.setOutputDirectory(null);
+		assertFalse(RefactoringProfiler.isEnabled());
+		assertNull(RefactoringProfiler.begin("phase", null));
+		assertNull(RefactoringProfiler.getCurrent());
+		RefactoringProfiler.end(null);
+
+		performRefactoring();
+		assertEquals(0, fDirectory.listFiles().length);
+	}
+
+	private static Matcher find(String[] profiles, String name) {
+		for (int i= 0; i < profiles.length; i++) {
+			Matcher matcher= PHASE.matcher(profiles[i]);
+			while (matcher.find()) {
+				if (name.equals(matcher.group(1)))
+					return matcher;
+			}
+		}
+		fail(name);
+		return null;
+	}
+
+	private static String getDetail(String[] profiles, String name) {
+		return find(profiles, name).group(2);
+	}
+
+	private static double getDuration(String[] profiles, String name) {
+		return Double.parseDouble(find(profiles, name).group(3));
+	}
+}
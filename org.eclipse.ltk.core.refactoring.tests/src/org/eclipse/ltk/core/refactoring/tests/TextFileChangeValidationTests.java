@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import java.io.ByteArrayInputStream;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+
+import org.eclipse.text.edits.ReplaceEdit;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.CompositeChange;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.TextFileChange;
+import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+import org.eclipse.ltk.internal.core.refactoring.ValidationStateTable;
+
+public class TextFileChangeValidationTests extends TestCase {
+
+	// more files than fit into one chunk of the validation state table
+	private static final int FILE_COUNT= 1100;
+
+	private SimpleTestProject fProject;
+	private IFile[] fFiles;
+
+	@Override
+	protected void setUp() throws Exception {
+		fProject= new SimpleTestProject();
+		IFolder folder= fProject.createFolder("validation");
+		fFiles= new IFile[FILE_COUNT];
+		for (int i= 0; i < FILE_COUNT; i++)
+			fFiles[i]= fProject.createFile(folder, "file" + i + ".txt", "content " + i);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fProject.delete();
+	}
+
+	public void testUnchangedFiles() throws Exception {
+		CompositeChange change= createChange();
+		change.initializeValidationData(new NullProgressMonitor());
+		RefactoringStatus status= change.isValid(new NullProgressMonitor());
+		assertTrue(status.toString(), status.isOK());
+		change.dispose();
+	}
+
+	public void testChangedContent() throws Exception {
+		CompositeChange change= createChange();
+		change.initializeValidationData(new NullProgressMonitor());
+		fFiles[FILE_COUNT - 1].setContents(new ByteArrayInputStream("changed".getBytes()), true, false, null);
+		RefactoringStatus status= change.isValid(new NullProgressMonitor());
+		assertTrue(status.hasFatalError());
+		change.dispose();
+	}
+
+	public void testDeletedFile() throws Exception {
+		CompositeChange change= createChange();
+		change.initializeValidationData(new NullProgressMonitor());
+		fFiles[0].delete(true, null);
+		RefactoringStatus status= change.isValid(new NullProgressMonitor());
+		assertTrue(status.hasFatalError());
+		change.dispose();
+	}
+
+	public void testPerformAndUndo() throws Exception {
+		CompositeChange change= createChange();
+		change.initializeValidationData(new NullProgressMonitor());
+		assertTrue(change.isValid(new NullProgressMonitor()).isOK());
+		Change undo= change.perform(new NullProgressMonitor());
+		change.dispose();
+		assertEquals("CONTENT 1", fProject.getContent(fFiles[1]));
+
+		undo.initializeValidationData(new NullProgressMonitor());
+		assertTrue(undo.isValid(new NullProgressMonitor()).isOK());
+		undo.perform(new NullProgressMonitor());
+		undo.dispose();
+		assertEquals("content 1", fProject.getContent(fFiles[1]));
+	}
+
+	public void testCaptureTable() throws Exception {
+		ValidationStateTable table= ValidationStateTable.beginCapture();
+		assertNotNull(table);
+		assertNull(ValidationStateTable.beginCapture());
+		int[] indexes= new int[FILE_COUNT];
+		for (int i= 0; i < FILE_COUNT; i++)
+			indexes[i]= table.add(fFiles[i]);
+		table.endCapture();
+		assertNull(ValidationStateTable.getCapturing());
+
+		for (int i= 0; i < FILE_COUNT; i++) {
+			assertFalse(table.wasDirty(indexes[i]));
+			assertTrue(table.isValid(indexes[i], true, false).isOK());
+		}
+
+		fFiles[1].setContents(new ByteArrayInputStream("changed".getBytes()), true, false, null);
+		fFiles[FILE_COUNT - 1].delete(true, null);
+		table.checkAll();
+		for (int i= 0; i < FILE_COUNT; i++) {
+			RefactoringStatus status= table.isValid(indexes[i], true, false);
+			assertEquals(String.valueOf(i), i == 1 || i == FILE_COUNT - 1, status.hasFatalError());
+		}
+		for (int i= 0; i < FILE_COUNT; i++)
+			table.dispose(indexes[i]);
+	}
+
+	private CompositeChange createChange() {
+		CompositeChange result= new CompositeChange("validation");
+		for (int i= 0; i < FILE_COUNT; i++) {
+			TextFileChange change= new TextFileChange("change " + i, fFiles[i]);
+			change.setEdit(new ReplaceEdit(0, 7, "CONTENT"));
+			result.add(change);
+		}
+		return result;
+	}
+}
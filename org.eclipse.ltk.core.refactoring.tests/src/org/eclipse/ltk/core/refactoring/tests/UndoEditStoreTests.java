@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests;
+
+import junit.framework.TestCase;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+import org.eclipse.jface.text.Document;
+
+import org.eclipse.ltk.internal.core.refactoring.UndoEditStore;
+
+public class UndoEditStoreTests extends TestCase {
+
+	private static final String CONTENT= "public class A {\n\tint fField;\n\tvoid foo() {\n\t\tfField= 1;\n\t}\n}\n";
+
+	private UndoEditStore fStore;
+
+	@Override
+	protected void setUp() throws Exception {
+		fStore= new UndoEditStore(0);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fStore.shutdown();
+	}
+
+	private static UndoEdit perform(Document document, TextEdit[] edits) throws Exception {
+		MultiTextEdit multi= new MultiTextEdit();
+		for (int i= 0; i < edits.length; i++)
+			multi.addChild(edits[i]);
+		return multi.apply(document, TextEdit.CREATE_UNDO);
+	}
+
+	private static TextEdit[] createEdits() {
+		return new TextEdit[] {
+			new ReplaceEdit(13, 1, "B"),
+			new InsertEdit(18, "private "),
+			new DeleteEdit(36, 3),
+			new ReplaceEdit(46, 6, "fValue")
+		};
+	}
+
+	private static void assertUndo(Document document, TextEdit undo) throws Exception {
+		undo.apply(document, TextEdit.NONE);
+		assertEquals(CONTENT, document.get());
+	}
+
+	public void testResident() throws Exception {
+		UndoEditStore store= new UndoEditStore(Long.MAX_VALUE);
+		try {
+			Document document= new Document(CONTENT);
+			UndoEdit undo= perform(document, createEdits());
+			UndoEditStore.Entry entry= store.add(undo);
+			assertSame(undo, entry.getEdit());
+			assertUndo(document, entry.getEdit());
+		} finally {
+			store.shutdown();
+		}
+	}
+
+	public void testSpill() throws Exception {
+		Document document= new Document(CONTENT);
+		UndoEdit undo= perform(document, createEdits());
+		UndoEditStore.Entry entry= fStore.add(undo);
+		TextEdit edit= entry.getEdit();
+		assertNotSame(undo, edit);
+		assertFalse(edit instanceof UndoEdit);
+		assertUndo(document, edit);
+	}
+
+	public void testSpillSingleEdits() throws Exception {
+		TextEdit[] edits= createEdits();
+		for (int i= 0; i < edits.length; i++) {
+			Document document= new Document(CONTENT);
+			UndoEditStore.Entry entry= fStore.add(perform(document, new TextEdit[] { edits[i] }));
+			assertFalse(entry.getEdit() instanceof UndoEdit);
+			assertUndo(document, entry.getEdit());
+		}
+	}
+
+	public void testSpillMany() throws Exception {
+		Document[] documents= new Document[20];
+		UndoEditStore.Entry[] entries= new UndoEditStore.Entry[documents.length];
+		for (int i= 0; i < documents.length; i++) {
+			documents[i]= new Document(CONTENT);
+			entries[i]= fStore.add(perform(documents[i], createEdits()));
+		}
+		for (int i= documents.length - 1; i >= 0; i--)
+			assertUndo(documents[i], entries[i].getEdit());
+	}
+
+	public void testTouchingInsertionsStayResident() throws Exception {
+		Document document= new Document(CONTENT);
+		UndoEdit undo= perform(document, new TextEdit[] { new DeleteEdit(20, 3), new DeleteEdit(23, 4) });
+		UndoEditStore.Entry entry= fStore.add(undo);
+		assertSame(undo, entry.getEdit());
+		assertUndo(document, entry.getEdit());
+	}
+
+	public void testShutdown() throws Exception {
+		Document first= new Document(CONTENT);
+		UndoEditStore.Entry firstEntry= fStore.add(perform(first, createEdits()));
+		fStore.shutdown();
+
+		// a new spill file must not overwrite the edits spilled before the shutdown
+		Document second= new Document(CONTENT);
+		UndoEditStore.Entry secondEntry= fStore.add(perform(second, new TextEdit[] { new ReplaceEdit(0, 6, "protected") }));
+		assertFalse(secondEntry.getEdit() instanceof UndoEdit);
+		assertUndo(first, firstEntry.getEdit());
+
+		fStore.shutdown();
+		assertUndo(second, secondEntry.getEdit());
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2006, 2015 IBM Corporation and others.
+ * Copyright (c) 2006, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.ltk.core.refactoring.tests.history;
 
+import java.io.File;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -36,6 +37,7 @@ import org.eclipse.ltk.core.refactoring.history.RefactoringExecutionEvent;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistory;
 import org.eclipse.ltk.core.refactoring.history.RefactoringHistoryEvent;
 import org.eclipse.ltk.core.refactoring.tests.util.SimpleTestProject;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringPreferenceConstants;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringDescriptorProxyAdapter;
 import org.eclipse.ltk.internal.core.refactoring.history.RefactoringHistoryImplementation;
@@ -507,6 +509,25 @@ public class RefactoringHistoryServiceTests extends TestCase {
 		}
 	}
 
+	public void testProxyIndex0() throws Exception {
+		setUpWorkspaceRefactorings();
+		setSharedRefactoringHistory(false);
+		final IProject project= fProject.getProject();
+		final RefactoringHistoryService service= RefactoringHistoryService.getInstance();
+		RefactoringHistory projectHistory= service.getProjectHistory(project, null);
+		RefactoringHistory workspaceHistory= service.getWorkspaceHistory(STAMP_FACTOR * 3, STAMP_FACTOR * 5, null);
+		final File folder= RefactoringCorePlugin.getDefault().getStateLocation().append(RefactoringHistoryService.NAME_HISTORY_FOLDER).toFile();
+		final File projectIndex= new File(new File(folder, project.getName()), RefactoringHistoryService.NAME_PROXY_INDEX_FILE);
+		final File workspaceIndex= new File(new File(folder, RefactoringHistoryService.NAME_WORKSPACE_PROJECT), RefactoringHistoryService.NAME_PROXY_INDEX_FILE);
+		assertTrue("Project refactoring history should be indexed", projectIndex.isFile());
+		assertTrue("Workspace refactoring history should be indexed", workspaceIndex.isFile());
+		assertTrue("Project refactoring history index should be deleted", projectIndex.delete());
+		assertTrue("Workspace refactoring history index should be deleted", workspaceIndex.delete());
+		assertEquals("Refactoring history should be the same:", projectHistory, service.getProjectHistory(project, null));
+		assertEquals("Refactoring history should be the same:", workspaceHistory, service.getWorkspaceHistory(STAMP_FACTOR * 3, STAMP_FACTOR * 5, null));
+		assertTrue("Project refactoring history should be indexed", projectIndex.isFile());
+	}
+
 	public void testReadProjectHistory0() throws Exception {
 		RefactoringHistory history= RefactoringHistoryService.getInstance().getProjectHistory(fProject.getProject(), null);
 		assertTrue("Refactoring history must not be empty", !history.isEmpty());
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -28,6 +28,9 @@ public class ElementRenameRefactoring extends RenameRefactoring {
 	// Use the participants that are never disabled
 	public static final int ALWAYS_ENABLED= 0x08;
 
+	// Use the thread safe participants
+	public static final int THREAD_SAFE= 0x10;
+
 	public ElementRenameRefactoring(int options) {
 		super(new ElementRenameProcessor(options));
 	}
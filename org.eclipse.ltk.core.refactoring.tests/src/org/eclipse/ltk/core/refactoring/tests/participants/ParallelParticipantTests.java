@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests.participants;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.ILogListener;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Platform;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ltk.core.refactoring.CheckConditionsOperation;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.RefactoringStatusEntry;
+
+public class ParallelParticipantTests extends TestCase {
+
+	private static final String PARALLEL_PROPERTY= "org.eclipse.ltk.core.refactoring.parallelParticipants";
+	private static final String TIME_BUDGET_PROPERTY= "org.eclipse.ltk.core.refactoring.participantTimeBudget";
+
+	private String fParallel;
+	private String fTimeBudget;
+
+	private ILogListener fLogListener;
+	private List<IStatus> fLogEntries;
+
+	@Override
+	protected void setUp() {
+		fParallel= System.getProperty(PARALLEL_PROPERTY);
+		fTimeBudget= System.getProperty(TIME_BUDGET_PROPERTY);
+		fLogEntries= new ArrayList<>();
+		fLogListener= new ILogListener() {
+			@Override
+			public void logging(IStatus status, String plugin) {
+				fLogEntries.add(status);
+			}
+		};
+		Platform.addLogListener(fLogListener);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Platform.removeLogListener(fLogListener);
+		restoreProperty(PARALLEL_PROPERTY, fParallel);
+		restoreProperty(TIME_BUDGET_PROPERTY, fTimeBudget);
+	}
+
+	private static void restoreProperty(String key, String value) {
+		if (value == null)
+			System.clearProperty(key);
+		else
+			System.setProperty(key, value);
+	}
+
+	private static RefactoringStatus checkConditions() throws Exception {
+		ElementRenameRefactoring refactoring= new ElementRenameRefactoring(ElementRenameRefactoring.THREAD_SAFE);
+		CheckConditionsOperation op= new CheckConditionsOperation(refactoring, CheckConditionsOperation.ALL_CONDITIONS);
+		ResourcesPlugin.getWorkspace().run(op, new NullProgressMonitor());
+		return op.getStatus();
+	}
+
+	private static List<String> getMessages(RefactoringStatus status) {
+		List<String> result= new ArrayList<>();
+		RefactoringStatusEntry[] entries= status.getEntries();
+		for (int i= 0; i < entries.length; i++)
+			result.add(entries[i].getMessage());
+		return result;
+	}
+
+	private static void assertThreads(boolean callingThread) {
+		for (int i= 0; i < ThreadSafeParticipant.COUNT; i++) {
+			assertNotNull(ThreadSafeParticipant.fgThreads[i]);
+			assertEquals(callingThread, ThreadSafeParticipant.fgThreads[i] == Thread.currentThread());
+		}
+	}
+
+	public void testSequentialByDefault() throws Exception {
+		System.clearProperty(PARALLEL_PROPERTY);
+		ThreadSafeParticipant.reset(new long[] { 0, 0, 0 });
+		RefactoringStatus status= checkConditions();
+
+		assertEquals(ThreadSafeParticipant.COUNT, status.getEntries().length);
+		assertThreads(true);
+	}
+
+	public void testOptOut() throws Exception {
+		System.setProperty(PARALLEL_PROPERTY, "false");
+		ThreadSafeParticipant.reset(new long[] { 0, 0, 0 });
+		RefactoringStatus status= checkConditions();
+
+		assertEquals(ThreadSafeParticipant.COUNT, status.getEntries().length);
+		assertThreads(true);
+	}
+
+	public void testMergeOrder() throws Exception {
+		// the first participant finishes last
+		long[] delays= { 300, 100, 0 };
+		System.setProperty(PARALLEL_PROPERTY, "false");
+		ThreadSafeParticipant.reset(delays);
+		List<String> expected= getMessages(checkConditions());
+
+		System.setProperty(PARALLEL_PROPERTY, "true");
+		ThreadSafeParticipant.reset(delays);
+		RefactoringStatus status= checkConditions();
+
+		assertThreads(false);
+		assertEquals(ThreadSafeParticipant.COUNT, expected.size());
+		assertEquals(expected, getMessages(status));
+		assertFalse(status.hasError());
+		assertEquals(0, fLogEntries.size());
+	}
+
+	public void testTimeout() throws Exception {
+		System.setProperty(PARALLEL_PROPERTY, "true");
+		System.setProperty(TIME_BUDGET_PROPERTY, "200");
+		ThreadSafeParticipant.reset(new long[] { 0, 60000, 0 });
+		long start= System.currentTimeMillis();
+		RefactoringStatus status= checkConditions();
+
+		assertTrue(System.currentTimeMillis() - start < 30000);
+		assertTrue(status.hasError());
+		RefactoringStatusEntry[] entries= status.getEntries();
+		assertEquals(ThreadSafeParticipant.COUNT, entries.length);
+		int errors= 0;
+		for (int i= 0; i < entries.length; i++) {
+			if (entries[i].isError()) {
+				errors++;
+				assertTrue(entries[i].getMessage(), entries[i].getMessage().indexOf("thread safe participant 1") != -1);
+			}
+		}
+		assertEquals(1, errors);
+
+		// the timed out check has been canceled
+		assertTrue(ThreadSafeParticipant.fgDone.await(10, TimeUnit.SECONDS));
+		assertTrue(ThreadSafeParticipant.fgCanceled[1]);
+	}
+
+	public void testWorkspaceModificationFails() throws Exception {
+		System.setProperty(PARALLEL_PROPERTY, "true");
+		System.setProperty(TIME_BUDGET_PROPERTY, "60000");
+		ThreadSafeParticipant.reset(new long[] { 0, 0, 0 });
+		ThreadSafeParticipant.fgModifyWorkspace[0]= true;
+		long start= System.currentTimeMillis();
+		RefactoringStatus status= checkConditions();
+
+		// fails instead of waiting for the workspace until the time budget is exceeded
+		assertTrue(System.currentTimeMillis() - start < 30000);
+		assertTrue(status.hasError());
+		assertEquals(ThreadSafeParticipant.COUNT, status.getEntries().length);
+		assertFalse(ResourcesPlugin.getWorkspace().getRoot().getProject(ThreadSafeParticipant.PROJECT_NAME).exists());
+	}
+}
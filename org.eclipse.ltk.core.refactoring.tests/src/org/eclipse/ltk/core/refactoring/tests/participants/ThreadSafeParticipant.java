@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.core.refactoring.tests.participants;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+import org.eclipse.ltk.core.refactoring.participants.CheckConditionsContext;
+import org.eclipse.ltk.core.refactoring.participants.RenameParticipant;
+
+/**
+ * A participant that is declared thread safe. The three registered subclasses take the
+ * configured time to check their conditions and report a warning with their name.
+ */
+public abstract class ThreadSafeParticipant extends RenameParticipant {
+
+	public static final String PROJECT_NAME= "ThreadSafeParticipant";
+
+	public static final int COUNT= 3;
+
+	public static long[] fgDelays;
+	public static boolean[] fgModifyWorkspace;
+	public static Thread[] fgThreads;
+	public static boolean[] fgCanceled;
+	public static CountDownLatch fgDone;
+
+	public static class First extends ThreadSafeParticipant {
+		public First() {
+			super(0);
+		}
+	}
+
+	public static class Second extends ThreadSafeParticipant {
+		public Second() {
+			super(1);
+		}
+	}
+
+	public static class Third extends ThreadSafeParticipant {
+		public Third() {
+			super(2);
+		}
+	}
+
+	public static void reset(long[] delays) {
+		fgDelays= delays;
+		fgModifyWorkspace= new boolean[COUNT];
+		fgThreads= new Thread[COUNT];
+		fgCanceled= new boolean[COUNT];
+		fgDone= new CountDownLatch(COUNT);
+	}
+
+	private final int fIndex;
+
+	protected ThreadSafeParticipant(int index) {
+		fIndex= index;
+	}
+
+	@Override
+	protected boolean initialize(Object element) {
+		return true;
+	}
+
+	@Override
+	public String getName() {
+		return "thread safe participant " + fIndex;
+	}
+
+	@Override
+	public RefactoringStatus checkConditions(IProgressMonitor pm, CheckConditionsContext context) throws OperationCanceledException {
+		fgThreads[fIndex]= Thread.currentThread();
+		try {
+			long end= System.currentTimeMillis() + fgDelays[fIndex];
+			while (System.currentTimeMillis() < end) {
+				if (pm.isCanceled()) {
+					fgCanceled[fIndex]= true;
+					throw new OperationCanceledException();
+				}
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					fgCanceled[fIndex]= true;
+					throw new OperationCanceledException();
+				}
+			}
+			if (fgModifyWorkspace[fIndex]) {
+				try {
+					ResourcesPlugin.getWorkspace().getRoot().getProject(PROJECT_NAME).create(null);
+				} catch (CoreException e) {
+					return RefactoringStatus.create(e.getStatus());
+				}
+			}
+			return RefactoringStatus.createWarningStatus(getName());
+		} finally {
+			fgDone.countDown();
+		}
+	}
+
+	@Override
+	public Change createChange(IProgressMonitor pm) throws CoreException, OperationCanceledException {
+		return null;
+	}
+}
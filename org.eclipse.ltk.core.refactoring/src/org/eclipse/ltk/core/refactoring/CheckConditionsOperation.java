@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -17,6 +17,8 @@ import org.eclipse.core.runtime.NullProgressMonitor;
 
 import org.eclipse.core.resources.IWorkspaceRunnable;
 
+import org.eclipse.ltk.internal.core.refactoring.RefactoringProfiler;
+
 /**
  * Operation that, when run, checks the preconditions of the {@link Refactoring}
  * passed on creation.
@@ -73,15 +75,21 @@ public class CheckConditionsOperation implements IWorkspaceRunnable {
 	public void run(IProgressMonitor pm) throws CoreException {
 		if (pm == null)
 			pm= new NullProgressMonitor();
+		RefactoringProfiler.Phase phase= null;
 		try {
 			fStatus= null;
-			if ((fStyle & ALL_CONDITIONS) == ALL_CONDITIONS)
+			if ((fStyle & ALL_CONDITIONS) == ALL_CONDITIONS) {
+				phase= RefactoringProfiler.begin("checkAllConditions", fRefactoring); //$NON-NLS-1$
 				fStatus= fRefactoring.checkAllConditions(pm);
-			else if ((fStyle & INITIAL_CONDITONS) == INITIAL_CONDITONS)
+			} else if ((fStyle & INITIAL_CONDITONS) == INITIAL_CONDITONS) {
+				phase= RefactoringProfiler.begin("checkInitialConditions", fRefactoring); //$NON-NLS-1$
 				fStatus= fRefactoring.checkInitialConditions(pm);
-			else if ((fStyle & FINAL_CONDITIONS) == FINAL_CONDITIONS)
+			} else if ((fStyle & FINAL_CONDITIONS) == FINAL_CONDITIONS) {
+				phase= RefactoringProfiler.begin("checkFinalConditions", fRefactoring); //$NON-NLS-1$
 				fStatus= fRefactoring.checkFinalConditions(pm);
+			}
 		} finally {
+			RefactoringProfiler.end(phase);
 			pm.done();
 		}
 	}
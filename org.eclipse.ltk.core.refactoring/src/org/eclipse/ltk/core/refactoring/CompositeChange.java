@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -26,6 +26,7 @@ import org.eclipse.core.runtime.SubProgressMonitor;
 
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.ValidationStateTable;
 
 /**
  * Represents a composite change. Composite changes can be marked
@@ -45,6 +46,9 @@ public class CompositeChange extends Change {
 	private List<Change> fChanges;
 	private boolean fIsSynthetic;
 	private Change fUndoUntilException;
+	// the validation state of the text file changes in this tree, if this
+	// is the outermost composite change that got initialized
+	private ValidationStateTable fValidationTable;
 
 	/**
 	 * Creates a new composite change with the given name.
@@ -210,11 +214,19 @@ public class CompositeChange extends Change {
 	 */
 	@Override
 	public void initializeValidationData(IProgressMonitor pm) {
-		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
-		for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext();) {
-			Change change= iter.next();
-			change.initializeValidationData(new SubProgressMonitor(pm, 1));
-			pm.worked(1);
+		ValidationStateTable table= ValidationStateTable.beginCapture();
+		try {
+			pm.beginTask("", fChanges.size()); //$NON-NLS-1$
+			for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext();) {
+				Change change= iter.next();
+				change.initializeValidationData(new SubProgressMonitor(pm, 1));
+				pm.worked(1);
+			}
+		} finally {
+			if (table != null) {
+				table.endCapture();
+				fValidationTable= table;
+			}
 		}
 	}
 
@@ -233,15 +245,29 @@ public class CompositeChange extends Change {
 	@Override
 	public RefactoringStatus isValid(IProgressMonitor pm) throws CoreException {
 		RefactoringStatus result= new RefactoringStatus();
-		pm.beginTask("", fChanges.size()); //$NON-NLS-1$
-		for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext() && !result.hasFatalError();) {
-			Change change= iter.next();
-			if (change.isEnabled())
-				result.merge(change.isValid(new SubProgressMonitor(pm, 1)));
-			else
-				pm.worked(1);
-			if (pm.isCanceled())
-				throw new OperationCanceledException();
+		boolean batchEditValidation= ValidationStateTable.beginEditValidation();
+		boolean completed= false;
+		try {
+			if (fValidationTable != null)
+				fValidationTable.checkAll();
+			pm.beginTask("", fChanges.size()); //$NON-NLS-1$
+			for (Iterator<Change> iter= fChanges.iterator(); iter.hasNext() && !result.hasFatalError();) {
+				Change change= iter.next();
+				if (change.isEnabled())
+					result.merge(change.isValid(new SubProgressMonitor(pm, 1)));
+				else
+					pm.worked(1);
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+			}
+			completed= true;
+		} finally {
+			if (fValidationTable != null)
+				fValidationTable.clearChecks();
+			if (batchEditValidation) {
+				RefactoringStatus editStatus= ValidationStateTable.endEditValidation(completed && !result.hasFatalError());
+				result.merge(editStatus);
+			}
 		}
 		pm.done();
 		return result;
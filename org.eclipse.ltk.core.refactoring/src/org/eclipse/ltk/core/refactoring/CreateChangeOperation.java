@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -20,6 +20,7 @@ import org.eclipse.core.resources.IWorkspaceRunnable;
 
 import org.eclipse.ltk.internal.core.refactoring.NotCancelableProgressMonitor;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringProfiler;
 import org.eclipse.ltk.internal.core.refactoring.history.UnknownRefactoringDescriptor;
 
 /**
@@ -108,6 +109,7 @@ public class CreateChangeOperation implements IWorkspaceRunnable {
 		if (pm == null)
 			pm= new NullProgressMonitor();
 		fChange= null;
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("createChange", fRefactoring); //$NON-NLS-1$
 		try {
 			fChange= null;
 			RefactoringTickProvider rtp= fRefactoring.getRefactoringTickProvider();
@@ -119,23 +121,42 @@ public class CreateChangeOperation implements IWorkspaceRunnable {
 				fCheckConditionOperation.run(new SubProgressMonitor(pm, conditionTicks));
 				RefactoringStatus status= fCheckConditionOperation.getStatus();
 				if (status != null && status.getSeverity() < fConditionCheckingFailedSeverity) {
-					fChange= fRefactoring.createChange(new SubProgressMonitor(pm, rtp.getCreateChangeTicks()));
-					fChange.initializeValidationData(new NotCancelableProgressMonitor(
+					fChange= createChange(new SubProgressMonitor(pm, rtp.getCreateChangeTicks()));
+					initializeValidationData(new NotCancelableProgressMonitor(
 							new SubProgressMonitor(pm, rtp.getInitializeChangeTicks())));
 				} else {
 					pm.worked(rtp.getCreateChangeTicks() + rtp.getInitializeChangeTicks());
 				}
 			} else {
 				pm.beginTask("", rtp.getCreateChangeTicks() + rtp.getInitializeChangeTicks()); //$NON-NLS-1$
-				fChange= fRefactoring.createChange(new SubProgressMonitor(pm, rtp.getCreateChangeTicks()));
-				fChange.initializeValidationData(new NotCancelableProgressMonitor(
+				fChange= createChange(new SubProgressMonitor(pm, rtp.getCreateChangeTicks()));
+				initializeValidationData(new NotCancelableProgressMonitor(
 					new SubProgressMonitor(pm, rtp.getInitializeChangeTicks())));
 			}
 		} finally {
+			RefactoringProfiler.end(phase);
 			pm.done();
 		}
 	}
 
+	private Change createChange(IProgressMonitor pm) throws CoreException {
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("refactoring.createChange", null); //$NON-NLS-1$
+		try {
+			return fRefactoring.createChange(pm);
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
+	}
+
+	private void initializeValidationData(IProgressMonitor pm) {
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("initializeValidationData", null); //$NON-NLS-1$
+		try {
+			fChange.initializeValidationData(pm);
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
+	}
+
 	/**
 	 * Returns the outcome of the operation or <code>null</code> if an exception
 	 * occurred when performing the operation or the operation hasn't been
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -23,6 +23,7 @@ import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 
 import org.eclipse.ltk.internal.core.refactoring.NotCancelableProgressMonitor;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringProfiler;
 
 /**
  * Operation that, when run, performs a {@link Change} object. The operation
@@ -199,6 +200,7 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 	public void run(IProgressMonitor pm) throws CoreException {
 		if (pm == null)
 			pm= new NullProgressMonitor();
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("performChange", fChange); //$NON-NLS-1$
 		try {
 			fChangeExecuted= false;
 			if (createChange()) {
@@ -213,6 +215,7 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 
 				fChange= fCreateChangeOperation.getChange();
 				if (fChange != null) {
+					RefactoringProfiler.setSubject(phase, fChange);
 					executeChange(new SubProgressMonitor(pm, 1));
 				} else {
 					pm.worked(1);
@@ -221,6 +224,7 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 				executeChange(pm);
 			}
 		} finally {
+			RefactoringProfiler.end(phase);
 			pm.done();
 		}
 	}
@@ -243,7 +247,12 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 				boolean undoInitialized= false;
 				try {
 					monitor.beginTask("", 10); //$NON-NLS-1$
-					fValidationStatus= fChange.isValid(new SubProgressMonitor(monitor, 1));
+					RefactoringProfiler.Phase phase= RefactoringProfiler.begin("isValid", null); //$NON-NLS-1$
+					try {
+						fValidationStatus= fChange.isValid(new SubProgressMonitor(monitor, 1));
+					} finally {
+						RefactoringProfiler.end(phase);
+					}
 					if (fValidationStatus.hasFatalError())
 						return;
 					boolean aboutToPerformChangeCalled= false;
@@ -254,7 +263,12 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 							aboutToPerformChangeCalled= true;
 						}
 						fChangeExecutionFailed= true;
-						fUndoChange= fChange.perform(new SubProgressMonitor(monitor, 9));
+						phase= RefactoringProfiler.begin("perform", null); //$NON-NLS-1$
+						try {
+							fUndoChange= fChange.perform(new SubProgressMonitor(monitor, 9));
+						} finally {
+							RefactoringProfiler.end(phase);
+						}
 						fChangeExecutionFailed= false;
 						fChangeExecuted= true;
 					} finally {
@@ -266,8 +280,13 @@ public class PerformChangeOperation implements IWorkspaceRunnable {
 					}
 					fChange.dispose();
 					if (fUndoChange != null) {
-						fUndoChange.initializeValidationData(new NotCancelableProgressMonitor(
-							new SubProgressMonitor(monitor, 1)));
+						phase= RefactoringProfiler.begin("undo.initializeValidationData", null); //$NON-NLS-1$
+						try {
+							fUndoChange.initializeValidationData(new NotCancelableProgressMonitor(
+								new SubProgressMonitor(monitor, 1)));
+						} finally {
+							RefactoringProfiler.end(phase);
+						}
 						undoInitialized= true;
 					}
 					if (fUndoManager != null) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2014 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -37,6 +37,7 @@ import org.eclipse.ltk.internal.core.refactoring.Changes;
 import org.eclipse.ltk.internal.core.refactoring.ContentStamps;
 import org.eclipse.ltk.internal.core.refactoring.Lock;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.ValidationStateTable;
 
 /**
  * A special {@link TextChange} that operates on a <code>IFile</code>.
@@ -80,6 +81,9 @@ public class TextFileChange extends TextChange {
 	private int fAcquireCount;
 	private ITextFileBuffer fBuffer;
 	private BufferValidationState fValidationState;
+	// the validation state if it is kept in a table, see ValidationStateTable
+	private ValidationStateTable fValidationTable;
+	private int fValidationIndex;
 	private ContentStamp fContentStamp;
 
 	/**
@@ -165,7 +169,13 @@ public class TextFileChange extends TextChange {
 			monitor= new NullProgressMonitor();
 		try {
 			monitor.beginTask("", 1); //$NON-NLS-1$
-			fValidationState= BufferValidationState.create(fFile);
+			ValidationStateTable table= ValidationStateTable.getCapturing();
+			if (table != null) {
+				fValidationTable= table;
+				fValidationIndex= table.add(fFile);
+			} else {
+				fValidationState= BufferValidationState.create(fFile);
+			}
 		} finally {
 			monitor.done();
 		}
@@ -177,12 +187,16 @@ public class TextFileChange extends TextChange {
 			monitor= new NullProgressMonitor();
 		try {
 			monitor.beginTask("", 1); //$NON-NLS-1$
-			if (fValidationState == null)
+			if (fValidationState == null && fValidationTable == null)
 				throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), "TextFileChange has not been initialialized")); //$NON-NLS-1$
 
 			boolean needsSaving= needsSaving();
-			RefactoringStatus result= fValidationState.isValid(needsSaving);
-			if (needsSaving) {
+			RefactoringStatus result= fValidationTable != null
+					? fValidationTable.isValid(fValidationIndex, needsSaving, false)
+					: fValidationState.isValid(needsSaving);
+			if (ValidationStateTable.deferEditValidation(fFile, needsSaving)) {
+				// validated together with the other files of the enclosing composite change
+			} else if (needsSaving) {
 				result.merge(Changes.validateModifiesFiles(new IFile[] { fFile}));
 			} else {
 				// we are reading the file. So it should be at least in sync
@@ -199,6 +213,9 @@ public class TextFileChange extends TextChange {
 		if (fValidationState != null) {
 			fValidationState.dispose();
 		}
+		if (fValidationTable != null) {
+			fValidationTable.dispose(fValidationIndex);
+		}
 	}
 
 	@Override
@@ -339,6 +356,8 @@ public class TextFileChange extends TextChange {
 			return true;
 		}
 		if ((fSaveMode & KEEP_SAVE_STATE) != 0) {
+			if (fValidationTable != null)
+				return !fValidationTable.wasDirty(fValidationIndex);
 			return fValidationState == null || !fValidationState.wasDirty();
 		}
 		return false;
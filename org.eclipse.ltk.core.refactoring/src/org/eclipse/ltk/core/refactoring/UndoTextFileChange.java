@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2010 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -38,6 +38,8 @@ import org.eclipse.ltk.internal.core.refactoring.Changes;
 import org.eclipse.ltk.internal.core.refactoring.ContentStamps;
 import org.eclipse.ltk.internal.core.refactoring.Lock;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.UndoEditStore;
+import org.eclipse.ltk.internal.core.refactoring.ValidationStateTable;
 
 /**
  * A change to perform the reverse change of a {@link TextFileChange}.
@@ -54,13 +56,16 @@ import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
 public class UndoTextFileChange extends Change {
 
 	private String fName;
-	private UndoEdit fUndo;
+	private UndoEditStore.Entry fUndo;
 	private IFile fFile;
 	private ContentStamp fContentStampToRestore;
 	private int fSaveMode;
 
 	private boolean fDirty;
 	private BufferValidationState fValidationState;
+	// the validation state if it is kept in a table, see ValidationStateTable
+	private ValidationStateTable fValidationTable;
+	private int fValidationIndex;
 
 	/**
 	 * Create a new undo text file change object.
@@ -81,7 +86,7 @@ public class UndoTextFileChange extends Change {
 		Assert.isNotNull(undo);
 		fName= name;
 		fFile= file;
-		fUndo= undo;
+		fUndo= UndoEditStore.getDefault().add(undo);
 		fContentStampToRestore= stamp;
 		fSaveMode= saveMode;
 	}
@@ -142,7 +147,13 @@ public class UndoTextFileChange extends Change {
 			pm= new NullProgressMonitor();
 		pm.beginTask("", 1); //$NON-NLS-1$
 		try {
-			fValidationState= BufferValidationState.create(fFile);
+			ValidationStateTable table= ValidationStateTable.getCapturing();
+			if (table != null) {
+				fValidationTable= table;
+				fValidationIndex= table.add(fFile);
+			} else {
+				fValidationState= BufferValidationState.create(fFile);
+			}
 		} finally {
 			pm.done();
 		}
@@ -154,11 +165,13 @@ public class UndoTextFileChange extends Change {
 			pm= new NullProgressMonitor();
 		pm.beginTask("", 1); //$NON-NLS-1$
 		try {
-			if (fValidationState == null)
+			if (fValidationState == null && fValidationTable == null)
 				throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), "UndoTextFileChange has not been initialialized")); //$NON-NLS-1$
 
 			ITextFileBuffer buffer= FileBuffers.getTextFileBufferManager().getTextFileBuffer(fFile.getFullPath(), LocationKind.IFILE);
 			fDirty= buffer != null && buffer.isDirty();
+			if (fValidationTable != null)
+				return fValidationTable.isValid(fValidationIndex, needsSaving(), true);
 			return fValidationState.isValid(needsSaving(), true);
 		} finally {
 			pm.done();
@@ -191,17 +204,17 @@ public class UndoTextFileChange extends Change {
 			}
 			return createUndoChange(redo, currentStamp);
 		} catch (BadLocationException e) {
-			if (fValidationState == null || !fValidationState.wasDerived())
+			if (!wasDerived())
 				throw Changes.asCoreException(e);
 			else
 				return new NullChange();
 		} catch (MalformedTreeException e) {
-			if (fValidationState == null || !fValidationState.wasDerived())
+			if (!wasDerived())
 				throw Changes.asCoreException(e);
 			else
 				return new NullChange();
 		} catch (CoreException e) {
-			if (fValidationState == null || !fValidationState.wasDerived())
+			if (!wasDerived())
 				throw e;
 			else
 				return new NullChange();
@@ -267,7 +280,7 @@ public class UndoTextFileChange extends Change {
 	private UndoEdit doPerformEdits(IDocument document, boolean[] setContentStampSuccess) throws MalformedTreeException, BadLocationException, CoreException {
 		// perform the changes
 		LinkedModeModel.closeAllModels(document);
-		UndoEdit redo= fUndo.apply(document, TextEdit.CREATE_UNDO);
+		UndoEdit redo= fUndo.getEdit().apply(document, TextEdit.CREATE_UNDO);
 
 		// try to restore the document content stamp
 		setContentStampSuccess[0]= ContentStamps.set(document, fContentStampToRestore);
@@ -279,6 +292,15 @@ public class UndoTextFileChange extends Change {
 		if (fValidationState != null) {
 			fValidationState.dispose();
 		}
+		if (fValidationTable != null) {
+			fValidationTable.dispose(fValidationIndex);
+		}
+	}
+
+	private boolean wasDerived() {
+		if (fValidationTable != null)
+			return fValidationTable.wasDerived(fValidationIndex);
+		return fValidationState != null && fValidationState.wasDerived();
 	}
 
 	private boolean needsSaving() {
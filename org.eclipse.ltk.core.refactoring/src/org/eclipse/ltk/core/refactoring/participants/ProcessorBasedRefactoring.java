@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -18,6 +18,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -27,6 +32,9 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -42,6 +50,7 @@ import org.eclipse.ltk.internal.core.refactoring.Messages;
 import org.eclipse.ltk.internal.core.refactoring.ParticipantDescriptor;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCoreMessages;
 import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringProfiler;
 
 /**
  * An base implementation for refactorings that are split into
@@ -53,6 +62,15 @@ import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
  * <p>Since 3.4, this class is non abstract and can be instantiated. {@link #getProcessor()} will
  * return the processor passed in {@link #ProcessorBasedRefactoring(RefactoringProcessor)} or
  * the processor set by {@link #setProcessor(RefactoringProcessor)}.
+ * <p>Since 3.7, the conditions of participants that are declared <code>threadSafe</code> are
+ * checked in parallel if the system property <code>org.eclipse.ltk.core.refactoring.parallelParticipants</code>
+ * is set to <code>true</code>. These checks run on worker threads that hold neither the scheduling
+ * rule nor the workspace lock of the refactoring, so they must only read the workspace. A check that
+ * tries to begin a scheduling rule, e.g. to modify a resource, fails and the participant is removed.
+ * Each of these participants is canceled and ignored if it takes longer than the time budget given
+ * by <code>org.eclipse.ltk.core.refactoring.participantTimeBudget</code> (in milliseconds, default
+ * 60000, 0 for no limit). The statuses are merged in the same order as if the participants were
+ * checked one after the other.</p>
  *
  * @since 3.0
  */
@@ -61,6 +79,25 @@ public class ProcessorBasedRefactoring extends Refactoring {
 	private static final String PERF_CHECK_CONDITIONS= "org.eclipse.ltk.core.refactoring/perf/participants/checkConditions"; //$NON-NLS-1$
 	private static final String PERF_CREATE_CHANGES= "org.eclipse.ltk.core.refactoring/perf/participants/createChanges"; //$NON-NLS-1$
 
+	private static final String PARALLEL_PARTICIPANTS_PROPERTY= "org.eclipse.ltk.core.refactoring.parallelParticipants"; //$NON-NLS-1$
+	private static final String PARTICIPANT_TIME_BUDGET_PROPERTY= "org.eclipse.ltk.core.refactoring.participantTimeBudget"; //$NON-NLS-1$
+
+	/**
+	 * The rule held by the threads that check the conditions of thread safe participants. It
+	 * doesn't conflict with other rules, but nested rules fail since it contains no other rule.
+	 */
+	private static final ISchedulingRule READ_ONLY_RULE= new ISchedulingRule() {
+		@Override
+		public boolean contains(ISchedulingRule rule) {
+			return rule == this;
+		}
+
+		@Override
+		public boolean isConflicting(ISchedulingRule rule) {
+			return rule == this;
+		}
+	};
+
 	private RefactoringProcessor fProcessor;
 
 	private List<RefactoringParticipant> fParticipants;
@@ -126,6 +163,121 @@ public class ProcessorBasedRefactoring extends Refactoring {
 		}
 	}
 
+	/**
+	 * A progress monitor that can be canceled from another thread.
+	 */
+	private static class ParticipantMonitor extends NullProgressMonitor {
+		private volatile boolean fCanceled;
+
+		@Override
+		public boolean isCanceled() {
+			return fCanceled;
+		}
+
+		@Override
+		public void setCanceled(boolean canceled) {
+			fCanceled= canceled;
+		}
+	}
+
+	/**
+	 * Checks the conditions of a thread safe participant on a worker thread. The worker holds
+	 * {@link ProcessorBasedRefactoring#READ_ONLY_RULE} while checking.
+	 */
+	private static class ParticipantCheck implements Runnable {
+		private final RefactoringParticipant fParticipant;
+		private final CheckConditionsContext fContext;
+		private final PerformanceStats fStats;
+		private final long fTimeBudget;
+		private final RefactoringProfiler.Phase fParentPhase;
+		private final ParticipantMonitor fMonitor= new ParticipantMonitor();
+		private final CountDownLatch fDone= new CountDownLatch(1);
+		private volatile long fStartTime;
+		private Thread fThread; // guarded by this
+		private RefactoringStatus fStatus;
+		private Throwable fException;
+
+		public ParticipantCheck(RefactoringParticipant participant, CheckConditionsContext context, PerformanceStats stats, long timeBudget) {
+			fParticipant= participant;
+			fContext= context;
+			fStats= stats;
+			fTimeBudget= timeBudget;
+			fParentPhase= RefactoringProfiler.getCurrent();
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				fThread= Thread.currentThread();
+			}
+			fStartTime= System.currentTimeMillis();
+			IJobManager manager= Job.getJobManager();
+			try {
+				if (fMonitor.isCanceled())
+					throw new OperationCanceledException();
+				manager.beginRule(READ_ONLY_RULE, null);
+				try {
+					fStats.startRun();
+					RefactoringProfiler.Phase phase= RefactoringProfiler.beginDetached(fParentPhase, "participant.checkConditions", fParticipant); //$NON-NLS-1$
+					try {
+						fStatus= fParticipant.checkConditions(fMonitor, fContext);
+					} finally {
+						RefactoringProfiler.endDetached(phase);
+						fStats.endRun();
+					}
+				} finally {
+					manager.endRule(READ_ONLY_RULE);
+				}
+			} catch (Throwable e) {
+				fException= e;
+			} finally {
+				synchronized (this) {
+					fThread= null;
+					// don't pass an interrupt on to the next check of the worker
+					Thread.interrupted();
+				}
+				fDone.countDown();
+			}
+		}
+
+		/**
+		 * Waits until the check is done.
+		 *
+		 * @param pm the monitor of the refactoring
+		 * @return <code>true</code> if the check is done, <code>false</code> if
+		 *  it exceeded the time budget
+		 */
+		public boolean await(IProgressMonitor pm) {
+			while (true) {
+				try {
+					if (fDone.await(100, TimeUnit.MILLISECONDS))
+						return true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				}
+				if (pm.isCanceled())
+					throw new OperationCanceledException();
+				long start= fStartTime;
+				if (fTimeBudget > 0 && start != 0 && System.currentTimeMillis() - start > fTimeBudget)
+					return false;
+			}
+		}
+
+		public void cancel() {
+			fMonitor.setCanceled(true);
+		}
+
+		/**
+		 * Cancels the check and interrupts its worker thread if it is still running.
+		 */
+		public synchronized void abort() {
+			cancel();
+			if (fThread != null)
+				fThread.interrupt();
+		}
+	}
+
 	/**
 	 * Creates a new processor based refactoring. Clients must override {@link #getProcessor()} to return a processor or set the
 	 * processor with {@link #setProcessor(RefactoringProcessor)}.
@@ -200,7 +352,12 @@ public class ProcessorBasedRefactoring extends Refactoring {
 		pm.beginTask("", 10); //$NON-NLS-1$
 		pm.setTaskName(RefactoringCoreMessages.ProcessorBasedRefactoring_initial_conditions);
 
-		result.merge(getProcessor().checkInitialConditions(new SubProgressMonitor(pm, 8)));
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("processor.checkInitialConditions", getProcessor()); //$NON-NLS-1$
+		try {
+			result.merge(getProcessor().checkInitialConditions(new SubProgressMonitor(pm, 8)));
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 		if (result.hasFatalError()) {
 			pm.done();
 			return result;
@@ -219,7 +376,12 @@ public class ProcessorBasedRefactoring extends Refactoring {
 		pm.beginTask("", 9); //$NON-NLS-1$
 		pm.setTaskName(RefactoringCoreMessages.ProcessorBasedRefactoring_final_conditions);
 
-		result.merge(getProcessor().checkFinalConditions(new SubProgressMonitor(pm, 5), context));
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("processor.checkFinalConditions", getProcessor()); //$NON-NLS-1$
+		try {
+			result.merge(getProcessor().checkFinalConditions(new SubProgressMonitor(pm, 5), context));
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 		if (result.hasFatalError()) {
 			pm.done();
 			return result;
@@ -228,7 +390,13 @@ public class ProcessorBasedRefactoring extends Refactoring {
 			throw new OperationCanceledException();
 
 		SharableParticipants sharableParticipants= new SharableParticipants(); // must not be shared when checkFinalConditions is called again
-		RefactoringParticipant[] loadedParticipants= getProcessor().loadParticipants(result, sharableParticipants);
+		RefactoringParticipant[] loadedParticipants;
+		phase= RefactoringProfiler.begin("loadParticipants", null); //$NON-NLS-1$
+		try {
+			loadedParticipants= getProcessor().loadParticipants(result, sharableParticipants);
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 		if (loadedParticipants == null || loadedParticipants.length == 0) {
 			fParticipants= EMPTY_PARTICIPANTS;
 		} else {
@@ -244,37 +412,18 @@ public class ProcessorBasedRefactoring extends Refactoring {
 		IProgressMonitor sm= new SubProgressMonitor(pm, 2);
 
 		sm.beginTask("", fParticipants.size()); //$NON-NLS-1$
-		for (Iterator<RefactoringParticipant> iter= fParticipants.iterator(); iter.hasNext() && !result.hasFatalError(); ) {
-
-			RefactoringParticipant participant= iter.next();
-
-			final PerformanceStats stats= PerformanceStats.getStats(PERF_CHECK_CONDITIONS, getName() + ", " + participant.getName()); //$NON-NLS-1$
-			stats.startRun();
-
-			try {
-				result.merge(participant.checkConditions(new SubProgressMonitor(sm, 1), context));
-			} catch (OperationCanceledException e) {
-				throw e;
-			} catch (RuntimeException e) {
-				// remove the participant so that it will be ignored during change execution.
-				RefactoringCorePlugin.log(e);
-				result.merge(RefactoringStatus.createErrorStatus(Messages.format(
-					RefactoringCoreMessages.ProcessorBasedRefactoring_check_condition_participant_failed,
-					participant.getName())));
-				iter.remove();
-			}
-
-			stats.endRun();
-
-			if (sm.isCanceled())
-				throw new OperationCanceledException();
-		}
+		checkParticipantConditions(result, context, sm);
 		sm.done();
 		if (result.hasFatalError()) {
 			pm.done();
 			return result;
 		}
-		result.merge(context.check(new SubProgressMonitor(pm, 1)));
+		phase= RefactoringProfiler.begin("context.check", null); //$NON-NLS-1$
+		try {
+			result.merge(context.check(new SubProgressMonitor(pm, 1)));
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 		pm.done();
 		return result;
 	}
@@ -285,7 +434,13 @@ public class ProcessorBasedRefactoring extends Refactoring {
 			pm= new NullProgressMonitor();
 		pm.beginTask("", fParticipants.size() + 3); //$NON-NLS-1$
 		pm.setTaskName(RefactoringCoreMessages.ProcessorBasedRefactoring_create_change);
-		Change processorChange= getProcessor().createChange(new SubProgressMonitor(pm, 1));
+		Change processorChange;
+		RefactoringProfiler.Phase phase= RefactoringProfiler.begin("processor.createChange", getProcessor()); //$NON-NLS-1$
+		try {
+			processorChange= getProcessor().createChange(new SubProgressMonitor(pm, 1));
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 		if (pm.isCanceled())
 			throw new OperationCanceledException();
 
@@ -302,8 +457,15 @@ public class ProcessorBasedRefactoring extends Refactoring {
 				final PerformanceStats stats= PerformanceStats.getStats(PERF_CREATE_CHANGES, getName() + ", " + participant.getName()); //$NON-NLS-1$
 				stats.startRun();
 
-				Change preChange= participant.createPreChange(new SubProgressMonitor(pm, 1));
-				Change change= participant.createChange(new SubProgressMonitor(pm, 1));
+				Change preChange;
+				Change change;
+				phase= RefactoringProfiler.begin("participant.createChange", participant); //$NON-NLS-1$
+				try {
+					preChange= participant.createPreChange(new SubProgressMonitor(pm, 1));
+					change= participant.createChange(new SubProgressMonitor(pm, 1));
+				} finally {
+					RefactoringProfiler.end(phase);
+				}
 
 				stats.endRun();
 
@@ -337,9 +499,15 @@ public class ProcessorBasedRefactoring extends Refactoring {
 
 		fTextChangeMap= null;
 
-		Change postChange= getProcessor().postCreateChange(
-			changes.toArray(new Change[changes.size()]),
-			new SubProgressMonitor(pm, 1));
+		Change postChange;
+		phase= RefactoringProfiler.begin("processor.postCreateChange", getProcessor()); //$NON-NLS-1$
+		try {
+			postChange= getProcessor().postCreateChange(
+				changes.toArray(new Change[changes.size()]),
+				new SubProgressMonitor(pm, 1));
+		} finally {
+			RefactoringProfiler.end(phase);
+		}
 
 		ProcessorChange result= new ProcessorChange(getName());
 		result.addAll(preChanges.toArray(new Change[preChanges.size()]));
@@ -410,6 +578,119 @@ public class ProcessorBasedRefactoring extends Refactoring {
 
 	//---- Helper methods ---------------------------------------------------------------------
 
+	/**
+	 * Checks the conditions of all participants and merges the statuses in the order of
+	 * the participants. Participants that fail are removed. The conditions of thread safe
+	 * participants are checked in parallel if enabled.
+	 *
+	 * @param result the status to merge the participants' statuses into
+	 * @param context the condition checking context
+	 * @param sm the progress monitor, with one unit of work per participant
+	 * @throws CoreException if a participant throws a <code>CoreException</code>
+	 */
+	private void checkParticipantConditions(RefactoringStatus result, CheckConditionsContext context, IProgressMonitor sm) throws CoreException {
+		Map<RefactoringParticipant, ParticipantCheck> checks= new HashMap<>();
+		long timeBudget= Long.getLong(PARTICIPANT_TIME_BUDGET_PROPERTY, 60000).longValue();
+		if (Boolean.getBoolean(PARALLEL_PARTICIPANTS_PROPERTY)) {
+			for (Iterator<RefactoringParticipant> iter= fParticipants.iterator(); iter.hasNext();) {
+				RefactoringParticipant participant= iter.next();
+				ParticipantDescriptor descriptor= participant.getDescriptor();
+				if (descriptor != null && descriptor.isThreadSafe())
+					checks.put(participant, new ParticipantCheck(participant, context, getCheckConditionsStats(participant), timeBudget));
+			}
+			if (checks.size() < 2)
+				checks.clear();
+		}
+		ExecutorService executor= null;
+		if (!checks.isEmpty()) {
+			executor= Executors.newFixedThreadPool(Math.min(checks.size(), Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread= new Thread(runnable, "Refactoring participant condition checker"); //$NON-NLS-1$
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// submit in participant order, so that the first statuses are ready first
+			for (Iterator<RefactoringParticipant> iter= fParticipants.iterator(); iter.hasNext();) {
+				ParticipantCheck check= checks.get(iter.next());
+				if (check != null)
+					executor.execute(check);
+			}
+		}
+		try {
+			for (Iterator<RefactoringParticipant> iter= fParticipants.iterator(); iter.hasNext() && !result.hasFatalError(); ) {
+
+				RefactoringParticipant participant= iter.next();
+				ParticipantCheck check= checks.get(participant);
+
+				if (check == null) {
+					final PerformanceStats stats= getCheckConditionsStats(participant);
+					stats.startRun();
+
+					RefactoringProfiler.Phase phase= RefactoringProfiler.begin("participant.checkConditions", participant); //$NON-NLS-1$
+					try {
+						result.merge(participant.checkConditions(new SubProgressMonitor(sm, 1), context));
+					} catch (OperationCanceledException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						// remove the participant so that it will be ignored during change execution.
+						RefactoringCorePlugin.log(e);
+						result.merge(RefactoringStatus.createErrorStatus(Messages.format(
+							RefactoringCoreMessages.ProcessorBasedRefactoring_check_condition_participant_failed,
+							participant.getName())));
+						iter.remove();
+					} finally {
+						RefactoringProfiler.end(phase);
+					}
+
+					stats.endRun();
+				} else {
+					if (!check.await(sm)) {
+						check.abort();
+						String message= Messages.format(
+							RefactoringCoreMessages.ProcessorBasedRefactoring_check_condition_participant_timeout,
+							new Object[] { participant.getName(), Long.toString(timeBudget) });
+						RefactoringCorePlugin.logErrorMessage(message);
+						result.merge(RefactoringStatus.createErrorStatus(message));
+						iter.remove();
+					} else if (check.fException instanceof OperationCanceledException) {
+						throw (OperationCanceledException) check.fException;
+					} else if (check.fException instanceof CoreException) {
+						throw (CoreException) check.fException;
+					} else if (check.fException instanceof RuntimeException) {
+						// remove the participant so that it will be ignored during change execution.
+						RefactoringCorePlugin.log(check.fException);
+						result.merge(RefactoringStatus.createErrorStatus(Messages.format(
+							RefactoringCoreMessages.ProcessorBasedRefactoring_check_condition_participant_failed,
+							participant.getName())));
+						iter.remove();
+					} else if (check.fException instanceof Error) {
+						throw (Error) check.fException;
+					} else {
+						result.merge(check.fStatus);
+					}
+					sm.worked(1);
+				}
+
+				if (sm.isCanceled())
+					throw new OperationCanceledException();
+			}
+		} finally {
+			if (executor != null) {
+				// stop the checks whose statuses aren't needed anymore
+				for (Iterator<ParticipantCheck> iter= checks.values().iterator(); iter.hasNext();) {
+					iter.next().cancel();
+				}
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private PerformanceStats getCheckConditionsStats(RefactoringParticipant participant) {
+		return PerformanceStats.getStats(PERF_CHECK_CONDITIONS, getName() + ", " + participant.getName()); //$NON-NLS-1$
+	}
+
 	private CheckConditionsContext createCheckConditionsContext() throws CoreException {
 		CheckConditionsContext result= new CheckConditionsContext();
 		result.add(new ValidateEditChecker(getValidationContext()));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2015 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -74,6 +74,10 @@ public class ResourceChangeChecker implements IConditionChecker {
 	/**
 	 * Returns the delta factory to be used to record resource
 	 * operations.
+	 * <p>
+	 * The factory is not thread safe. Participants that check their conditions
+	 * in parallel must only use it while synchronized on this checker.
+	 * </p>
 	 *
 	 * @return the delta factory
 	 */
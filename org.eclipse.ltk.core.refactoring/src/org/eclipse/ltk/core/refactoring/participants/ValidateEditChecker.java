@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2008 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -70,11 +70,12 @@ public class ValidateEditChecker implements IConditionChecker {
 	}
 
 	/**
-	 * Adds the given file to this checker.
+	 * Adds the given file to this checker. Since 3.7, this method may be called
+	 * concurrently by participants that check their conditions in parallel.
 	 *
 	 * @param file the file to add
 	 */
-	public void addFile(IFile file) {
+	public synchronized void addFile(IFile file) {
 		Assert.isNotNull(file);
 		fFiles.add(file);
 	}
@@ -84,14 +85,17 @@ public class ValidateEditChecker implements IConditionChecker {
 	 *
 	 * @param files the array of files to add
 	 */
-	public void addFiles(IFile[] files) {
+	public synchronized void addFiles(IFile[] files) {
 		Assert.isNotNull(files);
 		fFiles.addAll(Arrays.asList(files));
 	}
 
 	@Override
 	public RefactoringStatus check(IProgressMonitor monitor) throws CoreException {
-		IResource[] resources= fFiles.toArray(new IResource[fFiles.size()]);
+		IResource[] resources;
+		synchronized (this) {
+			resources= fFiles.toArray(new IResource[fFiles.size()]);
+		}
 		RefactoringStatus result= new RefactoringStatus();
 		IStatus status= Resources.checkInSync(resources);
 		if (!status.isOK())
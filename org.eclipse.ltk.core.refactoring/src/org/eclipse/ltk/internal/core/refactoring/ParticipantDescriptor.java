@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2009 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -35,6 +35,7 @@ public class ParticipantDescriptor {
 	private static final String NAME= "name";  //$NON-NLS-1$
 	private static final String CLASS= "class"; //$NON-NLS-1$
 	private static final String PROCESS_ON_CANCEL= "processOnCancel";  //$NON-NLS-1$
+	private static final String THREAD_SAFE= "threadSafe";  //$NON-NLS-1$
 
 	public ParticipantDescriptor(IConfigurationElement element) {
 		fConfigurationElement= element;
@@ -100,6 +101,19 @@ public class ParticipantDescriptor {
 		return Boolean.valueOf(attr).booleanValue();
 	}
 
+	/**
+	 * Returns whether the participant's conditions may be checked in parallel
+	 * with the conditions of other participants.
+	 *
+	 * @return <code>true</code> if the participant is declared thread safe
+	 */
+	public boolean isThreadSafe() {
+		String attr= fConfigurationElement.getAttribute(THREAD_SAFE);
+		if (attr == null)
+			return false;
+		return Boolean.valueOf(attr).booleanValue();
+	}
+
 	private boolean convert(EvaluationResult eval) {
 		if (eval == EvaluationResult.FALSE)
 			return false;
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2000, 2012 IBM Corporation and others.
+ * Copyright (c) 2000, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -132,6 +132,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String ProcessorBasedRefactoring_check_condition_participant_failed;
 
+	public static String ProcessorBasedRefactoring_check_condition_participant_timeout;
+
 	public static String ProcessorBasedRefactoring_create_change;
 
 	public static String ProcessorBasedRefactoring_final_conditions;
@@ -260,6 +262,8 @@ public final class RefactoringCoreMessages extends NLS {
 
 	public static String UndoableOperation2ChangeAdapter_no_undo_available;
 
+	public static String UndoEditStore_read_error;
+
 	public static String UndoManager2_no_change;
 
 	public static String UnknownRefactoringDescriptor_cannot_create_refactoring;
@@ -0,0 +1,396 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ltk.core.refactoring.Change;
+import org.eclipse.ltk.core.refactoring.ChangeDescriptor;
+import org.eclipse.ltk.core.refactoring.Refactoring;
+import org.eclipse.ltk.core.refactoring.RefactoringChangeDescriptor;
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptor;
+import org.eclipse.ltk.core.refactoring.participants.ProcessorBasedRefactoring;
+import org.eclipse.ltk.core.refactoring.participants.RefactoringProcessor;
+
+/**
+ * Records the time and the memory allocated by the phases of a refactoring, e.g. condition
+ * checking, change creation, and change execution, including the work of each participant.
+ * <p>
+ * Profiling is enabled by setting the system property
+ * <code>org.eclipse.ltk.core.refactoring.profile</code> to a directory. A phase that is begun
+ * while no other phase is active on the current thread is a root phase. When a root phase ends,
+ * it is written with all its nested phases as a JSON file to that directory:
+ * </p>
+ * <pre>
+ * {"name":"performChange","detail":"org.eclipse.jdt.ui.rename.type","thread":"main",
+ *  "start":1462435200000,"durationMillis":12.5,"allocatedBytes":123456,"children":[...]}
+ * </pre>
+ * <p>
+ * <code>allocatedBytes</code> is only present if the VM can measure the allocations of a thread.
+ * </p>
+ *
+ * @since 3.7
+ */
+public final class RefactoringProfiler {
+
+	/**
+	 * A phase of a refactoring.
+	 */
+	public static final class Phase {
+
+		private final String fName;
+		private String fDetail;
+		private final String fThread;
+		private final long fStart;
+		private final long fStartNanos;
+		private final long fStartAllocated;
+		private long fDurationNanos;
+		private long fAllocated= -1;
+		private List<Phase> fChildren;
+		private Phase fParent;
+
+		private Phase(String name, String detail) {
+			fName= name;
+			fDetail= detail;
+			fThread= Thread.currentThread().getName();
+			fStart= System.currentTimeMillis();
+			fStartAllocated= currentThreadAllocatedBytes();
+			fStartNanos= System.nanoTime();
+		}
+
+		private void end() {
+			fDurationNanos= System.nanoTime() - fStartNanos;
+			if (fStartAllocated >= 0) {
+				long allocated= currentThreadAllocatedBytes();
+				if (allocated >= 0)
+					fAllocated= allocated - fStartAllocated;
+			}
+		}
+
+		private synchronized void addChild(Phase child) {
+			if (fChildren == null)
+				fChildren= new ArrayList<>();
+			fChildren.add(child);
+		}
+
+		public String getName() {
+			return fName;
+		}
+
+		public String getDetail() {
+			return fDetail;
+		}
+
+		public long getDurationNanos() {
+			return fDurationNanos;
+		}
+
+		/**
+		 * @return the number of bytes allocated by the thread during the phase, or -1 if unknown
+		 */
+		public long getAllocatedBytes() {
+			return fAllocated;
+		}
+
+		public synchronized Phase[] getChildren() {
+			if (fChildren == null)
+				return new Phase[0];
+			return fChildren.toArray(new Phase[fChildren.size()]);
+		}
+
+		/**
+		 * Appends this phase and its children as JSON.
+		 *
+		 * @param buffer the buffer to append to
+		 */
+		public void toJSON(StringBuffer buffer) {
+			buffer.append("{\"name\":"); //$NON-NLS-1$
+			appendString(buffer, fName);
+			if (fDetail != null) {
+				buffer.append(",\"detail\":"); //$NON-NLS-1$
+				appendString(buffer, fDetail);
+			}
+			buffer.append(",\"thread\":"); //$NON-NLS-1$
+			appendString(buffer, fThread);
+			buffer.append(",\"start\":").append(fStart); //$NON-NLS-1$
+			buffer.append(",\"durationMillis\":").append(fDurationNanos / 1000000.0); //$NON-NLS-1$
+			if (fAllocated >= 0)
+				buffer.append(",\"allocatedBytes\":").append(fAllocated); //$NON-NLS-1$
+			Phase[] children= getChildren();
+			if (children.length > 0) {
+				buffer.append(",\"children\":["); //$NON-NLS-1$
+				for (int i= 0; i < children.length; i++) {
+					if (i > 0)
+						buffer.append(',');
+					children[i].toJSON(buffer);
+				}
+				buffer.append(']');
+			}
+			buffer.append('}');
+		}
+
+		@Override
+		public String toString() {
+			StringBuffer buffer= new StringBuffer();
+			toJSON(buffer);
+			return buffer.toString();
+		}
+	}
+
+	private static volatile String fgOutputDirectory= System.getProperty("org.eclipse.ltk.core.refactoring.profile"); //$NON-NLS-1$
+
+	private static final ThreadLocal<Phase> fgCurrentPhase= new ThreadLocal<>();
+
+	private static final AtomicInteger fgProfileCount= new AtomicInteger();
+
+	private static ThreadMXBean fgThreadBean;
+	private static volatile Method fgAllocatedBytesMethod;
+
+	static {
+		if (fgOutputDirectory != null)
+			initAllocationMeasurement();
+	}
+
+	private RefactoringProfiler() {
+		// no instances
+	}
+
+	/**
+	 * @return <code>true</code> if refactorings are profiled
+	 */
+	public static boolean isEnabled() {
+		return fgOutputDirectory != null;
+	}
+
+	/**
+	 * Sets the directory to which the profiles are written. Used for testing.
+	 *
+	 * @param directory the directory, or <code>null</code> to disable profiling
+	 */
+	public static void setOutputDirectory(String directory) {
+		if (directory != null)
+			initAllocationMeasurement();
+		fgOutputDirectory= directory;
+	}
+
+	/**
+	 * Begins a phase on the current thread. The phase must be ended by {@link #end(Phase)} on
+	 * the same thread, typically in a <code>finally</code> block.
+	 *
+	 * @param name the name of the phase
+	 * @param subject the {@link Refactoring}, {@link RefactoringProcessor} or {@link Change} whose
+	 *            ID describes the phase, an ID, an object whose class name describes the phase
+	 *            (e.g. a participant), or <code>null</code>
+	 * @return the phase, or <code>null</code> if profiling is disabled
+	 */
+	public static Phase begin(String name, Object subject) {
+		if (fgOutputDirectory == null)
+			return null;
+		Phase phase= new Phase(name, getId(subject));
+		phase.fParent= fgCurrentPhase.get();
+		fgCurrentPhase.set(phase);
+		return phase;
+	}
+
+	/**
+	 * Ends a phase begun by {@link #begin(String, Object)}. If it is a root phase, the profile
+	 * is written. Nested phases that have not been ended are discarded.
+	 *
+	 * @param phase the phase, or <code>null</code>
+	 */
+	public static void end(Phase phase) {
+		if (phase == null)
+			return;
+		phase.end();
+		fgCurrentPhase.set(phase.fParent);
+		if (phase.fParent != null)
+			phase.fParent.addChild(phase);
+		else
+			write(phase);
+	}
+
+	/**
+	 * Returns the phase that is active on the current thread.
+	 *
+	 * @return the phase, or <code>null</code> if profiling is disabled or no phase is active
+	 */
+	public static Phase getCurrent() {
+		if (fgOutputDirectory == null)
+			return null;
+		return fgCurrentPhase.get();
+	}
+
+	/**
+	 * Begins a phase on a worker thread that works on behalf of a phase that is active on
+	 * another thread. The phase must be ended by {@link #endDetached(Phase)} on the worker thread.
+	 *
+	 * @param parent the phase returned by {@link #getCurrent()} on the other thread, or
+	 *            <code>null</code>
+	 * @param name the name of the phase
+	 * @param subject the {@link Refactoring}, {@link RefactoringProcessor} or {@link Change} whose
+	 *            ID describes the phase, an ID, an object whose class name describes the phase
+	 *            (e.g. a participant), or <code>null</code>
+	 * @return the phase, or <code>null</code> if the parent is <code>null</code>
+	 */
+	public static Phase beginDetached(Phase parent, String name, Object subject) {
+		if (parent == null)
+			return null;
+		Phase phase= new Phase(name, getId(subject));
+		phase.fParent= parent;
+		return phase;
+	}
+
+	/**
+	 * Ends a detached phase on the worker thread and adds it to its parent.
+	 *
+	 * @param phase the phase returned by {@link #beginDetached(Phase, String, Object)}, or
+	 *            <code>null</code>
+	 */
+	public static void endDetached(Phase phase) {
+		if (phase == null)
+			return;
+		phase.end();
+		phase.fParent.addChild(phase);
+	}
+
+	/**
+	 * Sets the subject of a phase whose subject was not known when it was begun.
+	 *
+	 * @param phase the phase, or <code>null</code>
+	 * @param subject the {@link Refactoring} or {@link Change} whose ID describes the phase
+	 */
+	public static void setSubject(Phase phase, Object subject) {
+		if (phase != null)
+			phase.fDetail= getId(subject);
+	}
+
+	private static String getId(Object subject) {
+		if (subject instanceof ProcessorBasedRefactoring) {
+			RefactoringProcessor processor= ((ProcessorBasedRefactoring) subject).getProcessor();
+			if (processor != null && processor.getIdentifier() != null)
+				return processor.getIdentifier();
+		} else if (subject instanceof Change) {
+			ChangeDescriptor descriptor= ((Change) subject).getDescriptor();
+			if (descriptor instanceof RefactoringChangeDescriptor) {
+				RefactoringDescriptor refactoringDescriptor= ((RefactoringChangeDescriptor) descriptor).getRefactoringDescriptor();
+				if (refactoringDescriptor != null)
+					return refactoringDescriptor.getID();
+			}
+		} else if (subject instanceof RefactoringProcessor) {
+			String id= ((RefactoringProcessor) subject).getIdentifier();
+			if (id != null)
+				return id;
+		} else if (subject instanceof String) {
+			return (String) subject;
+		} else if (subject == null) {
+			return null;
+		}
+		return subject.getClass().getName();
+	}
+
+	private static void write(Phase root) {
+		String outputDirectory= fgOutputDirectory;
+		if (outputDirectory == null)
+			return; // disabled while the phase was active
+		StringBuffer buffer= new StringBuffer();
+		root.toJSON(buffer);
+		buffer.append('\n');
+		File directory= new File(outputDirectory);
+		directory.mkdirs();
+		String name= "refactoring-" + root.fStart + '-' + fgProfileCount.incrementAndGet() + ".json"; //$NON-NLS-1$ //$NON-NLS-2$
+		try (Writer writer= new OutputStreamWriter(new FileOutputStream(new File(directory, name)), "UTF-8")) { //$NON-NLS-1$
+			writer.write(buffer.toString());
+		} catch (IOException e) {
+			RefactoringCorePlugin.log(e);
+		}
+	}
+
+	private static void appendString(StringBuffer buffer, String value) {
+		buffer.append('"');
+		for (int i= 0; i < value.length(); i++) {
+			char ch= value.charAt(i);
+			switch (ch) {
+				case '"':
+					buffer.append("\\\""); //$NON-NLS-1$
+					break;
+				case '\\':
+					buffer.append("\\\\"); //$NON-NLS-1$
+					break;
+				case '\n':
+					buffer.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					buffer.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					buffer.append("\\t"); //$NON-NLS-1$
+					break;
+				default:
+					if (ch < 0x20) {
+						String hex= Integer.toHexString(ch);
+						buffer.append("\\u"); //$NON-NLS-1$
+						for (int j= hex.length(); j < 4; j++)
+							buffer.append('0');
+						buffer.append(hex);
+					} else {
+						buffer.append(ch);
+					}
+			}
+		}
+		buffer.append('"');
+	}
+
+	/**
+	 * Looks up <code>com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)</code>,
+	 * which is not available on all VMs.
+	 */
+	private static synchronized void initAllocationMeasurement() {
+		if (fgAllocatedBytesMethod != null)
+			return;
+		try {
+			ThreadMXBean bean= ManagementFactory.getThreadMXBean();
+			Class<?>[] interfaces= bean.getClass().getInterfaces();
+			for (int i= 0; i < interfaces.length; i++) {
+				if ("com.sun.management.ThreadMXBean".equals(interfaces[i].getName())) { //$NON-NLS-1$
+					Method method= interfaces[i].getMethod("getThreadAllocatedBytes", new Class<?>[] { long.class }); //$NON-NLS-1$
+					fgThreadBean= bean;
+					fgAllocatedBytesMethod= method;
+					return;
+				}
+			}
+		} catch (NoSuchMethodException e) {
+			// not supported
+		} catch (SecurityException e) {
+			// not supported
+		}
+	}
+
+	private static long currentThreadAllocatedBytes() {
+		if (fgAllocatedBytesMethod == null)
+			return -1;
+		try {
+			Object result= fgAllocatedBytesMethod.invoke(fgThreadBean, new Object[] { Long.valueOf(Thread.currentThread().getId()) });
+			return ((Long) result).longValue();
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.UndoEdit;
+
+/**
+ * Keeps the undo edits of {@link org.eclipse.ltk.core.refactoring.UndoTextFileChange}s within a
+ * memory budget. When the edits of the changes on the undo stack exceed the budget, the oldest
+ * ones are written to a spill file and read back when the change is performed.
+ * <p>
+ * The budget in bytes can be set with the system property
+ * <code>org.eclipse.ltk.core.refactoring.undoMemoryBudget</code>. A negative value keeps all
+ * undo edits in memory.
+ * </p>
+ *
+ * @since 3.7
+ */
+public final class UndoEditStore {
+
+	private static final long MEMORY_BUDGET= Long.getLong("org.eclipse.ltk.core.refactoring.undoMemoryBudget", 32 * 1024 * 1024).longValue(); //$NON-NLS-1$
+
+	private static final String SPILL_FILE_NAME= ".undo.spill"; //$NON-NLS-1$
+
+	// estimated heap size of a replace edit without its text
+	private static final int EDIT_OVERHEAD= 64;
+
+	private static UndoEditStore fgDefault;
+
+	/**
+	 * The undo edit of a change, either in memory or in the spill file.
+	 */
+	public final class Entry {
+
+		private TextEdit fEdit;
+
+		private long fPosition= -1;
+		private int fLength;
+
+		private Entry(TextEdit edit) {
+			fEdit= edit;
+		}
+
+		/**
+		 * Returns the edit to apply to undo the change. A spilled edit is read back as a
+		 * {@link MultiTextEdit} with the same effect as the original undo edit.
+		 *
+		 * @return the edit
+		 * @throws CoreException if the spilled edit cannot be read
+		 */
+		public TextEdit getEdit() throws CoreException {
+			synchronized (UndoEditStore.this) {
+				if (fEdit != null)
+					return fEdit;
+				try {
+					if (fPosition < 0)
+						throw new IOException("Undo edit has been dropped"); //$NON-NLS-1$
+					return read(fPosition, fLength);
+				} catch (IOException e) {
+					throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), RefactoringCoreMessages.UndoEditStore_read_error, e));
+				}
+			}
+		}
+	}
+
+	private static final class EntryReference extends WeakReference<Entry> {
+		static final int RESIDENT= 0;
+		static final int SPILLED= 1;
+		static final int PINNED= 2;
+
+		final long fSize;
+		int fState= RESIDENT;
+
+		EntryReference(Entry entry, long size, ReferenceQueue<Entry> queue) {
+			super(entry, queue);
+			fSize= size;
+		}
+	}
+
+	private final ReferenceQueue<Entry> fQueue= new ReferenceQueue<>();
+
+	private final long fBudget;
+
+	// oldest first
+	private final Set<EntryReference> fResident= new LinkedHashSet<>();
+	private long fResidentSize;
+	private final Set<EntryReference> fSpilled= new HashSet<>();
+
+	private RandomAccessFile fSpillFile;
+	private File fSpillPath;
+
+	/**
+	 * Creates a store. Clients use the {@link #getDefault() default store}; separate stores are
+	 * only created by tests.
+	 *
+	 * @param budget the memory budget in bytes, or a negative value to keep all edits in memory
+	 */
+	public UndoEditStore(long budget) {
+		fBudget= budget;
+	}
+
+	public static synchronized UndoEditStore getDefault() {
+		if (fgDefault == null)
+			fgDefault= new UndoEditStore(MEMORY_BUDGET);
+		return fgDefault;
+	}
+
+	/**
+	 * Adds an undo edit to the store. The edit stays in memory until the budget is exceeded by
+	 * newer edits.
+	 *
+	 * @param edit the undo edit
+	 * @return the entry that gives access to the edit
+	 */
+	public synchronized Entry add(UndoEdit edit) {
+		Entry entry= new Entry(edit);
+		if (fBudget < 0)
+			return entry;
+		expungeStaleEntries();
+		EntryReference reference= new EntryReference(entry, estimateSize(edit), fQueue);
+		fResident.add(reference);
+		fResidentSize+= reference.fSize;
+		if (fResidentSize > fBudget)
+			spill();
+		return entry;
+	}
+
+	/**
+	 * Reads all spilled edits back into memory, then closes and deletes the spill file. Edits
+	 * that cannot be read back are dropped, and undoing their changes fails.
+	 */
+	public synchronized void shutdown() {
+		for (Iterator<EntryReference> iter= fSpilled.iterator(); iter.hasNext();) {
+			EntryReference reference= iter.next();
+			iter.remove();
+			reference.fState= EntryReference.PINNED;
+			Entry entry= reference.get();
+			if (entry == null)
+				continue;
+			try {
+				entry.fEdit= read(entry.fPosition, entry.fLength);
+			} catch (IOException e) {
+				RefactoringCorePlugin.log(e);
+			}
+			entry.fPosition= -1;
+			entry.fLength= 0;
+		}
+		closeSpillFile();
+	}
+
+	private void spill() {
+		for (Iterator<EntryReference> iter= fResident.iterator(); iter.hasNext() && fResidentSize > fBudget;) {
+			EntryReference reference= iter.next();
+			iter.remove();
+			fResidentSize-= reference.fSize;
+			Entry entry= reference.get();
+			if (entry == null) {
+				reference.fState= EntryReference.PINNED;
+				continue;
+			}
+			byte[] data= serialize(entry.fEdit);
+			if (data == null) {
+				reference.fState= EntryReference.PINNED;
+				continue;
+			}
+			try {
+				RandomAccessFile file= getSpillFile();
+				long position= file.length();
+				file.seek(position);
+				file.write(data);
+				entry.fPosition= position;
+				entry.fLength= data.length;
+				entry.fEdit= null;
+				reference.fState= EntryReference.SPILLED;
+				fSpilled.add(reference);
+			} catch (IOException e) {
+				RefactoringCorePlugin.log(e);
+				reference.fState= EntryReference.PINNED;
+			}
+		}
+	}
+
+	private void expungeStaleEntries() {
+		EntryReference reference;
+		while ((reference= (EntryReference) fQueue.poll()) != null) {
+			switch (reference.fState) {
+				case EntryReference.RESIDENT:
+					if (fResident.remove(reference))
+						fResidentSize-= reference.fSize;
+					break;
+				case EntryReference.SPILLED:
+					fSpilled.remove(reference);
+					break;
+			}
+		}
+		if (fSpilled.isEmpty() && fSpillFile != null) {
+			try {
+				fSpillFile.setLength(0);
+			} catch (IOException e) {
+				closeSpillFile();
+			}
+		}
+	}
+
+	private RandomAccessFile getSpillFile() throws IOException {
+		if (fSpillFile == null) {
+			File folder;
+			try {
+				folder= RefactoringCorePlugin.getDefault().getStateLocation().toFile();
+			} catch (RuntimeException e) {
+				// no instance location
+				folder= null;
+			}
+			// every store has its own spill file
+			File path= File.createTempFile("undo", SPILL_FILE_NAME, folder); //$NON-NLS-1$
+			path.deleteOnExit();
+			fSpillFile= new RandomAccessFile(path, "rw"); //$NON-NLS-1$
+			fSpillPath= path;
+		}
+		return fSpillFile;
+	}
+
+	private void closeSpillFile() {
+		if (fSpillFile == null)
+			return;
+		try {
+			fSpillFile.close();
+		} catch (IOException e) {
+			// ignore
+		}
+		fSpillPath.delete();
+		fSpillFile= null;
+		fSpillPath= null;
+	}
+
+	private TextEdit read(long position, int length) throws IOException {
+		if (fSpillFile == null)
+			throw new IOException("Spill file has been closed"); //$NON-NLS-1$
+		byte[] data= new byte[length];
+		fSpillFile.seek(position);
+		fSpillFile.readFully(data);
+		DataInputStream input= new DataInputStream(new ByteArrayInputStream(data));
+		long checksum= input.readLong();
+		CRC32 crc= new CRC32();
+		crc.update(data, 8, data.length - 8);
+		if (checksum != crc.getValue())
+			throw new IOException("Corrupt undo edit in spill file"); //$NON-NLS-1$
+		MultiTextEdit result= new MultiTextEdit();
+		int count= input.readInt();
+		for (int i= 0; i < count; i++) {
+			int offset= input.readInt();
+			int editLength= input.readInt();
+			byte[] text= new byte[input.readInt()];
+			input.readFully(text);
+			result.addChild(new ReplaceEdit(offset, editLength, new String(text, StandardCharsets.UTF_8)));
+		}
+		return result;
+	}
+
+	/**
+	 * Serializes an undo edit as a sequence of replace edits that can be applied as children of
+	 * one {@link MultiTextEdit}. The serialized form starts with a checksum of the rest.
+	 * <p>
+	 * The children of an undo edit are applied one after the other from the last to the first
+	 * one, each at its offset in the document as left by the children applied before it. The
+	 * children are translated to offsets in the document before the undo if they are applied in
+	 * ascending or in descending order of their offsets and do not overlap. Other undo edits,
+	 * or edits where the order of insertions at the same offset is ambiguous, are not serialized.
+	 * </p>
+	 *
+	 * @param edit the undo edit
+	 * @return the serialized edit, or <code>null</code> if the edit cannot be serialized
+	 */
+	private static byte[] serialize(TextEdit edit) {
+		TextEdit[] children= edit.getChildren();
+		for (int i= 0; i < children.length; i++) {
+			if (!(children[i] instanceof ReplaceEdit))
+				return null;
+		}
+		int[] offsets= getDocumentOffsets(children, true);
+		if (offsets == null)
+			offsets= getDocumentOffsets(children, false);
+		if (offsets == null)
+			return null;
+		ByteArrayOutputStream bytes= new ByteArrayOutputStream();
+		try (DataOutputStream output= new DataOutputStream(bytes)) {
+			output.writeLong(0);
+			output.writeInt(children.length);
+			for (int i= children.length - 1; i >= 0; i--) {
+				ReplaceEdit child= (ReplaceEdit) children[i];
+				byte[] text= child.getText().getBytes(StandardCharsets.UTF_8);
+				output.writeInt(offsets[i]);
+				output.writeInt(child.getLength());
+				output.writeInt(text.length);
+				output.write(text);
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		byte[] result= bytes.toByteArray();
+		CRC32 crc= new CRC32();
+		crc.update(result, 8, result.length - 8);
+		long checksum= crc.getValue();
+		for (int i= 7; i >= 0; i--) {
+			result[i]= (byte) checksum;
+			checksum>>>= 8;
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the offsets of the children of an undo edit in the document before the undo.
+	 *
+	 * @param children the children of the undo edit, applied from the last to the first one
+	 * @param ascending <code>true</code> if the children are applied in ascending order of their
+	 *            offsets, <code>false</code> if in descending order
+	 * @return the offsets, or <code>null</code> if the children are not applied in that order or
+	 *         touch each other with an insertion
+	 */
+	private static int[] getDocumentOffsets(TextEdit[] children, boolean ascending) {
+		int[] offsets= new int[children.length];
+		int delta= 0;
+		for (int i= children.length - 1; i >= 0; i--) {
+			ReplaceEdit child= (ReplaceEdit) children[i];
+			offsets[i]= child.getOffset() - delta;
+			if (i < children.length - 1) {
+				ReplaceEdit previous= (ReplaceEdit) children[i + 1];
+				int gap= ascending ? offsets[i] - (offsets[i + 1] + previous.getLength()) : offsets[i + 1] - (offsets[i] + child.getLength());
+				if (gap < 0 || gap == 0 && (child.getLength() == 0 || previous.getLength() == 0))
+					return null;
+			}
+			if (ascending)
+				delta+= child.getText().length() - child.getLength();
+		}
+		return offsets;
+	}
+
+	private static long estimateSize(UndoEdit edit) {
+		long result= EDIT_OVERHEAD;
+		TextEdit[] children= edit.getChildren();
+		for (int i= 0; i < children.length; i++) {
+			result+= EDIT_OVERHEAD;
+			if (children[i] instanceof ReplaceEdit)
+				result+= 2L * ((ReplaceEdit) children[i]).getText().length();
+		}
+		return result;
+	}
+}
@@ -267,7 +267,8 @@ public class UndoManager2 implements IUndoManager {
 
 	@Override
 	public void shutdown() {
-		// nothing to do since we have a shared undo manager anyways.
+		// the undo manager is shared, but the spilled undo edits don't outlive the session
+		UndoEditStore.getDefault().shutdown();
 	}
 
 	private void handleException(ExecutionException e) throws CoreException {
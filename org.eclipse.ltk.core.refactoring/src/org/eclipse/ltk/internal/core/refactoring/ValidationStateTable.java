@@ -0,0 +1,484 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+
+import org.eclipse.core.filebuffers.ITextFileBuffer;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+
+import org.eclipse.ltk.core.refactoring.RefactoringStatus;
+
+/**
+ * Compact validation state for the files of many text file changes, e.g. of a workspace wide
+ * rename. Instead of a {@link BufferValidationState} per change, the table keeps the state in
+ * chunks of primitive arrays, which are allocated as changes register. The state of all
+ * registered files is captured, and later checked, in parallel over the chunks.
+ * <p>
+ * A table collects the text file changes whose validation data is initialized while the
+ * outermost composite change initializes its children, see {@link #beginCapture()}. Files with
+ * dirty buffers that do not support modification stamps keep a {@link BufferValidationState}.
+ * </p>
+ * <p>
+ * The batch mode can be disabled with the system property
+ * <code>org.eclipse.ltk.core.refactoring.batchValidation=false</code>.
+ * </p>
+ *
+ * @since 3.7
+ */
+public final class ValidationStateTable {
+
+	private static final boolean ENABLED= Boolean.valueOf(System.getProperty("org.eclipse.ltk.core.refactoring.batchValidation", "true")).booleanValue(); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final int CHUNK_SIZE= 1024;
+
+	// record flags
+	private static final byte EXISTED= 1;
+	private static final byte DERIVED= 2;
+	private static final byte WAS_DIRTY= 4;
+	private static final byte DOCUMENT_STAMP= 8;
+	private static final byte OBJECT_STATE= 16;
+
+	// check results
+	private static final byte CHECKED= 1;
+	private static final byte EXISTENCE_CHANGED= 2;
+	private static final byte READ_ONLY= 4;
+	private static final byte OUT_OF_SYNC= 8;
+	private static final byte NO_ENCODING= 16;
+	private static final byte ENCODING_CHANGED= 32;
+	private static final byte CONTENT_CHANGED= 64;
+
+	private static final ThreadLocal<ValidationStateTable> fgCapturing= new ThreadLocal<>();
+	private static final ThreadLocal<EditValidation> fgEditValidation= new ThreadLocal<>();
+
+	private static final class Chunk {
+		final IFile[] fFiles= new IFile[CHUNK_SIZE];
+		final long[] fStamps= new long[CHUNK_SIZE];
+		final byte[] fFlags= new byte[CHUNK_SIZE];
+		final short[] fEncodings= new short[CHUNK_SIZE];
+		byte[] fResults;
+	}
+
+	/**
+	 * Files whose edit validation is done in one batch at the end of
+	 * {@link org.eclipse.ltk.core.refactoring.CompositeChange#isValid}.
+	 */
+	private static final class EditValidation {
+		final Set<IFile> fFilesToModify= new LinkedHashSet<>();
+		final Set<IFile> fFilesToRead= new LinkedHashSet<>();
+	}
+
+	private interface ChunkTask {
+		void run(Chunk chunk, int length) throws CoreException;
+	}
+
+	private final List<Chunk> fChunks= new ArrayList<>();
+	private int fSize;
+	private int fCaptured;
+	private final List<String> fEncodingPool= new ArrayList<>();
+	private Map<Integer, BufferValidationState> fObjectStates;
+
+	private ValidationStateTable() {
+	}
+
+	/**
+	 * Starts collecting the text file changes whose validation data is initialized on the
+	 * current thread.
+	 *
+	 * @return the new table, or <code>null</code> if the batch mode is disabled or another table
+	 *         is already collecting on this thread
+	 */
+	public static ValidationStateTable beginCapture() {
+		if (!ENABLED || fgCapturing.get() != null)
+			return null;
+		ValidationStateTable table= new ValidationStateTable();
+		fgCapturing.set(table);
+		return table;
+	}
+
+	/**
+	 * @return the table that collects on the current thread, or <code>null</code>
+	 */
+	public static ValidationStateTable getCapturing() {
+		return fgCapturing.get();
+	}
+
+	/**
+	 * Stops collecting and captures the state of all registered files.
+	 */
+	public void endCapture() {
+		fgCapturing.remove();
+		final int start= fCaptured;
+		try {
+			forEachChunk(start, new ChunkTask() {
+				@Override
+				public void run(Chunk chunk, int length) {
+					int offset= chunk == fChunks.get(start / CHUNK_SIZE) ? start % CHUNK_SIZE : 0;
+					for (int i= offset; i < length; i++)
+						capture(chunk, i);
+				}
+			});
+		} catch (CoreException e) {
+			// the records that may not have been captured keep a buffer validation state instead
+			RefactoringCorePlugin.log(e);
+			for (int index= start; index < fSize; index++)
+				fChunks.get(index / CHUNK_SIZE).fFlags[index % CHUNK_SIZE]= OBJECT_STATE;
+		}
+		// buffer listeners are added on this thread
+		for (int index= start; index < fSize; index++) {
+			Chunk chunk= fChunks.get(index / CHUNK_SIZE);
+			int i= index % CHUNK_SIZE;
+			if ((chunk.fFlags[i] & OBJECT_STATE) != 0) {
+				if (fObjectStates == null)
+					fObjectStates= new HashMap<>();
+				fObjectStates.put(Integer.valueOf(index), BufferValidationState.create(chunk.fFiles[i]));
+			}
+		}
+		fCaptured= fSize;
+	}
+
+	/**
+	 * Registers a file whose state is captured by {@link #endCapture()}.
+	 *
+	 * @param file the file
+	 * @return the index of the file's record
+	 */
+	public int add(IFile file) {
+		int i= fSize % CHUNK_SIZE;
+		if (i == 0)
+			fChunks.add(new Chunk());
+		fChunks.get(fSize / CHUNK_SIZE).fFiles[i]= file;
+		return fSize++;
+	}
+
+	public boolean wasDirty(int index) {
+		BufferValidationState state= getObjectState(index);
+		if (state != null)
+			return state.wasDirty();
+		return (fChunks.get(index / CHUNK_SIZE).fFlags[index % CHUNK_SIZE] & WAS_DIRTY) != 0;
+	}
+
+	public boolean wasDerived(int index) {
+		BufferValidationState state= getObjectState(index);
+		if (state != null)
+			return state.wasDerived();
+		return (fChunks.get(index / CHUNK_SIZE).fFlags[index % CHUNK_SIZE] & DERIVED) != 0;
+	}
+
+	/**
+	 * Checks whether the file of a record is still in the captured state. Behaves like
+	 * {@link BufferValidationState#isValid(boolean, boolean)}.
+	 *
+	 * @param index the index of the record
+	 * @param needsSaving whether the file will be saved
+	 * @param resilientForDerived whether derived files are always valid
+	 * @return the status
+	 * @throws CoreException if the file state cannot be read
+	 */
+	public RefactoringStatus isValid(int index, boolean needsSaving, boolean resilientForDerived) throws CoreException {
+		BufferValidationState state= getObjectState(index);
+		if (state != null)
+			return state.isValid(needsSaving, resilientForDerived);
+		Chunk chunk= fChunks.get(index / CHUNK_SIZE);
+		int i= index % CHUNK_SIZE;
+		byte flags= chunk.fFlags[i];
+		if (resilientForDerived && (flags & DERIVED) != 0)
+			return new RefactoringStatus();
+		int result= chunk.fResults != null && i < chunk.fResults.length ? chunk.fResults[i] : 0;
+		if ((result & CHECKED) == 0)
+			result= check(chunk, i);
+		if ((result & EXISTENCE_CHANGED) != 0) {
+			return fatal((flags & EXISTED) != 0
+					? RefactoringCoreMessages.TextChanges_error_not_existing
+					: RefactoringCoreMessages.TextChanges_error_existing, chunk.fFiles[i]);
+		}
+		if (needsSaving && (result & READ_ONLY) != 0)
+			return fatal(RefactoringCoreMessages.TextChanges_error_read_only, chunk.fFiles[i]);
+		if (needsSaving && (result & OUT_OF_SYNC) != 0)
+			return fatal(RefactoringCoreMessages.TextChanges_error_outOfSync, chunk.fFiles[i]);
+		if ((result & NO_ENCODING) != 0)
+			return fatal(RefactoringCoreMessages.BufferValidationState_no_character_encoding, chunk.fFiles[i]);
+		if ((result & ENCODING_CHANGED) != 0)
+			return fatal(RefactoringCoreMessages.BufferValidationState_character_encoding_changed, chunk.fFiles[i]);
+		if ((result & CONTENT_CHANGED) != 0)
+			return fatal(RefactoringCoreMessages.TextChanges_error_content_changed, chunk.fFiles[i]);
+		return new RefactoringStatus();
+	}
+
+	/**
+	 * Checks all captured records in parallel. Subsequent calls of
+	 * {@link #isValid(int, boolean, boolean)} use the results until {@link #clearChecks()} is
+	 * called.
+	 *
+	 * @throws CoreException if the state of a file cannot be read
+	 */
+	public void checkAll() throws CoreException {
+		forEachChunk(0, new ChunkTask() {
+			@Override
+			public void run(Chunk chunk, int length) throws CoreException {
+				byte[] results= new byte[length];
+				for (int i= 0; i < length; i++) {
+					if ((chunk.fFlags[i] & OBJECT_STATE) == 0)
+						results[i]= check(chunk, i);
+				}
+				chunk.fResults= results;
+			}
+		});
+	}
+
+	public void clearChecks() {
+		for (Iterator<Chunk> iter= fChunks.iterator(); iter.hasNext();) {
+			iter.next().fResults= null;
+		}
+	}
+
+	/**
+	 * Releases the resources of a record.
+	 *
+	 * @param index the index of the record
+	 */
+	public void dispose(int index) {
+		if (fObjectStates != null) {
+			BufferValidationState state= fObjectStates.remove(Integer.valueOf(index));
+			if (state != null)
+				state.dispose();
+		}
+	}
+
+	/**
+	 * Starts collecting the files whose edit validation is deferred to
+	 * {@link #endEditValidation()}.
+	 *
+	 * @return <code>true</code> if the caller must call {@link #endEditValidation()},
+	 *         <code>false</code> if the batch mode is disabled or files are already collected
+	 */
+	public static boolean beginEditValidation() {
+		if (!ENABLED || fgEditValidation.get() != null)
+			return false;
+		fgEditValidation.set(new EditValidation());
+		return true;
+	}
+
+	/**
+	 * Defers the edit validation of a file to {@link #endEditValidation()}.
+	 *
+	 * @param file the file
+	 * @param modify <code>true</code> if the file will be modified and must be made
+	 *            committable, <code>false</code> if it is only read and must be in sync
+	 * @return <code>true</code> if the validation has been deferred, <code>false</code> if the
+	 *         caller must validate the file itself
+	 */
+	public static boolean deferEditValidation(IFile file, boolean modify) {
+		EditValidation validation= fgEditValidation.get();
+		if (validation == null)
+			return false;
+		if (modify)
+			validation.fFilesToModify.add(file);
+		else
+			validation.fFilesToRead.add(file);
+		return true;
+	}
+
+	/**
+	 * Validates the collected files with one call to <code>IWorkspace#validateEdit</code>.
+	 *
+	 * @param validate <code>false</code> to only stop collecting
+	 * @return the status of the validation
+	 */
+	public static RefactoringStatus endEditValidation(boolean validate) {
+		EditValidation validation= fgEditValidation.get();
+		fgEditValidation.remove();
+		RefactoringStatus result= new RefactoringStatus();
+		if (validation == null || !validate)
+			return result;
+		if (!validation.fFilesToModify.isEmpty())
+			result.merge(Changes.validateModifiesFiles(validation.fFilesToModify.toArray(new IFile[validation.fFilesToModify.size()])));
+		if (!validation.fFilesToRead.isEmpty())
+			result.merge(Changes.checkInSync(validation.fFilesToRead.toArray(new IFile[validation.fFilesToRead.size()])));
+		return result;
+	}
+
+	private BufferValidationState getObjectState(int index) {
+		if (fObjectStates == null)
+			return null;
+		return fObjectStates.get(Integer.valueOf(index));
+	}
+
+	private void capture(Chunk chunk, int i) {
+		IFile file= chunk.fFiles[i];
+		ITextFileBuffer buffer= BufferValidationState.getBuffer(file);
+		IDocument document= buffer != null ? buffer.getDocument() : null;
+		boolean dirty= buffer != null && buffer.isDirty();
+		if (buffer != null && !(document instanceof IDocumentExtension4) && dirty) {
+			chunk.fFlags[i]= OBJECT_STATE;
+			return;
+		}
+		byte flags= 0;
+		if (file.exists())
+			flags|= EXISTED;
+		if (file.isDerived())
+			flags|= DERIVED;
+		if (dirty)
+			flags|= WAS_DIRTY;
+		String encoding;
+		try {
+			encoding= file.getCharset(true);
+		} catch (CoreException e) {
+			encoding= null;
+		}
+		chunk.fEncodings[i]= getEncodingIndex(encoding);
+		if (document instanceof IDocumentExtension4) {
+			flags|= DOCUMENT_STAMP;
+			chunk.fStamps[i]= ((IDocumentExtension4) document).getModificationStamp();
+		} else {
+			chunk.fStamps[i]= file.getModificationStamp();
+		}
+		chunk.fFlags[i]= flags;
+	}
+
+	private byte check(Chunk chunk, int i) throws CoreException {
+		IFile file= chunk.fFiles[i];
+		byte flags= chunk.fFlags[i];
+		int result= CHECKED;
+		if (((flags & EXISTED) != 0) != file.exists())
+			return (byte) (result | EXISTENCE_CHANGED);
+		if (file.isReadOnly())
+			result|= READ_ONLY;
+		if (!file.isSynchronized(IResource.DEPTH_ZERO))
+			result|= OUT_OF_SYNC;
+		String encoding= getEncoding(chunk.fEncodings[i]);
+		if (encoding == null)
+			result|= NO_ENCODING;
+		else if (!encoding.equals(file.getCharset(true)))
+			result|= ENCODING_CHANGED;
+
+		// same as ModificationStampValidationState#isValid
+		ITextFileBuffer buffer= BufferValidationState.getBuffer(file);
+		IDocument document= buffer != null ? buffer.getDocument() : null;
+		boolean isDocumentStamp= document instanceof IDocumentExtension4;
+		long currentStamp= isDocumentStamp ? ((IDocumentExtension4) document).getModificationStamp() : file.getModificationStamp();
+		long stamp= chunk.fStamps[i];
+		boolean wasDocumentStamp= (flags & DOCUMENT_STAMP) != 0;
+		if (stamp != currentStamp
+				|| (!wasDocumentStamp && stamp == IResource.NULL_STAMP && isDocumentStamp)
+				|| (wasDocumentStamp && stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP && !isDocumentStamp)
+				|| (!wasDocumentStamp && !isDocumentStamp && buffer != null && buffer.isDirty())) {
+			result|= CONTENT_CHANGED;
+		}
+		return (byte) result;
+	}
+
+	private synchronized short getEncodingIndex(String encoding) {
+		if (encoding == null)
+			return -1;
+		int index= fEncodingPool.indexOf(encoding);
+		if (index == -1) {
+			index= fEncodingPool.size();
+			fEncodingPool.add(encoding);
+		}
+		return (short) index;
+	}
+
+	private synchronized String getEncoding(short index) {
+		if (index < 0)
+			return null;
+		return fEncodingPool.get(index);
+	}
+
+	private static RefactoringStatus fatal(String message, IFile file) {
+		return RefactoringStatus.createFatalErrorStatus(Messages.format(message, BasicElementLabels.getPathLabel(file.getFullPath(), false)));
+	}
+
+	/**
+	 * Runs a task for the chunks that contain the records from <code>start</code> to the end of
+	 * the table, in parallel if there is more than one chunk.
+	 *
+	 * @param start the index of the first record
+	 * @param task the task
+	 * @throws CoreException if a task throws an exception
+	 */
+	private void forEachChunk(int start, final ChunkTask task) throws CoreException {
+		int first= start / CHUNK_SIZE;
+		int count= fChunks.size() - first;
+		if (start == fSize || count <= 0)
+			return;
+		if (count == 1) {
+			task.run(fChunks.get(first), getChunkLength(first));
+			return;
+		}
+		ExecutorService executor= Executors.newFixedThreadPool(Math.min(count, Runtime.getRuntime().availableProcessors()), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread= new Thread(runnable, "Refactoring validation state"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			List<Future<Object>> futures= new ArrayList<>(count);
+			for (int c= first; c < fChunks.size(); c++) {
+				final Chunk chunk= fChunks.get(c);
+				final int length= getChunkLength(c);
+				futures.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws CoreException {
+						task.run(chunk, length);
+						return null;
+					}
+				}));
+			}
+			for (Iterator<Future<Object>> iter= futures.iterator(); iter.hasNext();) {
+				try {
+					iter.next().get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), e.getMessage(), e));
+				} catch (ExecutionException e) {
+					Throwable cause= e.getCause();
+					if (cause instanceof CoreException)
+						throw (CoreException) cause;
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new CoreException(new Status(IStatus.ERROR, RefactoringCorePlugin.getPluginId(), cause.getMessage(), cause));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private int getChunkLength(int chunkIndex) {
+		return Math.min(CHUNK_SIZE, fSize - chunkIndex * CHUNK_SIZE);
+	}
+}
@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (c) 2016 IBM Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     IBM Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.ltk.internal.core.refactoring.history;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.Assert;
+
+import org.eclipse.ltk.core.refactoring.RefactoringDescriptorProxy;
+import org.eclipse.ltk.internal.core.refactoring.IRefactoringSerializationConstants;
+import org.eclipse.ltk.internal.core.refactoring.RefactoringCorePlugin;
+
+/**
+ * Binary index of the refactoring descriptor proxies of one refactoring
+ * history folder.
+ * <p>
+ * The index is an append-only file of records keyed by time stamp. A record
+ * either adds a proxy with its description or removes the proxy with the time
+ * stamp, and the last record of a time stamp wins. The file is read into
+ * memory and closed when it is queried, so that it can be appended to,
+ * replaced or deleted afterwards; only the record headers are scanned when
+ * loading, and descriptions are only decoded for the proxies in the queried
+ * time range. The history files and the textual index files are not touched
+ * at all.
+ * </p>
+ * <p>
+ * The index does not own the refactoring history. If it is missing or cannot
+ * be read, it is rebuilt from the textual index files of the history folder.
+ * </p>
+ *
+ * @since 3.7
+ */
+final class RefactoringHistoryIndex {
+
+	/** The magic number of the index file */
+	private static final int MAGIC= 0x52484958;
+
+	/** The format version of the index file */
+	private static final int VERSION= 1;
+
+	/** The size of the file header (magic, version) */
+	private static final int HEADER_SIZE= 8;
+
+	/** The size of a record header (stamp, kind, length of description) */
+	private static final int RECORD_HEADER_SIZE= 13;
+
+	/** The record kind of added proxies */
+	private static final byte KIND_ADDED= 1;
+
+	/** The record kind of removed proxies */
+	private static final byte KIND_REMOVED= 2;
+
+	/** The minimal number of obsolete records before the index is compacted */
+	private static final int MIN_OBSOLETE_RECORDS= 64;
+
+	/** The encoding of descriptions */
+	private static final Charset ENCODING= Charset.forName(IRefactoringSerializationConstants.OUTPUT_ENCODING);
+
+	/** The index file */
+	private final File fFile;
+
+	/** The non-empty name of the project, or <code>null</code> for the workspace */
+	private final String fProject;
+
+	/** The content of the index file, or <code>null</code> if not loaded */
+	private ByteBuffer fBuffer= null;
+
+	/** The length of the index file when it has been loaded */
+	private long fLoadedLength= -1;
+
+	/** The modification time of the index file when it has been loaded */
+	private long fLoadedModified= -1;
+
+	/** The number of live proxies */
+	private int fCount= 0;
+
+	/** The time stamps of the live proxies, in ascending order */
+	private long[] fStamps= new long[0];
+
+	/** The buffer positions of the descriptions of the live proxies */
+	private int[] fPositions= new int[0];
+
+	/** The description lengths of the live proxies */
+	private int[] fLengths= new int[0];
+
+	/** The number of records which are superseded by later records */
+	private int fObsolete= 0;
+
+	/**
+	 * Creates a new refactoring history index.
+	 *
+	 * @param file
+	 *            the index file, which does not need to exist
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 */
+	RefactoringHistoryIndex(final File file, final String project) {
+		Assert.isNotNull(file);
+		fFile= file;
+		fProject= project;
+	}
+
+	/**
+	 * Appends the specified refactoring descriptor proxies to the index.
+	 * <p>
+	 * Nothing happens if the index file does not exist, since it is rebuilt
+	 * from the history on the next query.
+	 * </p>
+	 *
+	 * @param proxies
+	 *            the proxies to add
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	synchronized void add(final RefactoringDescriptorProxy[] proxies) throws IOException {
+		if (!exists())
+			return;
+		load();
+		try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile, true)))) {
+			for (int index= 0; index < proxies.length; index++)
+				writeRecord(output, proxies[index].getTimeStamp(), KIND_ADDED, proxies[index].getDescription());
+		}
+		unload();
+	}
+
+	/**
+	 * Deletes the index file.
+	 * <p>
+	 * If the file cannot be deleted, it is truncated so that it is not read as
+	 * a valid index anymore, and the failure is logged.
+	 * </p>
+	 *
+	 * @return <code>true</code> if the index file has been deleted or did not
+	 *         exist, <code>false</code> otherwise
+	 */
+	synchronized boolean delete() {
+		unload();
+		if (!fFile.exists() || fFile.delete())
+			return true;
+		try {
+			new FileOutputStream(fFile).close();
+		} catch (IOException exception) {
+			RefactoringCorePlugin.log(exception);
+		}
+		RefactoringCorePlugin.logErrorMessage("Could not delete refactoring history index: " + fFile); //$NON-NLS-1$
+		return false;
+	}
+
+	/**
+	 * Returns whether the index file exists.
+	 *
+	 * @return <code>true</code> if it exists, <code>false</code> otherwise
+	 */
+	synchronized boolean exists() {
+		return fFile.isFile();
+	}
+
+	/**
+	 * Returns the refactoring descriptor proxies of the specified time range.
+	 * <p>
+	 * The refactoring descriptor proxies are returned in ascending order of
+	 * their time stamps.
+	 * </p>
+	 *
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @return the refactoring descriptor proxies
+	 * @throws IOException
+	 *             if the index file does not exist or cannot be read
+	 */
+	synchronized RefactoringDescriptorProxy[] query(final long start, final long end) throws IOException {
+		load();
+		int first= Arrays.binarySearch(fStamps, 0, fCount, start);
+		if (first < 0)
+			first= -first - 1;
+		final List<RefactoringDescriptorProxy> list= new ArrayList<>();
+		for (int index= first; index < fCount && fStamps[index] <= end; index++)
+			list.add(new DefaultRefactoringDescriptorProxy(readDescription(index), fProject, fStamps[index]));
+		return list.toArray(new RefactoringDescriptorProxy[list.size()]);
+	}
+
+	/**
+	 * Removes the refactoring descriptor proxies with the specified time
+	 * stamps from the index.
+	 * <p>
+	 * Nothing happens if the index file does not exist. The index is compacted
+	 * once most of its records are obsolete.
+	 * </p>
+	 *
+	 * @param proxies
+	 *            the proxies to remove
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	synchronized void remove(final RefactoringDescriptorProxy[] proxies) throws IOException {
+		if (!exists())
+			return;
+		load();
+		try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile, true)))) {
+			for (int index= 0; index < proxies.length; index++)
+				writeRecord(output, proxies[index].getTimeStamp(), KIND_REMOVED, null);
+		}
+		unload();
+		load();
+		if (fObsolete >= MIN_OBSOLETE_RECORDS && fObsolete > fCount)
+			write(query(0, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Replaces the content of the index by the specified refactoring
+	 * descriptor proxies.
+	 * <p>
+	 * The new index is written to a temporary file which then replaces the
+	 * index file, so that an interrupted write leaves the old index intact.
+	 * </p>
+	 *
+	 * @param proxies
+	 *            the proxies of the history
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	synchronized void write(final RefactoringDescriptorProxy[] proxies) throws IOException {
+		unload();
+		final RefactoringDescriptorProxy[] sorted= new RefactoringDescriptorProxy[proxies.length];
+		System.arraycopy(proxies, 0, sorted, 0, proxies.length);
+		RefactoringHistoryManager.sortRefactoringDescriptorsAscending(sorted);
+		fFile.getParentFile().mkdirs();
+		final File temporary= new File(fFile.getPath() + ".tmp"); //$NON-NLS-1$
+		try {
+			try (DataOutputStream output= new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				for (int index= 0; index < sorted.length; index++)
+					writeRecord(output, sorted[index].getTimeStamp(), KIND_ADDED, sorted[index].getDescription());
+			}
+			Files.move(temporary.toPath(), fFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			if (temporary.exists())
+				temporary.delete();
+		}
+	}
+
+	/**
+	 * Reads the index file and scans its record headers, unless the file did
+	 * not change since it has been loaded.
+	 *
+	 * @throws IOException
+	 *             if the index file does not exist or cannot be read
+	 */
+	private void load() throws IOException {
+		final long length= fFile.length();
+		final long modified= fFile.lastModified();
+		if (fBuffer != null && length == fLoadedLength && modified == fLoadedModified)
+			return;
+		unload();
+		final ByteBuffer buffer;
+		try (DataInputStream input= new DataInputStream(new FileInputStream(fFile))) {
+			if (length > Integer.MAX_VALUE)
+				throw new IOException("Refactoring history index too large: " + fFile); //$NON-NLS-1$
+			final byte[] bytes= new byte[(int) length];
+			input.readFully(bytes);
+			buffer= ByteBuffer.wrap(bytes);
+		}
+		if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+			throw new IOException("Invalid refactoring history index: " + fFile); //$NON-NLS-1$
+
+		int records= 0;
+		long[] stamps= new long[64];
+		int[] positions= new int[64];
+		int[] lengths= new int[64];
+		boolean sorted= true;
+		while (buffer.hasRemaining()) {
+			if (buffer.remaining() < RECORD_HEADER_SIZE)
+				throw new IOException("Truncated refactoring history index: " + fFile); //$NON-NLS-1$
+			final long stamp= buffer.getLong();
+			final byte kind= buffer.get();
+			final int size= buffer.getInt();
+			if (size < 0 || size > buffer.remaining() || (kind != KIND_ADDED && kind != KIND_REMOVED))
+				throw new IOException("Corrupt refactoring history index: " + fFile); //$NON-NLS-1$
+			if (records == stamps.length) {
+				stamps= Arrays.copyOf(stamps, records * 2);
+				positions= Arrays.copyOf(positions, records * 2);
+				lengths= Arrays.copyOf(lengths, records * 2);
+			}
+			if (kind == KIND_REMOVED || (records > 0 && stamps[records - 1] >= stamp))
+				sorted= false;
+			stamps[records]= stamp;
+			positions[records]= kind == KIND_ADDED ? buffer.position() : -1;
+			lengths[records]= size;
+			records++;
+			buffer.position(buffer.position() + size);
+		}
+
+		if (sorted) {
+			fStamps= stamps;
+			fPositions= positions;
+			fLengths= lengths;
+			fCount= records;
+		} else {
+			// the last record of a time stamp wins
+			final Map<Long, Integer> latest= new HashMap<>(records * 2);
+			for (int index= 0; index < records; index++)
+				latest.put(Long.valueOf(stamps[index]), Integer.valueOf(index));
+			final long[] live= new long[latest.size()];
+			int count= 0;
+			for (int index= 0; index < records; index++) {
+				if (positions[index] >= 0 && latest.get(Long.valueOf(stamps[index])).intValue() == index)
+					live[count++]= stamps[index];
+			}
+			Arrays.sort(live, 0, count);
+			fStamps= live;
+			fPositions= new int[count];
+			fLengths= new int[count];
+			for (int index= 0; index < count; index++) {
+				final int record= latest.get(Long.valueOf(live[index])).intValue();
+				fPositions[index]= positions[record];
+				fLengths[index]= lengths[record];
+			}
+			fCount= count;
+		}
+		fObsolete= records - fCount;
+		fBuffer= buffer;
+		fLoadedLength= length;
+		fLoadedModified= modified;
+	}
+
+	/**
+	 * Decodes the description of the live proxy with the specified index.
+	 *
+	 * @param index
+	 *            the index of the live proxy
+	 * @return the description
+	 */
+	private String readDescription(final int index) {
+		final ByteBuffer buffer= fBuffer.duplicate();
+		buffer.position(fPositions[index]);
+		final byte[] bytes= new byte[fLengths[index]];
+		buffer.get(bytes);
+		return new String(bytes, ENCODING);
+	}
+
+	/**
+	 * Forgets the loaded index.
+	 */
+	private void unload() {
+		fBuffer= null;
+		fLoadedLength= -1;
+		fLoadedModified= -1;
+		fCount= 0;
+		fStamps= new long[0];
+		fPositions= new int[0];
+		fLengths= new int[0];
+		fObsolete= 0;
+	}
+
+	/**
+	 * Writes a record to the specified output stream.
+	 *
+	 * @param output
+	 *            the output stream
+	 * @param stamp
+	 *            the time stamp of the proxy
+	 * @param kind
+	 *            the record kind
+	 * @param description
+	 *            the description of the proxy, or <code>null</code>
+	 * @throws IOException
+	 *             if an input/output error occurs
+	 */
+	private static void writeRecord(final DataOutputStream output, final long stamp, final byte kind, final String description) throws IOException {
+		final byte[] bytes= description != null ? description.getBytes(ENCODING) : new byte[0];
+		output.writeLong(stamp);
+		output.writeByte(kind);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2005, 2015 IBM Corporation and others.
+ * Copyright (c) 2005, 2016 IBM Corporation and others.
  * All rights reserved. This program and the accompanying materials
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
@@ -13,6 +13,7 @@ package org.eclipse.ltk.internal.core.refactoring.history;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -237,6 +238,60 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Reads refactoring descriptor proxies from the binary index of a history
+	 * folder, and falls back to the textual index files if there is no binary
+	 * index.
+	 * <p>
+	 * A missing binary index is rebuilt from the textual index files. If the
+	 * binary index cannot be read, it is deleted.
+	 * </p>
+	 *
+	 * @param store
+	 *            the file store of the history folder
+	 * @param index
+	 *            the binary index of the history folder, or <code>null</code>
+	 * @param project
+	 *            the name of the project, or <code>null</code> for the
+	 *            workspace
+	 * @param collection
+	 *            the collection of proxies to fill in
+	 * @param start
+	 *            the start time stamp, inclusive
+	 * @param end
+	 *            the end time stamp, inclusive
+	 * @param monitor
+	 *            the progress monitor to use
+	 * @param task
+	 *            the task label to use
+	 * @throws CoreException
+	 *             if an error occurs
+	 */
+	private static void readRefactoringDescriptorProxies(final IFileStore store, final RefactoringHistoryIndex index, final String project, final Collection<RefactoringDescriptorProxy> collection, final long start, final long end, final IProgressMonitor monitor, final String task) throws CoreException {
+		try {
+			monitor.beginTask(task, 100);
+			if (index != null) {
+				try {
+					if (!index.exists()) {
+						final Set<RefactoringDescriptorProxy> set= new HashSet<>();
+						readRefactoringDescriptorProxies(store, project, set, 0, Long.MAX_VALUE, new SubProgressMonitor(monitor, 90), task);
+						index.write(set.toArray(new RefactoringDescriptorProxy[set.size()]));
+					}
+					final RefactoringDescriptorProxy[] proxies= index.query(start, end);
+					for (int offset= 0; offset < proxies.length; offset++)
+						collection.add(proxies[offset]);
+					return;
+				} catch (IOException exception) {
+					RefactoringCorePlugin.log(exception);
+					index.delete();
+				}
+			}
+			readRefactoringDescriptorProxies(store, project, collection, start, end, new SubProgressMonitor(monitor, 100), task);
+		} finally {
+			monitor.done();
+		}
+	}
+
 	/**
 	 * Reads refactoring descriptor proxies from the specified input stream.
 	 * <p>
@@ -318,6 +373,40 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Creates the binary index of the specified history folder.
+	 * <p>
+	 * Only the history folders in the plugin state location are indexed. Shared
+	 * refactoring histories are stored in the project and may be changed by
+	 * other tools, e.g. by a team provider, which would not update the binary
+	 * index.
+	 * </p>
+	 *
+	 * @param store
+	 *            the file store of the history folder
+	 * @param project
+	 *            the non-empty name of the project, or <code>null</code> for
+	 *            the workspace
+	 * @return the binary index, or <code>null</code> if the history folder is
+	 *         not indexed
+	 */
+	private static RefactoringHistoryIndex createIndex(final IFileStore store, final String project) {
+		final RefactoringCorePlugin plugin= RefactoringCorePlugin.getDefault();
+		if (plugin == null)
+			return null;
+		final IFileStore folder= EFS.getLocalFileSystem().getStore(plugin.getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER);
+		if (!folder.equals(store.getParent()))
+			return null;
+		try {
+			final File file= store.getChild(RefactoringHistoryService.NAME_PROXY_INDEX_FILE).toLocalFile(EFS.NONE, null);
+			if (file != null)
+				return new RefactoringHistoryIndex(file, project);
+		} catch (CoreException exception) {
+			RefactoringCorePlugin.log(exception);
+		}
+		return null;
+	}
+
 	/**
 	 * Removes the refactoring history index tree spanned by the specified file
 	 * store.
@@ -771,6 +860,9 @@ public final class RefactoringHistoryManager {
 	/** The history file store */
 	private final IFileStore fHistoryStore;
 
+	/** The binary index of the history file store, or <code>null</code> */
+	private final RefactoringHistoryIndex fIndex;
+
 	/**
 	 * The non-empty name of the managed project, or <code>null</code> for the
 	 * workspace
@@ -791,6 +883,7 @@ public final class RefactoringHistoryManager {
 		Assert.isTrue(name == null || !"".equals(name)); //$NON-NLS-1$
 		fHistoryStore= store;
 		fProjectName= name;
+		fIndex= createIndex(store, name);
 	}
 
 	/**
@@ -883,7 +976,11 @@ public final class RefactoringHistoryManager {
 						throw createCoreException(exception);
 					}
 				}
+				updateIndex(proxies, true);
 			}
+		} catch (CoreException exception) {
+			invalidateIndex();
+			throw exception;
 		} finally {
 			monitor.done();
 		}
@@ -947,6 +1044,15 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Deletes the binary index of the managed history, which is then rebuilt
+	 * on the next read.
+	 */
+	private void invalidateIndex() {
+		if (fIndex != null)
+			fIndex.delete();
+	}
+
 	/**
 	 * Reads the refactoring history from disk.
 	 *
@@ -964,10 +1070,10 @@ public final class RefactoringHistoryManager {
 			final Set<RefactoringDescriptorProxy> set= new HashSet<>();
 			try {
 				if (fHistoryStore.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(fHistoryStore, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+					readRefactoringDescriptorProxies(fHistoryStore, fIndex, fProjectName, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
 				final IFileStore store= EFS.getLocalFileSystem().getStore(RefactoringCorePlugin.getDefault().getStateLocation()).getChild(RefactoringHistoryService.NAME_HISTORY_FOLDER).getChild(RefactoringHistoryService.NAME_WORKSPACE_PROJECT);
 				if (store.fetchInfo(EFS.NONE, new SubProgressMonitor(monitor, 20, SubProgressMonitor.SUPPRESS_SUBTASK_LABEL)).exists())
-					readRefactoringDescriptorProxies(store, null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
+					readRefactoringDescriptorProxies(store, store.equals(fHistoryStore) ? fIndex : createIndex(store, null), null, set, start, end, new SubProgressMonitor(monitor, 80), RefactoringCoreMessages.RefactoringHistoryService_retrieving_history);
 			} catch (CoreException exception) {
 				RefactoringCorePlugin.log(exception);
 			}
@@ -1108,6 +1214,10 @@ public final class RefactoringHistoryManager {
 			} finally {
 				subMonitor.done();
 			}
+			updateIndex(proxies, false);
+		} catch (CoreException exception) {
+			invalidateIndex();
+			throw exception;
 		} finally {
 			monitor.done();
 		}
@@ -1225,6 +1335,30 @@ public final class RefactoringHistoryManager {
 		}
 	}
 
+	/**
+	 * Appends the specified refactoring descriptor proxies to the binary index
+	 * of the managed history.
+	 *
+	 * @param proxies
+	 *            the refactoring descriptor proxies
+	 * @param add
+	 *            <code>true</code> if the proxies have been added to the
+	 *            history, <code>false</code> if they have been removed
+	 */
+	private void updateIndex(final RefactoringDescriptorProxy[] proxies, final boolean add) {
+		if (fIndex != null) {
+			try {
+				if (add)
+					fIndex.add(proxies);
+				else
+					fIndex.remove(proxies);
+			} catch (IOException exception) {
+				RefactoringCorePlugin.log(exception);
+				fIndex.delete();
+			}
+		}
+	}
+
 	/**
 	 * Writes the specified document node into the refactoring history.
 	 *
@@ -123,6 +123,9 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 	/** The refactoring history index file name */
 	public static final String NAME_INDEX_FILE= "refactorings.index"; //$NON-NLS-1$
 
+	/** The binary refactoring descriptor proxy index file name */
+	public static final String NAME_PROXY_INDEX_FILE= "refactorings.proxies"; //$NON-NLS-1$
+
 	/** The name of the special workspace project */
 	public static final String NAME_WORKSPACE_PROJECT= ".workspace"; //$NON-NLS-1$
 
@@ -256,6 +259,7 @@ public final class RefactoringHistoryService implements IRefactoringHistoryServi
 							destination.mkdir(EFS.NONE, new SubProgressMonitor(monitor, 20));
 							source.copy(destination, EFS.OVERWRITE, new SubProgressMonitor(monitor, 20));
 							source.delete(EFS.NONE, new SubProgressMonitor(monitor, 20));
+							destination.getChild(NAME_PROXY_INDEX_FILE).delete(EFS.NONE, null);
 						}
 					} else {
 						final IFileStore source= EFS.getStore(uri).getChild(NAME_HISTORY_FOLDER);